@@ -0,0 +1,138 @@
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import bench.BitStreamWorkload;
+
+// Bit I/O workload for bench.BitStreamBenchmark. "legacy" runs the per-bit streams the
+// codecs used before BitOutputStream/BitInputStream, "word" runs the current ones.
+public class BitStreamWorkloads implements BitStreamWorkload {
+    private final boolean legacy;
+    private final int[] widths;
+    private final long[] values;
+    private final byte[] encoded;
+
+    public BitStreamWorkloads(String impl, long bits) {
+        if (!impl.equals("legacy") && !impl.equals("word")) {
+            throw new IllegalArgumentException("Unknown bit stream implementation: " + impl);
+        }
+        this.legacy = impl.equals("legacy");
+
+        Random random = new Random(42);
+        int[] w = new int[1024];
+        long[] v = new long[1024];
+        int count = 0;
+        long total = 0;
+        while (total < bits) {
+            int width;
+            int pick = random.nextInt(8);
+            if (pick < 3) width = 1;
+            else if (pick == 3) width = 2;
+            else if (pick == 4) width = 11;
+            else width = 1 + random.nextInt(32);
+            width = (int) Math.min(width, bits - total);
+            if (count == w.length) {
+                w = Arrays.copyOf(w, count * 2);
+                v = Arrays.copyOf(v, count * 2);
+            }
+            w[count] = width;
+            v[count] = random.nextLong() & (width == 64 ? -1L : (1L << width) - 1);
+            total += width;
+            count++;
+        }
+        this.widths = Arrays.copyOf(w, count);
+        this.values = Arrays.copyOf(v, count);
+        this.encoded = write();
+    }
+
+    public byte[] write() {
+        if (legacy) {
+            LegacyBitOutputStream out = new LegacyBitOutputStream();
+            for (int i = 0; i < widths.length; i++) {
+                out.writeLong(values[i], widths[i]);
+            }
+            return out.toByteArray();
+        }
+        BitOutputStream out = new BitOutputStream();
+        for (int i = 0; i < widths.length; i++) {
+            out.writeLong(values[i], widths[i]);
+        }
+        return out.toByteArray();
+    }
+
+    public long read() {
+        long checksum = 0;
+        if (legacy) {
+            LegacyBitInputStream in = new LegacyBitInputStream(encoded);
+            for (int width : widths) {
+                checksum ^= in.readLong(width);
+            }
+            return checksum;
+        }
+        BitInputStream in = new BitInputStream(encoded);
+        for (int width : widths) {
+            checksum ^= in.readLong(width);
+        }
+        return checksum;
+    }
+
+    // Copies of the byte-at-a-time streams that EncodingBenchmarkNew used to nest
+    static class LegacyBitOutputStream {
+        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int currentByte = 0;
+        private int numBitsInCurrentByte = 0;
+
+        void writeBit(int bit) {
+            currentByte = (currentByte << 1) | (bit & 1);
+            numBitsInCurrentByte++;
+            if (numBitsInCurrentByte == 8) {
+                out.write(currentByte);
+                currentByte = 0;
+                numBitsInCurrentByte = 0;
+            }
+        }
+
+        void writeLong(long value, int numBits) {
+            for (int i = numBits - 1; i >= 0; i--) {
+                writeBit((int) ((value >> i) & 1));
+            }
+        }
+
+        byte[] toByteArray() {
+            if (numBitsInCurrentByte > 0) {
+                currentByte <<= (8 - numBitsInCurrentByte);
+                out.write(currentByte);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static class LegacyBitInputStream {
+        private byte[] data;
+        private int byteIndex = 0;
+        private int bitIndex = 0;
+
+        LegacyBitInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        int readBit() {
+            if (byteIndex >= data.length) return -1;
+            int bit = (data[byteIndex] >> (7 - bitIndex)) & 1;
+            bitIndex++;
+            if (bitIndex == 8) {
+                bitIndex = 0;
+                byteIndex++;
+            }
+            return bit;
+        }
+
+        long readLong(int numBits) {
+            long result = 0;
+            for (int i = 0; i < numBits; i++) {
+                result = (result << 1) | readBit();
+            }
+            return result;
+        }
+    }
+}
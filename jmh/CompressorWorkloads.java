@@ -0,0 +1,48 @@
+import java.io.IOException;
+
+import bench.StageWorkload;
+
+// Compressor workload for bench.CompressorBenchmark: one CompressionBenchmarkNew compressor
+// on a raw column built as in EncoderWorkloads. Compressors are named as in the harness
+// CSVs at their default settings: GZIP, ZLIB, SNAPPY, LZ4, LZ_FAST, LZ_NORMAL, LZ_HIGH.
+public class CompressorWorkloads implements StageWorkload {
+    private final CompressionBenchmarkNew.Compressor compressor;
+    private final byte[] column;
+    private final byte[] compressed;
+
+    public CompressorWorkloads(String codec, String target, int samples, String profile) throws IOException {
+        this.column = EncoderWorkloads.columnBytes(target, samples, profile);
+        this.compressor = compressor(codec);
+        this.compressed = compressor.compress(column);
+        EncoderWorkloads.verify(compressor.getName() + " on " + target, column, compressor.decompress(compressed));
+        System.out.printf("%n%s/%s/%d/%s: %d bytes -> %d bytes%n",
+                compressor.getName(), target, samples, profile, column.length, compressed.length);
+    }
+
+    public int inputBytes() {
+        return column.length;
+    }
+
+    public byte[] encode() throws IOException {
+        return compressor.compress(column);
+    }
+
+    public byte[] decode() throws IOException {
+        return compressor.decompress(compressed);
+    }
+
+    static CompressionBenchmarkNew.Compressor compressor(String codec) {
+        switch (codec) {
+            case "IDENTITY": return new CompressionBenchmarkNew.IdentityCompressor();
+            case "GZIP": return new CompressionBenchmarkNew.GZIPCompressor();
+            case "ZLIB": return new CompressionBenchmarkNew.ZlibCompressor();
+            case "SNAPPY": return new CompressionBenchmarkNew.SnappyCompressor();
+            case "LZ4": return new CompressionBenchmarkNew.LZ4Compressor();
+            case "LZ_FAST": return new CompressionBenchmarkNew.HashChainLZCompressor(HashChainLZ.Level.FAST);
+            case "LZ_NORMAL": return new CompressionBenchmarkNew.HashChainLZCompressor(HashChainLZ.Level.NORMAL);
+            case "LZ_HIGH": return new CompressionBenchmarkNew.HashChainLZCompressor(HashChainLZ.Level.HIGH);
+            default:
+                throw new IllegalArgumentException("Unknown compressor: " + codec);
+        }
+    }
+}
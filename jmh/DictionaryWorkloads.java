@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import bench.CodecWorkload;
+
+// Dictionary workload for bench.DictionaryBenchmark on low-cardinality sensor streams:
+// "status" is a skewed mix of 8 device status codes, "quantized" is the generated
+// temperature/humidity readings rounded to 0.5. "boxed" runs the HashMap<Long,Integer>
+// coder DictionaryEncoder used to be, "primitive" the current DictionaryEncoder.
+public class DictionaryWorkloads implements CodecWorkload {
+    private static final long[] STATUS_CODES = {200, 200, 200, 200, 200, 204, 204, 301, 400, 404, 500, 503};
+
+    private final boolean boxed;
+    private final long[] values;
+    private final long[] decoded;
+    private final ByteBuffer encoded;
+    private final EncodingBenchmarkNew.DictionaryEncoder primitive = new EncodingBenchmarkNew.DictionaryEncoder();
+
+    public DictionaryWorkloads(String impl, String profile, int samples) {
+        if (!impl.equals("boxed") && !impl.equals("primitive")) {
+            throw new IllegalArgumentException("Unknown dictionary implementation: " + impl);
+        }
+        this.boxed = impl.equals("boxed");
+
+        switch (profile) {
+            case "status": {
+                Random random = new Random(42);
+                values = new long[samples];
+                for (int i = 0; i < samples; i++) {
+                    values[i] = STATUS_CODES[random.nextInt(STATUS_CODES.length)];
+                }
+                break;
+            }
+            case "quantized": {
+                BatchData.Batch batch = BatchData.generateDeterministic(42, (samples + 1) / 2,
+                        BatchData.BASE_TIMESTAMP_MS, BatchData.INTERVAL_MS);
+                float[] flat = EncodingBenchmarkNew.flattenValues(batch.values);
+                values = new long[samples];
+                for (int i = 0; i < samples; i++) {
+                    values[i] = Float.floatToIntBits(Math.round(flat[i] * 2) / 2f);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown data profile: " + profile);
+        }
+
+        decoded = new long[samples];
+        // The boxed layout spends 12 bytes per entry and 4 per index
+        encoded = ByteBuffer.allocate(64 + samples * 16);
+        encode();
+        System.out.printf("%n%s/%s/%d: %d values -> %d bytes%n",
+                impl, profile, samples, samples, encoded.limit());
+    }
+
+    public int inputBytes() {
+        return values.length * 8;
+    }
+
+    public int encode() {
+        encoded.clear();
+        if (boxed) {
+            writeBoxed(values, encoded);
+        } else {
+            primitive.encodeLongs(values, 0, values.length, encoded);
+        }
+        encoded.flip();
+        return encoded.limit();
+    }
+
+    public long decode() {
+        ByteBuffer in = encoded.duplicate();
+        if (boxed) {
+            readBoxed(in, decoded, decoded.length);
+        } else {
+            primitive.decodeLongs(in, decoded, 0);
+        }
+        return decoded[decoded.length - 1];
+    }
+
+    // Copy of the boxed coder DictionaryEncoder used before the open-addressing rewrite
+    private static void writeBoxed(long[] values, ByteBuffer out) {
+        Map<Long, Integer> dict = new HashMap<>();
+        List<Integer> indices = new ArrayList<>();
+        int nextId = 0;
+
+        for (long val : values) {
+            if (!dict.containsKey(val)) {
+                dict.put(val, nextId++);
+            }
+            indices.add(dict.get(val));
+        }
+
+        out.putInt(dict.size());
+        for (Map.Entry<Long, Integer> entry : dict.entrySet()) {
+            out.putLong(entry.getKey());
+            out.putInt(entry.getValue());
+        }
+        for (int idx : indices) {
+            out.putInt(idx);
+        }
+    }
+
+    private static void readBoxed(ByteBuffer in, long[] dest, int count) {
+        int dictSize = in.getInt();
+        Map<Integer, Long> dict = new HashMap<>();
+        for (int i = 0; i < dictSize; i++) {
+            long key = in.getLong();
+            int id = in.getInt();
+            dict.put(id, key);
+        }
+
+        for (int i = 0; i < count; i++) {
+            dest[i] = dict.get(in.getInt());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+import bench.CodecWorkload;
+
+// Snappy/LZ4 workload for bench.DirectBufferBenchmark. The input is generated rows
+// (timestamp, then the float readings) cut to size bytes. "array" runs the byte[] entry
+// points, "heap" and "direct" the BufferCompressor calls on buffers allocated at setup.
+public class DirectBufferWorkloads implements CodecWorkload {
+    private final boolean array;
+    private final CompressionBenchmarkNew.BufferCompressor codec;
+    private final byte[] data;
+    private final ByteBuffer input;
+    private final ByteBuffer compressed;
+    private final ByteBuffer frozen;
+    private final ByteBuffer restored;
+    private final byte[] frozenArray;
+
+    public DirectBufferWorkloads(String codecName, String path, int size) {
+        switch (codecName) {
+            case "SNAPPY":
+                codec = new CompressionBenchmarkNew.SnappyCompressor();
+                break;
+            case "LZ4":
+                codec = new CompressionBenchmarkNew.LZ4Compressor();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + codecName);
+        }
+        if (!path.equals("array") && !path.equals("heap") && !path.equals("direct")) {
+            throw new IllegalArgumentException("Unknown buffer path: " + path);
+        }
+        this.array = path.equals("array");
+        boolean direct = path.equals("direct");
+
+        data = rows(size);
+        input = allocate(direct, size);
+        input.put(data).flip();
+        compressed = allocate(direct, codec.maxCompressedLength(size));
+        restored = allocate(direct, size);
+        try {
+            frozenArray = codec.compress(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        frozen = allocate(direct, frozenArray.length);
+        frozen.put(frozenArray).flip();
+        System.out.printf("%n%s/%s/%d: %d bytes -> %d bytes%n", codecName, path, size, size, frozenArray.length);
+    }
+
+    public int inputBytes() {
+        return data.length;
+    }
+
+    public int encode() {
+        try {
+            if (array) return codec.compress(data).length;
+            input.rewind();
+            compressed.clear();
+            return codec.compress(input, compressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long decode() {
+        try {
+            if (array) return codec.decompress(frozenArray).length;
+            frozen.rewind();
+            restored.clear();
+            return codec.decompress(frozen, restored);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer allocate(boolean direct, int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static byte[] rows(int size) {
+        int columns = BatchData.generateDeterministic(42).values[0].length;
+        int rowBytes = 8 + 4 * columns;
+        BatchData.Batch batch = BatchData.generateDeterministic(42, size / rowBytes + 1,
+                BatchData.BASE_TIMESTAMP_MS, BatchData.INTERVAL_MS);
+        ByteBuffer out = ByteBuffer.allocate(batch.timestamps.length * rowBytes);
+        for (int i = 0; i < batch.timestamps.length; i++) {
+            out.putLong(batch.timestamps[i]);
+            for (float v : batch.values[i]) {
+                out.putFloat(v);
+            }
+        }
+        byte[] bytes = new byte[size];
+        System.arraycopy(out.array(), 0, bytes, 0, size);
+        return bytes;
+    }
+}
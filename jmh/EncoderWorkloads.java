@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+import bench.StageWorkload;
+
+// Encoder workload for bench.EncoderBenchmark: one EncodingBenchmarkNew codec on one column.
+// codec names a codec family; the XOR codecs (GORILLA, CHIMP, CHIMP128) take the word
+// width of the target column, so every codec runs on every target.
+//
+// Targets are the harness columns: "timestamps" (longs), "values" (the temp and hum floats
+// interleaved, two per row) and "doubles" (the same readings at double precision). Profiles
+// are BatchData.PROFILES: "gaussian" as generated, "jittered" adds 0-3 ms to every
+// timestamp, "quantized" rounds the readings to 0.5 as many sensors report them.
+public class EncoderWorkloads implements StageWorkload {
+    private final EncodingBenchmarkNew.Encoder encoder;
+    private final byte[] column;
+    private final byte[] encoded;
+
+    public EncoderWorkloads(String codec, String target, int samples, String profile) {
+        this.column = columnBytes(target, samples, profile);
+        this.encoder = codec(codec, EncodingBenchmarkNew.columnWordBytes(target));
+        this.encoded = encoder.encode(column);
+        verify(encoder.getName() + " on " + target, column, encoder.decode(encoded));
+        System.out.printf("%n%s/%s/%d/%s: %d bytes -> %d bytes%n",
+                encoder.getName(), target, samples, profile, column.length, encoded.length);
+    }
+
+    public int inputBytes() {
+        return column.length;
+    }
+
+    public byte[] encode() {
+        return encoder.encode(column);
+    }
+
+    public byte[] decode() {
+        return encoder.decode(encoded);
+    }
+
+    static EncodingBenchmarkNew.TypedCodec codec(String codec, int wordBytes) {
+        switch (codec) {
+            case "IDENTITY": return new EncodingBenchmarkNew.IdentityEncoder();
+            case "TS_2DIFF": return new EncodingBenchmarkNew.TS2DIFFEncoder();
+            case "GORILLA": return new EncodingBenchmarkNew.GorillaEncoder(wordBytes);
+            case "CHIMP": return new EncodingBenchmarkNew.ChimpEncoder(1, wordBytes);
+            case "CHIMP128": return new EncodingBenchmarkNew.ChimpEncoder(128, wordBytes);
+            case "BIT_PACKING": return new EncodingBenchmarkNew.BitPackingEncoder();
+            case "RLE": return new EncodingBenchmarkNew.RLEEncoder();
+            case "HUFFMAN": return new EncodingBenchmarkNew.HuffmanEncoder();
+            case "GOLOMB_RICE": return new EncodingBenchmarkNew.GolombRiceEncoder();
+            case "SPRINTZ": return new EncodingBenchmarkNew.SprintzEncoder();
+            case "RLBE": return new EncodingBenchmarkNew.RLBEEncoder();
+            case "RAKE": return new EncodingBenchmarkNew.RAKEEncoder();
+            case "DICTIONARY": return new EncodingBenchmarkNew.DictionaryEncoder();
+            case "PFOR_DELTA": return new EncodingBenchmarkNew.PFORDeltaEncoder();
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + codec);
+        }
+    }
+
+    static byte[] columnBytes(String target, int samples, String profile) {
+        BatchData.Batch batch = BatchData.generateDeterministic(42, samples, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+        double[] doubles = EncodingBenchmarkNew.flattenValues(BatchData.generateDeterministicDoubles(42, samples));
+        BatchData.applyProfile(profile, 42, batch, doubles);
+
+        switch (target) {
+            case "timestamps":
+                return EncodingBenchmarkNew.longsToBytes(batch.timestamps);
+            case "values":
+                return EncodingBenchmarkNew.floatsToBytes(batch.values);
+            case "doubles":
+                return EncodingBenchmarkNew.doublesToBytes(doubles);
+            default:
+                throw new IllegalArgumentException("Unknown target column: " + target);
+        }
+    }
+
+    static void verify(String what, byte[] expected, byte[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException(what + " failed verification");
+        }
+    }
+}
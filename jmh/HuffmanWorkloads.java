@@ -0,0 +1,178 @@
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import bench.CodecWorkload;
+
+// Huffman workload for bench.HuffmanBenchmark. The symbol stream is the output of one of
+// our encoders on a generated batch; "legacy" codes it with the Map/String tree coder
+// HuffmanEncoder used to be, "canonical" with the current HuffmanEncoder.
+public class HuffmanWorkloads implements CodecWorkload {
+    private final boolean legacy;
+    private final byte[] symbols;
+    private final byte[] decoded;
+    private final ByteBuffer encoded;
+    private final EncodingBenchmarkNew.HuffmanEncoder canonical = new EncodingBenchmarkNew.HuffmanEncoder();
+
+    public HuffmanWorkloads(String impl, String source, int samples) {
+        if (!impl.equals("legacy") && !impl.equals("canonical")) {
+            throw new IllegalArgumentException("Unknown Huffman implementation: " + impl);
+        }
+        this.legacy = impl.equals("legacy");
+
+        BatchData.Batch batch = BatchData.generateDeterministic(42, samples,
+                BatchData.BASE_TIMESTAMP_MS, BatchData.INTERVAL_MS);
+        byte[] timestamps = EncodingBenchmarkNew.longsToBytes(batch.timestamps);
+        byte[] values = EncodingBenchmarkNew.floatsToBytes(batch.values);
+        switch (source) {
+            case "ts2diff":
+                symbols = new EncodingBenchmarkNew.TS2DIFFEncoder().encode(timestamps);
+                break;
+            case "gorilla":
+                symbols = new EncodingBenchmarkNew.GorillaEncoder().encode(values);
+                break;
+            case "bitpacking":
+                symbols = new EncodingBenchmarkNew.BitPackingEncoder().encode(timestamps);
+                break;
+            case "raw":
+                symbols = values;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown symbol source: " + source);
+        }
+
+        decoded = new byte[symbols.length];
+        // Old header is up to 2 + 256 * 5 bytes and codes can exceed 8 bits
+        encoded = ByteBuffer.allocate(1300 + symbols.length * 32);
+        encode();
+        System.out.printf("%n%s/%s/%d: %d symbol bytes -> %d bytes%n",
+                impl, source, samples, symbols.length, encoded.limit());
+    }
+
+    public int inputBytes() {
+        return symbols.length;
+    }
+
+    public int encode() {
+        encoded.clear();
+        if (legacy) {
+            writeLegacy(symbols, encoded);
+        } else {
+            canonical.writeSymbols(symbols, symbols.length, encoded);
+        }
+        encoded.flip();
+        return encoded.limit();
+    }
+
+    public long decode() {
+        ByteBuffer in = encoded.duplicate();
+        if (legacy) {
+            readLegacy(in, decoded, decoded.length);
+        } else {
+            canonical.readSymbols(in, decoded, decoded.length);
+        }
+        return decoded[decoded.length - 1];
+    }
+
+    // Copy of the tree-walking coder HuffmanEncoder used before the canonical rewrite
+    private static void writeLegacy(byte[] input, ByteBuffer buffer) {
+        Map<Byte, Integer> freqMap = new HashMap<>();
+        for (byte b : input) {
+            freqMap.put(b, freqMap.getOrDefault(b, 0) + 1);
+        }
+
+        LegacyNode root = buildTree(freqMap);
+        Map<Byte, String> codeMap = new HashMap<>();
+        buildCodeMap(root, "", codeMap);
+
+        BitOutputStream out = new BitOutputStream(buffer);
+        out.writeInt(freqMap.size(), 16);
+        for (Map.Entry<Byte, Integer> entry : freqMap.entrySet()) {
+            out.writeInt(entry.getKey() & 0xFF, 8);
+            out.writeInt(entry.getValue(), 32);
+        }
+
+        for (byte b : input) {
+            String code = codeMap.get(b);
+            for (char c : code.toCharArray()) {
+                out.writeBit(c == '1' ? 1 : 0);
+            }
+        }
+        out.finish();
+    }
+
+    private static void readLegacy(ByteBuffer buffer, byte[] dest, int length) {
+        BitInputStream in = new BitInputStream(buffer);
+
+        int mapSize = in.readInt(16);
+        Map<Byte, Integer> freqMap = new HashMap<>();
+        for (int i = 0; i < mapSize; i++) {
+            byte key = (byte) in.readInt(8);
+            int freq = in.readInt(32);
+            freqMap.put(key, freq);
+        }
+
+        LegacyNode root = buildTree(freqMap);
+        for (int i = 0; i < length; i++) {
+            LegacyNode current = root;
+            if (current.isLeaf()) {
+                in.readBit();
+            }
+            while (!current.isLeaf()) {
+                int bit = in.readBit();
+                current = (bit == 0) ? current.left : current.right;
+            }
+            dest[i] = current.value;
+        }
+        buffer.position(buffer.position() + in.bytesConsumed());
+    }
+
+    private static LegacyNode buildTree(Map<Byte, Integer> freqMap) {
+        PriorityQueue<LegacyNode> pq = new PriorityQueue<>();
+        for (Map.Entry<Byte, Integer> entry : freqMap.entrySet()) {
+            pq.offer(new LegacyNode(entry.getKey(), entry.getValue()));
+        }
+
+        while (pq.size() > 1) {
+            LegacyNode left = pq.poll();
+            LegacyNode right = pq.poll();
+            pq.offer(new LegacyNode(left, right));
+        }
+        return pq.poll();
+    }
+
+    private static void buildCodeMap(LegacyNode node, String code, Map<Byte, String> codeMap) {
+        if (node.isLeaf()) {
+            codeMap.put(node.value, code.isEmpty() ? "0" : code);
+        } else {
+            buildCodeMap(node.left, code + "0", codeMap);
+            buildCodeMap(node.right, code + "1", codeMap);
+        }
+    }
+
+    static class LegacyNode implements Comparable<LegacyNode> {
+        byte value;
+        int frequency;
+        LegacyNode left, right;
+
+        LegacyNode(byte value, int frequency) {
+            this.value = value;
+            this.frequency = frequency;
+        }
+
+        LegacyNode(LegacyNode left, LegacyNode right) {
+            this.frequency = left.frequency + right.frequency;
+            this.left = left;
+            this.right = right;
+        }
+
+        boolean isLeaf() {
+            return left == null && right == null;
+        }
+
+        public int compareTo(LegacyNode other) {
+            return Integer.compare(this.frequency, other.frequency);
+        }
+    }
+}
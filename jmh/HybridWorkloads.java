@@ -0,0 +1,52 @@
+import java.io.IOException;
+
+import bench.StageWorkload;
+
+// Hybrid workload for bench.HybridBenchmark: a HybridBenchmarkNew encoder followed by a
+// compressor, exactly as benchmarkHybrid chains them. encode() is encode + compress,
+// decode() is decompress + decode. Encoders are the hybrid set (TS_2DIFF, GORILLA,
+// CHIMP128, RLE), the XOR ones at the target's word width; compressors are named as in
+// CompressorWorkloads.
+public class HybridWorkloads implements StageWorkload {
+    private final HybridBenchmarkNew.Encoder encoder;
+    private final HybridBenchmarkNew.Compressor compressor;
+    private final byte[] column;
+    private final byte[] compressed;
+
+    public HybridWorkloads(String encoder, String compressor, String target, int samples, String profile)
+            throws IOException {
+        this.column = EncoderWorkloads.columnBytes(target, samples, profile);
+        this.encoder = encoder(encoder, EncodingBenchmarkNew.columnWordBytes(target));
+        this.compressor = new HybridBenchmarkNew.SharedCompressor(CompressorWorkloads.compressor(compressor));
+        this.compressed = encode();
+        EncoderWorkloads.verify(this.encoder.getName() + "+" + this.compressor.getName() + " on " + target,
+                column, decode());
+        System.out.printf("%n%s+%s/%s/%d/%s: %d bytes -> %d bytes%n", this.encoder.getName(),
+                this.compressor.getName(), target, samples, profile, column.length, compressed.length);
+    }
+
+    public int inputBytes() {
+        return column.length;
+    }
+
+    public byte[] encode() throws IOException {
+        return compressor.compress(encoder.encode(column));
+    }
+
+    public byte[] decode() throws IOException {
+        return encoder.decode(compressor.decompress(compressed));
+    }
+
+    static HybridBenchmarkNew.Encoder encoder(String codec, int wordBytes) {
+        switch (codec) {
+            case "TS_2DIFF":
+            case "GORILLA":
+            case "CHIMP128":
+                return new HybridBenchmarkNew.SharedEncoder(EncoderWorkloads.codec(codec, wordBytes));
+            case "RLE":
+                return new HybridBenchmarkNew.RLEEncoder();
+            default:
+                throw new IllegalArgumentException("Unknown hybrid encoder: " + codec);
+        }
+    }
+}
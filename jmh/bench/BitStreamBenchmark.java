@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-bit legacy streams vs the 64-bit accumulator streams on a Gorilla-like mix of
+// field widths (control bits, 11-bit headers, 1..32-bit payloads)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class BitStreamBenchmark {
+
+    @Param({"legacy", "word"})
+    public String impl;
+
+    @Param({"1000", "1000000", "100000000"})
+    public long bits;
+
+    private BitStreamWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("BitStreamWorkloads",
+                new Class<?>[]{String.class, long.class}, impl, bits);
+    }
+
+    @Benchmark
+    public byte[] write() {
+        return workload.write();
+    }
+
+    @Benchmark
+    public long read() {
+        return workload.read();
+    }
+}
@@ -0,0 +1,8 @@
+package bench;
+
+// Implemented by the default-package workload classes under jmh/; JMH benchmarks must
+// live in a named package, which cannot reference the default-package benchmark code.
+public interface BitStreamWorkload {
+    byte[] write();
+    long read();
+}
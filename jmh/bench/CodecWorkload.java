@@ -0,0 +1,10 @@
+package bench;
+
+// Implemented by the default-package codec workloads under jmh/ (HuffmanWorkloads,
+// DictionaryWorkloads, DirectBufferWorkloads): one fixed input, encoded and decoded in place
+public interface CodecWorkload {
+    // Size in bytes of the input fed to the codec
+    int inputBytes();
+    int encode();
+    long decode();
+}
@@ -0,0 +1,61 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Every CompressionBenchmarkNew compressor at its default settings on the raw harness
+// columns, in ops/us and us/op over 2 forks; ByteCounter adds input bytes per second.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx2g"})
+public class CompressorBenchmark {
+
+    @Param({"GZIP", "ZLIB", "SNAPPY", "LZ4", "LZ_FAST", "LZ_NORMAL", "LZ_HIGH"})
+    public String codec;
+
+    @Param({"timestamps", "values", "doubles"})
+    public String target;
+
+    @Param({"20", "10000"})
+    public int samples;
+
+    @Param({"gaussian", "jittered", "quantized"})
+    public String profile;
+
+    private StageWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("CompressorWorkloads",
+                new Class<?>[]{String.class, String.class, int.class, String.class}, codec, target, samples, profile);
+    }
+
+    @Benchmark
+    public void compress(ByteCounter counter, Blackhole bh) throws IOException {
+        counter.bytes += workload.inputBytes();
+        bh.consume(workload.encode());
+    }
+
+    @Benchmark
+    public void decompress(ByteCounter counter, Blackhole bh) throws IOException {
+        counter.bytes += workload.inputBytes();
+        bh.consume(workload.decode());
+    }
+}
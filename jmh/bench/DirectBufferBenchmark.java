@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Snappy and LZ4 through the byte[] entry points vs the ByteBuffer contract on heap and
+// direct buffers, from 256 B to 64 MB. The bytes counter gives input throughput.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=2g"})
+public class DirectBufferBenchmark {
+
+    @Param({"SNAPPY", "LZ4"})
+    public String codec;
+
+    @Param({"array", "heap", "direct"})
+    public String path;
+
+    @Param({"256", "4096", "65536", "1048576", "16777216", "67108864"})
+    public int size;
+
+    private CodecWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("DirectBufferWorkloads",
+                new Class<?>[]{String.class, String.class, int.class}, codec, path, size);
+    }
+
+    @Benchmark
+    public int compress(ByteCounter counter) {
+        counter.bytes += workload.inputBytes();
+        return workload.encode();
+    }
+
+    @Benchmark
+    public long decompress(ByteCounter counter) {
+        counter.bytes += workload.inputBytes();
+        return workload.decode();
+    }
+}
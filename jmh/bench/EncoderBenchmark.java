@@ -0,0 +1,63 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Every EncodingBenchmarkNew codec on the harness columns, through the byte[] path the CSVs
+// time. Scores come from 2 forks in both ops/us and us/op; ByteCounter adds raw input bytes
+// per second. Narrow the matrix with -p, e.g. -p codec=GORILLA,CHIMP128 -p samples=10000.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx2g"})
+public class EncoderBenchmark {
+
+    @Param({"IDENTITY", "TS_2DIFF", "GORILLA", "CHIMP", "CHIMP128", "BIT_PACKING", "RLE", "HUFFMAN",
+            "GOLOMB_RICE", "SPRINTZ", "RLBE", "RAKE", "DICTIONARY", "PFOR_DELTA"})
+    public String codec;
+
+    @Param({"timestamps", "values", "doubles"})
+    public String target;
+
+    @Param({"20", "10000"})
+    public int samples;
+
+    @Param({"gaussian", "jittered", "quantized"})
+    public String profile;
+
+    private StageWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("EncoderWorkloads",
+                new Class<?>[]{String.class, String.class, int.class, String.class}, codec, target, samples, profile);
+    }
+
+    @Benchmark
+    public void encode(ByteCounter counter, Blackhole bh) throws IOException {
+        counter.bytes += workload.inputBytes();
+        bh.consume(workload.encode());
+    }
+
+    @Benchmark
+    public void decode(ByteCounter counter, Blackhole bh) throws IOException {
+        counter.bytes += workload.inputBytes();
+        bh.consume(workload.decode());
+    }
+}
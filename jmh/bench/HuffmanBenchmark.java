@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Map/String tree Huffman vs the canonical table-driven coder, fed with the byte streams
+// our other encoders produce. ByteCounter reports input bytes/s next to ops/s.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class HuffmanBenchmark {
+
+    @Param({"legacy", "canonical"})
+    public String impl;
+
+    @Param({"ts2diff", "gorilla", "bitpacking", "raw"})
+    public String source;
+
+    @Param({"20", "10000"})
+    public int samples;
+
+    private CodecWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("HuffmanWorkloads",
+                new Class<?>[]{String.class, String.class, int.class}, impl, source, samples);
+    }
+
+    @Benchmark
+    public int encode(ByteCounter counter) {
+        counter.bytes += workload.inputBytes();
+        return workload.encode();
+    }
+
+    @Benchmark
+    public long decode(ByteCounter counter) {
+        counter.bytes += workload.inputBytes();
+        return workload.decode();
+    }
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The HybridBenchmarkNew encoder+compressor pairs, in ops/us and us/op over 2 forks.
+// encode is encode + compress, decode is decompress + decode; ByteCounter adds raw input
+// bytes per second, so pairs compare on the same denominator.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx2g"})
+public class HybridBenchmark {
+
+    @Param({"TS_2DIFF", "GORILLA", "CHIMP128", "RLE"})
+    public String codec;
+
+    @Param({"GZIP", "SNAPPY", "LZ4", "ZLIB"})
+    public String compressor;
+
+    @Param({"timestamps", "values", "doubles"})
+    public String target;
+
+    @Param({"20", "10000"})
+    public int samples;
+
+    @Param({"gaussian", "jittered", "quantized"})
+    public String profile;
+
+    private StageWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workloads.create("HybridWorkloads",
+                new Class<?>[]{String.class, String.class, String.class, int.class, String.class},
+                codec, compressor, target, samples, profile);
+    }
+
+    @Benchmark
+    public void encode(ByteCounter counter, Blackhole bh) throws IOException {
+        counter.bytes += workload.inputBytes();
+        bh.consume(workload.encode());
+    }
+
+    @Benchmark
+    public void decode(ByteCounter counter, Blackhole bh) throws IOException {
+        counter.bytes += workload.inputBytes();
+        bh.consume(workload.decode());
+    }
+}
@@ -0,0 +1,14 @@
+package bench;
+
+import java.io.IOException;
+
+// Implemented by the default-package encoder, compressor and hybrid workloads under jmh/:
+// one fixed column pushed through the same byte[] entry points the *BenchmarkNew harnesses
+// time, so the JMH scores line up with their CSV rows. encode() runs the forward stages,
+// decode() the inverse stages on the output encode() produced during setup.
+public interface StageWorkload {
+    // Size in bytes of the raw column
+    int inputBytes();
+    byte[] encode() throws IOException;
+    byte[] decode() throws IOException;
+}
@@ -0,0 +1,20 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+
+// Loads the default-package workload factories by name
+final class Workloads {
+    private Workloads() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(String className, Class<?>[] types, Object... args) {
+        try {
+            return (T) Class.forName(className).getConstructor(types).newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create " + className, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + className, e);
+        }
+    }
+}
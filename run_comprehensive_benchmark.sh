@@ -49,16 +49,16 @@ This report analyzes the performance of encoding and compression algorithms for
 ### Algorithms Tested
 
 #### Encoding Algorithms
-1. **DELTA_VARINT**: Delta encoding with zigzag varint compression
-2. **GORILLA**: XOR-based encoding for floating-point values
+1. **TS_2DIFF**: Delta-of-delta encoding
+2. **GORILLA**: XOR-based encoding for floating-point values (GORILLA_64 on 64-bit columns)
 
 #### Compression Algorithms
 1. **GZIP**: Standard GZIP compression
 2. **ZLIB**: Raw DEFLATE compression (no GZIP headers)
 
 #### Hybrid Combinations
-- DELTA_VARINT + GZIP
-- DELTA_VARINT + ZLIB
+- TS_2DIFF + GZIP
+- TS_2DIFF + ZLIB
 - GORILLA + GZIP
 - GORILLA + ZLIB
 
@@ -73,51 +73,11 @@ This report analyzes the performance of encoding and compression algorithms for
 
 EOF
 
-# Counter
-total_runs=$((${#SEEDS[@]} * ${#SAMPLE_COUNTS[@]}))
-current_run=0
-
-# Run benchmarks
-for sample_count in "${SAMPLE_COUNTS[@]}"; do
-    echo "================================================"
-    echo "Running benchmarks for SAMPLE_COUNT=$sample_count"
-    echo "================================================"
-    
-    # Update BatchData.java with current sample count
-    sed -i.bak "s/public static final int SAMPLE_COUNT = [0-9]*;/public static final int SAMPLE_COUNT = $sample_count;/" src/BatchData.java
-    
-    # Compile
-    echo "Compiling..."
-    javac -d bin src/*.java 2>/dev/null || {
-        echo "Compilation failed for SAMPLE_COUNT=$sample_count"
-        continue
-    }
-    
-    for seed in "${SEEDS[@]}"; do
-        current_run=$((current_run + 1))
-        echo "[$current_run/$total_runs] Running: SAMPLE_COUNT=$sample_count, SEED=$seed"
-        
-        # Create subdirectory for this run
-        RUN_DIR="$OUTPUT_DIR/samples_${sample_count}_seed_${seed}"
-        mkdir -p $RUN_DIR
-        
-        # Run hybrid benchmark (includes encoding and compression)
-        java -cp bin HybridBenchmark $seed 2>/dev/null || {
-            echo "  ⚠️  Benchmark failed"
-            continue
-        }
-        
-        # Move results
-        mv hybrid_res.csv "$RUN_DIR/" 2>/dev/null
-        
-        echo "  ✓ Completed"
-    done
-    
-    echo ""
-done
-
-# Restore original BatchData.java
-mv src/BatchData.java.bak src/BatchData.java 2>/dev/null || true
+# Every sample count x seed combination in one JVM, hybrid suite only
+join() { local IFS=,; echo "$*"; }
+javac -cp "lib/*" -d bin src/*.java || { echo "Compilation failed"; exit 1; }
+java -cp "bin:lib/*" SweepRunner --suites hybrid --encoders TS_2DIFF,GORILLA --compressors GZIP,ZLIB \
+    --seeds "$(join "${SEEDS[@]}")" --samples "$(join "${SAMPLE_COUNTS[@]}")" --out $OUTPUT_DIR
 
 echo "=========================================="
 echo "All benchmarks completed!"
@@ -130,6 +90,7 @@ echo "Analyzing results and generating report..."
 python3 << 'PYTHON_SCRIPT'
 import csv
 import os
+import re
 from collections import defaultdict
 import statistics
 
@@ -140,23 +101,20 @@ report_file = "COMPREHENSIVE_REPORT.md"
 results_by_sample = defaultdict(list)
 best_combinations = []
 
-# Read all results
-for root, dirs, files in os.walk(output_dir):
-    for file in files:
-        if file == "hybrid_res.csv":
-            filepath = os.path.join(root, file)
-            # Extract sample count and seed from path
-            parts = root.split('_')
-            if len(parts) >= 4:
-                sample_count = int(parts[1])
-                seed = int(parts[3])
-                
-                with open(filepath, 'r') as f:
-                    reader = csv.DictReader(f)
-                    for row in reader:
-                        row['sample_count'] = sample_count
-                        row['seed'] = seed
-                        results_by_sample[sample_count].append(row)
+# Read all results: SweepRunner writes hybrid_seed<S>_samples<N>_<profile>.csv
+for file in os.listdir(output_dir):
+    match = re.match(r'hybrid_seed(\d+)_samples(\d+)_', file)
+    if match:
+        filepath = os.path.join(output_dir, file)
+        seed = int(match.group(1))
+        sample_count = int(match.group(2))
+        
+        with open(filepath, 'r') as f:
+            reader = csv.DictReader(f)
+            for row in reader:
+                row['sample_count'] = sample_count
+                row['seed'] = seed
+                results_by_sample[sample_count].append(row)
 
 # Analyze results
 with open(report_file, 'a') as report:
@@ -166,9 +124,7 @@ with open(report_file, 'a') as report:
         rows = results_by_sample[sample_count]
         
         # Filter for timestamps target
-        timestamp_results = [r for r in rows 
-                           if r['encoding_target'] == 'timestamps' 
-                           and r['compression_target'] == 'timestamps']
+        timestamp_results = [r for r in rows if r['target'] == 'timestamps']
         
         if not timestamp_results:
             continue
@@ -187,10 +143,10 @@ with open(report_file, 'a') as report:
         report.write("|-----------|-------------------------|---------------------------|----------------------|----------|\n")
         
         for algo, data in sorted(by_algo.items()):
-            avg_enc_time = statistics.mean([float(r['total_encode_compress_time_ns']) for r in data])
-            avg_dec_time = statistics.mean([float(r['total_decompress_decode_time_ns']) for r in data])
-            avg_size = statistics.mean([float(r['compressed_size_bytes']) for r in data])
-            avg_ratio = statistics.mean([float(r['total_ratio']) for r in data])
+            avg_enc_time = statistics.mean([float(r['encode_mean_ns']) + float(r['compress_mean_ns']) for r in data])
+            avg_dec_time = statistics.mean([float(r['decompress_mean_ns']) + float(r['decode_mean_ns']) for r in data])
+            avg_size = statistics.mean([float(r['final_size_bytes']) for r in data])
+            avg_ratio = statistics.mean([float(r['final_ratio']) for r in data])
             
             report.write(f"| {algo} | {avg_enc_time:.0f} | {avg_dec_time:.0f} | {avg_size:.1f} | {avg_ratio:.4f} |\n")
             
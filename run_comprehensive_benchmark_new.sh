@@ -6,9 +6,6 @@
 echo "=== IoTDB Encoding & Compression Comprehensive Benchmark ==="
 echo ""
 
-# Create results directory
-mkdir -p results_new
-
 # Array of sample counts to test
 SAMPLE_COUNTS=(1 5 10 15 20 25 30 35 40 50)
 
@@ -35,42 +32,11 @@ echo "=== Running Benchmarks ==="
 echo ""
 
 TOTAL_RUNS=$((${#SEEDS[@]} * ${#SAMPLE_COUNTS[@]}))
-CURRENT_RUN=0
 
-# Run benchmarks for each combination
-for SEED in "${SEEDS[@]}"; do
-    for SAMPLE_COUNT in "${SAMPLE_COUNTS[@]}"; do
-        CURRENT_RUN=$((CURRENT_RUN + 1))
-        echo "[$CURRENT_RUN/$TOTAL_RUNS] Running with seed=$SEED, sample_count=$SAMPLE_COUNT"
-        
-        # Update BatchData.java with current SAMPLE_COUNT
-        sed -i.bak "s/public static final int SAMPLE_COUNT = [0-9]*/public static final int SAMPLE_COUNT = $SAMPLE_COUNT/" src/BatchData.java
-        
-        # Rebuild with new sample count
-        make build > /dev/null 2>&1
-        
-        # Run encoding benchmark
-        java -cp "bin:lib/*" EncodingBenchmarkNew $SEED > /dev/null 2>&1
-        if [ -f encoding_res.csv ]; then
-            mv encoding_res.csv "results_new/encoding_seed${SEED}_samples${SAMPLE_COUNT}.csv"
-        fi
-        
-        # Run compression benchmark
-        java -cp "bin:lib/*" CompressionBenchmarkNew $SEED > /dev/null 2>&1
-        if [ -f compression_res.csv ]; then
-            mv compression_res.csv "results_new/compression_seed${SEED}_samples${SAMPLE_COUNT}.csv"
-        fi
-        
-        # Run hybrid benchmark
-        java -cp "bin:lib/*" HybridBenchmarkNew $SEED > /dev/null 2>&1
-        if [ -f hybrid_res.csv ]; then
-            mv hybrid_res.csv "results_new/hybrid_seed${SEED}_samples${SAMPLE_COUNT}.csv"
-        fi
-    done
-done
-
-# Restore original BatchData.java
-mv src/BatchData.java.bak src/BatchData.java
+# Every seed x sample count combination in one JVM; each dataset is generated once
+join() { local IFS=,; echo "$*"; }
+java -cp "bin:lib/*" SweepRunner --seeds "$(join "${SEEDS[@]}")" --samples "$(join "${SAMPLE_COUNTS[@]}")" \
+    --out results_new
 
 echo ""
 echo "=== Benchmark Completed ==="
@@ -83,6 +49,7 @@ echo "Generating comprehensive report..."
 python3 << 'EOF'
 import csv
 import os
+import re
 from collections import defaultdict
 import statistics
 
@@ -101,25 +68,29 @@ def analyze_results():
     encoding_results = defaultdict(list)
     compression_results = defaultdict(list)
     hybrid_results = defaultdict(list)
+    sample_counts = set()
     
     for filename in os.listdir(results_dir):
         filepath = os.path.join(results_dir, filename)
+        match = re.search(r'_samples(\d+)_', filename)
+        if match:
+            sample_counts.add(int(match.group(1)))
         
         if filename.startswith('encoding_'):
             for row in read_csv(filepath):
                 key = (row['algorithm'], row['target'])
                 encoding_results[key].append({
-                    'encode_time': float(row['encode_time_ns']),
-                    'decode_time': float(row['decode_time_ns']),
-                    'ratio': float(row['encoding_ratio'])
+                    'encode_time': float(row['encode_mean_ns']),
+                    'decode_time': float(row['decode_mean_ns']),
+                    'ratio': float(row['compression_ratio'])
                 })
         
         elif filename.startswith('compression_'):
             for row in read_csv(filepath):
                 key = (row['algorithm'], row['target'])
                 compression_results[key].append({
-                    'compress_time': float(row['compress_time_ns']),
-                    'decompress_time': float(row['decompress_time_ns']),
+                    'compress_time': float(row['compress_mean_ns']),
+                    'decompress_time': float(row['decompress_mean_ns']),
                     'ratio': float(row['compression_ratio'])
                 })
         
@@ -127,10 +98,10 @@ def analyze_results():
             for row in read_csv(filepath):
                 key = (row['encoder'], row['compressor'], row['target'])
                 hybrid_results[key].append({
-                    'encode_time': float(row['encode_time_ns']),
-                    'compress_time': float(row['compress_time_ns']),
-                    'decompress_time': float(row['decompress_time_ns']),
-                    'decode_time': float(row['decode_time_ns']),
+                    'encode_time': float(row['encode_mean_ns']),
+                    'compress_time': float(row['compress_mean_ns']),
+                    'decompress_time': float(row['decompress_mean_ns']),
+                    'decode_time': float(row['decode_mean_ns']),
                     'encoding_ratio': float(row['encoding_ratio']),
                     'final_ratio': float(row['final_ratio'])
                 })
@@ -268,9 +239,9 @@ def analyze_results():
         f.write('## 5. Methodology\n\n')
         f.write(f'- **Total benchmark runs**: {len(os.listdir(results_dir))}\n')
         f.write(f'- **Random seeds tested**: 10\n')
-        f.write(f'- **Sample counts tested**: {len(SAMPLE_COUNTS)}\n')
+        f.write(f'- **Sample counts tested**: {len(sample_counts)}\n')
         f.write(f'- **Data characteristics**: Mean=24, Variance=1, 3-5 decimal precision\n')
-        f.write(f'- **Warmup iterations**: 10 per benchmark\n\n')
+        f.write(f'- **Timing**: mean of up to 1000 calls after adaptive warmup (LatencyHarness)\n\n')
         
         f.write('## Conclusion\n\n')
         f.write('This comprehensive benchmark demonstrates that careful selection of encoding and compression ')
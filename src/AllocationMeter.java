@@ -0,0 +1,141 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.Buffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+// Heap bytes allocated by the calling thread, from HotSpot's per-thread TLAB accounting
+// (com.sun.management.ThreadMXBean). bytesPerOp() runs an operation repeatedly and
+// averages, which hides the few bytes the counter read itself allocates. gcTotals() and
+// scratchBytes() cover the rest of a codec's memory footprint: collector activity during a
+// run, and the buffers a codec instance keeps between calls.
+public final class AllocationMeter {
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private AllocationMeter() {
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    // Running total for the current thread, or -1 where the JVM does not track it
+    public static long threadAllocatedBytes() {
+        if (THREADS == null) return -1;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Average bytes allocated per call of op over iterations calls, or -1 if unsupported
+    static long bytesPerOp(Operation op, int iterations) throws Exception {
+        if (THREADS == null) return -1;
+        long before = threadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        return (threadAllocatedBytes() - before) / iterations;
+    }
+
+    // bytesPerOp with BufferPool switched on, then off: {pooled, unpooled}
+    static long[] bytesPerOpPooledAndUnpooled(Operation op, int iterations) throws Exception {
+        boolean wasEnabled = BufferPool.isEnabled();
+        try {
+            BufferPool.setEnabled(true);
+            op.run();
+            long pooled = bytesPerOp(op, iterations);
+            BufferPool.setEnabled(false);
+            long unpooled = bytesPerOp(op, iterations);
+            return new long[] {pooled, unpooled};
+        } finally {
+            BufferPool.setEnabled(wasEnabled);
+        }
+    }
+
+    // {collections, collection ms} summed over all collectors since JVM start. For the
+    // stop-the-world young collections that dominate here the time is pause time.
+    static long[] gcTotals() {
+        long count = 0;
+        long timeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            timeMs += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, timeMs};
+    }
+
+    // Bytes of arrays and buffers reachable from the roots through instance fields of our own
+    // (default-package) classes: the scratch a codec retains between calls. Scratch only
+    // grows, so after a run this is its peak. JDK and library objects are not walked, except
+    // that a heap ByteBuffer counts its array and a direct one its capacity; native memory
+    // behind Deflater or the JNI codecs is not visible here.
+    static long scratchBytes(Object... roots) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        for (Object root : roots) {
+            if (root != null) pending.add(root);
+        }
+        long bytes = 0;
+        while (!pending.isEmpty()) {
+            Object o = pending.poll();
+            if (!seen.add(o)) continue;
+            Class<?> c = o.getClass();
+            if (c.isArray()) {
+                int length = Array.getLength(o);
+                Class<?> component = c.getComponentType();
+                bytes += 16 + (long) length * elementBytes(component);
+                if (!component.isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        Object element = Array.get(o, i);
+                        if (element != null) pending.add(element);
+                    }
+                }
+            } else if (o instanceof Buffer) {
+                Buffer buffer = (Buffer) o;
+                if (buffer.hasArray()) {
+                    pending.add(buffer.array());
+                } else if (buffer.isDirect()) {
+                    bytes += buffer.capacity();
+                }
+            } else if (c.getPackageName().isEmpty()) {
+                for (Class<?> k = c; k != null && k.getPackageName().isEmpty(); k = k.getSuperclass()) {
+                    for (Field f : k.getDeclaredFields()) {
+                        if (Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) continue;
+                        try {
+                            f.setAccessible(true);
+                            Object value = f.get(o);
+                            if (value != null) pending.add(value);
+                        } catch (RuntimeException | IllegalAccessException e) {
+                            // Not ours to look into
+                        }
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static int elementBytes(Class<?> component) {
+        if (component == long.class || component == double.class) return 8;
+        if (component == int.class || component == float.class) return 4;
+        if (component == short.class || component == char.class) return 2;
+        if (component == byte.class || component == boolean.class) return 1;
+        return 4;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
@@ -29,15 +29,74 @@ public class BatchData {
     }
 
     public static Batch generateDeterministic(int seed, int count, long baseTimestampMs, long intervalMs) {
+        return generateDeterministic(seed, count, 2, baseTimestampMs, intervalMs);
+    }
+
+    // A device with measurementCount columns, "temp", "hum", then "m2", "m3", ...; with two
+    // columns it draws the same readings as the overload above
+    public static Batch generateDeterministic(int seed, int count, int measurementCount, long baseTimestampMs,
+                                              long intervalMs) {
         Random random = new Random(seed);
         long[] timestamps = new long[count];
-        float[][] values = new float[count][2];
+        float[][] values = new float[count][measurementCount];
         for (int i = 0; i < count; i++) {
             timestamps[i] = baseTimestampMs + (i * intervalMs);
-            values[i][0] = generateGaussianValue(random, MEAN, STD_DEV);
-            values[i][1] = generateGaussianValue(random, MEAN, STD_DEV);
+            for (int j = 0; j < measurementCount; j++) {
+                values[i][j] = generateGaussianValue(random, MEAN, STD_DEV);
+            }
+        }
+        String[] measurements = new String[measurementCount];
+        for (int j = 0; j < measurementCount; j++) {
+            measurements[j] = j == 0 ? "temp" : j == 1 ? "hum" : "m" + j;
+        }
+        return new Batch(DEVICE_PATH, measurements, timestamps, values);
+    }
+
+    // Same readings as generateDeterministic(seed, count, ...) but kept at double precision,
+    // for codecs that need a real 64-bit floating-point column
+    public static double[][] generateDeterministicDoubles(int seed, int count) {
+        Random random = new Random(seed);
+        double[][] values = new double[count][2];
+        for (int i = 0; i < count; i++) {
+            values[i][0] = MEAN + random.nextGaussian() * STD_DEV;
+            values[i][1] = MEAN + random.nextGaussian() * STD_DEV;
+        }
+        return values;
+    }
+
+    // Data profiles shared by the sweep and the JMH workloads: "gaussian" as generated,
+    // "jittered" adds 0-3 ms to every timestamp, drawn from the batch's seed, "quantized"
+    // rounds the readings (and the double-precision copy, if given) to 0.5 as many sensors
+    // report them
+    public static final String[] PROFILES = {"gaussian", "jittered", "quantized"};
+
+    public static void applyProfile(String profile, int seed, Batch batch, double[] doubles) {
+        switch (profile) {
+            case "gaussian":
+                break;
+            case "jittered": {
+                // Not Random(seed): that would replay the draws behind the readings
+                Random random = new Random(seed ^ 0x5DEECE66DL);
+                for (int i = 0; i < batch.timestamps.length; i++) {
+                    batch.timestamps[i] += random.nextInt(4);
+                }
+                break;
+            }
+            case "quantized":
+                for (float[] row : batch.values) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] = Math.round(row[j] * 2) / 2f;
+                    }
+                }
+                if (doubles != null) {
+                    for (int i = 0; i < doubles.length; i++) {
+                        doubles[i] = Math.round(doubles[i] * 2) / 2.0;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown data profile: " + profile);
         }
-        return new Batch(DEVICE_PATH, new String[]{"temp", "hum"}, timestamps, values);
     }
 
     public static String toJson(Batch batch) {
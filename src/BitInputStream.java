@@ -0,0 +1,132 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// MSB-first bit reader over a byte[] or ByteBuffer region. A 64-bit buffer is topped up
+// with one 8-byte load per refill, so multi-bit reads, peek and skip cost a shift and a
+// mask instead of a loop over single bits. Bits past the end of the region read as 0.
+public class BitInputStream {
+    private final ByteBuffer in;
+    private final int start;
+    private final int limit;
+    private int nextByte;
+    private long buffer = 0;   // unread bits, left-aligned; bits below bufferBits are zero
+    private int bufferBits = 0;
+
+    public BitInputStream(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public BitInputStream(byte[] data, int offset) {
+        this(data, offset, data.length - offset);
+    }
+
+    public BitInputStream(byte[] data, int offset, int length) {
+        this.in = ByteBuffer.wrap(data);
+        this.start = offset;
+        this.limit = offset + length;
+        this.nextByte = offset;
+    }
+
+    // Reads from buffer.position() up to buffer.limit() without moving the position;
+    // advance it afterwards by bytesConsumed()
+    public BitInputStream(ByteBuffer buffer) {
+        this.in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        this.start = buffer.position();
+        this.limit = buffer.limit();
+        this.nextByte = start;
+    }
+
+    // Returns the next bit, or -1 once the region is exhausted
+    public int readBit() {
+        if (bufferBits == 0) {
+            refill();
+            if (bufferBits == 0) return -1;
+        }
+        int bit = (int) (buffer >>> 63);
+        buffer <<= 1;
+        bufferBits--;
+        return bit;
+    }
+
+    public int readInt(int numBits) {
+        return (int) readLong(numBits);
+    }
+
+    public int readInt() {
+        return (int) readLong(32);
+    }
+
+    public int readBits(int numBits) {
+        return (int) readLong(numBits);
+    }
+
+    // Reads numBits (0..64) as an unsigned value
+    public long readLong(int numBits) {
+        if (numBits > 56) {
+            long high = readLong(numBits - 32);
+            return (high << 32) | readLong(32);
+        }
+        long value = peek(numBits);
+        consume(numBits);
+        return value;
+    }
+
+    // Returns the next numBits (0..56) without consuming them
+    public long peek(int numBits) {
+        if (numBits == 0) return 0;
+        if (bufferBits < numBits) refill();
+        return buffer >>> (64 - numBits);
+    }
+
+    public void skip(int numBits) {
+        while (numBits > 56) {
+            skip(56);
+            numBits -= 56;
+        }
+        if (bufferBits < numBits) refill();
+        consume(numBits);
+    }
+
+    public boolean hasMore() {
+        return bufferBits > 0 || nextByte < limit;
+    }
+
+    public long bitsRemaining() {
+        return (long) (limit - nextByte) * 8 + bufferBits;
+    }
+
+    // Whole bytes touched since construction, including a partially read last byte
+    public int bytesConsumed() {
+        return nextByte - start - (bufferBits >>> 3);
+    }
+
+    private void consume(int numBits) {
+        if (numBits == 0) return;
+        if (numBits >= bufferBits) {
+            // Reading past the end yields zero bits
+            buffer = 0;
+            bufferBits = 0;
+        } else {
+            buffer <<= numBits;
+            bufferBits -= numBits;
+        }
+    }
+
+    // Tops the buffer up to at least 57 bits, or to the end of the region
+    private void refill() {
+        int take = (64 - bufferBits) >>> 3;
+        if (take == 0) return;
+        if (nextByte + 8 <= limit) {
+            long word = in.getLong(nextByte);
+            int takeBits = take << 3;
+            buffer |= (word >>> bufferBits) & (-1L << (64 - bufferBits - takeBits));
+            bufferBits += takeBits;
+            nextByte += take;
+        } else {
+            while (take-- > 0 && nextByte < limit) {
+                buffer |= (in.get(nextByte++) & 0xFFL) << (56 - bufferBits);
+                bufferBits += 8;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// MSB-first bit writer with a 64-bit accumulator. Whole longs are flushed either into a
+// growable long[] (toByteArray/writeTo) or straight into a big-endian ByteBuffer sink
+// (finish). The byte layout is identical to writing one bit at a time.
+public class BitOutputStream {
+    private final ByteBuffer sink;
+    private long[] words;
+    private int wordCount = 0;
+    private long acc = 0;      // pending bits, left-aligned
+    private int accBits = 0;   // always < 64
+
+    public BitOutputStream() {
+        this(16);
+    }
+
+    public BitOutputStream(int initialWords) {
+        this.sink = null;
+        this.words = new long[Math.max(1, initialWords)];
+    }
+
+    public BitOutputStream(ByteBuffer sink) {
+        if (sink.order() != ByteOrder.BIG_ENDIAN) {
+            throw new IllegalArgumentException("BitOutputStream sink must be big-endian");
+        }
+        this.sink = sink;
+        this.words = null;
+    }
+
+    public void writeBit(int bit) {
+        acc |= (long) (bit & 1) << (63 - accBits);
+        if (++accBits == 64) flush();
+    }
+
+    // Writes the low numBits (0..64) of value
+    public void writeBits(long value, int numBits) {
+        if (numBits == 0) return;
+        if (numBits < 64) value &= (1L << numBits) - 1;
+        int free = 64 - accBits;
+        if (numBits < free) {
+            acc |= value << (free - numBits);
+            accBits += numBits;
+        } else {
+            int spill = numBits - free;
+            acc |= value >>> spill;
+            flush();
+            if (spill > 0) {
+                acc = value << (64 - spill);
+                accBits = spill;
+            }
+        }
+    }
+
+    public void writeInt(int value, int numBits) {
+        writeBits(value, numBits);
+    }
+
+    public void writeInt(int value) {
+        writeBits(value, 32);
+    }
+
+    public void writeLong(long value, int numBits) {
+        writeBits(value, numBits);
+    }
+
+    public void writeLong(long value) {
+        writeBits(value, 64);
+    }
+
+    public long bitLength() {
+        return (long) wordCount * 64 + accBits;
+    }
+
+    // Encoded size in bytes, counting a partially filled last byte
+    public int size() {
+        return wordCount * 8 + ((accBits + 7) >>> 3);
+    }
+
+    public byte[] toByteArray() {
+        byte[] out = new byte[size()];
+        writeTo(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    // Copies the buffered words and pending bits into buffer (long[] mode only)
+    public void writeTo(ByteBuffer buffer) {
+        if (sink != null) throw new IllegalStateException("Bits were written to a ByteBuffer sink; call finish()");
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < wordCount; i++) {
+            buffer.putLong(words[i]);
+        }
+        buffer.order(order);
+        putPendingBytes(buffer);
+    }
+
+    // Writes the pending partial word to the sink, zero-padded to a byte boundary.
+    // Call once after the last write; size() stays valid afterwards.
+    public void finish() {
+        if (sink == null) throw new IllegalStateException("No ByteBuffer sink; use toByteArray() or writeTo()");
+        putPendingBytes(sink);
+    }
+
+    public void reset() {
+        wordCount = 0;
+        acc = 0;
+        accBits = 0;
+    }
+
+    private void putPendingBytes(ByteBuffer buffer) {
+        int pending = (accBits + 7) >>> 3;
+        for (int i = 0; i < pending; i++) {
+            buffer.put((byte) (acc >>> (56 - 8 * i)));
+        }
+    }
+
+    private void flush() {
+        if (sink != null) {
+            sink.putLong(acc);
+        } else {
+            if (wordCount == words.length) words = Arrays.copyOf(words, words.length * 2);
+            words[wordCount] = acc;
+        }
+        wordCount++;
+        acc = 0;
+        accBits = 0;
+    }
+}
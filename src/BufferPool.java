@@ -0,0 +1,110 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Thread-local arenas of reusable ByteBuffers, heap and direct. Capacities are rounded up
+// to a power-of-two size class between 64 B and 64 MB; each class keeps a few free
+// buffers, and an arena holds at most MAX_RETAINED_BYTES of each kind. Codecs acquire a
+// buffer, write into it and release it once its bytes have been copied out or consumed.
+// Release the buffer acquire() returned, not a slice of it, and do not touch it again.
+// Oversized requests and buffers that do not fit back into the arena are left to the GC.
+// -Dbufferpool.enabled=false turns every acquire into a plain allocation, for comparison.
+public final class BufferPool {
+    static final int MIN_CLASS_SHIFT = 6;
+    static final int MAX_CLASS_SHIFT = 26;
+    static final int BUFFERS_PER_CLASS = 4;
+    static final long MAX_RETAINED_BYTES = 128L << 20;
+
+    private static volatile boolean enabled = !"false".equals(System.getProperty("bufferpool.enabled"));
+    private static final ThreadLocal<BufferPool> LOCAL = ThreadLocal.withInitial(BufferPool::new);
+
+    private final Arena heap = new Arena(false);
+    private final Arena direct = new Arena(true);
+
+    private BufferPool() {
+    }
+
+    // The calling thread's arena
+    public static BufferPool local() {
+        return LOCAL.get();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // Cleared big-endian heap buffer with capacity >= minCapacity and an accessible array()
+    public ByteBuffer acquire(int minCapacity) {
+        return heap.take(minCapacity);
+    }
+
+    public ByteBuffer acquireDirect(int minCapacity) {
+        return direct.take(minCapacity);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) return;
+        (buffer.isDirect() ? direct : heap).give(buffer);
+    }
+
+    // Bytes of new buffers this arena has allocated, heap and direct together
+    public long allocatedBytes() {
+        return heap.allocatedBytes + direct.allocatedBytes;
+    }
+
+    static int sizeClass(int capacity) {
+        if (capacity <= 1 << MIN_CLASS_SHIFT) return MIN_CLASS_SHIFT;
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private static final class Arena {
+        private final boolean direct;
+        private final ByteBuffer[][] free = new ByteBuffer[MAX_CLASS_SHIFT + 1][];
+        private final int[] count = new int[MAX_CLASS_SHIFT + 1];
+        private long retainedBytes;
+        private long allocatedBytes;
+
+        Arena(boolean direct) {
+            this.direct = direct;
+        }
+
+        ByteBuffer take(int minCapacity) {
+            if (minCapacity < 0) throw new IllegalArgumentException("Negative capacity: " + minCapacity);
+            int cls = sizeClass(minCapacity);
+            if (!enabled || cls > MAX_CLASS_SHIFT) return allocate(minCapacity);
+            if (count[cls] > 0) {
+                ByteBuffer buffer = free[cls][--count[cls]];
+                free[cls][count[cls]] = null;
+                retainedBytes -= buffer.capacity();
+                buffer.clear();
+                return buffer.order(ByteOrder.BIG_ENDIAN);
+            }
+            return allocate(1 << cls);
+        }
+
+        void give(ByteBuffer buffer) {
+            int capacity = buffer.capacity();
+            if (!enabled || buffer.isReadOnly() || Integer.bitCount(capacity) != 1) return;
+            int cls = Integer.numberOfTrailingZeros(capacity);
+            if (cls < MIN_CLASS_SHIFT || cls > MAX_CLASS_SHIFT) return;
+            // Heap slices share a larger array; only whole arrays go back
+            if (!direct && (buffer.arrayOffset() != 0 || buffer.array().length != capacity)) return;
+            if (retainedBytes + capacity > MAX_RETAINED_BYTES) return;
+            if (free[cls] == null) free[cls] = new ByteBuffer[BUFFERS_PER_CLASS];
+            if (count[cls] == BUFFERS_PER_CLASS) return;
+            for (int i = 0; i < count[cls]; i++) {
+                if (free[cls][i] == buffer) return;
+            }
+            free[cls][count[cls]++] = buffer;
+            retainedBytes += capacity;
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            allocatedBytes += capacity;
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Picks an encoder + compressor pipeline for a column at run time from a small sample of
+// it, instead of running the HybridBenchmarkNew matrix offline. select() never runs a
+// codec. It profiles up to SAMPLE_WINDOWS evenly spaced windows of WINDOW_VALUES
+// consecutive values, at most one window per SAMPLE_SPACING windows of the column:
+//
+//   delta regularity   share of zero second differences and their mean significant bits
+//   XOR                leading-zero histogram of each value XOR the previous one, the
+//                      share of zero XORs and the mean meaningful bits of the others
+//   cardinality        distinct values / sampled values
+//   runs               sampled values / runs of equal values
+//
+// The profile is the feature vector of a CostModel calibrated from real encode/compress
+// runs: it keeps the profile of each calibration column with every pipeline's measured
+// bytes, encode ns and decode ns per value, and predicts a new column's costs as the
+// distance-weighted mean over its NEIGHBOURS nearest calibration columns of the same word
+// width. Codec costs are far from linear in these statistics (a column either has runs or
+// it does not), which a nearest-neighbour model follows and a linear fit does not. Each
+// candidate is scored as
+//
+//   sizeWeight * bytes/value + encodeWeight * encode ns/value + decodeWeight * decode ns/value
+//
+// and the cheapest wins. The objective is fixed per selector, so the constructor prices
+// every calibration column's pipelines once; select() is then the profile, the neighbour
+// search and one weighted sum per pipeline, and only the winner's bytes and times are
+// predicted. Candidates are TS_2DIFF, GORILLA, CHIMP128, DICTIONARY and RLE (the XOR
+// codecs only at the column's word width) times SNAPPY, LZ4 and ZLIB.
+//
+// Profiling a batch of a few dozen rows costs more than encoding it, so a caller that
+// writes a series batch by batch asks series() for a Series and selects through it: the
+// choice is kept for RESELECT_VALUES values before the column is profiled again. Profiling
+// keeps scratch in the instance, so a selector and its Series are not thread-safe.
+public class CodecSelector {
+    static final int SAMPLE_WINDOWS = 4;
+    static final int WINDOW_VALUES = 64;
+    static final int SAMPLE_SPACING = 8;
+    // Values a Series encodes with one choice before it selects again
+    static final long RESELECT_VALUES = 1 << 16;
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    // An encoder + compressor pair; wordBytes is 0 when it takes columns of either width
+    static final class Pipeline {
+        final String name;
+        final int wordBytes;
+        final Supplier<EncodingBenchmarkNew.TypedCodec> encoder;
+        final Supplier<CompressionBenchmarkNew.Compressor> compressor;
+
+        Pipeline(int wordBytes, Supplier<EncodingBenchmarkNew.TypedCodec> encoder,
+                 Supplier<CompressionBenchmarkNew.Compressor> compressor) {
+            this.name = encoder.get().getName() + "+" + compressor.get().getName();
+            this.wordBytes = wordBytes;
+            this.encoder = encoder;
+            this.compressor = compressor;
+        }
+
+        boolean accepts(int columnWordBytes) {
+            return wordBytes == 0 || wordBytes == columnWordBytes;
+        }
+    }
+
+    static List<Pipeline> candidates() {
+        List<Supplier<CompressionBenchmarkNew.Compressor>> compressors = Arrays.asList(
+            CompressionBenchmarkNew.SnappyCompressor::new,
+            CompressionBenchmarkNew.LZ4Compressor::new,
+            CompressionBenchmarkNew.ZlibCompressor::new);
+        List<Pipeline> pipelines = new ArrayList<>();
+        for (Supplier<CompressionBenchmarkNew.Compressor> compressor : compressors) {
+            pipelines.add(new Pipeline(0, EncodingBenchmarkNew.TS2DIFFEncoder::new, compressor));
+            for (int wordBytes : new int[] {4, 8}) {
+                pipelines.add(new Pipeline(wordBytes, () -> new EncodingBenchmarkNew.GorillaEncoder(wordBytes), compressor));
+                pipelines.add(new Pipeline(wordBytes, () -> new EncodingBenchmarkNew.ChimpEncoder(128, wordBytes), compressor));
+            }
+            pipelines.add(new Pipeline(0, EncodingBenchmarkNew.DictionaryEncoder::new, compressor));
+            pipelines.add(new Pipeline(0, EncodingBenchmarkNew.RLEEncoder::new, compressor));
+        }
+        return pipelines;
+    }
+
+    // Statistics of one sampled column
+    static final class Profile {
+        static final int FEATURES = 8;
+
+        int count;
+        int wordBytes;
+        int sampled;
+        double zeroDeltaOfDelta;
+        double deltaOfDeltaBits;
+        // leadingZeros[k]: XORs with k leading zero bits, k = 0 .. word bits (zero XORs last)
+        final int[] leadingZeros = new int[65];
+        double zeroXor;
+        double xorMeaningfulBits;
+        double cardinality;
+        double meanRun;
+
+        // Each statistic scaled to about [0, 1], the value count as log2(count) / 16
+        double[] features(double[] out) {
+            int bits = 8 * wordBytes;
+            long leading = 0;
+            int xors = 0;
+            for (int k = 0; k <= bits; k++) {
+                leading += (long) k * leadingZeros[k];
+                xors += leadingZeros[k];
+            }
+            out[0] = Math.log(Math.max(1, count)) / Math.log(2) / 16;
+            out[1] = zeroDeltaOfDelta;
+            out[2] = deltaOfDeltaBits / bits;
+            out[3] = zeroXor;
+            out[4] = xors == 0 ? 0 : (double) leading / xors / bits;
+            out[5] = xorMeaningfulBits / bits;
+            out[6] = cardinality;
+            out[7] = 1.0 / meanRun;
+            return out;
+        }
+    }
+
+    // Objective weights: bytes and nanoseconds per value are summed after weighting, so
+    // encodeWeight 0.05 prices 20 ns of encoding like one stored byte
+    static final class Objective {
+        static final Objective ARCHIVE = new Objective("ARCHIVE", 1.0, 0.0, 0.01);
+        static final Objective BALANCED = new Objective("BALANCED", 1.0, 0.05, 0.05);
+        static final Objective INGEST = new Objective("INGEST", 1.0, 0.5, 0.05);
+
+        final String name;
+        final double sizeWeight;
+        final double encodeWeight;
+        final double decodeWeight;
+
+        Objective(String name, double sizeWeight, double encodeWeight, double decodeWeight) {
+            this.name = name;
+            this.sizeWeight = sizeWeight;
+            this.encodeWeight = encodeWeight;
+            this.decodeWeight = decodeWeight;
+        }
+
+        double cost(double bytesPerValue, double encodeNsPerValue, double decodeNsPerValue) {
+            return sizeWeight * bytesPerValue + encodeWeight * encodeNsPerValue + decodeWeight * decodeNsPerValue;
+        }
+    }
+
+    // A raw column as the Hybrid byte[] path sees it: big-endian words of wordBytes
+    static final class Column {
+        final String name;
+        final byte[] data;
+        final int wordBytes;
+
+        Column(String name, byte[] data, int wordBytes) {
+            this.name = name;
+            this.data = data;
+            this.wordBytes = wordBytes;
+        }
+
+        int count() {
+            return data.length / wordBytes;
+        }
+    }
+
+    // Size, encode+compress and decompress+decode time of one pipeline on one column
+    static final class Measurement {
+        final int bytes;
+        final double encodeNs;
+        final double decodeNs;
+
+        Measurement(int bytes, double encodeNs, double decodeNs) {
+            this.bytes = bytes;
+            this.encodeNs = encodeNs;
+            this.decodeNs = decodeNs;
+        }
+    }
+
+    static final class CostModel {
+        static final int NEIGHBOURS = 3;
+
+        final List<Pipeline> pipelines;
+        // Per calibration column: its profile features, word width, and per pipeline the
+        // measured {bytes, encode ns, decode ns} per value (null where it does not apply)
+        final double[][] features;
+        final int[] wordBytes;
+        final double[][][] costs;
+        // The calibration columns of each word width (indexed by width), and their features
+        // back to back in that order, for the neighbour search
+        private final int[][] widthColumns = new int[9][];
+        private final double[][] widthFeatures = new double[9][];
+
+        CostModel(List<Pipeline> pipelines, double[][] features, int[] wordBytes, double[][][] costs) {
+            this.pipelines = pipelines;
+            this.features = features;
+            this.wordBytes = wordBytes;
+            this.costs = costs;
+            for (int width : new int[] {4, 8}) {
+                int n = 0;
+                for (int w : wordBytes) {
+                    if (w == width) n++;
+                }
+                int[] columns = new int[n];
+                double[] flat = new double[n * Profile.FEATURES];
+                n = 0;
+                for (int c = 0; c < wordBytes.length; c++) {
+                    if (wordBytes[c] != width) continue;
+                    System.arraycopy(features[c], 0, flat, n * Profile.FEATURES, Profile.FEATURES);
+                    columns[n++] = c;
+                }
+                widthColumns[width] = columns;
+                widthFeatures[width] = flat;
+            }
+        }
+
+        // objective.cost of every calibration column's pipelines, at [column * pipelines + p]
+        // (NaN where the pipeline does not apply)
+        double[] objectiveCosts(Objective objective) {
+            int n = pipelines.size();
+            double[] out = new double[costs.length * n];
+            for (int c = 0; c < costs.length; c++) {
+                for (int p = 0; p < n; p++) {
+                    double[] cost = costs[c][p];
+                    out[c * n + p] = cost == null ? Double.NaN : objective.cost(cost[0], cost[1], cost[2]);
+                }
+            }
+            return out;
+        }
+
+        // Runs every pipeline on every calibration column it accepts
+        static CostModel calibrate(List<Pipeline> pipelines, List<Column> columns) throws IOException {
+            CodecSelector profiler = new CodecSelector(null, null);
+            int n = columns.size();
+            double[][] features = new double[n][];
+            int[] wordBytes = new int[n];
+            double[][][] costs = new double[n][pipelines.size()][];
+            for (int c = 0; c < n; c++) {
+                Column column = columns.get(c);
+                features[c] = profiler.profile(column.data, column.wordBytes).features(new double[Profile.FEATURES]);
+                wordBytes[c] = column.wordBytes;
+                for (int p = 0; p < pipelines.size(); p++) {
+                    Pipeline pipeline = pipelines.get(p);
+                    if (!pipeline.accepts(column.wordBytes)) continue;
+                    Measurement m = measure(pipeline, column);
+                    int count = column.count();
+                    costs[c][p] = new double[] {(double) m.bytes / count, m.encodeNs / count, m.decodeNs / count};
+                }
+            }
+            return new CostModel(pipelines, features, wordBytes, costs);
+        }
+
+        // Fills neighbours and weights (inverse distance) with up to NEIGHBOURS calibration
+        // columns of the given width nearest to f; returns how many were found
+        int neighbours(double[] f, int width, int[] neighbours, double[] weights) {
+            if (width != 4 && width != 8) return 0;
+            int[] columns = widthColumns[width];
+            double[] flat = widthFeatures[width];
+            int found = 0;
+            double[] distances = weights;
+            for (int j = 0; j < columns.length; j++) {
+                int c = columns[j];
+                int base = j * Profile.FEATURES;
+                double d = 0;
+                for (int i = 0; i < Profile.FEATURES; i++) {
+                    double diff = f[i] - flat[base + i];
+                    d += diff * diff;
+                }
+                // Insertion into the sorted top NEIGHBOURS
+                int at = found < NEIGHBOURS ? found++ : NEIGHBOURS;
+                while (at > 0 && distances[at - 1] > d) {
+                    if (at < NEIGHBOURS) {
+                        distances[at] = distances[at - 1];
+                        neighbours[at] = neighbours[at - 1];
+                    }
+                    at--;
+                }
+                if (at < NEIGHBOURS) {
+                    distances[at] = d;
+                    neighbours[at] = c;
+                }
+            }
+            for (int k = 0; k < found; k++) {
+                weights[k] = 1.0 / (Math.sqrt(distances[k]) + 1e-6);
+            }
+            return found;
+        }
+
+        // Weighted mean of metric (0 bytes, 1 encode ns, 2 decode ns, per value) of pipeline
+        // over the neighbours
+        double predict(int pipeline, int metric, int[] neighbours, double[] weights, int found) {
+            double sum = 0;
+            double weight = 0;
+            for (int k = 0; k < found; k++) {
+                double[] cost = costs[neighbours[k]][pipeline];
+                sum += weights[k] * cost[metric];
+                weight += weights[k];
+            }
+            return sum / weight;
+        }
+    }
+
+    // Target length of each timed calibration loop
+    static final long MEASURE_LOOP_NS = 2_000_000L;
+
+    static Measurement measure(Pipeline pipeline, Column column) throws IOException {
+        EncodingBenchmarkNew.TypedCodec encoder = pipeline.encoder.get();
+        CompressionBenchmarkNew.Compressor compressor = pipeline.compressor.get();
+        byte[] data = column.data;
+        long probeStart = System.nanoTime();
+        encoder.decode(compressor.decompress(compressor.compress(encoder.encode(data))));
+        long probeNs = Math.max(1, System.nanoTime() - probeStart);
+        int runs = (int) Math.max(3, Math.min(1000, MEASURE_LOOP_NS / probeNs));
+        for (int i = 0; i < runs; i++) {
+            encoder.decode(compressor.decompress(compressor.compress(encoder.encode(data))));
+        }
+
+        byte[] compressed = null;
+        long encodeStart = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            compressed = compressor.compress(encoder.encode(data));
+        }
+        long encodeEnd = System.nanoTime();
+
+        byte[] decoded = null;
+        long decodeStart = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            decoded = encoder.decode(compressor.decompress(compressed));
+        }
+        long decodeEnd = System.nanoTime();
+
+        if (!Arrays.equals(data, decoded)) {
+            throw new IOException(pipeline.name + " on " + column.name + " failed verification");
+        }
+        return new Measurement(compressed.length, (double) (encodeEnd - encodeStart) / runs,
+            (double) (decodeEnd - decodeStart) / runs);
+    }
+
+    // The pipeline select() settled on and what the model expects of it
+    static final class Choice {
+        final Pipeline pipeline;
+        final double bytesPerValue;
+        final double encodeNsPerValue;
+        final double decodeNsPerValue;
+        final double cost;
+
+        Choice(Pipeline pipeline, double bytesPerValue, double encodeNsPerValue, double decodeNsPerValue, double cost) {
+            this.pipeline = pipeline;
+            this.bytesPerValue = bytesPerValue;
+            this.encodeNsPerValue = encodeNsPerValue;
+            this.decodeNsPerValue = decodeNsPerValue;
+            this.cost = cost;
+        }
+    }
+
+    private final CostModel model;
+    private final Objective objective;
+    private final double[] objectiveCosts;
+    private final Profile profile = new Profile();
+    private final double[] features = new double[Profile.FEATURES];
+    private final int[] neighbours = new int[CostModel.NEIGHBOURS];
+    private final double[] weights = new double[CostModel.NEIGHBOURS];
+    // Open-addressing set for the distinct count. A slot is taken when its stamp is the
+    // current one, so a new sample starts empty without clearing the table.
+    private final long[] seenKeys = new long[2 * SAMPLE_WINDOWS * WINDOW_VALUES];
+    private final int[] seenStamps = new int[2 * SAMPLE_WINDOWS * WINDOW_VALUES];
+    private int stamp;
+
+    CodecSelector(CostModel model, Objective objective) {
+        this.model = model;
+        this.objective = objective;
+        this.objectiveCosts = model == null ? null : model.objectiveCosts(objective);
+    }
+
+    // Null when the model was calibrated without columns of this word width. The objective
+    // is linear, so the weighted mean of the neighbours' costs is the cost of the predicted
+    // bytes and times, and the sums can be compared before dividing by the total weight.
+    Choice select(byte[] column, int wordBytes) {
+        profile(column, wordBytes).features(features);
+        int found = model.neighbours(features, wordBytes, neighbours, weights);
+        if (found == 0) return null;
+        int n = model.pipelines.size();
+        int best = -1;
+        double bestSum = Double.MAX_VALUE;
+        for (int p = 0; p < n; p++) {
+            if (!model.pipelines.get(p).accepts(wordBytes)) continue;
+            double sum = 0;
+            for (int k = 0; k < found; k++) {
+                sum += weights[k] * objectiveCosts[neighbours[k] * n + p];
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = p;
+            }
+        }
+        double weight = 0;
+        for (int k = 0; k < found; k++) {
+            weight += weights[k];
+        }
+        return new Choice(model.pipelines.get(best), model.predict(best, 0, neighbours, weights, found),
+            model.predict(best, 1, neighbours, weights, found), model.predict(best, 2, neighbours, weights, found),
+            bestSum / weight);
+    }
+
+    Series series() {
+        return new Series();
+    }
+
+    // One series written batch by batch: select() hands back the last choice until
+    // RESELECT_VALUES values have been encoded with it or the word width changes
+    final class Series {
+        private boolean selected;
+        private int wordBytes;
+        private long values;
+        private Choice choice;
+
+        Choice select(byte[] column, int wordBytes) {
+            if (!selected || wordBytes != this.wordBytes || values >= RESELECT_VALUES) {
+                choice = CodecSelector.this.select(column, wordBytes);
+                selected = true;
+                this.wordBytes = wordBytes;
+                values = 0;
+            }
+            values += column.length / wordBytes;
+            return choice;
+        }
+    }
+
+    // Second differences and XORs never span two windows. The returned Profile is reused.
+    Profile profile(byte[] column, int wordBytes) {
+        Profile f = profile;
+        int count = column.length / wordBytes;
+        int bits = 8 * wordBytes;
+        Arrays.fill(f.leadingZeros, 0);
+        if (++stamp == 0) {
+            Arrays.fill(seenStamps, 0);
+            stamp = 1;
+        }
+        int windows = Math.max(1, Math.min(SAMPLE_WINDOWS, count / (SAMPLE_SPACING * WINDOW_VALUES)));
+        int windowValues = Math.min(count, WINDOW_VALUES);
+        int stride = windows == 1 ? 0 : (count - windowValues) / (windows - 1);
+
+        int sampled = 0;
+        int deltaOfDeltas = 0;
+        int zeroDeltaOfDeltas = 0;
+        long deltaOfDeltaBits = 0;
+        int xors = 0;
+        int zeroXors = 0;
+        long meaningfulBits = 0;
+        int distinct = 0;
+        int runs = 0;
+        for (int w = 0; w < windows; w++) {
+            int start = w * stride;
+            long previous = 0;
+            long previousDelta = 0;
+            for (int i = 0; i < windowValues; i++) {
+                int pos = (start + i) * wordBytes;
+                long value = wordBytes == 8 ? (long) LONG_BE.get(column, pos) : (int) INT_BE.get(column, pos) & 0xFFFFFFFFL;
+                if (addDistinct(value)) distinct++;
+                if (i == 0 || value != previous) runs++;
+                if (i > 0) {
+                    long xor = value ^ previous;
+                    xors++;
+                    if (xor == 0) {
+                        zeroXors++;
+                        f.leadingZeros[bits]++;
+                    } else {
+                        int leading = Long.numberOfLeadingZeros(xor) - (64 - bits);
+                        f.leadingZeros[leading]++;
+                        meaningfulBits += bits - leading - Long.numberOfTrailingZeros(xor);
+                    }
+                    long delta = value - previous;
+                    if (i > 1) {
+                        long dod = delta - previousDelta;
+                        deltaOfDeltas++;
+                        if (dod == 0) {
+                            zeroDeltaOfDeltas++;
+                        } else {
+                            deltaOfDeltaBits += 64 - Long.numberOfLeadingZeros((dod << 1) ^ (dod >> 63));
+                        }
+                    }
+                    previousDelta = delta;
+                }
+                previous = value;
+                sampled++;
+            }
+        }
+
+        f.count = count;
+        f.wordBytes = wordBytes;
+        f.sampled = sampled;
+        f.zeroDeltaOfDelta = deltaOfDeltas == 0 ? 0 : (double) zeroDeltaOfDeltas / deltaOfDeltas;
+        f.deltaOfDeltaBits = deltaOfDeltas == 0 ? 0 : (double) deltaOfDeltaBits / deltaOfDeltas;
+        f.zeroXor = xors == 0 ? 0 : (double) zeroXors / xors;
+        f.xorMeaningfulBits = xors == zeroXors ? 0 : (double) meaningfulBits / (xors - zeroXors);
+        f.cardinality = sampled == 0 ? 0 : (double) distinct / sampled;
+        f.meanRun = runs == 0 ? 1 : (double) sampled / runs;
+        return f;
+    }
+
+    // True when value was not in the sample's set yet
+    private boolean addDistinct(long value) {
+        int mask = seenKeys.length - 1;
+        int slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (seenStamps[slot] == stamp) {
+            if (seenKeys[slot] == value) return false;
+            slot = (slot + 1) & mask;
+        }
+        seenStamps[slot] = stamp;
+        seenKeys[slot] = value;
+        return true;
+    }
+}
@@ -0,0 +1,297 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+// How well CodecSelector picks. The cost model is calibrated on columns from
+// CALIBRATION_SEEDS other seeds at CALIBRATION_ROWS; then, for each evaluation column and
+// objective, the selector's pick is compared with the oracle, the pipeline with the lowest
+// measured cost after running all of them. Regret is chosen cost / oracle cost - 1, for the
+// selector and for always using DEFAULT_PIPELINE; per objective and column size the mean
+// and worst of both are summarized, with the selector's cost against the default's and the
+// rows where it lost to the default. Selection time is averaged over
+// SELECT_RUNS calls, once selecting afresh on every call and once through a
+// CodecSelector.Series fed the same column batch after batch, as a writer would; rows
+// where the per-batch cost through the Series is over SELECT_BUDGET of the chosen
+// pipeline's encode time are flagged.
+public class CodecSelectorBenchmark {
+    static final int CALIBRATION_SEEDS = 3;
+    static final int[] CALIBRATION_ROWS = {20, 200, 2000, 5000};
+    static final int[] EVALUATION_ROWS = {BatchData.SAMPLE_COUNT, 1000, 10000};
+    static final int SELECT_RUNS = 20000;
+    // Selection cost per batch allowed, as a share of the chosen pipeline's encode time
+    static final double SELECT_BUDGET = 0.05;
+    static final String DEFAULT_PIPELINE = "TS_2DIFF+LZ4";
+    static final CodecSelector.Objective[] OBJECTIVES = {
+        CodecSelector.Objective.ARCHIVE, CodecSelector.Objective.BALANCED, CodecSelector.Objective.INGEST
+    };
+
+    static class SelectorResult {
+        String objective;
+        String target;
+        int rows;
+        String chosen;
+        String oracle;
+        double chosenCost;
+        double oracleCost;
+        double defaultCost;
+        double predictedBytesPerValue;
+        double actualBytesPerValue;
+        long selectNs;
+        double seriesSelectNs;
+        double encodeNs;
+
+        SelectorResult(String objective, String target, int rows, String chosen, String oracle, double chosenCost,
+                       double oracleCost, double defaultCost, double predictedBytesPerValue,
+                       double actualBytesPerValue, long selectNs, double seriesSelectNs, double encodeNs) {
+            this.objective = objective;
+            this.target = target;
+            this.rows = rows;
+            this.chosen = chosen;
+            this.oracle = oracle;
+            this.chosenCost = chosenCost;
+            this.oracleCost = oracleCost;
+            this.defaultCost = defaultCost;
+            this.predictedBytesPerValue = predictedBytesPerValue;
+            this.actualBytesPerValue = actualBytesPerValue;
+            this.selectNs = selectNs;
+            this.seriesSelectNs = seriesSelectNs;
+            this.encodeNs = encodeNs;
+        }
+
+        double regret() { return chosenCost / oracleCost - 1; }
+        double defaultRegret() { return defaultCost / oracleCost - 1; }
+        // Negative where the pick beat the default
+        double vsDefault() { return chosenCost / defaultCost - 1; }
+        double selectShare() { return selectNs / encodeNs; }
+        double seriesSelectShare() { return seriesSelectNs / encodeNs; }
+        boolean overBudget() { return seriesSelectShare() > SELECT_BUDGET; }
+    }
+
+    // Regret over the columns of one objective and size ("all" for every size)
+    static class RegretSummary {
+        String objective;
+        String rows;
+        int columns;
+        double meanRegret;
+        double worstRegret;
+        double meanDefaultRegret;
+        double worstDefaultRegret;
+        double meanVsDefault;
+        double worstVsDefault;
+        int lossesToDefault;
+
+        RegretSummary(String objective, String rows, List<SelectorResult> results) {
+            this.objective = objective;
+            this.rows = rows;
+            this.columns = results.size();
+            worstRegret = Double.NEGATIVE_INFINITY;
+            worstDefaultRegret = Double.NEGATIVE_INFINITY;
+            worstVsDefault = Double.NEGATIVE_INFINITY;
+            for (SelectorResult r : results) {
+                meanRegret += r.regret() / columns;
+                meanDefaultRegret += r.defaultRegret() / columns;
+                meanVsDefault += r.vsDefault() / columns;
+                worstRegret = Math.max(worstRegret, r.regret());
+                worstDefaultRegret = Math.max(worstDefaultRegret, r.defaultRegret());
+                worstVsDefault = Math.max(worstVsDefault, r.vsDefault());
+                if (r.chosenCost > r.defaultCost) lossesToDefault++;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int seed = 42;
+        if (args.length > 0) {
+            seed = Integer.parseInt(args[0]);
+        }
+
+        List<CodecSelector.Column> calibration = new ArrayList<>();
+        for (int s = 1; s <= CALIBRATION_SEEDS; s++) {
+            for (int rows : CALIBRATION_ROWS) {
+                calibration.addAll(columns(seed + s, rows));
+            }
+        }
+        List<CodecSelector.Pipeline> pipelines = CodecSelector.candidates();
+        long calibrationStart = System.nanoTime();
+        CodecSelector.CostModel model = CodecSelector.CostModel.calibrate(pipelines, calibration);
+        long calibrationNs = System.nanoTime() - calibrationStart;
+        System.out.printf("Calibrated %d pipelines on %d columns in %.1f s%n", pipelines.size(), calibration.size(),
+            calibrationNs / 1e9);
+
+        // Compile the timing loops before the first row they time
+        CodecSelector warmup = new CodecSelector(model, CodecSelector.Objective.BALANCED);
+        for (int rows : EVALUATION_ROWS) {
+            for (CodecSelector.Column column : columns(seed, rows)) {
+                timeSelect(warmup, column);
+                timeSeriesSelect(warmup, column);
+            }
+        }
+
+        List<SelectorResult> results = new ArrayList<>();
+        for (int rows : EVALUATION_ROWS) {
+            for (CodecSelector.Column column : columns(seed, rows)) {
+                Map<CodecSelector.Pipeline, CodecSelector.Measurement> measured = new LinkedHashMap<>();
+                for (CodecSelector.Pipeline pipeline : pipelines) {
+                    if (pipeline.accepts(column.wordBytes)) measured.put(pipeline, CodecSelector.measure(pipeline, column));
+                }
+                for (CodecSelector.Objective objective : OBJECTIVES) {
+                    results.add(evaluate(new CodecSelector(model, objective), objective, column, rows, measured));
+                }
+            }
+        }
+
+        List<RegretSummary> summaries = summarize(results);
+        writeResultsToCSV(results, ResultFiles.path("selector_res.csv"));
+        writeSummaryToCSV(summaries, ResultFiles.path("selector_summary_res.csv"));
+        System.out.println("Codec selector benchmark completed. Results written to selector_res.csv and selector_summary_res.csv");
+
+        System.out.println("Selector pick vs oracle (regret of the pick / of always " + DEFAULT_PIPELINE
+            + "), select ns and share of encode time, each call / per batch through a Series:");
+        int overBudget = 0;
+        int uncachedOverBudget = 0;
+        for (SelectorResult r : results) {
+            if (r.overBudget()) overBudget++;
+            if (r.selectShare() > SELECT_BUDGET) uncachedOverBudget++;
+            System.out.printf("  %-8s %-10s %5d rows  %-22s oracle %-22s regret %6.1f%% / %7.1f%%  select %6d ns (%6.1f%%)"
+                    + " / %7.1f ns (%5.2f%%)%s%n",
+                r.objective, r.target, r.rows, r.chosen, r.oracle, 100 * r.regret(), 100 * r.defaultRegret(),
+                r.selectNs, 100 * r.selectShare(), r.seriesSelectNs, 100 * r.seriesSelectShare(),
+                r.overBudget() ? "  OVER BUDGET" : "");
+        }
+        System.out.printf("Selection budget %.0f%% of encode time: %d of %d rows over it through a Series, %d selecting on every call%n",
+            100 * SELECT_BUDGET, overBudget, results.size(), uncachedOverBudget);
+
+        System.out.println("Regret vs oracle, mean / worst, of the pick and of always " + DEFAULT_PIPELINE
+            + "; pick cost vs default cost, mean / worst, and rows lost to the default:");
+        for (RegretSummary r : summaries) {
+            System.out.printf("  %-8s %5s rows  pick %6.1f%% / %6.1f%%   default %6.1f%% / %6.1f%%   vs default %+7.1f%% / %+7.1f%%"
+                    + "   lost %d of %d%n",
+                r.objective, r.rows, 100 * r.meanRegret, 100 * r.worstRegret, 100 * r.meanDefaultRegret,
+                100 * r.worstDefaultRegret, 100 * r.meanVsDefault, 100 * r.worstVsDefault, r.lossesToDefault, r.columns);
+        }
+    }
+
+    // Per objective: one summary per evaluation size, then one over all of them
+    static List<RegretSummary> summarize(List<SelectorResult> results) {
+        List<RegretSummary> summaries = new ArrayList<>();
+        for (CodecSelector.Objective objective : OBJECTIVES) {
+            List<SelectorResult> all = new ArrayList<>();
+            for (int rows : EVALUATION_ROWS) {
+                List<SelectorResult> sized = new ArrayList<>();
+                for (SelectorResult r : results) {
+                    if (r.objective.equals(objective.name) && r.rows == rows) sized.add(r);
+                }
+                summaries.add(new RegretSummary(objective.name, String.valueOf(rows), sized));
+                all.addAll(sized);
+            }
+            summaries.add(new RegretSummary(objective.name, "all", all));
+        }
+        return summaries;
+    }
+
+    static SelectorResult evaluate(CodecSelector selector, CodecSelector.Objective objective, CodecSelector.Column column,
+                                   int rows, Map<CodecSelector.Pipeline, CodecSelector.Measurement> measured) {
+        CodecSelector.Choice choice = selector.select(column.data, column.wordBytes);
+        long selectNs = timeSelect(selector, column);
+        double seriesSelectNs = timeSeriesSelect(selector, column);
+
+        int count = column.count();
+        String oracle = null;
+        double oracleCost = Double.MAX_VALUE;
+        double defaultCost = Double.NaN;
+        for (Map.Entry<CodecSelector.Pipeline, CodecSelector.Measurement> e : measured.entrySet()) {
+            double cost = cost(objective, e.getValue(), count);
+            if (cost < oracleCost) {
+                oracleCost = cost;
+                oracle = e.getKey().name;
+            }
+            if (e.getKey().name.equals(DEFAULT_PIPELINE)) defaultCost = cost;
+        }
+        CodecSelector.Measurement chosen = measured.get(choice.pipeline);
+        return new SelectorResult(objective.name, column.name, rows, choice.pipeline.name, oracle,
+            cost(objective, chosen, count), oracleCost, defaultCost, choice.bytesPerValue,
+            (double) chosen.bytes / count, selectNs, seriesSelectNs, chosen.encodeNs);
+    }
+
+    // Mean ns of a fresh select() on the column
+    static long timeSelect(CodecSelector selector, CodecSelector.Column column) {
+        for (int i = 0; i < SELECT_RUNS; i++) {
+            selector.select(column.data, column.wordBytes);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < SELECT_RUNS; i++) {
+            selector.select(column.data, column.wordBytes);
+        }
+        return (System.nanoTime() - start) / SELECT_RUNS;
+    }
+
+    // Mean ns per batch of selecting through one Series fed the column again and again
+    static double timeSeriesSelect(CodecSelector selector, CodecSelector.Column column) {
+        CodecSelector.Series series = selector.series();
+        for (int i = 0; i < SELECT_RUNS; i++) {
+            series.select(column.data, column.wordBytes);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < SELECT_RUNS; i++) {
+            series.select(column.data, column.wordBytes);
+        }
+        return (double) (System.nanoTime() - start) / SELECT_RUNS;
+    }
+
+    static double cost(CodecSelector.Objective objective, CodecSelector.Measurement m, int count) {
+        return objective.cost((double) m.bytes / count, m.encodeNs / count, m.decodeNs / count);
+    }
+
+    // The evaluation and calibration columns: regular and jittered timestamps, a counter,
+    // float and double readings, and a low-cardinality state column with long runs
+    static List<CodecSelector.Column> columns(int seed, int rows) {
+        BatchData.Batch batch = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS,
+            BatchData.INTERVAL_MS);
+        Random random = new Random(seed);
+        ByteBuffer jittered = ByteBuffer.allocate(rows * 8);
+        ByteBuffer counter = ByteBuffer.allocate(rows * 8);
+        ByteBuffer states = ByteBuffer.allocate(rows * 4);
+        long total = 0;
+        int state = 0;
+        for (int i = 0; i < rows; i++) {
+            jittered.putLong(BatchData.BASE_TIMESTAMP_MS + i * BatchData.INTERVAL_MS + random.nextInt(4));
+            total += random.nextInt(100);
+            counter.putLong(total);
+            if (random.nextInt(16) == 0) state = random.nextInt(8);
+            states.putInt(state);
+        }
+
+        List<CodecSelector.Column> columns = new ArrayList<>();
+        columns.add(new CodecSelector.Column("timestamps", CompressionBenchmarkNew.longsToBytes(batch.timestamps), 8));
+        columns.add(new CodecSelector.Column("jittered", jittered.array(), 8));
+        columns.add(new CodecSelector.Column("counter", counter.array(), 8));
+        columns.add(new CodecSelector.Column("values", CompressionBenchmarkNew.floatsToBytes(batch.values), 4));
+        columns.add(new CodecSelector.Column("doubles", EncodingBenchmarkNew.doublesToBytes(
+            EncodingBenchmarkNew.flattenValues(BatchData.generateDeterministicDoubles(seed, rows))), 8));
+        columns.add(new CodecSelector.Column("states", states.array(), 4));
+        return columns;
+    }
+
+    static void writeResultsToCSV(List<SelectorResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("objective,target,rows,chosen,oracle,chosen_cost,oracle_cost,regret,default_regret,vs_default,predicted_bytes_per_value,actual_bytes_per_value,select_ns,series_select_ns,encode_ns,select_share,series_select_share,over_budget");
+            for (SelectorResult r : results) {
+                writer.printf("%s,%s,%d,%s,%s,%.4f,%.4f,%.4f,%.4f,%.4f,%.3f,%.3f,%d,%.1f,%.0f,%.4f,%.4f,%b%n",
+                    r.objective, r.target, r.rows, r.chosen, r.oracle, r.chosenCost, r.oracleCost, r.regret(),
+                    r.defaultRegret(), r.vsDefault(), r.predictedBytesPerValue, r.actualBytesPerValue, r.selectNs,
+                    r.seriesSelectNs, r.encodeNs, r.selectShare(), r.seriesSelectShare(), r.overBudget());
+            }
+        }
+    }
+
+    static void writeSummaryToCSV(List<RegretSummary> summaries, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("objective,rows,columns,mean_regret,worst_regret,mean_default_regret,worst_default_regret,mean_vs_default,worst_vs_default,losses_to_default");
+            for (RegretSummary r : summaries) {
+                writer.printf("%s,%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%d%n",
+                    r.objective, r.rows, r.columns, r.meanRegret, r.worstRegret, r.meanDefaultRegret,
+                    r.worstDefaultRegret, r.meanVsDefault, r.worstVsDefault, r.lossesToDefault);
+            }
+        }
+    }
+}
@@ -84,80 +84,29 @@ public class CompressionBenchmark {
         }
     }
     
-    // 4. Simple LZ77-based compression (simplified LZ4-like algorithm)
+    // 4. LZ77 compression: a 4-byte original length, then one HashChainLZ block (LZ4
+    // format, hash-chain matcher at NORMAL depth)
     static class SimpleLZCompressor implements Compressor {
+        private final HashChainLZ engine = new HashChainLZ(HashChainLZ.Level.NORMAL);
+        
         public String getName() { return "SIMPLE_LZ"; }
         
         public byte[] compress(byte[] input) throws IOException {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(baos);
-            
-            // Write original length
-            dos.writeInt(input.length);
-            
-            int i = 0;
-            while (i < input.length) {
-                // Look for matches in the previous 4KB window
-                int maxMatchLen = 0;
-                int maxMatchPos = 0;
-                int windowStart = Math.max(0, i - 4096);
-                
-                for (int j = windowStart; j < i; j++) {
-                    int matchLen = 0;
-                    while (i + matchLen < input.length && 
-                           input[j + matchLen] == input[i + matchLen] && 
-                           matchLen < 255) {
-                        matchLen++;
-                    }
-                    if (matchLen > maxMatchLen) {
-                        maxMatchLen = matchLen;
-                        maxMatchPos = j;
-                    }
-                }
-                
-                if (maxMatchLen >= 4) {
-                    // Write match: flag(1) + offset(2) + length(1)
-                    dos.writeByte(1); // match flag
-                    dos.writeShort(i - maxMatchPos);
-                    dos.writeByte(maxMatchLen);
-                    i += maxMatchLen;
-                } else {
-                    // Write literal: flag(0) + byte
-                    dos.writeByte(0); // literal flag
-                    dos.writeByte(input[i]);
-                    i++;
-                }
-            }
-            
-            dos.close();
-            return baos.toByteArray();
+            byte[] out = new byte[4 + HashChainLZ.maxCompressedLength(input.length)];
+            ByteBuffer.wrap(out).putInt(input.length);
+            int written = engine.compress(input, 0, input.length, out, 4);
+            return Arrays.copyOf(out, 4 + written);
         }
         
         public byte[] decompress(byte[] compressed) throws IOException {
-            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(compressed));
-            
-            int originalLength = dis.readInt();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(originalLength);
-            
-            while (dis.available() > 0) {
-                int flag = dis.readByte() & 0xFF;
-                if (flag == 1) {
-                    // Match
-                    int offset = dis.readShort() & 0xFFFF;
-                    int length = dis.readByte() & 0xFF;
-                    byte[] output = baos.toByteArray();
-                    int pos = output.length - offset;
-                    for (int i = 0; i < length; i++) {
-                        baos.write(output[pos + i]);
-                    }
-                } else {
-                    // Literal
-                    baos.write(dis.readByte());
-                }
+            int originalLength = ByteBuffer.wrap(compressed).getInt();
+            byte[] restored = new byte[originalLength];
+            try {
+                HashChainLZ.decompress(compressed, 4, compressed.length - 4, restored, 0, originalLength);
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
             }
-            
-            dis.close();
-            return baos.toByteArray();
+            return restored;
         }
     }
     
@@ -256,7 +205,7 @@ public class CompressionBenchmark {
         }
         
         // Write results to CSV
-        writeResultsToCSV(results, "/Users/hossein/Desktop/db-encoding/compression_res.csv");
+        writeResultsToCSV(results, ResultFiles.path("compression_res.csv"));
         
         System.out.println("Compression benchmark completed. Results written to compression_res.csv");
     }
@@ -16,75 +16,313 @@ public class CompressionBenchmarkNew {
         String getName();
     }
     
+    // ByteBuffer entry points, heap or direct. Both calls consume their input from position
+    // to limit and write at out's position, advancing both positions and leaving out's
+    // limit alone; they return the number of bytes written. out must have room for
+    // maxCompressedLength (compress) or decompressedLength (decompress) bytes, otherwise
+    // BufferOverflowException. Direct buffers go through the native codec without
+    // touching the heap, so bytes can move from a socket or mmap to a compressed page.
+    interface BufferCompressor extends Compressor {
+        int maxCompressedLength(int length);
+        // Reads the length header at compressed.position() without moving it
+        int decompressedLength(ByteBuffer compressed) throws IOException;
+        int compress(ByteBuffer input, ByteBuffer out) throws IOException;
+        int decompress(ByteBuffer compressed, ByteBuffer out) throws IOException;
+    }
+    
+    // Copies the remaining bytes of a heap buffer into a pooled direct one, flipped
+    static ByteBuffer stageDirect(BufferPool pool, ByteBuffer heap) {
+        ByteBuffer direct = pool.acquireDirect(heap.remaining());
+        CopyMeter.count(heap.remaining());
+        direct.put(heap.duplicate()).flip();
+        return direct;
+    }
+    
+    // Name suffix for a non-default Deflater level or strategy, e.g. "_L9_FILTERED"
+    static String deflateSettings(int level, int strategy) {
+        if (level == Deflater.DEFAULT_COMPRESSION && strategy == Deflater.DEFAULT_STRATEGY) return "";
+        String name = level == Deflater.DEFAULT_COMPRESSION ? "" : "_L" + level;
+        return strategy == Deflater.DEFAULT_STRATEGY ? name : name + "_" + strategyName(strategy);
+    }
+    
+    static String strategyName(int strategy) {
+        switch (strategy) {
+            case Deflater.FILTERED: return "FILTERED";
+            case Deflater.HUFFMAN_ONLY: return "HUFFMAN_ONLY";
+            default: return "DEFAULT";
+        }
+    }
+    
     // 1. IDENTITY (baseline)
     static class IdentityCompressor implements Compressor {
         public String getName() { return "IDENTITY"; }
-        public byte[] compress(byte[] input) { return input.clone(); }
-        public byte[] decompress(byte[] compressed) { return compressed.clone(); }
+        public byte[] compress(byte[] input) {
+            CopyMeter.count(input.length);
+            return input.clone();
+        }
+        
+        public byte[] decompress(byte[] compressed) {
+            CopyMeter.count(compressed.length);
+            return compressed.clone();
+        }
     }
     
-    // 2. GZIP compression
+    // 2. GZIP compression: a single gzip member written by hand around a pooled raw
+    // Deflater, so no GZIPOutputStream/GZIPInputStream (and their private zlib contexts)
+    // is built per call. The header matches GZIPOutputStream's byte for byte. Decompression
+    // sizes its output from the ISIZE trailer and inflates straight into it. Level and
+    // strategy are the Deflater's; the defaults are GZIPOutputStream's.
     static class GZIPCompressor implements Compressor {
-        public String getName() { return "GZIP"; }
+        // OS byte 255 (unknown), as GZIPOutputStream writes since JDK 16
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+        
+        private final CRC32 crc = new CRC32();
+        private final int level;
+        private final int strategy;
+        
+        GZIPCompressor() {
+            this(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+        }
+        
+        GZIPCompressor(int level, int strategy) {
+            this.level = level;
+            this.strategy = strategy;
+        }
+        
+        public String getName() { return "GZIP" + deflateSettings(level, strategy); }
         
         public byte[] compress(byte[] input) throws IOException {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
-                gzos.write(input);
+            Deflater deflater = ZlibContexts.deflater(level, strategy, true);
+            PooledOutputStream out = new PooledOutputStream(ZlibContexts.deflateBound(input.length));
+            try {
+                out.write(HEADER);
+                deflater.setInput(input);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.ensureRemaining(64);
+                    out.advance(deflater.deflate(out.array(), out.size(), out.remaining()));
+                }
+                crc.reset();
+                crc.update(input);
+                writeIntLE(out, (int) crc.getValue());
+                writeIntLE(out, input.length);
+                return out.toByteArray();
+            } finally {
+                ZlibContexts.release(deflater, level, strategy, true);
+                out.release();
             }
-            return baos.toByteArray();
         }
         
         public byte[] decompress(byte[] compressed) throws IOException {
-            ByteArrayInputStream bais = new ByteArrayInputStream(compressed);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (GZIPInputStream gzis = new GZIPInputStream(bais)) {
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = gzis.read(buffer)) > 0) {
-                    baos.write(buffer, 0, len);
+            return decompress(compressed, 0, compressed.length);
+        }
+        
+        // The GZIP member in compressed[offset, offset + length)
+        byte[] decompress(byte[] compressed, int offset, int length) throws IOException {
+            int end = offset + length;
+            int start = headerLength(compressed, offset, end);
+            if (end < start + 8) throw new IOException("Truncated GZIP stream");
+            int size = readIntLE(compressed, end - 4);
+            byte[] restored = new byte[size];
+            Inflater inflater = ZlibContexts.inflater(true);
+            try {
+                // The trailer stays in the input as the extra byte a raw inflater needs
+                inflater.setInput(compressed, start, end - start);
+                int pos = 0;
+                while (!inflater.finished()) {
+                    int count = inflater.inflate(restored, pos, size - pos);
+                    if (count == 0 && !inflater.finished() && (inflater.needsInput() || pos == size)) {
+                        throw new IOException("Corrupt GZIP stream");
+                    }
+                    pos += count;
                 }
+                if (pos != size || inflater.getRemaining() != 8) throw new IOException("GZIP size mismatch");
+            } catch (DataFormatException e) {
+                throw new IOException("Decompression error", e);
+            } finally {
+                ZlibContexts.release(inflater, true);
+            }
+            crc.reset();
+            crc.update(restored);
+            if ((int) crc.getValue() != readIntLE(compressed, end - 8)) {
+                throw new IOException("GZIP CRC mismatch");
+            }
+            return restored;
+        }
+        
+        // Position of the deflate data after the header starting at offset
+        private static int headerLength(byte[] in, int offset, int end) throws IOException {
+            if (end - offset < 10 || in[offset] != 0x1f || in[offset + 1] != (byte) 0x8b
+                    || in[offset + 2] != Deflater.DEFLATED) {
+                throw new IOException("Not in GZIP format");
             }
-            return baos.toByteArray();
+            int flags = in[offset + 3] & 0xFF;
+            int pos = offset + 10;
+            if ((flags & FEXTRA) != 0) {
+                if (pos + 2 > end) throw new IOException("Truncated GZIP header");
+                pos += 2 + ((in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8);
+            }
+            if ((flags & FNAME) != 0) pos = skipZeroTerminated(in, pos, end);
+            if ((flags & FCOMMENT) != 0) pos = skipZeroTerminated(in, pos, end);
+            if ((flags & FHCRC) != 0) pos += 2;
+            return pos;
+        }
+        
+        private static int skipZeroTerminated(byte[] in, int pos, int end) throws IOException {
+            while (pos < end && in[pos] != 0) pos++;
+            if (pos >= end) throw new IOException("Truncated GZIP header");
+            return pos + 1;
+        }
+        
+        private static void writeIntLE(PooledOutputStream out, int v) {
+            out.write(v);
+            out.write(v >>> 8);
+            out.write(v >>> 16);
+            out.write(v >>> 24);
+        }
+        
+        private static int readIntLE(byte[] in, int pos) {
+            return (in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8 | (in[pos + 2] & 0xFF) << 16 | (in[pos + 3] & 0xFF) << 24;
         }
     }
     
-    // 3. Snappy compression
-    static class SnappyCompressor implements Compressor {
+    // 3. Snappy compression. snappy-java's ByteBuffer API only accepts direct buffers, so
+    // heap-to-heap calls use the array entry points and a mixed call stages its heap
+    // side through a pooled direct buffer.
+    static class SnappyCompressor implements BufferCompressor {
         public String getName() { return "SNAPPY"; }
         
+        // Compresses into a pooled worst-case buffer so only the exact-size result is allocated
         public byte[] compress(byte[] input) throws IOException {
-            return Snappy.compress(input);
+            BufferPool pool = BufferPool.local();
+            ByteBuffer scratch = pool.acquire(Snappy.maxCompressedLength(input.length));
+            try {
+                int compressedLength = Snappy.compress(input, 0, input.length, scratch.array(), 0);
+                CopyMeter.count(compressedLength);
+                return Arrays.copyOf(scratch.array(), compressedLength);
+            } finally {
+                pool.release(scratch);
+            }
         }
         
         public byte[] decompress(byte[] compressed) throws IOException {
             return Snappy.uncompress(compressed);
         }
+        
+        public int maxCompressedLength(int length) {
+            return Snappy.maxCompressedLength(length);
+        }
+        
+        public int decompressedLength(ByteBuffer compressed) throws IOException {
+            if (compressed.isDirect()) return Snappy.uncompressedLength(compressed);
+            return Snappy.uncompressedLength(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                compressed.remaining());
+        }
+        
+        public int compress(ByteBuffer input, ByteBuffer out) throws IOException {
+            int length = input.remaining();
+            int bound = maxCompressedLength(length);
+            if (out.remaining() < bound) throw new BufferOverflowException();
+            int written;
+            if (!input.isDirect() && !out.isDirect()) {
+                written = Snappy.compress(input.array(), input.arrayOffset() + input.position(), length,
+                    out.array(), out.arrayOffset() + out.position());
+            } else {
+                BufferPool pool = BufferPool.local();
+                ByteBuffer src = input.isDirect() ? input : stageDirect(pool, input);
+                ByteBuffer dst = out.isDirect() ? out.duplicate() : pool.acquireDirect(bound);
+                try {
+                    // Sets dst's limit to the end of the compressed bytes
+                    written = Snappy.compress(src, dst);
+                    if (!out.isDirect()) {
+                        CopyMeter.count(written);
+                        out.duplicate().put(dst);
+                    }
+                } finally {
+                    if (src != input) pool.release(src);
+                    if (!out.isDirect()) pool.release(dst);
+                }
+            }
+            input.position(input.limit());
+            out.position(out.position() + written);
+            return written;
+        }
+        
+        public int decompress(ByteBuffer compressed, ByteBuffer out) throws IOException {
+            int length = decompressedLength(compressed);
+            if (out.remaining() < length) throw new BufferOverflowException();
+            int written;
+            if (!compressed.isDirect() && !out.isDirect()) {
+                written = Snappy.uncompress(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                    compressed.remaining(), out.array(), out.arrayOffset() + out.position());
+            } else {
+                BufferPool pool = BufferPool.local();
+                ByteBuffer src = compressed.isDirect() ? compressed : stageDirect(pool, compressed);
+                ByteBuffer dst = out.isDirect() ? out.duplicate() : pool.acquireDirect(length);
+                try {
+                    written = Snappy.uncompress(src, dst);
+                    if (!out.isDirect()) {
+                        CopyMeter.count(written);
+                        out.duplicate().put(dst);
+                    }
+                } finally {
+                    if (src != compressed) pool.release(src);
+                    if (!out.isDirect()) pool.release(dst);
+                }
+            }
+            compressed.position(compressed.limit());
+            out.position(out.position() + written);
+            return written;
+        }
     }
     
-    // 4. LZ4 compression
-    static class LZ4Compressor implements Compressor {
+    // 4. LZ4 compression: a 4-byte big-endian original length, then an LZ4 block. The
+    // ByteBuffer calls use lz4-java's ByteBuffer API, which takes heap and direct alike.
+    // Level 0 is the fast compressor; 1-17 is LZ4 HC at that level, which writes the same
+    // block format, so decompression does not depend on the level.
+    static class LZ4Compressor implements BufferCompressor {
+        static final int MAX_HC_LEVEL = 17;
+        
         private final LZ4Factory factory = LZ4Factory.fastestInstance();
+        private final net.jpountz.lz4.LZ4Compressor compressor;
+        private final int level;
         
-        public String getName() { return "LZ4"; }
+        LZ4Compressor() {
+            this(0);
+        }
+        
+        LZ4Compressor(int level) {
+            if (level < 0 || level > MAX_HC_LEVEL) {
+                throw new IllegalArgumentException("LZ4 level must be 0 (fast) or 1-" + MAX_HC_LEVEL + ": " + level);
+            }
+            this.level = level;
+            this.compressor = level == 0 ? factory.fastCompressor() : factory.highCompressor(level);
+        }
+        
+        public String getName() { return level == 0 ? "LZ4" : "LZ4_HC" + level; }
         
         public byte[] compress(byte[] input) throws IOException {
-            net.jpountz.lz4.LZ4Compressor compressor = factory.fastCompressor();
             int maxCompressedLength = compressor.maxCompressedLength(input.length);
-            byte[] compressed = new byte[maxCompressedLength + 4]; // +4 for original length
-            
-            // Store original length
-            compressed[0] = (byte) (input.length >>> 24);
-            compressed[1] = (byte) (input.length >>> 16);
-            compressed[2] = (byte) (input.length >>> 8);
-            compressed[3] = (byte) input.length;
-            
-            int compressedLength = compressor.compress(input, 0, input.length, compressed, 4, maxCompressedLength);
-            
-            // Return only the used portion
-            byte[] result = new byte[compressedLength + 4];
-            System.arraycopy(compressed, 0, result, 0, compressedLength + 4);
-            return result;
+            BufferPool pool = BufferPool.local();
+            ByteBuffer scratch = pool.acquire(maxCompressedLength + 4); // +4 for original length
+            try {
+                byte[] compressed = scratch.array();
+                
+                // Store original length
+                scratch.putInt(0, input.length);
+                
+                int compressedLength = compressor.compress(input, 0, input.length, compressed, 4, maxCompressedLength);
+                
+                // Return only the used portion
+                CopyMeter.count(compressedLength + 4);
+                return Arrays.copyOf(compressed, compressedLength + 4);
+            } finally {
+                pool.release(scratch);
+            }
         }
         
         public byte[] decompress(byte[] compressed) throws IOException {
@@ -99,44 +337,232 @@ public class CompressionBenchmarkNew {
             decompressor.decompress(compressed, 4, restored, 0, originalLength);
             return restored;
         }
+        
+        public int maxCompressedLength(int length) {
+            return compressor.maxCompressedLength(length) + 4;
+        }
+        
+        public int decompressedLength(ByteBuffer compressed) throws IOException {
+            if (compressed.remaining() < 4) throw new IOException("Truncated LZ4 block");
+            return compressed.duplicate().getInt(compressed.position());
+        }
+        
+        public int compress(ByteBuffer input, ByteBuffer out) throws IOException {
+            int length = input.remaining();
+            int bound = maxCompressedLength(length);
+            if (out.remaining() < bound) throw new BufferOverflowException();
+            int start = out.position();
+            // duplicate() reads and writes big-endian whatever the caller's byte order
+            out.duplicate().putInt(start, length);
+            int written = compressor.compress(input, input.position(), length, out, start + 4, bound - 4);
+            input.position(input.limit());
+            out.position(start + 4 + written);
+            return written + 4;
+        }
+        
+        public int decompress(ByteBuffer compressed, ByteBuffer out) throws IOException {
+            int length = decompressedLength(compressed);
+            if (out.remaining() < length) throw new BufferOverflowException();
+            int read = factory.fastDecompressor().decompress(compressed, compressed.position() + 4, out, out.position(), length);
+            compressed.position(compressed.position() + 4 + read);
+            out.position(out.position() + length);
+            return length;
+        }
     }
     
-    // 5. Zlib (DEFLATE) compression
+    // 5. Zlib (DEFLATE) compression on pooled per-thread contexts, at a Deflater level and
+    // strategy, with an optional preset dictionary (setDictionary); the zlib header carries
+    // the dictionary's Adler-32, so decompression must be given the same bytes
     static class ZlibCompressor implements Compressor {
-        public String getName() { return "ZLIB"; }
+        private final int level;
+        private final int strategy;
+        private final byte[] dictionary;
+        private final long dictionaryAdler;
+        
+        ZlibCompressor() {
+            this((byte[]) null);
+        }
         
+        ZlibCompressor(int level, int strategy) {
+            this(level, strategy, null);
+        }
+        
+        ZlibCompressor(TrainedDictionary dictionary) {
+            this(dictionary.content());
+        }
+        
+        ZlibCompressor(byte[] dictionary) {
+            this(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, dictionary);
+        }
+        
+        ZlibCompressor(int level, int strategy, byte[] dictionary) {
+            this.level = level;
+            this.strategy = strategy;
+            this.dictionary = dictionary;
+            if (dictionary == null) {
+                this.dictionaryAdler = -1;
+            } else {
+                Adler32 adler = new Adler32();
+                adler.update(dictionary);
+                this.dictionaryAdler = adler.getValue();
+            }
+        }
+        
+        public String getName() { return "ZLIB" + deflateSettings(level, strategy) + (dictionary == null ? "" : "_DICT"); }
+        
+        // Deflates straight into a pooled buffer presized to the deflate bound
         public byte[] compress(byte[] input) throws IOException {
-            Deflater deflater = new Deflater();
-            deflater.setInput(input);
-            deflater.finish();
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            while (!deflater.finished()) {
-                int count = deflater.deflate(buffer);
-                baos.write(buffer, 0, count);
+            Deflater deflater = ZlibContexts.deflater(level, strategy, false);
+            PooledOutputStream out = new PooledOutputStream(ZlibContexts.deflateBound(input.length));
+            try {
+                if (dictionary != null) deflater.setDictionary(dictionary);
+                deflater.setInput(input);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.ensureRemaining(64);
+                    out.advance(deflater.deflate(out.array(), out.size(), out.remaining()));
+                }
+                return out.toByteArray();
+            } finally {
+                ZlibContexts.release(deflater, level, strategy, false);
+                out.release();
             }
-            deflater.end();
-            return baos.toByteArray();
         }
         
         public byte[] decompress(byte[] compressed) throws IOException {
-            Inflater inflater = new Inflater();
-            inflater.setInput(compressed);
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
+            return decompress(compressed, 0, compressed.length);
+        }
+        
+        // The zlib stream in compressed[offset, offset + length)
+        byte[] decompress(byte[] compressed, int offset, int length) throws IOException {
+            Inflater inflater = ZlibContexts.inflater(false);
+            PooledOutputStream out = new PooledOutputStream(length * 4);
             try {
+                inflater.setInput(compressed, offset, length);
                 while (!inflater.finished()) {
-                    int count = inflater.inflate(buffer);
-                    baos.write(buffer, 0, count);
+                    out.ensureRemaining(64);
+                    int count = inflater.inflate(out.array(), out.size(), out.remaining());
+                    if (count == 0 && inflater.needsDictionary()) {
+                        // While a dictionary is needed, getAdler() is the stream's DICTID
+                        if ((inflater.getAdler() & 0xFFFFFFFFL) != dictionaryAdler) {
+                            throw new IOException(String.format("Zlib stream needs the preset dictionary with Adler-32 %08x",
+                                inflater.getAdler()));
+                        }
+                        inflater.setDictionary(dictionary);
+                        continue;
+                    }
+                    if (count == 0 && !inflater.finished() && inflater.needsInput()) {
+                        throw new IOException("Truncated zlib stream");
+                    }
+                    out.advance(count);
                 }
+                return out.toByteArray();
             } catch (DataFormatException e) {
                 throw new IOException("Decompression error", e);
             } finally {
-                inflater.end();
+                ZlibContexts.release(inflater, false);
+                out.release();
             }
-            return baos.toByteArray();
+        }
+    }
+    
+    // 6. In-house LZ77 (HashChainLZ) at a given search level: an unsigned varint of the
+    // original length shifted left by one, with bit 0 set when a trained dictionary was used,
+    // then that dictionary's version as a varint, then one LZ4-format block. With a
+    // dictionary, the engine sees dictionary + input in one scratch array and matches into
+    // the dictionary as history; decompression rebuilds the same prefix.
+    static class HashChainLZCompressor implements Compressor {
+        private final HashChainLZ engine;
+        private final TrainedDictionary dictionary;
+        
+        HashChainLZCompressor(HashChainLZ.Level level) {
+            this(level, null);
+        }
+        
+        HashChainLZCompressor(HashChainLZ.Level level, TrainedDictionary dictionary) {
+            this.engine = new HashChainLZ(level);
+            this.dictionary = dictionary;
+        }
+        
+        public String getName() { return "LZ_" + engine.level() + (dictionary == null ? "" : "_DICT"); }
+        
+        public byte[] compress(byte[] input) throws IOException {
+            BufferPool pool = BufferPool.local();
+            ByteBuffer scratch = pool.acquire(10 + HashChainLZ.maxCompressedLength(input.length));
+            ByteBuffer prefixed = null;
+            try {
+                byte[] out = scratch.array();
+                if (dictionary == null) {
+                    int header = putVarInt(out, 0, input.length << 1);
+                    int written = engine.compress(input, 0, input.length, out, header);
+                    CopyMeter.count(header + written);
+                    return Arrays.copyOf(out, header + written);
+                }
+                int header = putVarInt(out, 0, (input.length << 1) | 1);
+                header = putVarInt(out, header, dictionary.version());
+                int dictLength = dictionary.size();
+                prefixed = pool.acquire(dictLength + input.length);
+                byte[] src = prefixed.array();
+                System.arraycopy(dictionary.content(), 0, src, 0, dictLength);
+                System.arraycopy(input, 0, src, dictLength, input.length);
+                int written = engine.compress(src, 0, dictLength, dictLength + input.length, out, header);
+                CopyMeter.count(dictLength + input.length + header + written);
+                return Arrays.copyOf(out, header + written);
+            } finally {
+                pool.release(scratch);
+                if (prefixed != null) pool.release(prefixed);
+            }
+        }
+        
+        public byte[] decompress(byte[] compressed) throws IOException {
+            int[] pos = new int[1];
+            int header = getVarInt(compressed, pos);
+            int length = header >>> 1;
+            try {
+                if ((header & 1) == 0) {
+                    byte[] restored = new byte[length];
+                    HashChainLZ.decompress(compressed, pos[0], compressed.length - pos[0], restored, 0, length);
+                    return restored;
+                }
+                int version = getVarInt(compressed, pos);
+                if (dictionary == null || dictionary.version() != version) {
+                    throw new IOException("LZ block needs trained dictionary version " + version);
+                }
+                int dictLength = dictionary.size();
+                BufferPool pool = BufferPool.local();
+                ByteBuffer scratch = pool.acquire(dictLength + length);
+                try {
+                    byte[] dst = scratch.array();
+                    System.arraycopy(dictionary.content(), 0, dst, 0, dictLength);
+                    HashChainLZ.decompress(compressed, pos[0], compressed.length - pos[0], dst, 0, dictLength, length);
+                    CopyMeter.count(dictLength + length);
+                    return Arrays.copyOfRange(dst, dictLength, dictLength + length);
+                } finally {
+                    pool.release(scratch);
+                }
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        
+        // Reads an unsigned varint at pos[0] and advances it
+        static int getVarInt(byte[] in, int[] pos) throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (pos[0] == in.length || shift > 28) throw new IOException("Corrupt LZ header");
+                int b = in[pos[0]++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+        
+        static int putVarInt(byte[] out, int pos, int value) {
+            while ((value & ~0x7F) != 0) {
+                out[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[pos++] = (byte) value;
+            return pos;
         }
     }
     
@@ -144,24 +570,107 @@ public class CompressionBenchmarkNew {
     static class BenchmarkResult {
         String algorithm;
         String target;
-        long compressTimeNs;
-        long decompressTimeNs;
+        // Per-call latency distributions (LatencyHarness)
+        LatencyHarness.Stats compress;
+        LatencyHarness.Stats decompress;
         int originalSize;
         int compressedSize;
         double ratio;
+        // Heap bytes per compress and per decompress (BufferPool on), and per round trip with
+        // and without BufferPool; -1 where the JVM does not count allocations
+        long compressBytesPerOp = -1;
+        long decompressBytesPerOp = -1;
+        long pooledBytesPerOp = -1;
+        long unpooledBytesPerOp = -1;
+        // Collections and collection ms while this row was measured
+        long gcCount;
+        long gcTimeMs;
+        // Scratch the compressor instance retains, peak up to and including this column
+        long scratchBytes;
         
-        BenchmarkResult(String algorithm, String target, long compressTimeNs, long decompressTimeNs, 
-                       int originalSize, int compressedSize) {
+        BenchmarkResult(String algorithm, String target, LatencyHarness.Stats compress,
+                       LatencyHarness.Stats decompress, int originalSize, int compressedSize) {
             this.algorithm = algorithm;
             this.target = target;
-            this.compressTimeNs = compressTimeNs;
-            this.decompressTimeNs = decompressTimeNs;
+            this.compress = compress;
+            this.decompress = decompress;
             this.originalSize = originalSize;
             this.compressedSize = compressedSize;
             this.ratio = (double) compressedSize / originalSize;
         }
     }
     
+    // Mean per-call latency of a zlib-based compressor with pooled contexts or fresh ones
+    static class PoolingResult {
+        String algorithm;
+        String target;
+        boolean pooled;
+        long compressNsPerCall;
+        long decompressNsPerCall;
+        
+        PoolingResult(String algorithm, String target, boolean pooled, long compressNsPerCall, long decompressNsPerCall) {
+            this.algorithm = algorithm;
+            this.target = target;
+            this.pooled = pooled;
+            this.compressNsPerCall = compressNsPerCall;
+            this.decompressNsPerCall = decompressNsPerCall;
+        }
+    }
+    
+    // One compressor setting of the level sweep; level is -1 and strategy "-" where the
+    // knob does not apply
+    static class LevelSetting {
+        String family;
+        int level;
+        String strategy;
+        Compressor compressor;
+        
+        LevelSetting(String family, int level, String strategy, Compressor compressor) {
+            this.family = family;
+            this.level = level;
+            this.strategy = strategy;
+            this.compressor = compressor;
+        }
+    }
+    
+    // Ratio and throughput of one setting on one input. inputSize is what the compressor saw,
+    // originalSize the raw column it came from (larger when an encoder ran first); ratio is
+    // compressedSize / originalSize like compression_ratio in the other CSVs.
+    static class LevelResult {
+        String encoder;
+        String algorithm;
+        String family;
+        int level;
+        String strategy;
+        String target;
+        int rows;
+        int originalSize;
+        int inputSize;
+        int compressedSize;
+        double ratio;
+        double compressMBps;
+        double decompressMBps;
+        // No other setting on the same input has both a lower ratio and faster compression
+        boolean paretoOptimal;
+        
+        LevelResult(String encoder, LevelSetting setting, String target, int rows, int originalSize, int inputSize,
+                    int compressedSize, double compressMBps, double decompressMBps) {
+            this.encoder = encoder;
+            this.algorithm = setting.compressor.getName();
+            this.family = setting.family;
+            this.level = setting.level;
+            this.strategy = setting.strategy;
+            this.target = target;
+            this.rows = rows;
+            this.originalSize = originalSize;
+            this.inputSize = inputSize;
+            this.compressedSize = compressedSize;
+            this.ratio = (double) compressedSize / originalSize;
+            this.compressMBps = compressMBps;
+            this.decompressMBps = decompressMBps;
+        }
+    }
+    
     public static void main(String[] args) throws IOException {
         int seed = 42;
         if (args.length > 0) {
@@ -177,13 +686,7 @@ public class CompressionBenchmarkNew {
         byte[] combinedBytes = combineBytes(timestampsBytes, valuesBytes);
         
         // Create compressors
-        List<Compressor> compressors = Arrays.asList(
-            new IdentityCompressor(),
-            new GZIPCompressor(),
-            new SnappyCompressor(),
-            new LZ4Compressor(),
-            new ZlibCompressor()
-        );
+        List<Compressor> compressors = compressors();
         
         List<BenchmarkResult> results = new ArrayList<>();
         
@@ -200,45 +703,273 @@ public class CompressionBenchmarkNew {
         }
         
         // Write results to CSV
-        writeResultsToCSV(results, "/Users/hossein/Desktop/db-encoding/compression_res.csv");
+        writeResultsToCSV(results, ResultFiles.path("compression_res.csv"));
         
         System.out.println("Compression benchmark completed. Results written to compression_res.csv");
+        printAllocations(results);
+        
+        // Zlib context pooling: the same calls with per-thread Deflater/Inflater reuse and with a
+        // fresh context per call. ZLIB_DICT presets the matching column of the next batch.
+        BatchData.Batch nextBatch = BatchData.generateDeterministic(seed + 1);
+        byte[] dictionary = combineBytes(longsToBytes(nextBatch.timestamps), floatsToBytes(nextBatch.values));
+        List<Compressor> zlibCompressors = Arrays.asList(
+            new GZIPCompressor(),
+            new ZlibCompressor(),
+            new ZlibCompressor(dictionary)
+        );
+        List<PoolingResult> poolingResults = new ArrayList<>();
+        for (Compressor compressor : zlibCompressors) {
+            for (boolean pooled : new boolean[] {false, true}) {
+                poolingResults.add(benchmarkPooling(compressor, "timestamps", timestampsBytes, pooled));
+                poolingResults.add(benchmarkPooling(compressor, "values", valuesBytes, pooled));
+                poolingResults.add(benchmarkPooling(compressor, "combined", combinedBytes, pooled));
+            }
+        }
+        writePoolingResultsToCSV(poolingResults, ResultFiles.path("zlib_pool_res.csv"));
+        
+        System.out.println("Zlib context pooling, ns per call (fresh -> pooled), zlib_pool_res.csv:");
+        for (int i = 0; i + 3 < poolingResults.size(); i += 6) {
+            for (int j = i; j < i + 3; j++) {
+                PoolingResult fresh = poolingResults.get(j);
+                PoolingResult pooled = poolingResults.get(j + 3);
+                System.out.printf("  %-10s %-10s compress %7d -> %7d   decompress %7d -> %7d%n",
+                    fresh.algorithm, fresh.target, fresh.compressNsPerCall, pooled.compressNsPerCall,
+                    fresh.decompressNsPerCall, pooled.decompressNsPerCall);
+            }
+        }
+        
+        // Level and strategy sweep on a single batch and on a bulk column
+        List<LevelResult> levelResults = new ArrayList<>();
+        for (int rows : SWEEP_ROWS) {
+            BatchData.Batch sized = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+            byte[] timestamps = longsToBytes(sized.timestamps);
+            byte[] values = floatsToBytes(sized.values);
+            for (LevelSetting setting : levelSweep()) {
+                levelResults.add(benchmarkLevel(setting, "NONE", "timestamps", rows, timestamps.length, timestamps));
+                levelResults.add(benchmarkLevel(setting, "NONE", "values", rows, values.length, values));
+            }
+        }
+        markParetoFront(levelResults);
+        writeLevelResultsToCSV(levelResults, ResultFiles.path("level_sweep_res.csv"));
+        printLevelSweep(levelResults, "level_sweep_res.csv");
     }
     
-    static BenchmarkResult benchmark(Compressor compressor, String target, byte[] data) {
+    // Every compressor the harness runs at its default settings, fresh instances
+    static List<Compressor> compressors() {
+        return Arrays.asList(
+            new IdentityCompressor(),
+            new GZIPCompressor(),
+            new SnappyCompressor(),
+            new LZ4Compressor(),
+            new ZlibCompressor(),
+            new HashChainLZCompressor(HashChainLZ.Level.FAST),
+            new HashChainLZCompressor(HashChainLZ.Level.NORMAL),
+            new HashChainLZCompressor(HashChainLZ.Level.HIGH)
+        );
+    }
+    
+    static final int[] SWEEP_ROWS = {BatchData.SAMPLE_COUNT, 10000};
+    static final int[] LZ4_HC_LEVELS = {1, 3, 6, 9, 12, LZ4Compressor.MAX_HC_LEVEL};
+    static final int[] DEFLATE_STRATEGIES = {Deflater.DEFAULT_STRATEGY, Deflater.FILTERED, Deflater.HUFFMAN_ONLY};
+    // Target length of each timed loop. The call count comes from one timed round trip, so
+    // batch-sized inputs get enough calls to time and LZ4 HC 17 on a bulk column does not
+    // take minutes.
+    static final long SWEEP_LOOP_NS = 100_000_000L;
+    static final int SWEEP_MAX_RUNS = 2000;
+    
+    // Every setting the compressors expose: ZLIB at Deflater levels 1-9 under each strategy,
+    // GZIP (the same deflate stream in another wrapper) at levels 1-9, LZ4 fast and HC, and
+    // the HashChainLZ search levels. Snappy has no knob and runs once as the reference.
+    static List<LevelSetting> levelSweep() {
+        List<LevelSetting> settings = new ArrayList<>();
+        for (int strategy : DEFLATE_STRATEGIES) {
+            for (int level = 1; level <= 9; level++) {
+                settings.add(new LevelSetting("ZLIB", level, strategyName(strategy), new ZlibCompressor(level, strategy)));
+            }
+        }
+        for (int level = 1; level <= 9; level++) {
+            settings.add(new LevelSetting("GZIP", level, strategyName(Deflater.DEFAULT_STRATEGY),
+                new GZIPCompressor(level, Deflater.DEFAULT_STRATEGY)));
+        }
+        settings.add(new LevelSetting("LZ4", 0, "-", new LZ4Compressor()));
+        for (int level : LZ4_HC_LEVELS) {
+            settings.add(new LevelSetting("LZ4", level, "-", new LZ4Compressor(level)));
+        }
+        for (HashChainLZ.Level level : HashChainLZ.Level.values()) {
+            settings.add(new LevelSetting("LZ", level.ordinal() + 1, "-", new HashChainLZCompressor(level)));
+        }
+        settings.add(new LevelSetting("SNAPPY", -1, "-", new SnappyCompressor()));
+        return settings;
+    }
+    
+    static LevelResult benchmarkLevel(LevelSetting setting, String encoder, String target, int rows, int originalSize,
+                                      byte[] data) {
+        Compressor compressor = setting.compressor;
         try {
-            // Warmup
-            for (int i = 0; i < 10; i++) {
-                byte[] compressed = compressor.compress(data);
-                compressor.decompress(compressed);
+            long probeStart = System.nanoTime();
+            compressor.decompress(compressor.compress(data));
+            long probeNs = Math.max(1, System.nanoTime() - probeStart);
+            int runs = (int) Math.max(3, Math.min(SWEEP_MAX_RUNS, SWEEP_LOOP_NS / probeNs));
+            for (int i = 0; i < runs; i++) {
+                compressor.decompress(compressor.compress(data));
             }
             
-            // Measure compress time
+            byte[] compressed = null;
             long compressStart = System.nanoTime();
-            byte[] compressed = compressor.compress(data);
+            for (int i = 0; i < runs; i++) {
+                compressed = compressor.compress(data);
+            }
             long compressEnd = System.nanoTime();
             
-            // Measure decompress time
+            byte[] decompressed = null;
             long decompressStart = System.nanoTime();
-            byte[] decompressed = compressor.decompress(compressed);
+            for (int i = 0; i < runs; i++) {
+                decompressed = compressor.decompress(compressed);
+            }
             long decompressEnd = System.nanoTime();
             
+            if (!Arrays.equals(data, decompressed)) {
+                System.err.println("WARNING: " + compressor.getName() + " on " + target + " failed verification!");
+            }
+            
+            long bytes = (long) data.length * runs;
+            return new LevelResult(encoder, setting, target, rows, originalSize, data.length, compressed.length,
+                mbPerSecond(bytes, compressEnd - compressStart), mbPerSecond(bytes, decompressEnd - decompressStart));
+        } catch (Exception e) {
+            System.err.println("ERROR: " + compressor.getName() + " on " + target + " threw exception: " + e.getMessage());
+            return new LevelResult(encoder, setting, target, rows, originalSize, data.length, data.length, 0, 0);
+        }
+    }
+    
+    static double mbPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+    
+    // Flags the ratio / compression-speed Pareto front within each encoder, target and row count
+    static void markParetoFront(List<LevelResult> results) {
+        for (LevelResult r : results) {
+            r.paretoOptimal = true;
+            for (LevelResult other : results) {
+                if (other == r || !other.encoder.equals(r.encoder) || !other.target.equals(r.target) || other.rows != r.rows) {
+                    continue;
+                }
+                if (other.ratio <= r.ratio && other.compressMBps >= r.compressMBps
+                        && (other.ratio < r.ratio || other.compressMBps > r.compressMBps)) {
+                    r.paretoOptimal = false;
+                    break;
+                }
+            }
+        }
+    }
+    
+    // The Pareto-optimal settings of each input, fastest first
+    static void printLevelSweep(List<LevelResult> results, String csvName) {
+        System.out.println("Level sweep, Pareto-optimal settings by compression speed (all settings in " + csvName + "):");
+        Map<String, List<LevelResult>> fronts = new LinkedHashMap<>();
+        for (LevelResult r : results) {
+            if (r.paretoOptimal) {
+                fronts.computeIfAbsent(r.encoder + " " + r.target + " " + r.rows, k -> new ArrayList<>()).add(r);
+            }
+        }
+        for (List<LevelResult> front : fronts.values()) {
+            front.sort((a, b) -> Double.compare(b.compressMBps, a.compressMBps));
+            LevelResult first = front.get(0);
+            System.out.printf("  %s %s, %d rows:%n", first.encoder, first.target, first.rows);
+            for (LevelResult r : front) {
+                System.out.printf("    %-22s ratio %7.3f  compress %8.1f MB/s  decompress %8.1f MB/s%n",
+                    r.algorithm, r.ratio, r.compressMBps, r.decompressMBps);
+            }
+        }
+    }
+    
+    // Calls averaged per pooling measurement, after as many warmup round trips
+    static final int POOLING_RUNS = 2000;
+    
+    static PoolingResult benchmarkPooling(Compressor compressor, String target, byte[] data, boolean pooled) throws IOException {
+        boolean wasEnabled = ZlibContexts.isEnabled();
+        ZlibContexts.setEnabled(pooled);
+        try {
+            for (int i = 0; i < POOLING_RUNS; i++) {
+                compressor.decompress(compressor.compress(data));
+            }
+            
+            byte[] compressed = null;
+            long compressStart = System.nanoTime();
+            for (int i = 0; i < POOLING_RUNS; i++) {
+                compressed = compressor.compress(data);
+            }
+            long compressEnd = System.nanoTime();
+            
+            byte[] decompressed = null;
+            long decompressStart = System.nanoTime();
+            for (int i = 0; i < POOLING_RUNS; i++) {
+                decompressed = compressor.decompress(compressed);
+            }
+            long decompressEnd = System.nanoTime();
+            
+            if (!Arrays.equals(data, decompressed)) {
+                System.err.println("WARNING: " + compressor.getName() + " on " + target + " failed verification!");
+            }
+            
+            return new PoolingResult(compressor.getName(), target, pooled,
+                (compressEnd - compressStart) / POOLING_RUNS, (decompressEnd - decompressStart) / POOLING_RUNS);
+        } finally {
+            ZlibContexts.setEnabled(wasEnabled);
+        }
+    }
+    
+    static void printAllocations(List<BenchmarkResult> results) {
+        System.out.println("Allocated bytes per compress+decompress (pooled / unpooled):");
+        for (BenchmarkResult r : results) {
+            System.out.printf("  %-10s %-10s %10d / %d%n", r.algorithm, r.target, r.pooledBytesPerOp, r.unpooledBytesPerOp);
+        }
+    }
+    
+    // Round trips averaged for the allocation figures
+    static final int ALLOCATION_RUNS = 50;
+    
+    static BenchmarkResult benchmark(Compressor compressor, String target, byte[] data) {
+        try {
+            long[] gcBefore = AllocationMeter.gcTotals();
+            
+            // Measure compress latency
+            LatencyHarness.Stats compress = LatencyHarness.measure(() -> compressor.compress(data));
+            byte[] compressed = compressor.compress(data);
+            
+            // Measure decompress latency
+            LatencyHarness.Stats decompress = LatencyHarness.measure(() -> compressor.decompress(compressed));
+            byte[] decompressed = compressor.decompress(compressed);
+            
             // Verify correctness
             if (!Arrays.equals(data, decompressed)) {
                 System.err.println("WARNING: " + compressor.getName() + " on " + target + " failed verification!");
             }
             
-            return new BenchmarkResult(
+            BenchmarkResult result = new BenchmarkResult(
                 compressor.getName(),
                 target,
-                compressEnd - compressStart,
-                decompressEnd - decompressStart,
+                compress,
+                decompress,
                 data.length,
                 compressed.length
             );
-        } catch (IOException e) {
+            result.compressBytesPerOp = AllocationMeter.bytesPerOp(() -> compressor.compress(data), ALLOCATION_RUNS);
+            result.decompressBytesPerOp = AllocationMeter.bytesPerOp(() -> compressor.decompress(compressed),
+                ALLOCATION_RUNS);
+            long[] allocated = AllocationMeter.bytesPerOpPooledAndUnpooled(
+                () -> compressor.decompress(compressor.compress(data)), ALLOCATION_RUNS);
+            result.pooledBytesPerOp = allocated[0];
+            result.unpooledBytesPerOp = allocated[1];
+            long[] gcAfter = AllocationMeter.gcTotals();
+            result.gcCount = gcAfter[0] - gcBefore[0];
+            result.gcTimeMs = gcAfter[1] - gcBefore[1];
+            result.scratchBytes = AllocationMeter.scratchBytes(compressor);
+            return result;
+        } catch (Exception e) {
             System.err.println("ERROR: " + compressor.getName() + " on " + target + " threw exception: " + e.getMessage());
-            return new BenchmarkResult(compressor.getName(), target, 0, 0, data.length, data.length);
+            return new BenchmarkResult(compressor.getName(), target, LatencyHarness.Stats.EMPTY,
+                LatencyHarness.Stats.EMPTY, data.length, data.length);
         }
     }
     
@@ -267,13 +998,39 @@ public class CompressionBenchmarkNew {
         return combined;
     }
     
+    static void writePoolingResultsToCSV(List<PoolingResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("algorithm,target,pooled,compress_ns_per_call,decompress_ns_per_call");
+            for (PoolingResult r : results) {
+                writer.printf("%s,%s,%b,%d,%d%n",
+                    r.algorithm, r.target, r.pooled, r.compressNsPerCall, r.decompressNsPerCall);
+            }
+        }
+    }
+    
+    static void writeLevelResultsToCSV(List<LevelResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("encoder,algorithm,family,level,strategy,target,rows,original_size_bytes,input_size_bytes,compressed_size_bytes,compression_ratio,compress_mb_per_s,decompress_mb_per_s,pareto_optimal");
+            for (LevelResult r : results) {
+                writer.printf("%s,%s,%s,%d,%s,%s,%d,%d,%d,%d,%.4f,%.1f,%.1f,%b%n",
+                    r.encoder, r.algorithm, r.family, r.level, r.strategy, r.target, r.rows, r.originalSize,
+                    r.inputSize, r.compressedSize, r.ratio, r.compressMBps, r.decompressMBps, r.paretoOptimal);
+            }
+        }
+    }
+    
     static void writeResultsToCSV(List<BenchmarkResult> results, String filename) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("algorithm,target,compress_time_ns,decompress_time_ns,original_size_bytes,compressed_size_bytes,compression_ratio");
+            writer.println("algorithm,target," + LatencyHarness.Stats.csvHeader("compress") + ","
+                + LatencyHarness.Stats.csvHeader("decompress") + ",original_size_bytes,compressed_size_bytes,compression_ratio,"
+                + "compress_alloc_bytes_per_op,decompress_alloc_bytes_per_op,pooled_alloc_bytes_per_roundtrip,"
+                + "unpooled_alloc_bytes_per_roundtrip,gc_count,gc_time_ms,peak_scratch_bytes");
             for (BenchmarkResult r : results) {
-                writer.printf("%s,%s,%d,%d,%d,%d,%.4f%n",
-                    r.algorithm, r.target, r.compressTimeNs, r.decompressTimeNs,
-                    r.originalSize, r.compressedSize, r.ratio);
+                writer.printf("%s,%s,%s,%s,%d,%d,%.4f,%d,%d,%d,%d,%d,%d,%d%n",
+                    r.algorithm, r.target, r.compress.toCsv(), r.decompress.toCsv(),
+                    r.originalSize, r.compressedSize, r.ratio,
+                    r.compressBytesPerOp, r.decompressBytesPerOp, r.pooledBytesPerOp, r.unpooledBytesPerOp,
+                    r.gcCount, r.gcTimeMs, r.scratchBytes);
             }
         }
     }
@@ -0,0 +1,39 @@
+// Bytes moved between buffers without being transformed (Arrays.copyOf, arraycopy,
+// ByteBuffer.put of a whole buffer), per thread. The codecs report their copy sites here;
+// encoding or compressing into a buffer is output, not a copy. Counting is off unless a
+// benchmark turns it on, so the hot paths pay one volatile read.
+public final class CopyMeter {
+    private static volatile boolean enabled;
+    private static final ThreadLocal<long[]> COPIED = ThreadLocal.withInitial(() -> new long[1]);
+
+    private CopyMeter() {
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static void count(int bytes) {
+        if (enabled) COPIED.get()[0] += bytes;
+    }
+
+    // Running total for the current thread
+    public static long threadCopiedBytes() {
+        return COPIED.get()[0];
+    }
+
+    // Average bytes copied per call of op over iterations calls
+    static long bytesPerOp(AllocationMeter.Operation op, int iterations) throws Exception {
+        boolean wasEnabled = enabled;
+        enabled = true;
+        try {
+            long before = threadCopiedBytes();
+            for (int i = 0; i < iterations; i++) {
+                op.run();
+            }
+            return (threadCopiedBytes() - before) / iterations;
+        } finally {
+            enabled = wasEnabled;
+        }
+    }
+}
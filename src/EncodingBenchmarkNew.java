@@ -11,110 +11,320 @@ public class EncodingBenchmarkNew {
         String getName();
     }
     
-    // 1. IDENTITY (baseline)
-    static class IdentityEncoder implements Encoder {
-        public String getName() { return "IDENTITY"; }
-        public byte[] encode(byte[] input) { return input.clone(); }
-        public byte[] decode(byte[] encoded) { return encoded.clone(); }
+    // Typed columnar codec interface: primitive values in, caller-supplied buffer out.
+    // Every stream starts with the value count as an unsigned varint, so callers can
+    // size their destination array with encodedCount() before decoding.
+    interface TypedEncoder {
+        String getName();
+        int maxEncodedSize(int count);
+        void encodeLongs(long[] values, int offset, int length, ByteBuffer out);
+        void encodeInts(int[] values, int offset, int length, ByteBuffer out);
+        void encodeFloats(float[] values, int offset, int length, ByteBuffer out);
+        void encodeDoubles(double[] values, int offset, int length, ByteBuffer out);
+        int decodeLongs(ByteBuffer in, long[] dest, int offset);
+        int decodeInts(ByteBuffer in, int[] dest, int offset);
+        int decodeFloats(ByteBuffer in, float[] dest, int offset);
+        int decodeDoubles(ByteBuffer in, double[] dest, int offset);
     }
     
-    // 2. TS_2DIFF (Delta-delta encoding with varint)
-    static class TS2DIFFEncoder implements Encoder {
-        public String getName() { return "TS_2DIFF"; }
+    static int encodedCount(ByteBuffer in) {
+        return getUnsignedVarInt(in.duplicate());
+    }
+    
+    // Base class for the typed codecs. Subclasses implement the 64-bit body; the count
+    // header, int widening, float/double bit casts and the legacy byte[] adapter are
+    // shared. Scratch arrays are reused across calls, so instances are not thread-safe.
+    abstract static class TypedCodec implements Encoder, TypedEncoder {
+        private long[] longScratch = new long[0];
+        private int[] intScratch = new int[0];
+        
+        abstract void writeLongs(long[] values, int offset, int length, ByteBuffer out);
+        abstract void readLongs(ByteBuffer in, long[] dest, int offset, int count);
+        
+        void writeInts(int[] values, int offset, int length, ByteBuffer out) {
+            long[] words = longScratch(length);
+            for (int i = 0; i < length; i++) {
+                words[i] = values[offset + i];
+            }
+            writeLongs(words, 0, length, out);
+        }
+        
+        void readInts(ByteBuffer in, int[] dest, int offset, int count) {
+            long[] words = longScratch(count);
+            readLongs(in, words, 0, count);
+            for (int i = 0; i < count; i++) {
+                dest[offset + i] = (int) words[i];
+            }
+        }
+        
+        // Word width used when the legacy byte[] path slices its input
+        int wordBytes() { return 8; }
+        
+        public int maxEncodedSize(int count) { return 64 + count * 16; }
+        
+        long[] longScratch(int length) {
+            if (longScratch.length < length) longScratch = new long[length];
+            return longScratch;
+        }
+        
+        int[] intScratch(int length) {
+            if (intScratch.length < length) intScratch = new int[length];
+            return intScratch;
+        }
+        
+        public void encodeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            putUnsignedVarInt(out, length);
+            writeLongs(values, offset, length, out);
+        }
+        
+        public void encodeInts(int[] values, int offset, int length, ByteBuffer out) {
+            putUnsignedVarInt(out, length);
+            writeInts(values, offset, length, out);
+        }
+        
+        public void encodeFloats(float[] values, int offset, int length, ByteBuffer out) {
+            int[] bits = intScratch(length);
+            for (int i = 0; i < length; i++) {
+                bits[i] = Float.floatToRawIntBits(values[offset + i]);
+            }
+            putUnsignedVarInt(out, length);
+            writeInts(bits, 0, length, out);
+        }
+        
+        public void encodeDoubles(double[] values, int offset, int length, ByteBuffer out) {
+            long[] bits = longScratch(length);
+            for (int i = 0; i < length; i++) {
+                bits[i] = Double.doubleToRawLongBits(values[offset + i]);
+            }
+            putUnsignedVarInt(out, length);
+            writeLongs(bits, 0, length, out);
+        }
+        
+        public int decodeLongs(ByteBuffer in, long[] dest, int offset) {
+            int count = getUnsignedVarInt(in);
+            readLongs(in, dest, offset, count);
+            return count;
+        }
         
+        public int decodeInts(ByteBuffer in, int[] dest, int offset) {
+            int count = getUnsignedVarInt(in);
+            readInts(in, dest, offset, count);
+            return count;
+        }
+        
+        public int decodeFloats(ByteBuffer in, float[] dest, int offset) {
+            int count = getUnsignedVarInt(in);
+            int[] bits = intScratch(count);
+            readInts(in, bits, 0, count);
+            for (int i = 0; i < count; i++) {
+                dest[offset + i] = Float.intBitsToFloat(bits[i]);
+            }
+            return count;
+        }
+        
+        public int decodeDoubles(ByteBuffer in, double[] dest, int offset) {
+            int count = getUnsignedVarInt(in);
+            long[] bits = longScratch(count);
+            readLongs(in, bits, 0, count);
+            for (int i = 0; i < count; i++) {
+                dest[offset + i] = Double.longBitsToDouble(bits[i]);
+            }
+            return count;
+        }
+        
+        // Legacy byte[] path: slice big-endian words, run the typed body, keep the
+        // trailing partial word verbatim after the payload. The worst-case output buffer
+        // comes from BufferPool, so only the exact-size result is allocated.
         public byte[] encode(byte[] input) {
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 8;
-            if (count < 2) return input.clone();
-            
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            long first = bb.getLong();
-            long second = bb.getLong();
-            writeVarLong(out, first);
-            long prevDelta = second - first;
-            writeVarLong(out, prevDelta);
-            
-            for (int i = 2; i < count; i++) {
-                long curr = bb.getLong();
-                long delta = curr - (second + prevDelta);
-                writeVarLong(out, delta);
-                prevDelta = curr - second;
-                second = curr;
+            int wordBytes = wordBytes();
+            int count = input.length / wordBytes;
+            ByteBuffer in = ByteBuffer.wrap(input);
+            BufferPool pool = BufferPool.local();
+            ByteBuffer out = pool.acquire(maxEncodedSize(count) + input.length % wordBytes);
+            try {
+                encodeWords(in, count, out);
+                CopyMeter.count(out.position());
+                return Arrays.copyOf(out.array(), out.position());
+            } finally {
+                pool.release(out);
             }
-            return out.toByteArray();
         }
         
-        public byte[] decode(byte[] encoded) {
-            ByteArrayInputStream in = new ByteArrayInputStream(encoded);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ByteBuffer bb = ByteBuffer.allocate(8);
-            
-            long first = readVarLong(in);
-            bb.putLong(first);
-            out.write(bb.array(), 0, 8);
-            
-            if (in.available() == 0) return out.toByteArray();
-            
-            long prevDelta = readVarLong(in);
-            long second = first + prevDelta;
-            bb.clear();
-            bb.putLong(second);
-            out.write(bb.array(), 0, 8);
-            
-            while (in.available() > 0) {
-                long deltaDelta = readVarLong(in);
-                long curr = second + prevDelta + deltaDelta;
-                bb.clear();
-                bb.putLong(curr);
-                out.write(bb.array(), 0, 8);
-                prevDelta = curr - second;
-                second = curr;
+        private void encodeWords(ByteBuffer in, int count, ByteBuffer out) {
+            int wordBytes = wordBytes();
+            putUnsignedVarInt(out, count);
+            if (wordBytes == 8) {
+                long[] words = longScratch(count);
+                for (int i = 0; i < count; i++) {
+                    words[i] = in.getLong();
+                }
+                writeLongs(words, 0, count, out);
+            } else {
+                int[] words = intScratch(count);
+                for (int i = 0; i < count; i++) {
+                    words[i] = in.getInt();
+                }
+                writeInts(words, 0, count, out);
             }
-            return out.toByteArray();
+            CopyMeter.count(in.remaining());
+            out.put(in);
+        }
+        
+        // Fused-stage entry points: encode count words of input at offset plus tail verbatim
+        // bytes straight into out, reading the caller's array in place
+        void encodeTo(byte[] input, int offset, int count, int tail, ByteBuffer out) {
+            encodeWords(ByteBuffer.wrap(input, offset, count * wordBytes() + tail), count, out);
         }
         
-        private void writeVarLong(ByteArrayOutputStream out, long value) {
-            long v = (value << 1) ^ (value >> 63);
-            while ((v & ~0x7FL) != 0) {
-                out.write((int)((v & 0x7F) | 0x80));
-                v >>>= 7;
+        // Decodes one stream from in into out at outOffset as big-endian words followed by
+        // the verbatim tail; returns the number of bytes written
+        int decodeTo(ByteBuffer in, byte[] out, int outOffset) {
+            int wordBytes = wordBytes();
+            int count = getUnsignedVarInt(in);
+            ByteBuffer dst = ByteBuffer.wrap(out, outOffset, out.length - outOffset);
+            if (wordBytes == 8) {
+                long[] words = longScratch(count);
+                readLongs(in, words, 0, count);
+                for (int i = 0; i < count; i++) {
+                    dst.putLong(words[i]);
+                }
+            } else {
+                int[] words = intScratch(count);
+                readInts(in, words, 0, count);
+                for (int i = 0; i < count; i++) {
+                    dst.putInt(words[i]);
+                }
             }
-            out.write((int)(v & 0x7F));
+            int tail = in.remaining();
+            CopyMeter.count(tail);
+            dst.put(in);
+            return count * wordBytes + tail;
         }
         
-        private long readVarLong(ByteArrayInputStream in) {
-            long result = 0;
-            int shift = 0;
-            int b;
-            do {
-                b = in.read();
-                if (b == -1) break;
-                result |= (long)(b & 0x7F) << shift;
-                shift += 7;
-            } while ((b & 0x80) != 0);
-            return (result >>> 1) ^ -(result & 1);
+        public byte[] decode(byte[] encoded) {
+            int wordBytes = wordBytes();
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            int count = getUnsignedVarInt(in);
+            ByteBuffer out;
+            if (wordBytes == 8) {
+                long[] words = longScratch(count);
+                readLongs(in, words, 0, count);
+                out = ByteBuffer.allocate(count * 8 + in.remaining());
+                for (int i = 0; i < count; i++) {
+                    out.putLong(words[i]);
+                }
+            } else {
+                int[] words = intScratch(count);
+                readInts(in, words, 0, count);
+                out = ByteBuffer.allocate(count * 4 + in.remaining());
+                for (int i = 0; i < count; i++) {
+                    out.putInt(words[i]);
+                }
+            }
+            CopyMeter.count(in.remaining());
+            out.put(in);
+            return out.array();
         }
     }
     
-    // 3. GORILLA (XOR-based for floats)
-    static class GorillaEncoder implements Encoder {
-        public String getName() { return "GORILLA"; }
+    // 1. IDENTITY (baseline)
+    static class IdentityEncoder extends TypedCodec {
+        public String getName() { return "IDENTITY"; }
         
         public byte[] encode(byte[] input) {
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 4;
-            if (count == 0) return new byte[0];
-            
-            BitOutputStream out = new BitOutputStream();
-            out.writeInt(count, 32);
+            CopyMeter.count(input.length);
+            return input.clone();
+        }
+        
+        public byte[] decode(byte[] encoded) {
+            CopyMeter.count(encoded.length);
+            return encoded.clone();
+        }
+        
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            out.asLongBuffer().put(values, offset, length);
+            out.position(out.position() + length * 8);
+        }
+        
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            in.asLongBuffer().get(dest, offset, count);
+            in.position(in.position() + count * 8);
+        }
+        
+        void writeInts(int[] values, int offset, int length, ByteBuffer out) {
+            out.asIntBuffer().put(values, offset, length);
+            out.position(out.position() + length * 4);
+        }
+        
+        void readInts(ByteBuffer in, int[] dest, int offset, int count) {
+            in.asIntBuffer().get(dest, offset, count);
+            in.position(in.position() + count * 4);
+        }
+    }
+    
+    // 2. TS_2DIFF (Delta-delta encoding with varint)
+    static class TS2DIFFEncoder extends TypedCodec {
+        public String getName() { return "TS_2DIFF"; }
+        
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            if (length == 0) return;
+            long prev = values[offset];
+            putVarLong(out, prev);
+            long prevDelta = 0;
+            for (int i = 1; i < length; i++) {
+                long curr = values[offset + i];
+                long delta = curr - prev;
+                putVarLong(out, delta - prevDelta);
+                prevDelta = delta;
+                prev = curr;
+            }
+        }
+        
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            if (count == 0) return;
+            long prev = getVarLong(in);
+            dest[offset] = prev;
+            long prevDelta = 0;
+            for (int i = 1; i < count; i++) {
+                prevDelta += getVarLong(in);
+                prev += prevDelta;
+                dest[offset + i] = prev;
+            }
+        }
+    }
+    
+    // 3. GORILLA (XOR-based for floats). Native 32-bit (float/int) and 64-bit (double/long)
+    // bodies; wordBytes only picks how the byte[] path slices its input.
+    static class GorillaEncoder extends TypedCodec {
+        private final int wordBytes;
+        
+        GorillaEncoder() { this(4); }
+        
+        GorillaEncoder(int wordBytes) {
+            if (wordBytes != 4 && wordBytes != 8) {
+                throw new IllegalArgumentException("Word width must be 4 or 8 bytes: " + wordBytes);
+            }
+            this.wordBytes = wordBytes;
+        }
+        
+        public String getName() { return wordBytes == 4 ? "GORILLA" : "GORILLA_64"; }
+        
+        int wordBytes() { return wordBytes; }
+        
+        // Worst case per 64-bit value: 2 control bits + 12-bit header + 64 payload bits
+        public int maxEncodedSize(int count) { return 64 + count * 10; }
+        
+        void writeInts(int[] values, int offset, int length, ByteBuffer buffer) {
+            if (length == 0) return;
+            BitOutputStream out = new BitOutputStream(buffer);
             
-            int prevBits = bb.getInt();
+            int prevBits = values[offset];
             out.writeInt(prevBits, 32);
             int prevLeadingZeros = 32;
             int prevTrailingZeros = 32;
             
-            for (int i = 1; i < count; i++) {
-                int currBits = bb.getInt();
+            for (int i = 1; i < length; i++) {
+                int currBits = values[offset + i];
                 int xor = prevBits ^ currBits;
                 
                 if (xor == 0) {
@@ -140,39 +350,37 @@ public class EncodingBenchmarkNew {
                 }
                 prevBits = currBits;
             }
-            return out.toByteArray();
+            out.finish();
         }
         
-        public byte[] decode(byte[] encoded) {
-            BitInputStream in = new BitInputStream(encoded);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ByteBuffer bb = ByteBuffer.allocate(4);
+        void readInts(ByteBuffer buffer, int[] dest, int offset, int count) {
+            if (count == 0) return;
+            BitInputStream in = new BitInputStream(buffer);
             
-            int count = in.readInt(32);
             int prevBits = in.readInt(32);
-            bb.putInt(prevBits);
-            out.write(bb.array(), 0, 4);
+            dest[offset] = prevBits;
             
             int prevLeadingZeros = 32;
             int prevTrailingZeros = 32;
             
             for (int i = 1; i < count; i++) {
-                bb.clear();
-                int controlBit = in.readBit();
+                // '0' repeats the value, '10' reuses the previous window, '11' opens a new one
+                int control = (int) in.peek(2);
                 
-                if (controlBit == 0) {
-                    bb.putInt(prevBits);
+                if (control < 2) {
+                    in.skip(1);
                 } else {
+                    in.skip(2);
                     int xor;
-                    int typeBit = in.readBit();
                     
-                    if (typeBit == 0) {
+                    if (control == 2) {
                         int significantBits = 32 - prevLeadingZeros - prevTrailingZeros;
                         int significantValue = in.readInt(significantBits);
                         xor = significantValue << prevTrailingZeros;
                     } else {
-                        int leadingZeros = in.readInt(5);
-                        int significantBits = in.readInt(6);
+                        int header = in.readInt(11);
+                        int leadingZeros = header >>> 6;
+                        int significantBits = header & 0x3F;
                         int significantValue = in.readInt(significantBits);
                         int trailingZeros = 32 - leadingZeros - significantBits;
                         xor = significantValue << trailingZeros;
@@ -180,557 +388,1470 @@ public class EncodingBenchmarkNew {
                         prevTrailingZeros = trailingZeros;
                     }
                     prevBits = prevBits ^ xor;
-                    bb.putInt(prevBits);
                 }
-                out.write(bb.array(), 0, 4);
+                dest[offset + i] = prevBits;
             }
-            return out.toByteArray();
+            buffer.position(buffer.position() + in.bytesConsumed());
         }
-    }
-    
-    // 4. CHIMP (Improved GORILLA)
-    static class ChimpEncoder implements Encoder {
-        public String getName() { return "CHIMP"; }
         
-        public byte[] encode(byte[] input) {
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 4;
-            if (count == 0) return new byte[0];
+        // 64-bit layout: 6-bit leading zeros and 6-bit length, where a length of 64 is stored as 0
+        void writeLongs(long[] values, int offset, int length, ByteBuffer buffer) {
+            if (length == 0) return;
+            BitOutputStream out = new BitOutputStream(buffer);
             
-            BitOutputStream out = new BitOutputStream();
-            out.writeInt(count, 32);
+            long prevBits = values[offset];
+            out.writeLong(prevBits, 64);
+            int prevLeadingZeros = 64;
+            int prevTrailingZeros = 64;
             
-            int prevBits = bb.getInt();
-            out.writeInt(prevBits, 32);
-            int[] recentLeading = new int[128];
-            int[] recentTrailing = new int[128];
-            int recentIndex = 0;
-            
-            for (int i = 1; i < count; i++) {
-                int currBits = bb.getInt();
-                int xor = prevBits ^ currBits;
+            for (int i = 1; i < length; i++) {
+                long currBits = values[offset + i];
+                long xor = prevBits ^ currBits;
                 
                 if (xor == 0) {
                     out.writeBit(0);
                 } else {
                     out.writeBit(1);
-                    int leadingZeros = Integer.numberOfLeadingZeros(xor);
-                    int trailingZeros = Integer.numberOfTrailingZeros(xor);
+                    int leadingZeros = Long.numberOfLeadingZeros(xor);
+                    int trailingZeros = Long.numberOfTrailingZeros(xor);
+                    int significantBits = 64 - leadingZeros - trailingZeros;
                     
-                    // Check if matches recent pattern
-                    boolean matchFound = false;
-                    for (int j = 0; j < Math.min(recentIndex, 128); j++) {
-                        if (leadingZeros >= recentLeading[j] && trailingZeros >= recentTrailing[j]) {
-                            out.writeBit(0);
-                            out.writeInt(j, 7);
-                            int significantBits = 32 - recentLeading[j] - recentTrailing[j];
-                            out.writeInt(xor >>> recentTrailing[j], significantBits);
-                            matchFound = true;
-                            break;
-                        }
+                    if (leadingZeros >= prevLeadingZeros && trailingZeros >= prevTrailingZeros) {
+                        out.writeBit(0);
+                        int useBits = 64 - prevLeadingZeros - prevTrailingZeros;
+                        out.writeLong(xor >>> prevTrailingZeros, useBits);
+                    } else {
+                        out.writeBit(1);
+                        out.writeInt(leadingZeros, 6);
+                        out.writeInt(significantBits & 0x3F, 6);
+                        out.writeLong(xor >>> trailingZeros, significantBits);
+                        prevLeadingZeros = leadingZeros;
+                        prevTrailingZeros = trailingZeros;
                     }
+                }
+                prevBits = currBits;
+            }
+            out.finish();
+        }
+        
+        void readLongs(ByteBuffer buffer, long[] dest, int offset, int count) {
+            if (count == 0) return;
+            BitInputStream in = new BitInputStream(buffer);
+            
+            long prevBits = in.readLong(64);
+            dest[offset] = prevBits;
+            
+            int prevLeadingZeros = 64;
+            int prevTrailingZeros = 64;
+            
+            for (int i = 1; i < count; i++) {
+                int control = (int) in.peek(2);
+                
+                if (control < 2) {
+                    in.skip(1);
+                } else {
+                    in.skip(2);
+                    long xor;
                     
-                    if (!matchFound) {
-                        out.writeBit(1);
-                        out.writeInt(leadingZeros, 5);
-                        int significantBits = 32 - leadingZeros - trailingZeros;
-                        out.writeInt(significantBits, 6);
+                    if (control == 2) {
+                        int significantBits = 64 - prevLeadingZeros - prevTrailingZeros;
+                        xor = in.readLong(significantBits) << prevTrailingZeros;
+                    } else {
+                        int header = in.readInt(12);
+                        int leadingZeros = header >>> 6;
+                        int significantBits = header & 0x3F;
+                        if (significantBits == 0) significantBits = 64;
+                        int trailingZeros = 64 - leadingZeros - significantBits;
+                        xor = in.readLong(significantBits) << trailingZeros;
+                        prevLeadingZeros = leadingZeros;
+                        prevTrailingZeros = trailingZeros;
+                    }
+                    prevBits = prevBits ^ xor;
+                }
+                dest[offset + i] = prevBits;
+            }
+            buffer.position(buffer.position() + in.bytesConsumed());
+        }
+    }
+    
+    // 4. CHIMP / CHIMP128 (Liakos et al., VLDB 2022). Leading zeros are rounded down to
+    // one of 8 values and sent as a 3-bit code; XORs with enough trailing zeros send only
+    // their centre bits. CHIMP128 XORs against one of the last 128 values, found through
+    // a hash index keyed on the low-order bits, instead of always the previous one.
+    // Flags: 00 identical (+ ring index), 01 centre bits (+ ring index, lead, length),
+    // 10 previous value with the stored lead, 11 previous value with a new lead.
+    static class ChimpEncoder extends TypedCodec {
+        static final int[] LEADING_REPRESENTATION = {0, 8, 12, 16, 18, 20, 22, 24};
+        static final int[] LEADING_ROUND = new int[65];
+        static final int[] LEADING_CODE = new int[65];
+        static {
+            for (int lz = 0; lz <= 64; lz++) {
+                int code = 0;
+                while (code < 7 && LEADING_REPRESENTATION[code + 1] <= lz) code++;
+                LEADING_CODE[lz] = code;
+                LEADING_ROUND[lz] = LEADING_REPRESENTATION[code];
+            }
+        }
+        
+        private final int previousValues;
+        private final int previousValuesLog2;
+        private final int wordBytes;
+        private int[] storedInts = new int[0];
+        private long[] storedLongs = new long[0];
+        // Hash index: low bits of a value -> global position it was last seen at. Positions
+        // keep counting across streams, so entries older than streamStart are simply stale.
+        private int[] indices32;
+        private int[] indices64;
+        private int position = 0;
+        
+        ChimpEncoder() { this(1, 4); }
+        
+        ChimpEncoder(int previousValues) { this(previousValues, 4); }
+        
+        // wordBytes only picks how the byte[] path slices its input, as in GorillaEncoder
+        ChimpEncoder(int previousValues, int wordBytes) {
+            if (Integer.bitCount(previousValues) != 1) {
+                throw new IllegalArgumentException("previousValues must be a power of two: " + previousValues);
+            }
+            if (wordBytes != 4 && wordBytes != 8) {
+                throw new IllegalArgumentException("Word width must be 4 or 8 bytes: " + wordBytes);
+            }
+            this.previousValues = previousValues;
+            this.previousValuesLog2 = Integer.numberOfTrailingZeros(previousValues);
+            this.wordBytes = wordBytes;
+        }
+        
+        public String getName() {
+            String name = previousValues == 1 ? "CHIMP" : "CHIMP" + previousValues;
+            return wordBytes == 4 ? name : name + "_64";
+        }
+        
+        int wordBytes() { return wordBytes; }
+        
+        // Worst case per value: 2 flag bits + ring index + 3 lead bits + a full word
+        public int maxEncodedSize(int count) { return 64 + count * 10; }
+        
+        // Positions restart (with a cleared index) well before int overflow
+        private int streamStart(int length) {
+            if (position > Integer.MAX_VALUE - length - previousValues) {
+                position = 0;
+                if (indices32 != null) Arrays.fill(indices32, -previousValues - 1);
+                if (indices64 != null) Arrays.fill(indices64, -previousValues - 1);
+            }
+            int start = position;
+            position += length;
+            return start;
+        }
+        
+        private int[] newIndex(int threshold) {
+            int[] indices = new int[1 << (threshold + 1)];
+            Arrays.fill(indices, -previousValues - 1);
+            return indices;
+        }
+        
+        void writeInts(int[] values, int offset, int length, ByteBuffer buffer) {
+            if (length == 0) return;
+            int threshold = 5 + previousValuesLog2;
+            int lsbMask = (1 << (threshold + 1)) - 1;
+            if (previousValues > 1 && indices32 == null) indices32 = newIndex(threshold);
+            if (storedInts.length < previousValues) storedInts = new int[previousValues];
+            int[] indices = indices32;
+            int[] stored = storedInts;
+            int ringMask = previousValues - 1;
+            int start = streamStart(length);
+            BitOutputStream out = new BitOutputStream(buffer);
+            
+            int first = values[offset];
+            out.writeInt(first, 32);
+            stored[0] = first;
+            if (indices != null) indices[first & lsbMask] = start;
+            int storedLeadingZeros = 33;
+            
+            for (int i = 1; i < length; i++) {
+                int value = values[offset + i];
+                int previousIndex = (i - 1) & ringMask;
+                int xor = stored[previousIndex] ^ value;
+                int trailingZeros = 0;
+                if (indices != null) {
+                    int candidate = indices[value & lsbMask] - start;
+                    if (candidate >= 0 && i - candidate <= previousValues) {
+                        int candidateXor = stored[candidate & ringMask] ^ value;
+                        int candidateTrailing = Integer.numberOfTrailingZeros(candidateXor);
+                        if (candidateTrailing > threshold) {
+                            previousIndex = candidate & ringMask;
+                            xor = candidateXor;
+                            trailingZeros = candidateTrailing;
+                        }
+                    }
+                } else {
+                    trailingZeros = Integer.numberOfTrailingZeros(xor);
+                }
+                
+                if (xor == 0) {
+                    out.writeInt(previousIndex, 2 + previousValuesLog2);
+                    storedLeadingZeros = 33;
+                } else {
+                    int leadingZeros = Integer.numberOfLeadingZeros(xor);
+                    if (trailingZeros > threshold) {
+                        int significantBits = 32 - LEADING_ROUND[leadingZeros] - trailingZeros;
+                        out.writeInt(1, 2);
+                        out.writeInt(previousIndex, previousValuesLog2);
+                        out.writeInt(LEADING_CODE[leadingZeros], 3);
+                        out.writeInt(significantBits, 5);
                         out.writeInt(xor >>> trailingZeros, significantBits);
-                        
-                        recentLeading[recentIndex % 128] = leadingZeros;
-                        recentTrailing[recentIndex % 128] = trailingZeros;
-                        recentIndex++;
+                        storedLeadingZeros = 33;
+                    } else if (LEADING_ROUND[leadingZeros] == storedLeadingZeros) {
+                        out.writeInt(2, 2);
+                        out.writeInt(xor, 32 - storedLeadingZeros);
+                    } else {
+                        storedLeadingZeros = LEADING_ROUND[leadingZeros];
+                        out.writeInt(3, 2);
+                        out.writeInt(LEADING_CODE[leadingZeros], 3);
+                        out.writeInt(xor, 32 - storedLeadingZeros);
                     }
                 }
-                prevBits = currBits;
+                stored[i & ringMask] = value;
+                if (indices != null) indices[value & lsbMask] = start + i;
             }
-            return out.toByteArray();
+            out.finish();
         }
         
-        public byte[] decode(byte[] encoded) {
-            // Simplified decode - in production would track recent patterns
-            return new GorillaEncoder().decode(encoded);
+        void readInts(ByteBuffer buffer, int[] dest, int offset, int count) {
+            if (count == 0) return;
+            if (storedInts.length < previousValues) storedInts = new int[previousValues];
+            int[] stored = storedInts;
+            int ringMask = previousValues - 1;
+            BitInputStream in = new BitInputStream(buffer);
+            
+            int value = in.readInt(32);
+            dest[offset] = value;
+            stored[0] = value;
+            int storedLeadingZeros = 33;
+            
+            for (int i = 1; i < count; i++) {
+                int previous = stored[(i - 1) & ringMask];
+                switch (in.readInt(2)) {
+                    case 0:
+                        value = stored[in.readInt(previousValuesLog2)];
+                        storedLeadingZeros = 33;
+                        break;
+                    case 1: {
+                        int reference = stored[in.readInt(previousValuesLog2)];
+                        int leadingZeros = LEADING_REPRESENTATION[in.readInt(3)];
+                        int significantBits = in.readInt(5);
+                        int trailingZeros = 32 - leadingZeros - significantBits;
+                        value = reference ^ (in.readInt(significantBits) << trailingZeros);
+                        storedLeadingZeros = 33;
+                        break;
+                    }
+                    case 2:
+                        value = previous ^ in.readInt(32 - storedLeadingZeros);
+                        break;
+                    default:
+                        storedLeadingZeros = LEADING_REPRESENTATION[in.readInt(3)];
+                        value = previous ^ in.readInt(32 - storedLeadingZeros);
+                        break;
+                }
+                dest[offset + i] = value;
+                stored[i & ringMask] = value;
+            }
+            buffer.position(buffer.position() + in.bytesConsumed());
+        }
+        
+        void writeLongs(long[] values, int offset, int length, ByteBuffer buffer) {
+            if (length == 0) return;
+            int threshold = 6 + previousValuesLog2;
+            int lsbMask = (1 << (threshold + 1)) - 1;
+            if (previousValues > 1 && indices64 == null) indices64 = newIndex(threshold);
+            if (storedLongs.length < previousValues) storedLongs = new long[previousValues];
+            int[] indices = indices64;
+            long[] stored = storedLongs;
+            int ringMask = previousValues - 1;
+            int start = streamStart(length);
+            BitOutputStream out = new BitOutputStream(buffer);
+            
+            long first = values[offset];
+            out.writeLong(first, 64);
+            stored[0] = first;
+            if (indices != null) indices[(int) first & lsbMask] = start;
+            int storedLeadingZeros = 65;
+            
+            for (int i = 1; i < length; i++) {
+                long value = values[offset + i];
+                int previousIndex = (i - 1) & ringMask;
+                long xor = stored[previousIndex] ^ value;
+                int trailingZeros = 0;
+                if (indices != null) {
+                    int candidate = indices[(int) value & lsbMask] - start;
+                    if (candidate >= 0 && i - candidate <= previousValues) {
+                        long candidateXor = stored[candidate & ringMask] ^ value;
+                        int candidateTrailing = Long.numberOfTrailingZeros(candidateXor);
+                        if (candidateTrailing > threshold) {
+                            previousIndex = candidate & ringMask;
+                            xor = candidateXor;
+                            trailingZeros = candidateTrailing;
+                        }
+                    }
+                } else {
+                    trailingZeros = Long.numberOfTrailingZeros(xor);
+                }
+                
+                if (xor == 0) {
+                    out.writeInt(previousIndex, 2 + previousValuesLog2);
+                    storedLeadingZeros = 65;
+                } else {
+                    int leadingZeros = Long.numberOfLeadingZeros(xor);
+                    if (trailingZeros > threshold) {
+                        int significantBits = 64 - LEADING_ROUND[leadingZeros] - trailingZeros;
+                        out.writeInt(1, 2);
+                        out.writeInt(previousIndex, previousValuesLog2);
+                        out.writeInt(LEADING_CODE[leadingZeros], 3);
+                        out.writeInt(significantBits, 6);
+                        out.writeLong(xor >>> trailingZeros, significantBits);
+                        storedLeadingZeros = 65;
+                    } else if (LEADING_ROUND[leadingZeros] == storedLeadingZeros) {
+                        out.writeInt(2, 2);
+                        out.writeLong(xor, 64 - storedLeadingZeros);
+                    } else {
+                        storedLeadingZeros = LEADING_ROUND[leadingZeros];
+                        out.writeInt(3, 2);
+                        out.writeInt(LEADING_CODE[leadingZeros], 3);
+                        out.writeLong(xor, 64 - storedLeadingZeros);
+                    }
+                }
+                stored[i & ringMask] = value;
+                if (indices != null) indices[(int) value & lsbMask] = start + i;
+            }
+            out.finish();
+        }
+        
+        void readLongs(ByteBuffer buffer, long[] dest, int offset, int count) {
+            if (count == 0) return;
+            if (storedLongs.length < previousValues) storedLongs = new long[previousValues];
+            long[] stored = storedLongs;
+            int ringMask = previousValues - 1;
+            BitInputStream in = new BitInputStream(buffer);
+            
+            long value = in.readLong(64);
+            dest[offset] = value;
+            stored[0] = value;
+            int storedLeadingZeros = 65;
+            
+            for (int i = 1; i < count; i++) {
+                long previous = stored[(i - 1) & ringMask];
+                switch (in.readInt(2)) {
+                    case 0:
+                        value = stored[in.readInt(previousValuesLog2)];
+                        storedLeadingZeros = 65;
+                        break;
+                    case 1: {
+                        long reference = stored[in.readInt(previousValuesLog2)];
+                        int leadingZeros = LEADING_REPRESENTATION[in.readInt(3)];
+                        int significantBits = in.readInt(6);
+                        int trailingZeros = 64 - leadingZeros - significantBits;
+                        value = reference ^ (in.readLong(significantBits) << trailingZeros);
+                        storedLeadingZeros = 65;
+                        break;
+                    }
+                    case 2:
+                        value = previous ^ in.readLong(64 - storedLeadingZeros);
+                        break;
+                    default:
+                        storedLeadingZeros = LEADING_REPRESENTATION[in.readInt(3)];
+                        value = previous ^ in.readLong(64 - storedLeadingZeros);
+                        break;
+                }
+                dest[offset + i] = value;
+                stored[i & ringMask] = value;
+            }
+            buffer.position(buffer.position() + in.bytesConsumed());
         }
     }
     
     // 5. Bit-packing
-    static class BitPackingEncoder implements Encoder {
+    static class BitPackingEncoder extends TypedCodec {
         public String getName() { return "BIT_PACKING"; }
         
-        public byte[] encode(byte[] input) {
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 8;
-            if (count == 0) return new byte[0];
-            
-            // Find max value to determine bits needed
-            long[] values = new long[count];
-            long maxVal = 0;
-            for (int i = 0; i < count; i++) {
-                values[i] = bb.getLong();
-                if (values[i] > maxVal) maxVal = values[i];
+        void writeLongs(long[] values, int offset, int length, ByteBuffer buffer) {
+            // OR of all values gives the widest bit position in use, negatives included
+            long orAll = 0;
+            for (int i = 0; i < length; i++) {
+                orAll |= values[offset + i];
             }
             
-            int bitsNeeded = 64 - Long.numberOfLeadingZeros(maxVal);
+            int bitsNeeded = 64 - Long.numberOfLeadingZeros(orAll);
             if (bitsNeeded == 0) bitsNeeded = 1;
             
-            BitOutputStream out = new BitOutputStream();
-            out.writeInt(count, 32);
+            BitOutputStream out = new BitOutputStream(buffer);
             out.writeInt(bitsNeeded, 8);
             
-            for (long val : values) {
-                out.writeLong(val, bitsNeeded);
+            for (int i = 0; i < length; i++) {
+                out.writeLong(values[offset + i], bitsNeeded);
             }
-            
-            return out.toByteArray();
+            out.finish();
         }
         
-        public byte[] decode(byte[] encoded) {
-            BitInputStream in = new BitInputStream(encoded);
-            int count = in.readInt(32);
+        void readLongs(ByteBuffer buffer, long[] dest, int offset, int count) {
+            BitInputStream in = new BitInputStream(buffer);
             int bitsNeeded = in.readInt(8);
             
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ByteBuffer bb = ByteBuffer.allocate(8);
-            
             for (int i = 0; i < count; i++) {
-                long val = in.readLong(bitsNeeded);
-                bb.clear();
-                bb.putLong(val);
-                out.write(bb.array(), 0, 8);
+                dest[offset + i] = in.readLong(bitsNeeded);
             }
-            
-            return out.toByteArray();
+            buffer.position(buffer.position() + in.bytesConsumed());
         }
     }
     
-    // 6. RLE (Run-Length Encoding)
-    static class RLEEncoder implements Encoder {
+    // 6. RLE (Run-Length Encoding over values)
+    static class RLEEncoder extends TypedCodec {
         public String getName() { return "RLE"; }
         
-        public byte[] encode(byte[] input) {
-            if (input.length == 0) return new byte[0];
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            int end = offset + length;
+            int i = offset;
+            while (i < end) {
+                long current = values[i];
+                int run = 1;
+                while (i + run < end && values[i + run] == current) {
+                    run++;
+                }
+                putVarLong(out, current);
+                putUnsignedVarInt(out, run);
+                i += run;
+            }
+        }
+        
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            int end = offset + count;
+            int i = offset;
+            while (i < end) {
+                long value = getVarLong(in);
+                int run = getUnsignedVarInt(in);
+                Arrays.fill(dest, i, i + run, value);
+                i += run;
+            }
+        }
+    }
+    
+    // 7. HUFFMAN (canonical, length-limited, over the big-endian bytes of each value)
+    static class HuffmanEncoder extends TypedCodec {
+        // Codes are limited to TABLE_BITS so one primary-table lookup always resolves a symbol
+        static final int TABLE_BITS = 11;
+        static final int MAX_CODE_LENGTH = TABLE_BITS;
+        
+        private byte[] symbols = new byte[0];
+        private final int[] frequencies = new int[256];
+        private final int[] codeLengths = new int[256];
+        private final int[] codes = new int[256];
+        // Decode entry: sym1 | sym2 << 8 | len1 << 16 | len1+len2 << 20 | pair << 24
+        private final int[] decodeTable = new int[1 << TABLE_BITS];
+        
+        public String getName() { return "HUFFMAN"; }
+        
+        // Header is at most 1 + 256 + 256 * 4 bits; no code is longer than 11 bits
+        public int maxEncodedSize(int count) { return 200 + count * 11; }
+        
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            byte[] s = symbolScratch(length * 8);
+            for (int i = 0; i < length; i++) {
+                long v = values[offset + i];
+                for (int b = 0; b < 8; b++) {
+                    s[i * 8 + b] = (byte) (v >>> (56 - 8 * b));
+                }
+            }
+            writeSymbols(s, length * 8, out);
+        }
+        
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            byte[] s = symbolScratch(count * 8);
+            readSymbols(in, s, count * 8);
+            for (int i = 0; i < count; i++) {
+                long v = 0;
+                for (int b = 0; b < 8; b++) {
+                    v = (v << 8) | (s[i * 8 + b] & 0xFF);
+                }
+                dest[offset + i] = v;
+            }
+        }
+        
+        void writeInts(int[] values, int offset, int length, ByteBuffer out) {
+            byte[] s = symbolScratch(length * 4);
+            for (int i = 0; i < length; i++) {
+                int v = values[offset + i];
+                for (int b = 0; b < 4; b++) {
+                    s[i * 4 + b] = (byte) (v >>> (24 - 8 * b));
+                }
+            }
+            writeSymbols(s, length * 4, out);
+        }
+        
+        void readInts(ByteBuffer in, int[] dest, int offset, int count) {
+            byte[] s = symbolScratch(count * 4);
+            readSymbols(in, s, count * 4);
+            for (int i = 0; i < count; i++) {
+                int v = 0;
+                for (int b = 0; b < 4; b++) {
+                    v = (v << 8) | (s[i * 4 + b] & 0xFF);
+                }
+                dest[offset + i] = v;
+            }
+        }
+        
+        private byte[] symbolScratch(int length) {
+            if (symbols.length < length) symbols = new byte[length];
+            return symbols;
+        }
+        
+        void writeSymbols(byte[] input, int length, ByteBuffer buffer) {
+            if (length == 0) return;
+            
+            Arrays.fill(frequencies, 0);
+            for (int i = 0; i < length; i++) {
+                frequencies[input[i] & 0xFF]++;
+            }
+            int used = buildCodeLengths(frequencies, codeLengths);
+            assignCanonicalCodes(codeLengths, codes);
             
+            BitOutputStream out = new BitOutputStream(buffer);
+            // Header holds code lengths only: a (symbol, length) list for small alphabets,
+            // otherwise a presence bitmap followed by the lengths
+            if (used < 31) {
+                out.writeBit(0);
+                out.writeInt(used - 1, 8);
+                for (int sym = 0; sym < 256; sym++) {
+                    if (codeLengths[sym] > 0) {
+                        out.writeInt(sym, 8);
+                        out.writeInt(codeLengths[sym], 4);
+                    }
+                }
+            } else {
+                out.writeBit(1);
+                for (int sym = 0; sym < 256; sym++) {
+                    out.writeBit(codeLengths[sym] > 0 ? 1 : 0);
+                }
+                for (int sym = 0; sym < 256; sym++) {
+                    if (codeLengths[sym] > 0) out.writeInt(codeLengths[sym], 4);
+                }
+            }
+            
+            for (int i = 0; i < length; i++) {
+                int sym = input[i] & 0xFF;
+                out.writeInt(codes[sym], codeLengths[sym]);
+            }
+            out.finish();
+        }
+        
+        void readSymbols(ByteBuffer buffer, byte[] dest, int length) {
+            if (length == 0) return;
+            BitInputStream in = new BitInputStream(buffer);
+            
+            Arrays.fill(codeLengths, 0);
+            if (in.readBit() == 0) {
+                int used = in.readInt(8) + 1;
+                for (int i = 0; i < used; i++) {
+                    int sym = in.readInt(8);
+                    codeLengths[sym] = in.readInt(4);
+                }
+            } else {
+                for (int sym = 0; sym < 256; sym++) {
+                    codeLengths[sym] = in.readBit();
+                }
+                for (int sym = 0; sym < 256; sym++) {
+                    if (codeLengths[sym] > 0) codeLengths[sym] = in.readInt(4);
+                }
+            }
+            assignCanonicalCodes(codeLengths, codes);
+            buildDecodeTable(codeLengths, codes, decodeTable);
+            
+            int[] table = decodeTable;
             int i = 0;
-            while (i < input.length) {
-                byte current = input[i];
-                int count = 1;
-                while (i + count < input.length && input[i + count] == current && count < 255) {
-                    count++;
+            while (i + 1 < length) {
+                int entry = table[(int) in.peek(TABLE_BITS)];
+                if ((entry >>> 24) != 0) {
+                    dest[i++] = (byte) entry;
+                    dest[i++] = (byte) (entry >>> 8);
+                    in.skip((entry >>> 20) & 0xF);
+                } else {
+                    int len = (entry >>> 16) & 0xF;
+                    if (len == 0) throw new IllegalStateException("Corrupt Huffman stream");
+                    dest[i++] = (byte) entry;
+                    in.skip(len);
                 }
-                out.write(current);
-                out.write(count);
-                i += count;
             }
-            return out.toByteArray();
+            if (i < length) {
+                int entry = table[(int) in.peek(TABLE_BITS)];
+                int len = (entry >>> 16) & 0xF;
+                if (len == 0) throw new IllegalStateException("Corrupt Huffman stream");
+                dest[i] = (byte) entry;
+                in.skip(len);
+            }
+            buffer.position(buffer.position() + in.bytesConsumed());
         }
         
-        public byte[] decode(byte[] encoded) {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            for (int i = 0; i < encoded.length; i += 2) {
-                byte value = encoded[i];
-                int count = encoded[i + 1] & 0xFF;
-                for (int j = 0; j < count; j++) {
-                    out.write(value);
+        // Huffman code lengths via the two-queue method, then limited to MAX_CODE_LENGTH
+        // by lengthening the deepest short codes until the Kraft sum fits again.
+        // Returns the number of symbols in use.
+        static int buildCodeLengths(int[] freq, int[] lengths) {
+            Arrays.fill(lengths, 0);
+            int n = 0;
+            long[] sorted = new long[256];
+            for (int sym = 0; sym < 256; sym++) {
+                if (freq[sym] > 0) sorted[n++] = ((long) freq[sym] << 8) | sym;
+            }
+            if (n == 1) {
+                lengths[(int) (sorted[0] & 0xFF)] = 1;
+                return 1;
+            }
+            Arrays.sort(sorted, 0, n);
+            
+            long[] weight = new long[2 * n - 1];
+            int[] parent = new int[2 * n - 1];
+            for (int i = 0; i < n; i++) {
+                weight[i] = sorted[i] >>> 8;
+            }
+            int leaf = 0;
+            int node = n;
+            for (int next = n; next < 2 * n - 1; next++) {
+                for (int k = 0; k < 2; k++) {
+                    int child;
+                    if (leaf < n && (node >= next || weight[leaf] <= weight[node])) {
+                        child = leaf++;
+                    } else {
+                        child = node++;
+                    }
+                    parent[child] = next;
+                    weight[next] += weight[child];
                 }
             }
-            return out.toByteArray();
+            
+            int[] depth = new int[2 * n - 1];
+            for (int i = 2 * n - 3; i >= 0; i--) {
+                depth[i] = depth[parent[i]] + 1;
+            }
+            
+            int kraft = 0;
+            for (int i = 0; i < n; i++) {
+                int sym = (int) (sorted[i] & 0xFF);
+                lengths[sym] = Math.min(depth[i], MAX_CODE_LENGTH);
+                kraft += 1 << (MAX_CODE_LENGTH - lengths[sym]);
+            }
+            while (kraft > (1 << MAX_CODE_LENGTH)) {
+                // sorted is in ascending frequency, so the first hit is the cheapest to lengthen
+                int best = -1;
+                for (int i = 0; i < n; i++) {
+                    int sym = (int) (sorted[i] & 0xFF);
+                    if (lengths[sym] < MAX_CODE_LENGTH && (best < 0 || lengths[sym] > lengths[best])) {
+                        best = sym;
+                    }
+                }
+                kraft -= 1 << (MAX_CODE_LENGTH - lengths[best] - 1);
+                lengths[best]++;
+            }
+            return n;
+        }
+        
+        // Canonical assignment: shorter codes first, ties broken by symbol value
+        static void assignCanonicalCodes(int[] lengths, int[] codes) {
+            int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+            for (int sym = 0; sym < 256; sym++) {
+                lengthCount[lengths[sym]]++;
+            }
+            lengthCount[0] = 0;
+            int[] nextCode = new int[MAX_CODE_LENGTH + 1];
+            int code = 0;
+            for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+                code = (code + lengthCount[len - 1]) << 1;
+                nextCode[len] = code;
+            }
+            for (int sym = 0; sym < 256; sym++) {
+                if (lengths[sym] > 0) codes[sym] = nextCode[lengths[sym]]++;
+            }
+        }
+        
+        // Fills every TABLE_BITS-bit prefix with the symbol whose code it starts with, then
+        // packs a second symbol into entries whose leftover bits already hold a full code
+        static void buildDecodeTable(int[] lengths, int[] codes, int[] table) {
+            Arrays.fill(table, 0);
+            for (int sym = 0; sym < 256; sym++) {
+                int len = lengths[sym];
+                if (len == 0) continue;
+                int shift = TABLE_BITS - len;
+                int first = codes[sym] << shift;
+                int entry = sym | (len << 16) | (len << 20);
+                Arrays.fill(table, first, first + (1 << shift), entry);
+            }
+            int mask = (1 << TABLE_BITS) - 1;
+            for (int index = 0; index <= mask; index++) {
+                int entry = table[index];
+                int len1 = (entry >>> 16) & 0xF;
+                if (len1 == 0 || len1 >= TABLE_BITS) continue;
+                int second = table[(index << len1) & mask];
+                int len2 = (second >>> 16) & 0xF;
+                if (len2 == 0 || len1 + len2 > TABLE_BITS) continue;
+                table[index] = (entry & 0xFF) | ((second & 0xFF) << 8) | (len1 << 16)
+                        | ((len1 + len2) << 20) | (1 << 24);
+            }
         }
     }
     
-    // 7. HUFFMAN
-    static class HuffmanEncoder implements Encoder {
-        public String getName() { return "HUFFMAN"; }
+    // 8. Golomb-Rice (adaptive). After the first value, values become TS_2DIFF
+    // delta-of-delta residuals, zigzagged to unsigned, and are Rice-coded in 128-value
+    // blocks. Each block's parameter k starts as the smallest with n * 2^k >= sum of
+    // residuals (LOCO-I estimate from the mean) and is lowered while that shrinks the
+    // block, since a few outliers inflate the mean but are cheaper escaped. Quotients are
+    // unary as q zeros and a one, decoded with numberOfLeadingZeros on a peeked word;
+    // quotients of ESCAPE_QUOTIENT or more write ESCAPE_QUOTIENT zeros, a 6-bit length and
+    // the raw residual instead, so no value costs more than ~100 bits.
+    static class GolombRiceEncoder extends TypedCodec {
+        static final int BLOCK_SIZE = 128;
+        static final int ESCAPE_QUOTIENT = 32;
+        // Residuals are clamped to this in the block sum so 128 of them cannot overflow
+        static final long SUM_CLAMP = 1L << 55;
+        
+        private final long[] residuals = new long[BLOCK_SIZE];
+        
+        public String getName() { return "GOLOMB_RICE"; }
+        
+        // Per value at most 32 escape zeros + 6-bit length + 64 bits; 6-bit k per block
+        public int maxEncodedSize(int count) { return 64 + count * 13; }
+        
+        void writeLongs(long[] values, int offset, int length, ByteBuffer buffer) {
+            if (length == 0) return;
+            BitOutputStream out = new BitOutputStream(buffer);
+            long prev = values[offset];
+            out.writeLong(prev, 64);
+            long prevDelta = 0;
+            
+            for (int start = 1; start < length; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, length - start);
+                long sum = 0;
+                for (int i = 0; i < n; i++) {
+                    long value = values[offset + start + i];
+                    long delta = value - prev;
+                    long residual = delta - prevDelta;
+                    prevDelta = delta;
+                    prev = value;
+                    residuals[i] = (residual << 1) ^ (residual >> 63);
+                    sum += Long.compareUnsigned(residuals[i], SUM_CLAMP) > 0 ? SUM_CLAMP : residuals[i];
+                }
+                
+                int k = 0;
+                while (k < 63 && ((long) n << k) < sum) k++;
+                long cost = blockCost(n, k);
+                while (k > 0) {
+                    long lower = blockCost(n, k - 1);
+                    if (lower >= cost) break;
+                    cost = lower;
+                    k--;
+                }
+                out.writeInt(k, 6);
+                
+                for (int i = 0; i < n; i++) {
+                    long residual = residuals[i];
+                    long q = residual >>> k;
+                    // Unsigned: with k = 0 a residual of 2^63 or more has a negative quotient
+                    if (q >= 0 && q < ESCAPE_QUOTIENT) {
+                        out.writeBits(1, (int) q + 1);
+                        out.writeLong(residual, k);
+                    } else {
+                        out.writeBits(0, ESCAPE_QUOTIENT);
+                        int bits = escapeBits(residual);
+                        out.writeInt(bits - 1, 6);
+                        out.writeLong(residual, bits);
+                    }
+                }
+            }
+            out.finish();
+        }
+        
+        private long blockCost(int n, int k) {
+            long bits = 0;
+            for (int i = 0; i < n; i++) {
+                long q = residuals[i] >>> k;
+                bits += q >= 0 && q < ESCAPE_QUOTIENT ? q + 1 + k : ESCAPE_QUOTIENT + 6 + escapeBits(residuals[i]);
+            }
+            return bits;
+        }
+        
+        private static int escapeBits(long residual) {
+            return Math.max(1, 64 - Long.numberOfLeadingZeros(residual));
+        }
+        
+        void readLongs(ByteBuffer buffer, long[] dest, int offset, int count) {
+            if (count == 0) return;
+            BitInputStream in = new BitInputStream(buffer);
+            long prev = in.readLong(64);
+            dest[offset] = prev;
+            long prevDelta = 0;
+            
+            for (int start = 1; start < count; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, count - start);
+                int k = in.readInt(6);
+                
+                for (int i = 0; i < n; i++) {
+                    // The stop bit is within the next ESCAPE_QUOTIENT + 1 bits unless escaped
+                    long window = in.peek(ESCAPE_QUOTIENT + 1);
+                    int q = Long.numberOfLeadingZeros(window) - (63 - ESCAPE_QUOTIENT);
+                    long residual;
+                    if (q < ESCAPE_QUOTIENT) {
+                        in.skip(q + 1);
+                        residual = ((long) q << k) | in.readLong(k);
+                    } else {
+                        in.skip(ESCAPE_QUOTIENT);
+                        residual = in.readLong(in.readInt(6) + 1);
+                    }
+                    prevDelta += (residual >>> 1) ^ -(residual & 1);
+                    prev += prevDelta;
+                    dest[offset + start + i] = prev;
+                }
+            }
+            buffer.position(buffer.position() + in.bytesConsumed());
+        }
+    }
+    
+    // Shared shape of the simplified RLBE/RAKE chains: a typed TS_2DIFF stage
+    // followed by byte-level stages, stored behind a varint length
+    abstract static class DeltaChainEncoder extends TypedCodec {
+        private final TS2DIFFEncoder delta = new TS2DIFFEncoder();
+        private final Encoder[] stages;
+        private ByteBuffer deltaBuffer = ByteBuffer.allocate(0);
+        
+        DeltaChainEncoder(Encoder... stages) {
+            this.stages = stages;
+        }
+        
+        public int maxEncodedSize(int count) { return 64 + count * 32; }
+        
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            int bound = delta.maxEncodedSize(length);
+            if (deltaBuffer.capacity() < bound) deltaBuffer = ByteBuffer.allocate(bound);
+            deltaBuffer.clear();
+            delta.encodeLongs(values, offset, length, deltaBuffer);
+            
+            CopyMeter.count(deltaBuffer.position());
+            byte[] staged = Arrays.copyOf(deltaBuffer.array(), deltaBuffer.position());
+            for (Encoder stage : stages) {
+                staged = stage.encode(staged);
+            }
+            putUnsignedVarInt(out, staged.length);
+            CopyMeter.count(staged.length);
+            out.put(staged);
+        }
+        
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            byte[] staged = new byte[getUnsignedVarInt(in)];
+            CopyMeter.count(staged.length);
+            in.get(staged);
+            for (int i = stages.length - 1; i >= 0; i--) {
+                staged = stages[i].decode(staged);
+            }
+            delta.decodeLongs(ByteBuffer.wrap(staged), dest, offset);
+        }
+    }
+    
+    // 9. SPRINTZ (Blalock et al., IMWUT 2018). Values (float bits are used as integers) go
+    // through a delta or FIRE forecaster; zigzagged errors are bit-packed in 8-value blocks
+    // at a per-block width, with a 7-bit width header per block. Runs of all-zero blocks
+    // collapse into one zero header plus an 8-bit run length. The optional Huffman stage
+    // codes the packed bytes with HuffmanEncoder. Decoding goes one block at a time
+    // through BlockReader.
+    static class SprintzEncoder extends TypedCodec {
+        static final int BLOCK_SIZE = 8;
+        static final int MAX_ZERO_RUN = 256;
+        // FIRE coefficient in fixed point with FRAC_BITS fractional bits; each value moves it
+        // by 1/64 along the sign of the gradient, clamped to [-1, 1]
+        static final int FRAC_BITS = 8;
+        static final long LEARN_STEP = 1L << (FRAC_BITS - 6);
+        static final long MAX_COEFFICIENT = 1L << FRAC_BITS;
+        
+        private final boolean fire;
+        private final boolean huffman;
+        private final long[] block = new long[BLOCK_SIZE];
+        private final HuffmanEncoder huffmanStage;
+        private ByteBuffer packedScratch = ByteBuffer.allocate(0);
+        
+        SprintzEncoder() { this(true, false); }
+        
+        SprintzEncoder(boolean fire, boolean huffman) {
+            this.fire = fire;
+            this.huffman = huffman;
+            this.huffmanStage = huffman ? new HuffmanEncoder() : null;
+        }
+        
+        public String getName() {
+            if (huffman) return fire ? "SPRINTZ_HUF" : "SPRINTZ_DELTA_HUF";
+            return fire ? "SPRINTZ" : "SPRINTZ_DELTA";
+        }
         
-        public byte[] encode(byte[] input) {
-            if (input.length == 0) return new byte[0];
-            
-            Map<Byte, Integer> freqMap = new HashMap<>();
-            for (byte b : input) {
-                freqMap.put(b, freqMap.getOrDefault(b, 0) + 1);
-            }
-            
-            PriorityQueue<HuffmanNode> pq = new PriorityQueue<>();
-            for (Map.Entry<Byte, Integer> entry : freqMap.entrySet()) {
-                pq.offer(new HuffmanNode(entry.getKey(), entry.getValue()));
-            }
+        // 7-bit header per 8 values plus at most 64 bits per value; the Huffman stage adds
+        // its header and never emits codes longer than 11 bits per byte
+        public int maxEncodedSize(int count) { return 300 + count * 12; }
+        
+        // Forecaster state shared by the writer and BlockReader, so both sides evolve it
+        // identically
+        static final class Forecaster {
+            private final boolean fire;
+            private long prev = 0;
+            private long prevDelta = 0;
+            private long coefficient = 0;
             
-            while (pq.size() > 1) {
-                HuffmanNode left = pq.poll();
-                HuffmanNode right = pq.poll();
-                pq.offer(new HuffmanNode(left, right));
+            Forecaster(boolean fire) {
+                this.fire = fire;
             }
             
-            HuffmanNode root = pq.poll();
-            Map<Byte, String> codeMap = new HashMap<>();
-            buildCodeMap(root, "", codeMap);
-            
-            BitOutputStream out = new BitOutputStream();
-            out.writeInt(freqMap.size(), 16);
-            for (Map.Entry<Byte, Integer> entry : freqMap.entrySet()) {
-                out.writeInt(entry.getKey() & 0xFF, 8);
-                out.writeInt(entry.getValue(), 32);
+            long predict() {
+                if (!fire) return prev;
+                return prev + ((coefficient * prevDelta) >> FRAC_BITS);
             }
             
-            out.writeInt(input.length, 32);
-            for (byte b : input) {
-                String code = codeMap.get(b);
-                for (char c : code.toCharArray()) {
-                    out.writeBit(c == '1' ? 1 : 0);
+            void update(long value, long error) {
+                if (fire) {
+                    coefficient += Long.signum(error) * Long.signum(prevDelta) * LEARN_STEP;
+                    coefficient = Math.max(-MAX_COEFFICIENT, Math.min(MAX_COEFFICIENT, coefficient));
                 }
+                prevDelta = value - prev;
+                prev = value;
             }
-            
-            return out.toByteArray();
         }
         
-        public byte[] decode(byte[] encoded) {
-            BitInputStream in = new BitInputStream(encoded);
-            
-            int mapSize = in.readInt(16);
-            Map<Byte, Integer> freqMap = new HashMap<>();
-            for (int i = 0; i < mapSize; i++) {
-                byte key = (byte) in.readInt(8);
-                int freq = in.readInt(32);
-                freqMap.put(key, freq);
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            if (length == 0) return;
+            if (!huffman) {
+                writePacked(values, offset, length, out);
+                return;
             }
-            
-            PriorityQueue<HuffmanNode> pq = new PriorityQueue<>();
-            for (Map.Entry<Byte, Integer> entry : freqMap.entrySet()) {
-                pq.offer(new HuffmanNode(entry.getKey(), entry.getValue()));
+            int bound = maxEncodedSize(length);
+            if (packedScratch.capacity() < bound) packedScratch = ByteBuffer.allocate(bound);
+            packedScratch.clear();
+            writePacked(values, offset, length, packedScratch);
+            int packedLength = packedScratch.position();
+            putUnsignedVarInt(out, packedLength);
+            huffmanStage.writeSymbols(packedScratch.array(), packedLength, out);
+        }
+        
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            if (count == 0) return;
+            ByteBuffer packed = in;
+            if (huffman) {
+                int packedLength = getUnsignedVarInt(in);
+                if (packedScratch.capacity() < packedLength) packedScratch = ByteBuffer.allocate(packedLength);
+                huffmanStage.readSymbols(in, packedScratch.array(), packedLength);
+                packed = ByteBuffer.wrap(packedScratch.array(), 0, packedLength);
             }
+            BlockReader reader = new BlockReader(packed, count, fire);
+            int decoded = 0;
+            while (decoded < count) {
+                decoded += reader.next(dest, offset + decoded);
+            }
+            if (!huffman) in.position(in.position() + reader.bytesConsumed());
+        }
+        
+        private void writePacked(long[] values, int offset, int length, ByteBuffer buffer) {
+            BitOutputStream out = new BitOutputStream(buffer);
+            Forecaster forecaster = new Forecaster(fire);
+            int zeroRun = 0;
             
-            while (pq.size() > 1) {
-                HuffmanNode left = pq.poll();
-                HuffmanNode right = pq.poll();
-                pq.offer(new HuffmanNode(left, right));
+            for (int start = 0; start < length; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, length - start);
+                long orAll = 0;
+                for (int i = 0; i < n; i++) {
+                    long value = values[offset + start + i];
+                    long error = value - forecaster.predict();
+                    forecaster.update(value, error);
+                    block[i] = (error << 1) ^ (error >> 63);
+                    orAll |= block[i];
+                }
+                
+                if (orAll == 0) {
+                    if (++zeroRun == MAX_ZERO_RUN) {
+                        writeZeroRun(out, zeroRun);
+                        zeroRun = 0;
+                    }
+                    continue;
+                }
+                if (zeroRun > 0) {
+                    writeZeroRun(out, zeroRun);
+                    zeroRun = 0;
+                }
+                int width = 64 - Long.numberOfLeadingZeros(orAll);
+                out.writeInt(width, 7);
+                for (int i = 0; i < n; i++) {
+                    out.writeLong(block[i], width);
+                }
             }
+            if (zeroRun > 0) writeZeroRun(out, zeroRun);
+            out.finish();
+        }
+        
+        private static void writeZeroRun(BitOutputStream out, int blocks) {
+            out.writeInt(0, 7);
+            out.writeInt(blocks - 1, 8);
+        }
+        
+        // Streams the packed form back: each next() decodes one 8-value block (fewer for
+        // the last one), replaying zero runs block by block
+        static final class BlockReader {
+            private final BitInputStream in;
+            private final Forecaster forecaster;
+            private int remaining;
+            private int zeroBlocks = 0;
             
-            HuffmanNode root = pq.poll();
-            int dataLength = in.readInt(32);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            HuffmanNode current = root;
+            BlockReader(ByteBuffer packed, int count, boolean fire) {
+                this.in = new BitInputStream(packed);
+                this.forecaster = new Forecaster(fire);
+                this.remaining = count;
+            }
             
-            for (int i = 0; i < dataLength; i++) {
-                while (!current.isLeaf()) {
-                    int bit = in.readBit();
-                    current = (bit == 0) ? current.left : current.right;
+            // Decodes the next block into dest[offset..] and returns its value count
+            int next(long[] dest, int offset) {
+                int n = Math.min(BLOCK_SIZE, remaining);
+                if (n == 0) return 0;
+                int width = 0;
+                if (zeroBlocks > 0) {
+                    zeroBlocks--;
+                } else {
+                    width = in.readInt(7);
+                    if (width == 0) zeroBlocks = in.readInt(8);
+                }
+                for (int i = 0; i < n; i++) {
+                    long zigzag = in.readLong(width);
+                    long error = (zigzag >>> 1) ^ -(zigzag & 1);
+                    long value = forecaster.predict() + error;
+                    forecaster.update(value, error);
+                    dest[offset + i] = value;
                 }
-                out.write(current.value);
-                current = root;
+                remaining -= n;
+                return n;
             }
             
-            return out.toByteArray();
-        }
-        
-        private void buildCodeMap(HuffmanNode node, String code, Map<Byte, String> codeMap) {
-            if (node.isLeaf()) {
-                codeMap.put(node.value, code.isEmpty() ? "0" : code);
-            } else {
-                buildCodeMap(node.left, code + "0", codeMap);
-                buildCodeMap(node.right, code + "1", codeMap);
+            int bytesConsumed() {
+                return in.bytesConsumed();
             }
         }
     }
     
-    static class HuffmanNode implements Comparable<HuffmanNode> {
-        byte value;
-        int frequency;
-        HuffmanNode left, right;
+    // 10. RLBE (Simplified version: Delta + RLE + Bit-packing)
+    static class RLBEEncoder extends DeltaChainEncoder {
+        RLBEEncoder() { super(new RLEEncoder(), new BitPackingEncoder()); }
+        public String getName() { return "RLBE"; }
+    }
+    
+    // 11. RAKE (Simplified version: Delta + Bit-packing)
+    static class RAKEEncoder extends DeltaChainEncoder {
+        RAKEEncoder() { super(new BitPackingEncoder()); }
+        public String getName() { return "RAKE"; }
+    }
+    
+    // 12. DICTIONARY. Distinct values go into a primitive open-addressing table (long key
+    // -> int id, linear probing) while ids are assigned in first-seen order; the stream is
+    // the dense dictionary followed by the ids bit-packed at ceil(log2(size)) bits. Once
+    // the cardinality passes maxCardinality the input is stored plain instead.
+    // Layout: mode byte (0 plain, 1 dictionary), value width byte (4 or 8), then either
+    // the plain values or uvarint size, dictionary values and packed ids.
+    static class DictionaryEncoder extends TypedCodec {
+        static final int MAX_DICTIONARY_SIZE = 1 << 16;
+        
+        private int[] slots = new int[0];         // id + 1 per hash slot, 0 when empty
+        private long[] dictionary = new long[0];  // id -> value, shared by both directions
+        private int[] ids = new int[0];
         
-        HuffmanNode(byte value, int frequency) {
-            this.value = value;
-            this.frequency = frequency;
+        public String getName() { return "DICTIONARY"; }
+        
+        // Plain fallback: 2 header bytes plus the values at full width
+        public int maxEncodedSize(int count) { return 64 + count * 8; }
+        
+        // Dictionaries larger than half the input rarely pay for themselves
+        static int maxCardinality(int length) {
+            return Math.min(MAX_DICTIONARY_SIZE, Math.max(1, length / 2));
         }
         
-        HuffmanNode(HuffmanNode left, HuffmanNode right) {
-            this.frequency = left.frequency + right.frequency;
-            this.left = left;
-            this.right = right;
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            writeValues(values, offset, length, 8, out);
         }
         
-        boolean isLeaf() {
-            return left == null && right == null;
+        void writeInts(int[] values, int offset, int length, ByteBuffer out) {
+            long[] words = longScratch(length);
+            for (int i = 0; i < length; i++) {
+                words[i] = values[offset + i];
+            }
+            writeValues(words, 0, length, 4, out);
         }
         
-        public int compareTo(HuffmanNode other) {
-            return Integer.compare(this.frequency, other.frequency);
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            readValues(in, dest, offset, count);
         }
-    }
-    
-    // 8. Golomb-Rice
-    static class GolombRiceEncoder implements Encoder {
-        public String getName() { return "GOLOMB_RICE"; }
-        private final int M = 8; // Rice parameter
         
-        public byte[] encode(byte[] input) {
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 8;
-            if (count == 0) return new byte[0];
-            
-            BitOutputStream out = new BitOutputStream();
-            out.writeInt(count, 32);
-            
+        void readInts(ByteBuffer in, int[] dest, int offset, int count) {
+            long[] words = longScratch(count);
+            readValues(in, words, 0, count);
             for (int i = 0; i < count; i++) {
-                long val = bb.getLong();
-                // Convert to unsigned
-                long q = val / M;
-                long r = val % M;
-                
-                // Unary encoding for quotient
-                for (int j = 0; j < q && j < 255; j++) {
-                    out.writeBit(1);
+                dest[offset + i] = (int) words[i];
+            }
+        }
+        
+        private void writeValues(long[] values, int offset, int length, int valueBytes, ByteBuffer out) {
+            int size = buildDictionary(values, offset, length);
+            if (size < 0) {
+                out.put((byte) 0);
+                out.put((byte) valueBytes);
+                for (int i = 0; i < length; i++) {
+                    putValue(out, values[offset + i], valueBytes);
                 }
-                out.writeBit(0);
-                
-                // Binary encoding for remainder
-                out.writeInt((int)r, 3); // log2(M)
+                return;
             }
             
-            return out.toByteArray();
+            out.put((byte) 1);
+            out.put((byte) valueBytes);
+            putUnsignedVarInt(out, size);
+            for (int id = 0; id < size; id++) {
+                putValue(out, dictionary[id], valueBytes);
+            }
+            int width = 32 - Integer.numberOfLeadingZeros(size - 1);
+            BitOutputStream packed = new BitOutputStream(out);
+            for (int i = 0; i < length; i++) {
+                packed.writeInt(ids[i], width);
+            }
+            packed.finish();
         }
         
-        public byte[] decode(byte[] encoded) {
-            BitInputStream in = new BitInputStream(encoded);
-            int count = in.readInt(32);
+        // Fills dictionary[0..size) and ids[0..length); returns size, or -1 once the
+        // cardinality passes maxCardinality(length)
+        private int buildDictionary(long[] values, int offset, int length) {
+            int limit = maxCardinality(length);
+            int capacity = Integer.highestOneBit(Math.max(8, limit) * 2 - 1) << 1;
+            int shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            int mask = capacity - 1;
+            if (slots.length < capacity) slots = new int[capacity];
+            Arrays.fill(slots, 0, capacity, 0);
+            if (dictionary.length < limit) dictionary = new long[limit];
+            if (ids.length < length) ids = new int[length];
             
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ByteBuffer bb = ByteBuffer.allocate(8);
-            
-            for (int i = 0; i < count; i++) {
-                // Decode quotient
-                long q = 0;
-                while (in.readBit() == 1 && q < 255) {
-                    q++;
+            int size = 0;
+            for (int i = 0; i < length; i++) {
+                long value = values[offset + i];
+                int slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> shift);
+                int entry;
+                while ((entry = slots[slot]) != 0 && dictionary[entry - 1] != value) {
+                    slot = (slot + 1) & mask;
                 }
-                
-                // Decode remainder
-                long r = in.readInt(3);
-                long val = q * M + r;
-                
-                bb.clear();
-                bb.putLong(val);
-                out.write(bb.array(), 0, 8);
+                if (entry == 0) {
+                    if (size == limit) return -1;
+                    dictionary[size] = value;
+                    entry = ++size;
+                    slots[slot] = entry;
+                }
+                ids[i] = entry - 1;
+            }
+            return size;
+        }
+        
+        private void readValues(ByteBuffer in, long[] dest, int offset, int count) {
+            int mode = in.get();
+            int valueBytes = in.get();
+            if (mode == 0) {
+                for (int i = 0; i < count; i++) {
+                    dest[offset + i] = getValue(in, valueBytes);
+                }
+                return;
             }
             
-            return out.toByteArray();
+            int size = getUnsignedVarInt(in);
+            if (dictionary.length < size) dictionary = new long[size];
+            for (int id = 0; id < size; id++) {
+                dictionary[id] = getValue(in, valueBytes);
+            }
+            int width = 32 - Integer.numberOfLeadingZeros(size - 1);
+            BitInputStream packed = new BitInputStream(in);
+            for (int i = 0; i < count; i++) {
+                dest[offset + i] = dictionary[packed.readInt(width)];
+            }
+            in.position(in.position() + packed.bytesConsumed());
         }
-    }
-    
-    // 9. SPRINTZ (Simplified version)
-    static class SprintzEncoder implements Encoder {
-        public String getName() { return "SPRINTZ"; }
         
-        public byte[] encode(byte[] input) {
-            // Simplified SPRINTZ: Delta + Bit-packing + RLE
-            byte[] delta = new TS2DIFFEncoder().encode(input);
-            byte[] bitPacked = new BitPackingEncoder().encode(delta);
-            return new RLEEncoder().encode(bitPacked);
+        private static void putValue(ByteBuffer out, long value, int valueBytes) {
+            if (valueBytes == 4) out.putInt((int) value);
+            else out.putLong(value);
         }
         
-        public byte[] decode(byte[] encoded) {
-            byte[] unRLE = new RLEEncoder().decode(encoded);
-            byte[] unBitPacked = new BitPackingEncoder().decode(unRLE);
-            return new TS2DIFFEncoder().decode(unBitPacked);
+        private static long getValue(ByteBuffer in, int valueBytes) {
+            return valueBytes == 4 ? in.getInt() : in.getLong();
         }
     }
     
-    // 10. RLBE (Run-Length-Bit-Encoding)
-    static class RLBEEncoder implements Encoder {
-        public String getName() { return "RLBE"; }
+    // 13. PFOR_DELTA (patched frame-of-reference over TS_2DIFF residuals). Values are cut
+    // into 128-value blocks; each block restarts the delta-of-delta transform from its own
+    // first value and first delta, subtracts the block minimum from the residuals and
+    // packs them at the width that minimises the block size. Residuals wider than that
+    // are exceptions: their low bits stay in place, their positions and high bits are
+    // patched in from after the packed array. Every block is prefixed by its 2-byte
+    // length, so decodeBlock can skip straight to any block.
+    static class PFORDeltaEncoder extends TypedCodec {
+        static final int BLOCK_SIZE = 128;
         
-        public byte[] encode(byte[] input) {
-            // Simplified RLBE: Delta + RLE + Bit-packing
-            byte[] delta = new TS2DIFFEncoder().encode(input);
-            byte[] rle = new RLEEncoder().encode(delta);
-            return new BitPackingEncoder().encode(rle);
+        private final long[] residuals = new long[BLOCK_SIZE];
+        private final int[] widthHistogram = new int[65];
+        private final int[] exceptions = new int[BLOCK_SIZE];
+        
+        public String getName() { return "PFOR_DELTA"; }
+        
+        // Per block: length, two varlong state values, header, and at worst every residual
+        // stored twice (packed low bits plus exception) with a position byte
+        public int maxEncodedSize(int count) {
+            return 64 + count * 17 + ((count + BLOCK_SIZE - 1) / BLOCK_SIZE) * 40;
         }
         
-        public byte[] decode(byte[] encoded) {
-            byte[] unBitPacked = new BitPackingEncoder().decode(encoded);
-            byte[] unRLE = new RLEEncoder().decode(unBitPacked);
-            return new TS2DIFFEncoder().decode(unRLE);
+        void writeLongs(long[] values, int offset, int length, ByteBuffer out) {
+            for (int start = 0; start < length; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, length - start);
+                int lengthPosition = out.position();
+                out.putShort((short) 0);
+                writeBlock(values, offset + start, n, out);
+                out.putShort(lengthPosition, (short) (out.position() - lengthPosition - 2));
+            }
         }
-    }
-    
-    // 11. RAKE (Simplified)
-    static class RAKEEncoder implements Encoder {
-        public String getName() { return "RAKE"; }
         
-        public byte[] encode(byte[] input) {
-            // Simplified RAKE: Combination of delta and bit-packing
-            return new BitPackingEncoder().encode(new TS2DIFFEncoder().encode(input));
+        void readLongs(ByteBuffer in, long[] dest, int offset, int count) {
+            for (int start = 0; start < count; start += BLOCK_SIZE) {
+                int n = Math.min(BLOCK_SIZE, count - start);
+                int blockLength = in.getShort() & 0xFFFF;
+                int end = in.position() + blockLength;
+                readBlock(in, dest, offset + start, n);
+                in.position(end);
+            }
         }
         
-        public byte[] decode(byte[] encoded) {
-            return new TS2DIFFEncoder().decode(new BitPackingEncoder().decode(encoded));
+        // Decodes only block `block` of the stream at in.position() into dest[offset..] and
+        // returns its value count; in is left after that block
+        int decodeBlock(ByteBuffer in, int block, long[] dest, int offset) {
+            int count = getUnsignedVarInt(in);
+            int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            if (block < 0 || block >= blocks) {
+                throw new IndexOutOfBoundsException("Block " + block + " of " + blocks);
+            }
+            for (int i = 0; i < block; i++) {
+                int blockLength = in.getShort() & 0xFFFF;
+                in.position(in.position() + blockLength);
+            }
+            int n = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE);
+            int blockLength = in.getShort() & 0xFFFF;
+            int end = in.position() + blockLength;
+            readBlock(in, dest, offset, n);
+            in.position(end);
+            return n;
         }
-    }
-    
-    // 12. DICTIONARY
-    static class DictionaryEncoder implements Encoder {
-        public String getName() { return "DICTIONARY"; }
         
-        public byte[] encode(byte[] input) {
-            Map<Long, Integer> dict = new HashMap<>();
-            List<Integer> indices = new ArrayList<>();
-            int nextId = 0;
+        private void writeBlock(long[] values, int offset, int n, ByteBuffer out) {
+            putVarLong(out, values[offset]);
+            if (n == 1) return;
+            long prevDelta = values[offset + 1] - values[offset];
+            putVarLong(out, prevDelta);
+            if (n == 2) return;
+            
+            int m = n - 2;
+            long reference = Long.MAX_VALUE;
+            for (int i = 0; i < m; i++) {
+                long delta = values[offset + i + 2] - values[offset + i + 1];
+                residuals[i] = delta - prevDelta;
+                prevDelta = delta;
+                reference = Math.min(reference, residuals[i]);
+            }
+            Arrays.fill(widthHistogram, 0);
+            for (int i = 0; i < m; i++) {
+                residuals[i] -= reference;   // unsigned from here on
+                widthHistogram[64 - Long.numberOfLeadingZeros(residuals[i])]++;
+            }
+            int maxWidth = 64;
+            while (maxWidth > 0 && widthHistogram[maxWidth] == 0) maxWidth--;
             
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            while (bb.remaining() >= 8) {
-                long val = bb.getLong();
-                if (!dict.containsKey(val)) {
-                    dict.put(val, nextId++);
+            // Cost in bits of width b: m * b packed bits, plus a position byte and the
+            // (maxWidth - b) high bits for every residual wider than b
+            int width = maxWidth;
+            long bestCost = (long) m * maxWidth;
+            int wider = 0;
+            for (int b = maxWidth - 1; b >= 0; b--) {
+                wider += widthHistogram[b + 1];
+                long cost = (long) m * b + (long) wider * (8 + maxWidth - b);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    width = b;
                 }
-                indices.add(dict.get(val));
             }
             
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(out);
+            int exceptionCount = 0;
+            for (int i = 0; i < m; i++) {
+                if (width < 64 && (residuals[i] >>> width) != 0) exceptions[exceptionCount++] = i;
+            }
             
-            try {
-                dos.writeInt(dict.size());
-                for (Map.Entry<Long, Integer> entry : dict.entrySet()) {
-                    dos.writeLong(entry.getKey());
-                    dos.writeInt(entry.getValue());
-                }
-                
-                dos.writeInt(indices.size());
-                for (int idx : indices) {
-                    dos.writeInt(idx);
-                }
-            } catch (IOException e) {
-                return input.clone();
+            putVarLong(out, reference);
+            out.put((byte) width);
+            out.put((byte) exceptionCount);
+            BitOutputStream packed = new BitOutputStream(out);
+            for (int i = 0; i < m; i++) {
+                packed.writeLong(residuals[i], width);
             }
+            packed.finish();
             
-            return out.toByteArray();
-        }
-        
-        public byte[] decode(byte[] encoded) {
-            try {
-                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(encoded));
-                
-                int dictSize = dis.readInt();
-                Map<Integer, Long> dict = new HashMap<>();
-                for (int i = 0; i < dictSize; i++) {
-                    long key = dis.readLong();
-                    int id = dis.readInt();
-                    dict.put(id, key);
+            if (exceptionCount > 0) {
+                int highWidth = maxWidth - width;
+                out.put((byte) highWidth);
+                for (int e = 0; e < exceptionCount; e++) {
+                    out.put((byte) exceptions[e]);
                 }
-                
-                int count = dis.readInt();
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                ByteBuffer bb = ByteBuffer.allocate(8);
-                
-                for (int i = 0; i < count; i++) {
-                    int idx = dis.readInt();
-                    bb.clear();
-                    bb.putLong(dict.get(idx));
-                    out.write(bb.array(), 0, 8);
+                BitOutputStream high = new BitOutputStream(out);
+                for (int e = 0; e < exceptionCount; e++) {
+                    high.writeLong(residuals[exceptions[e]] >>> width, highWidth);
                 }
-                
-                return out.toByteArray();
-            } catch (IOException e) {
-                return encoded.clone();
-            }
-        }
-    }
-    
-    // Bit I/O helpers
-    static class BitOutputStream {
-        private ByteArrayOutputStream out = new ByteArrayOutputStream();
-        private int currentByte = 0;
-        private int numBitsInCurrentByte = 0;
-        
-        void writeBit(int bit) {
-            currentByte = (currentByte << 1) | (bit & 1);
-            numBitsInCurrentByte++;
-            if (numBitsInCurrentByte == 8) {
-                out.write(currentByte);
-                currentByte = 0;
-                numBitsInCurrentByte = 0;
+                high.finish();
             }
         }
         
-        void writeInt(int value, int numBits) {
-            for (int i = numBits - 1; i >= 0; i--) {
-                writeBit((value >> i) & 1);
+        private void readBlock(ByteBuffer in, long[] dest, int offset, int n) {
+            long value = getVarLong(in);
+            dest[offset] = value;
+            if (n == 1) return;
+            long delta = getVarLong(in);
+            value += delta;
+            dest[offset + 1] = value;
+            if (n == 2) return;
+            
+            int m = n - 2;
+            long reference = getVarLong(in);
+            int width = in.get() & 0xFF;
+            int exceptionCount = in.get() & 0xFF;
+            BitInputStream packed = new BitInputStream(in);
+            for (int i = 0; i < m; i++) {
+                residuals[i] = packed.readLong(width);
             }
-        }
-        
-        void writeLong(long value, int numBits) {
-            for (int i = numBits - 1; i >= 0; i--) {
-                writeBit((int)((value >> i) & 1));
+            in.position(in.position() + packed.bytesConsumed());
+            
+            if (exceptionCount > 0) {
+                int highWidth = in.get() & 0xFF;
+                int positions = in.position();
+                in.position(positions + exceptionCount);
+                BitInputStream high = new BitInputStream(in);
+                for (int e = 0; e < exceptionCount; e++) {
+                    residuals[in.get(positions + e) & 0xFF] |= high.readLong(highWidth) << width;
+                }
+                in.position(in.position() + high.bytesConsumed());
             }
-        }
-        
-        byte[] toByteArray() {
-            if (numBitsInCurrentByte > 0) {
-                currentByte <<= (8 - numBitsInCurrentByte);
-                out.write(currentByte);
+            
+            for (int i = 0; i < m; i++) {
+                delta += reference + residuals[i];
+                value += delta;
+                dest[offset + i + 2] = value;
             }
-            return out.toByteArray();
         }
     }
     
-    static class BitInputStream {
-        private byte[] data;
-        private int byteIndex = 0;
-        private int bitIndex = 0;
-        
-        BitInputStream(byte[] data) {
-            this.data = data;
-        }
-        
-        int readBit() {
-            if (byteIndex >= data.length) return -1;
-            int bit = (data[byteIndex] >> (7 - bitIndex)) & 1;
-            bitIndex++;
-            if (bitIndex == 8) {
-                bitIndex = 0;
-                byteIndex++;
-            }
-            return bit;
-        }
-        
-        int readInt(int numBits) {
-            int result = 0;
-            for (int i = 0; i < numBits; i++) {
-                result = (result << 1) | readBit();
-            }
-            return result;
+    // Varint helpers shared by the typed codecs
+    static void putUnsignedVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
         }
-        
-        long readLong(int numBits) {
-            long result = 0;
-            for (int i = 0; i < numBits; i++) {
-                result = (result << 1) | readBit();
-            }
-            return result;
+        out.put((byte) value);
+    }
+    
+    static int getUnsignedVarInt(ByteBuffer in) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+    
+    static void putVarLong(ByteBuffer out, long value) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
         }
+        out.put((byte) v);
+    }
+    
+    static long getVarLong(ByteBuffer in) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (result >>> 1) ^ -(result & 1);
     }
     
     // Benchmark result
     static class BenchmarkResult {
         String algorithm;
         String target;
-        long encodeTimeNs;
-        long decodeTimeNs;
+        // Per-call latency distributions (LatencyHarness)
+        LatencyHarness.Stats encode;
+        LatencyHarness.Stats decode;
         int originalSize;
         int encodedSize;
         double ratio;
+        // Heap bytes per encode and per decode (BufferPool on), and per encode+decode round
+        // trip with and without BufferPool; -1 where the JVM does not count allocations
+        long encodeBytesPerOp = -1;
+        long decodeBytesPerOp = -1;
+        long pooledBytesPerOp = -1;
+        long unpooledBytesPerOp = -1;
+        // Collections and collection ms while this row was measured
+        long gcCount;
+        long gcTimeMs;
+        // Scratch the codec instance retains; instances are reused across columns, so this is
+        // the peak up to and including this column
+        long scratchBytes;
         
-        BenchmarkResult(String algorithm, String target, long encodeTimeNs, long decodeTimeNs, 
+        BenchmarkResult(String algorithm, String target, LatencyHarness.Stats encode, LatencyHarness.Stats decode,
                        int originalSize, int encodedSize) {
             this.algorithm = algorithm;
             this.target = target;
-            this.encodeTimeNs = encodeTimeNs;
-            this.decodeTimeNs = decodeTimeNs;
+            this.encode = encode;
+            this.decode = decode;
             this.originalSize = originalSize;
             this.encodedSize = encodedSize;
             this.ratio = (double) encodedSize / originalSize;
         }
     }
     
+    // Byte-path vs typed-path timings for one column; byte timings include the
+    // longsToBytes/floatsToBytes conversion and the conversion back after decoding
+    static class TypedResult {
+        String algorithm;
+        String target;
+        // Per-call latency distributions (LatencyHarness) of the byte[] and the typed path
+        LatencyHarness.Stats byteEncode;
+        LatencyHarness.Stats typedEncode;
+        LatencyHarness.Stats byteDecode;
+        LatencyHarness.Stats typedDecode;
+        int byteEncodedSize;
+        int typedEncodedSize;
+        
+        TypedResult(String algorithm, String target, LatencyHarness.Stats byteEncode, LatencyHarness.Stats typedEncode,
+                   LatencyHarness.Stats byteDecode, LatencyHarness.Stats typedDecode, int byteEncodedSize,
+                   int typedEncodedSize) {
+            this.algorithm = algorithm;
+            this.target = target;
+            this.byteEncode = byteEncode;
+            this.typedEncode = typedEncode;
+            this.byteDecode = byteDecode;
+            this.typedDecode = typedDecode;
+            this.byteEncodedSize = byteEncodedSize;
+            this.typedEncodedSize = typedEncodedSize;
+        }
+        
+        static TypedResult failed(String algorithm, String target, int size) {
+            LatencyHarness.Stats empty = LatencyHarness.Stats.EMPTY;
+            return new TypedResult(algorithm, target, empty, empty, empty, empty, size, size);
+        }
+    }
+    
     public static void main(String[] args) throws IOException {
         int seed = 42;
         if (args.length > 0) {
@@ -742,65 +1863,282 @@ public class EncodingBenchmarkNew {
         byte[] timestampsBytes = longsToBytes(batch.timestamps);
         byte[] valuesBytes = floatsToBytes(batch.values);
         byte[] combinedBytes = combineBytes(timestampsBytes, valuesBytes);
+        double[] doubleValues = flattenValues(BatchData.generateDeterministicDoubles(seed, batch.timestamps.length));
+        byte[] doublesBytes = doublesToBytes(doubleValues);
+        
+        List<Encoder> encoders = encoders();
+        
+        List<BenchmarkResult> results = new ArrayList<>();
+        
+        for (Encoder encoder : encoders) {
+            if (matchesColumn(encoder, "timestamps")) results.add(benchmark(encoder, "timestamps", timestampsBytes));
+            if (matchesColumn(encoder, "values")) results.add(benchmark(encoder, "values", valuesBytes));
+            if (matchesColumn(encoder, "doubles")) results.add(benchmark(encoder, "doubles", doublesBytes));
+            if (matchesColumn(encoder, "combined")) results.add(benchmark(encoder, "combined", combinedBytes));
+        }
+        
+        writeResultsToCSV(results, ResultFiles.path("res.csv"));
+        verifyLargeResiduals(encoders);
+        
+        // Typed path: primitive columns straight into a reused buffer, no byte[] round trip
+        float[] flatValues = flattenValues(batch.values);
+        List<TypedResult> typedResults = new ArrayList<>();
+        for (Encoder encoder : encoders) {
+            TypedCodec codec = (TypedCodec) encoder;
+            if (matchesColumn(encoder, "timestamps")) typedResults.add(benchmarkTyped(codec, "timestamps", batch.timestamps));
+            if (matchesColumn(encoder, "values")) typedResults.add(benchmarkTyped(codec, "values", flatValues));
+            if (matchesColumn(encoder, "doubles")) typedResults.add(benchmarkTyped(codec, "doubles", doubleValues));
+        }
+        
+        writeTypedResultsToCSV(typedResults, ResultFiles.path("typed_res.csv"));
+        
+        double encodeSaved = 0;
+        double decodeSaved = 0;
+        for (TypedResult r : typedResults) {
+            encodeSaved += r.byteEncode.mean - r.typedEncode.mean;
+            decodeSaved += r.byteDecode.mean - r.typedDecode.mean;
+        }
         
-        List<Encoder> encoders = Arrays.asList(
+        System.out.println("Encoding benchmark completed. Results written to res.csv");
+        System.out.printf("Typed path saved %.0f ns on encode and %.0f ns on decode (mean per call, summed over %d runs, typed_res.csv)%n",
+            encodeSaved, decodeSaved, typedResults.size());
+        printAllocations(results);
+    }
+    
+    // Every codec the harness runs, fresh instances; SweepRunner filters this list by name
+    static List<Encoder> encoders() {
+        return Arrays.asList(
             new IdentityEncoder(),
             new TS2DIFFEncoder(),
             new GorillaEncoder(),
+            new GorillaEncoder(8),
             new ChimpEncoder(),
+            new ChimpEncoder(1, 8),
+            new ChimpEncoder(128),
+            new ChimpEncoder(128, 8),
             new BitPackingEncoder(),
             new RLEEncoder(),
             new HuffmanEncoder(),
             new GolombRiceEncoder(),
             new SprintzEncoder(),
+            new SprintzEncoder(false, false),
+            new SprintzEncoder(true, true),
             new RLBEEncoder(),
             new RAKEEncoder(),
-            new DictionaryEncoder()
+            new DictionaryEncoder(),
+            new PFORDeltaEncoder()
         );
-        
-        List<BenchmarkResult> results = new ArrayList<>();
-        
-        for (Encoder encoder : encoders) {
-            results.add(benchmark(encoder, "timestamps", timestampsBytes));
-            results.add(benchmark(encoder, "values", valuesBytes));
-            results.add(benchmark(encoder, "combined", combinedBytes));
+    }
+    
+    // Per codec, summed over the columns it ran on
+    static void printAllocations(List<BenchmarkResult> results) {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (BenchmarkResult r : results) {
+            long[] t = totals.computeIfAbsent(r.algorithm, k -> new long[2]);
+            t[0] += r.pooledBytesPerOp;
+            t[1] += r.unpooledBytesPerOp;
         }
-        
-        writeResultsToCSV(results, "/Users/hossein/Desktop/db-encoding/res.csv");
-        
-        System.out.println("Encoding benchmark completed. Results written to res.csv");
+        System.out.println("Allocated bytes per encode+decode, all columns (pooled / unpooled):");
+        for (Map.Entry<String, long[]> e : totals.entrySet()) {
+            System.out.printf("  %-18s %10d / %d%n", e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+    }
+    
+    // Word width of each benchmark column; 0 for the mixed-width combined bytes
+    static int columnWordBytes(String target) {
+        switch (target) {
+            case "timestamps":
+            case "doubles":
+                return 8;
+            case "values":
+                return 4;
+            default:
+                return 0;
+        }
+    }
+    
+    // XOR codecs read IEEE words of a fixed width, so they only run on columns of that
+    // width; every other codec runs on every column
+    static boolean matchesColumn(Encoder encoder, String target) {
+        if (!(encoder instanceof GorillaEncoder) && !(encoder instanceof ChimpEncoder)) return true;
+        return ((TypedCodec) encoder).wordBytes() == columnWordBytes(target);
     }
     
+    // Round trips averaged for the allocation figures
+    static final int ALLOCATION_RUNS = 50;
+    
     static BenchmarkResult benchmark(Encoder encoder, String target, byte[] data) {
         try {
-            for (int i = 0; i < 10; i++) {
-                byte[] encoded = encoder.encode(data);
-                encoder.decode(encoded);
-            }
-            
-            long encodeStart = System.nanoTime();
+            long[] gcBefore = AllocationMeter.gcTotals();
+            LatencyHarness.Stats encode = LatencyHarness.measure(() -> encoder.encode(data));
             byte[] encoded = encoder.encode(data);
-            long encodeEnd = System.nanoTime();
             
-            long decodeStart = System.nanoTime();
+            LatencyHarness.Stats decode = LatencyHarness.measure(() -> encoder.decode(encoded));
             byte[] decoded = encoder.decode(encoded);
-            long decodeEnd = System.nanoTime();
             
             if (!Arrays.equals(data, decoded)) {
                 System.err.println("WARNING: " + encoder.getName() + " on " + target + " failed verification!");
             }
             
-            return new BenchmarkResult(
+            BenchmarkResult result = new BenchmarkResult(
                 encoder.getName(),
                 target,
-                encodeEnd - encodeStart,
-                decodeEnd - decodeStart,
+                encode,
+                decode,
                 data.length,
                 encoded.length
             );
+            result.encodeBytesPerOp = AllocationMeter.bytesPerOp(() -> encoder.encode(data), ALLOCATION_RUNS);
+            result.decodeBytesPerOp = AllocationMeter.bytesPerOp(() -> encoder.decode(encoded), ALLOCATION_RUNS);
+            long[] allocated = AllocationMeter.bytesPerOpPooledAndUnpooled(
+                () -> encoder.decode(encoder.encode(data)), ALLOCATION_RUNS);
+            result.pooledBytesPerOp = allocated[0];
+            result.unpooledBytesPerOp = allocated[1];
+            long[] gcAfter = AllocationMeter.gcTotals();
+            result.gcCount = gcAfter[0] - gcBefore[0];
+            result.gcTimeMs = gcAfter[1] - gcBefore[1];
+            result.scratchBytes = AllocationMeter.scratchBytes(encoder);
+            return result;
         } catch (Exception e) {
             System.err.println("ERROR: " + encoder.getName() + " on " + target + ": " + e.getMessage());
-            return new BenchmarkResult(encoder.getName(), target, 0, 0, data.length, data.length);
+            return new BenchmarkResult(encoder.getName(), target, LatencyHarness.Stats.EMPTY,
+                LatencyHarness.Stats.EMPTY, data.length, data.length);
+        }
+    }
+    
+    // Round trips on 64-bit columns whose zigzagged delta-of-deltas reach 2^62 and past
+    // 2^63: a single jump, random-long outliers every 50 values, and alternating extremes
+    static void verifyLargeResiduals(List<Encoder> encoders) {
+        Random random = new Random(42);
+        long[] outliers = new long[1000];
+        for (int i = 0; i < outliers.length; i++) {
+            outliers[i] = i % 50 == 25 ? random.nextLong() : BatchData.BASE_TIMESTAMP_MS + i * BatchData.INTERVAL_MS;
+        }
+        long[] extremes = new long[64];
+        for (int i = 0; i < extremes.length; i++) {
+            extremes[i] = i % 2 == 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        long[][] columns = {{0, 1L << 62, 0, 1, 2, 3}, outliers, extremes};
+        
+        for (Encoder encoder : encoders) {
+            if (!matchesColumn(encoder, "timestamps")) continue;
+            for (long[] column : columns) {
+                byte[] data = longsToBytes(column);
+                try {
+                    if (!Arrays.equals(data, encoder.decode(encoder.encode(data)))) {
+                        System.err.println("WARNING: " + encoder.getName() + " on " + column.length
+                            + " large-residual longs failed verification!");
+                    }
+                } catch (Exception e) {
+                    System.err.println("ERROR: " + encoder.getName() + " on " + column.length
+                        + " large-residual longs threw exception: " + e);
+                }
+            }
+        }
+    }
+    
+    static TypedResult benchmarkTyped(TypedCodec codec, String target, long[] values) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(codec.maxEncodedSize(values.length));
+            long[] decoded = new long[values.length];
+            
+            LatencyHarness.Stats byteEncode = LatencyHarness.measure(() -> codec.encode(longsToBytes(values)));
+            byte[] encoded = codec.encode(longsToBytes(values));
+            LatencyHarness.Stats byteDecode = LatencyHarness.measure(() -> bytesToLongs(codec.decode(encoded)));
+            long[] byteDecoded = bytesToLongs(codec.decode(encoded));
+            
+            LatencyHarness.Stats typedEncode = LatencyHarness.measure(() -> {
+                buffer.clear();
+                codec.encodeLongs(values, 0, values.length, buffer);
+                return buffer;
+            });
+            buffer.flip();
+            int typedSize = buffer.remaining();
+            LatencyHarness.Stats typedDecode = LatencyHarness.measure(() -> {
+                buffer.rewind();
+                codec.decodeLongs(buffer, decoded, 0);
+                return decoded;
+            });
+            
+            if (!Arrays.equals(values, decoded) || !Arrays.equals(values, byteDecoded)) {
+                System.err.println("WARNING: typed " + codec.getName() + " on " + target + " failed verification!");
+            }
+            
+            return new TypedResult(codec.getName(), target, byteEncode, typedEncode, byteDecode, typedDecode,
+                encoded.length, typedSize);
+        } catch (Exception e) {
+            System.err.println("ERROR: typed " + codec.getName() + " on " + target + ": " + e.getMessage());
+            return TypedResult.failed(codec.getName(), target, values.length * 8);
+        }
+    }
+    
+    static TypedResult benchmarkTyped(TypedCodec codec, String target, float[] values) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(codec.maxEncodedSize(values.length));
+            float[] decoded = new float[values.length];
+            
+            LatencyHarness.Stats byteEncode = LatencyHarness.measure(() -> codec.encode(floatsToBytes(values)));
+            byte[] encoded = codec.encode(floatsToBytes(values));
+            LatencyHarness.Stats byteDecode = LatencyHarness.measure(() -> bytesToFloats(codec.decode(encoded)));
+            float[] byteDecoded = bytesToFloats(codec.decode(encoded));
+            
+            LatencyHarness.Stats typedEncode = LatencyHarness.measure(() -> {
+                buffer.clear();
+                codec.encodeFloats(values, 0, values.length, buffer);
+                return buffer;
+            });
+            buffer.flip();
+            int typedSize = buffer.remaining();
+            LatencyHarness.Stats typedDecode = LatencyHarness.measure(() -> {
+                buffer.rewind();
+                codec.decodeFloats(buffer, decoded, 0);
+                return decoded;
+            });
+            
+            if (!Arrays.equals(values, decoded) || !Arrays.equals(values, byteDecoded)) {
+                System.err.println("WARNING: typed " + codec.getName() + " on " + target + " failed verification!");
+            }
+            
+            return new TypedResult(codec.getName(), target, byteEncode, typedEncode, byteDecode, typedDecode,
+                encoded.length, typedSize);
+        } catch (Exception e) {
+            System.err.println("ERROR: typed " + codec.getName() + " on " + target + ": " + e.getMessage());
+            return TypedResult.failed(codec.getName(), target, values.length * 4);
+        }
+    }
+    
+    static TypedResult benchmarkTyped(TypedCodec codec, String target, double[] values) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(codec.maxEncodedSize(values.length));
+            double[] decoded = new double[values.length];
+            
+            LatencyHarness.Stats byteEncode = LatencyHarness.measure(() -> codec.encode(doublesToBytes(values)));
+            byte[] encoded = codec.encode(doublesToBytes(values));
+            LatencyHarness.Stats byteDecode = LatencyHarness.measure(() -> bytesToDoubles(codec.decode(encoded)));
+            double[] byteDecoded = bytesToDoubles(codec.decode(encoded));
+            
+            LatencyHarness.Stats typedEncode = LatencyHarness.measure(() -> {
+                buffer.clear();
+                codec.encodeDoubles(values, 0, values.length, buffer);
+                return buffer;
+            });
+            buffer.flip();
+            int typedSize = buffer.remaining();
+            LatencyHarness.Stats typedDecode = LatencyHarness.measure(() -> {
+                buffer.rewind();
+                codec.decodeDoubles(buffer, decoded, 0);
+                return decoded;
+            });
+            
+            if (!Arrays.equals(values, decoded) || !Arrays.equals(values, byteDecoded)) {
+                System.err.println("WARNING: typed " + codec.getName() + " on " + target + " failed verification!");
+            }
+            
+            return new TypedResult(codec.getName(), target, byteEncode, typedEncode, byteDecode, typedDecode,
+                encoded.length, typedSize);
+        } catch (Exception e) {
+            System.err.println("ERROR: typed " + codec.getName() + " on " + target + ": " + e.getMessage());
+            return TypedResult.failed(codec.getName(), target, values.length * 8);
         }
     }
     
@@ -822,6 +2160,68 @@ public class EncodingBenchmarkNew {
         return bb.array();
     }
     
+    static byte[] floatsToBytes(float[] values) {
+        ByteBuffer bb = ByteBuffer.allocate(values.length * 4);
+        for (float f : values) {
+            bb.putFloat(f);
+        }
+        return bb.array();
+    }
+    
+    static byte[] doublesToBytes(double[] values) {
+        ByteBuffer bb = ByteBuffer.allocate(values.length * 8);
+        for (double d : values) {
+            bb.putDouble(d);
+        }
+        return bb.array();
+    }
+    
+    static long[] bytesToLongs(byte[] bytes) {
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        long[] longs = new long[bytes.length / 8];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = bb.getLong();
+        }
+        return longs;
+    }
+    
+    static float[] bytesToFloats(byte[] bytes) {
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        float[] floats = new float[bytes.length / 4];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = bb.getFloat();
+        }
+        return floats;
+    }
+    
+    static double[] bytesToDoubles(byte[] bytes) {
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        double[] doubles = new double[bytes.length / 8];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = bb.getDouble();
+        }
+        return doubles;
+    }
+    
+    // Row-major flattening, same element order as floatsToBytes(float[][])
+    static float[] flattenValues(float[][] values) {
+        int columns = values[0].length;
+        float[] flat = new float[values.length * columns];
+        for (int i = 0; i < values.length; i++) {
+            System.arraycopy(values[i], 0, flat, i * columns, columns);
+        }
+        return flat;
+    }
+    
+    static double[] flattenValues(double[][] values) {
+        int columns = values[0].length;
+        double[] flat = new double[values.length * columns];
+        for (int i = 0; i < values.length; i++) {
+            System.arraycopy(values[i], 0, flat, i * columns, columns);
+        }
+        return flat;
+    }
+    
     static byte[] combineBytes(byte[] a, byte[] b) {
         byte[] combined = new byte[a.length + b.length];
         System.arraycopy(a, 0, combined, 0, a.length);
@@ -831,13 +2231,33 @@ public class EncodingBenchmarkNew {
     
     static void writeResultsToCSV(List<BenchmarkResult> results, String filename) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("algorithm,target,encode_time_ns,decode_time_ns,original_size_bytes,encoded_size_bytes,compression_ratio");
+            writer.println("algorithm,target," + LatencyHarness.Stats.csvHeader("encode") + ","
+                + LatencyHarness.Stats.csvHeader("decode") + ",original_size_bytes,encoded_size_bytes,compression_ratio,"
+                + "encode_alloc_bytes_per_op,decode_alloc_bytes_per_op,pooled_alloc_bytes_per_roundtrip,"
+                + "unpooled_alloc_bytes_per_roundtrip,gc_count,gc_time_ms,peak_scratch_bytes");
             for (BenchmarkResult r : results) {
-                writer.printf("%s,%s,%d,%d,%d,%d,%.4f%n",
-                    r.algorithm, r.target, r.encodeTimeNs, r.decodeTimeNs,
-                    r.originalSize, r.encodedSize, r.ratio);
+                writer.printf("%s,%s,%s,%s,%d,%d,%.4f,%d,%d,%d,%d,%d,%d,%d%n",
+                    r.algorithm, r.target, r.encode.toCsv(), r.decode.toCsv(),
+                    r.originalSize, r.encodedSize, r.ratio,
+                    r.encodeBytesPerOp, r.decodeBytesPerOp, r.pooledBytesPerOp, r.unpooledBytesPerOp,
+                    r.gcCount, r.gcTimeMs, r.scratchBytes);
+            }
+        }
+    }
+    
+    static void writeTypedResultsToCSV(List<TypedResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("algorithm,target," + LatencyHarness.Stats.csvHeader("byte_encode") + ","
+                + LatencyHarness.Stats.csvHeader("typed_encode") + ",encode_saved_mean_ns,"
+                + LatencyHarness.Stats.csvHeader("byte_decode") + "," + LatencyHarness.Stats.csvHeader("typed_decode")
+                + ",decode_saved_mean_ns,byte_encoded_size_bytes,typed_encoded_size_bytes");
+            for (TypedResult r : results) {
+                writer.printf(Locale.ROOT, "%s,%s,%s,%s,%.1f,%s,%s,%.1f,%d,%d%n",
+                    r.algorithm, r.target,
+                    r.byteEncode.toCsv(), r.typedEncode.toCsv(), r.byteEncode.mean - r.typedEncode.mean,
+                    r.byteDecode.toCsv(), r.typedDecode.toCsv(), r.byteDecode.mean - r.typedDecode.mean,
+                    r.byteEncodedSize, r.typedEncodedSize);
             }
         }
     }
 }
-
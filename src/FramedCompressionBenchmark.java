@@ -0,0 +1,172 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+// Throughput of FramedCompressor by codec, block size and pool size. The input is a stream of
+// totalMB megabytes that cycles over SOURCE_MB of generated batch bytes (timestamps, then
+// values), so multi-GB runs never hold the input in memory; compressed output goes to a
+// counting sink. Decompression replays the frame of one source cycle until the same number of
+// bytes has been produced. Pool sizes go 1, 2, 4, ... up to the available processors.
+//
+// Usage: FramedCompressionBenchmark [seed] [totalMB]
+public class FramedCompressionBenchmark {
+    static final int SOURCE_MB = 16;
+    static final int DEFAULT_TOTAL_MB = 256;
+    static final int[] BLOCK_SIZES = {64 << 10, 1 << 20, 4 << 20};
+
+    static class FramedResult {
+        String codec;
+        int blockSize;
+        int threads;
+        long inputBytes;
+        long compressedBytes;
+        double compressMBps;
+        double decompressMBps;
+
+        FramedResult(String codec, int blockSize, int threads, long inputBytes, long compressedBytes,
+                     double compressMBps, double decompressMBps) {
+            this.codec = codec;
+            this.blockSize = blockSize;
+            this.threads = threads;
+            this.inputBytes = inputBytes;
+            this.compressedBytes = compressedBytes;
+            this.compressMBps = compressMBps;
+            this.decompressMBps = decompressMBps;
+        }
+    }
+
+    // Repeats source until limit bytes have been read
+    static class CyclingInputStream extends InputStream {
+        private final byte[] source;
+        private long remaining;
+        private int pos;
+
+        CyclingInputStream(byte[] source, long limit) {
+            this.source = source;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) return -1;
+            remaining--;
+            int b = source[pos++] & 0xFF;
+            if (pos == source.length) pos = 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) return -1;
+            int n = (int) Math.min(Math.min(len, remaining), source.length - pos);
+            System.arraycopy(source, pos, b, off, n);
+            pos += n;
+            if (pos == source.length) pos = 0;
+            remaining -= n;
+            return n;
+        }
+    }
+
+    // Discards everything and counts it
+    static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int seed = 42;
+        if (args.length > 0) {
+            seed = Integer.parseInt(args[0]);
+        }
+        long totalBytes = (long) (args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TOTAL_MB) << 20;
+
+        // Rows of 16 bytes: 8-byte timestamp and two 4-byte readings
+        int rows = (SOURCE_MB << 20) / 16;
+        BatchData.Batch batch = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS, BatchData.INTERVAL_MS);
+        byte[] source = CompressionBenchmarkNew.combineBytes(CompressionBenchmarkNew.longsToBytes(batch.timestamps),
+            CompressionBenchmarkNew.floatsToBytes(batch.values));
+
+        List<Integer> threadCounts = new ArrayList<>();
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int t = 1; t < processors; t *= 2) {
+            threadCounts.add(t);
+        }
+        threadCounts.add(processors);
+
+        List<FramedResult> results = new ArrayList<>();
+        for (FramedCompressor.BlockCodec codec : FramedCompressor.BlockCodec.values()) {
+            for (int blockSize : BLOCK_SIZES) {
+                for (int threads : threadCounts) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    try {
+                        results.add(benchmark(new FramedCompressor(codec, blockSize, pool), source, totalBytes, threads));
+                    } finally {
+                        pool.shutdown();
+                    }
+                }
+            }
+        }
+
+        writeResultsToCSV(results, ResultFiles.path("framed_res.csv"));
+        System.out.println("Framed compression benchmark completed. Results written to framed_res.csv");
+
+        System.out.println("MB/s compress / decompress (speedup over 1 thread):");
+        FramedResult single = null;
+        for (FramedResult r : results) {
+            if (r.threads == 1) single = r;
+            System.out.printf("  %-13s %5d KB  %2d threads  ratio %6.3f  %8.1f / %8.1f  (%.2fx / %.2fx)%n",
+                r.codec, r.blockSize >> 10, r.threads, (double) r.compressedBytes / r.inputBytes,
+                r.compressMBps, r.decompressMBps, r.compressMBps / single.compressMBps,
+                r.decompressMBps / single.decompressMBps);
+        }
+    }
+
+    static FramedResult benchmark(FramedCompressor compressor, byte[] source, long totalBytes, int threads)
+            throws IOException {
+        // Warmup, and the frame that the decompression pass replays
+        byte[] frame = compressor.compress(source);
+        if (!Arrays.equals(source, compressor.decompress(frame))) {
+            System.err.println("WARNING: " + compressor.getName() + " failed verification!");
+        }
+
+        CountingOutputStream compressedSink = new CountingOutputStream();
+        long compressStart = System.nanoTime();
+        compressor.compress(new CyclingInputStream(source, totalBytes), compressedSink);
+        long compressEnd = System.nanoTime();
+
+        CountingOutputStream restoredSink = new CountingOutputStream();
+        long decompressStart = System.nanoTime();
+        while (restoredSink.count < totalBytes) {
+            compressor.decompress(new ByteArrayInputStream(frame), restoredSink);
+        }
+        long decompressEnd = System.nanoTime();
+
+        return new FramedResult(compressor.getName(), compressor.blockSize(), threads, totalBytes, compressedSink.count,
+            mbPerSecond(totalBytes, compressEnd - compressStart),
+            mbPerSecond(restoredSink.count, decompressEnd - decompressStart));
+    }
+
+    static double mbPerSecond(long bytes, long nanos) {
+        return bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    static void writeResultsToCSV(List<FramedResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("codec,block_size_bytes,threads,input_bytes,compressed_bytes,compression_ratio,compress_mb_per_s,decompress_mb_per_s");
+            for (FramedResult r : results) {
+                writer.printf("%s,%d,%d,%d,%d,%.4f,%.1f,%.1f%n",
+                    r.codec, r.blockSize, r.threads, r.inputBytes, r.compressedBytes,
+                    (double) r.compressedBytes / r.inputBytes, r.compressMBps, r.decompressMBps);
+            }
+        }
+    }
+}
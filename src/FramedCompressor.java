@@ -0,0 +1,327 @@
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+// Framed block compression for inputs too large for a single call on a single thread. The
+// input is cut into independent blocks of blockSize bytes (64 KB to 4 MB, the last one
+// shorter) which are compressed as ForkJoinPool tasks and written in order:
+//
+//   frame header  "DBF1", codec id (1 byte), block size (4 bytes, big-endian)
+//   per block     compressed length (4), raw length (4), CRC32C of the raw bytes (4), payload
+//   end marker    compressed length 0 (4)
+//
+// Blocks share no history, so any one can be decoded alone and decompression parallelizes
+// the same way. The stream entry points keep at most maxInFlight blocks in memory
+// (2 per pool thread by default) rather than the whole input and output; the byte[] entry
+// points of Compressor split and reassemble in memory. The reader takes the codec from the
+// frame header, so one FramedCompressor decodes frames of any BlockCodec.
+public class FramedCompressor implements CompressionBenchmarkNew.Compressor {
+    // Block codecs by frame id. The Compressor implementations keep per-call state (GZIP's
+    // CRC32, LZ4 scratch), so each pool thread gets its own instance.
+    public enum BlockCodec {
+        SNAPPY(1, CompressionBenchmarkNew.SnappyCompressor::new),
+        LZ4(2, CompressionBenchmarkNew.LZ4Compressor::new),
+        ZLIB(3, CompressionBenchmarkNew.ZlibCompressor::new),
+        GZIP(4, CompressionBenchmarkNew.GZIPCompressor::new);
+
+        final int id;
+        private final ThreadLocal<CompressionBenchmarkNew.Compressor> local;
+
+        BlockCodec(int id, Supplier<CompressionBenchmarkNew.Compressor> factory) {
+            this.id = id;
+            this.local = ThreadLocal.withInitial(factory);
+        }
+
+        CompressionBenchmarkNew.Compressor compressor() {
+            return local.get();
+        }
+
+        static BlockCodec byId(int id) throws IOException {
+            for (BlockCodec codec : values()) {
+                if (codec.id == id) return codec;
+            }
+            throw new IOException("Unknown block codec id " + id);
+        }
+    }
+
+    static final int MIN_BLOCK_SIZE = 64 << 10;
+    static final int MAX_BLOCK_SIZE = 4 << 20;
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    static final byte[] MAGIC = {'D', 'B', 'F', '1'};
+    static final int FRAME_HEADER_BYTES = 9;
+    static final int BLOCK_HEADER_BYTES = 12;
+
+    private final BlockCodec codec;
+    private final int blockSize;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+
+    public FramedCompressor(BlockCodec codec) {
+        this(codec, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public FramedCompressor(BlockCodec codec, int blockSize, ForkJoinPool pool) {
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be between 64 KB and 4 MB: " + blockSize);
+        }
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.pool = pool;
+        this.maxInFlight = 2 * pool.getParallelism();
+    }
+
+    public String getName() { return "FRAMED_" + codec; }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    // One compressed or decompressed block on its way to the writer
+    private static final class Block {
+        final int rawLength;
+        final int checksum;
+        final byte[] data;
+
+        Block(int rawLength, int checksum, byte[] data) {
+            this.rawLength = rawLength;
+            this.checksum = checksum;
+            this.data = data;
+        }
+    }
+
+    // Reads in to the end and writes one frame to out; returns the number of bytes written
+    public long compress(InputStream in, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeFrameHeader(data);
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        // DataOutputStream.size() stops at 2 GB
+        long written = FRAME_HEADER_BYTES + 4;
+        try {
+            while (true) {
+                byte[] raw = in.readNBytes(blockSize);
+                if (raw.length == 0) break;
+                pending.add(pool.submit(() -> encodeBlock(codec, raw, 0, raw.length)));
+                if (pending.size() >= maxInFlight) written += writeBlock(data, join(pending.poll()));
+            }
+            while (!pending.isEmpty()) {
+                written += writeBlock(data, join(pending.poll()));
+            }
+        } finally {
+            for (ForkJoinTask<Block> task : pending) {
+                task.cancel(false);
+            }
+        }
+        data.writeInt(0);
+        data.flush();
+        return written;
+    }
+
+    // Reads one frame from in and writes the original bytes to out; returns their count
+    public long decompress(InputStream in, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        FrameHeader header = readFrameHeader(data);
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        long total = 0;
+        try {
+            while (true) {
+                int compressedLength = data.readInt();
+                if (compressedLength == 0) break;
+                int rawLength = data.readInt();
+                int checksum = data.readInt();
+                checkBlockLengths(header, compressedLength, rawLength);
+                byte[] payload = new byte[compressedLength];
+                data.readFully(payload);
+                pending.add(pool.submit(() -> new Block(rawLength, checksum,
+                    decodeBlock(header.codec, payload, 0, compressedLength, null, 0, rawLength, checksum))));
+                if (pending.size() >= maxInFlight) total += writeRaw(out, join(pending.poll()));
+            }
+            while (!pending.isEmpty()) {
+                total += writeRaw(out, join(pending.poll()));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated frame", e);
+        } finally {
+            for (ForkJoinTask<Block> task : pending) {
+                task.cancel(false);
+            }
+        }
+        out.flush();
+        return total;
+    }
+
+    public byte[] compress(byte[] input) throws IOException {
+        List<ForkJoinTask<Block>> tasks = new ArrayList<>();
+        for (int start = 0; start < input.length; start += blockSize) {
+            int from = start;
+            int length = Math.min(blockSize, input.length - start);
+            tasks.add(pool.submit(() -> encodeBlock(codec, input, from, length)));
+        }
+        Block[] blocks = new Block[tasks.size()];
+        long size = FRAME_HEADER_BYTES + 4;
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = join(tasks.get(i));
+            size += BLOCK_HEADER_BYTES + blocks[i].data.length;
+        }
+        if (size > Integer.MAX_VALUE - 8) throw new IOException("Framed output over 2 GB; use the stream API");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) size);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeFrameHeader(out);
+        for (Block block : blocks) {
+            writeBlock(out, block);
+        }
+        out.writeInt(0);
+        return bytes.toByteArray();
+    }
+
+    // Walks the block headers first, then decodes every block from its span of compressed
+    // into its slot of the result
+    public byte[] decompress(byte[] compressed) throws IOException {
+        FrameHeader header = readFrameHeader(new DataInputStream(new ByteArrayInputStream(compressed)));
+        ByteBuffer in = ByteBuffer.wrap(compressed);
+        in.position(FRAME_HEADER_BYTES);
+        List<int[]> spans = new ArrayList<>();
+        long total = 0;
+        try {
+            while (true) {
+                int compressedLength = in.getInt();
+                if (compressedLength == 0) break;
+                int rawLength = in.getInt();
+                int checksum = in.getInt();
+                checkBlockLengths(header, compressedLength, rawLength);
+                if (in.remaining() < compressedLength) throw new IOException("Truncated frame");
+                spans.add(new int[] {in.position(), compressedLength, rawLength, checksum, (int) total});
+                in.position(in.position() + compressedLength);
+                total += rawLength;
+                if (total > Integer.MAX_VALUE - 8) throw new IOException("Framed input over 2 GB; use the stream API");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated frame", e);
+        }
+
+        byte[] restored = new byte[(int) total];
+        List<ForkJoinTask<Block>> tasks = new ArrayList<>();
+        for (int[] span : spans) {
+            tasks.add(pool.submit(() -> {
+                decodeBlock(header.codec, compressed, span[0], span[1], restored, span[4], span[2], span[3]);
+                return null;
+            }));
+        }
+        for (ForkJoinTask<Block> task : tasks) {
+            join(task);
+        }
+        return restored;
+    }
+
+    private static Block encodeBlock(BlockCodec codec, byte[] input, int offset, int length) throws IOException {
+        byte[] raw = offset == 0 && length == input.length ? input : Arrays.copyOfRange(input, offset, offset + length);
+        CRC32C crc = new CRC32C();
+        crc.update(raw, 0, length);
+        return new Block(length, (int) crc.getValue(), codec.compressor().compress(raw));
+    }
+
+    // Decodes compressed[offset, offset + length) into raw[rawOffset, rawOffset + rawLength)
+    // and returns raw; with raw null, into an array of its own. SNAPPY and LZ4 decode in place
+    // through their ByteBuffer calls; ZLIB and GZIP inflate from the span into their own
+    // array, which is copied into place when raw is given.
+    private static byte[] decodeBlock(BlockCodec codec, byte[] compressed, int offset, int length, byte[] raw,
+                                    int rawOffset, int rawLength, int checksum) throws IOException {
+        CompressionBenchmarkNew.Compressor compressor = codec.compressor();
+        if (compressor instanceof CompressionBenchmarkNew.BufferCompressor) {
+            CompressionBenchmarkNew.BufferCompressor buffered = (CompressionBenchmarkNew.BufferCompressor) compressor;
+            ByteBuffer in = ByteBuffer.wrap(compressed, offset, length);
+            int decoded = buffered.decompressedLength(in);
+            if (decoded != rawLength) {
+                throw new IOException("Block decoded to " + decoded + " bytes, header says " + rawLength);
+            }
+            if (raw == null) raw = new byte[rawLength];
+            buffered.decompress(in, ByteBuffer.wrap(raw, rawOffset, rawLength));
+        } else {
+            byte[] decoded = compressor instanceof CompressionBenchmarkNew.ZlibCompressor
+                ? ((CompressionBenchmarkNew.ZlibCompressor) compressor).decompress(compressed, offset, length)
+                : ((CompressionBenchmarkNew.GZIPCompressor) compressor).decompress(compressed, offset, length);
+            if (decoded.length != rawLength) {
+                throw new IOException("Block decoded to " + decoded.length + " bytes, header says " + rawLength);
+            }
+            if (raw == null) {
+                raw = decoded;
+            } else {
+                CopyMeter.count(rawLength);
+                System.arraycopy(decoded, 0, raw, rawOffset, rawLength);
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(raw, rawOffset, rawLength);
+        if ((int) crc.getValue() != checksum) throw new IOException("Block checksum mismatch");
+        return raw;
+    }
+
+    private static final class FrameHeader {
+        final BlockCodec codec;
+        final int blockSize;
+
+        FrameHeader(BlockCodec codec, int blockSize) {
+            this.codec = codec;
+            this.blockSize = blockSize;
+        }
+    }
+
+    private void writeFrameHeader(DataOutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(codec.id);
+        out.writeInt(blockSize);
+    }
+
+    private static FrameHeader readFrameHeader(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        try {
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a framed stream");
+            BlockCodec codec = BlockCodec.byId(in.readUnsignedByte());
+            int blockSize = in.readInt();
+            if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+                throw new IOException("Corrupt frame header: block size " + blockSize);
+            }
+            return new FrameHeader(codec, blockSize);
+        } catch (EOFException e) {
+            throw new IOException("Truncated frame header", e);
+        }
+    }
+
+    // Bounds the allocation a corrupt header can cause; every codec here stays well under
+    // twice the input plus a small header
+    private static void checkBlockLengths(FrameHeader header, int compressedLength, int rawLength) throws IOException {
+        if (rawLength <= 0 || rawLength > header.blockSize
+                || compressedLength < 0 || compressedLength > 2 * header.blockSize + 1024) {
+            throw new IOException("Corrupt block header: " + compressedLength + " -> " + rawLength + " bytes");
+        }
+    }
+
+    private static int writeBlock(DataOutputStream out, Block block) throws IOException {
+        out.writeInt(block.data.length);
+        out.writeInt(block.rawLength);
+        out.writeInt(block.checksum);
+        out.write(block.data);
+        return BLOCK_HEADER_BYTES + block.data.length;
+    }
+
+    private static int writeRaw(OutputStream out, Block block) throws IOException {
+        out.write(block.data, 0, block.rawLength);
+        return block.rawLength;
+    }
+
+    // join() rethrows task failures unchecked; hand IOExceptions back as themselves
+    private static Block join(ForkJoinTask<Block> task) throws IOException {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) throw (IOException) cause;
+            }
+            throw e;
+        }
+    }
+}
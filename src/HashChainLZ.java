@@ -0,0 +1,300 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Pure-Java LZ77 with a hash table plus chain matcher, emitting LZ4 block format: each
+// sequence is a token (literal length << 4 | match length - 4), length extension bytes of
+// 255, the literals, a 2-byte little-endian offset and the match extension. The last
+// sequence carries literals only; matches end at least LAST_LITERALS bytes before the end
+// and start at least MF_LIMIT bytes before it, so lz4-java can decode these blocks too.
+//
+// head[] maps a 4-byte hash to the latest position, chain[] links each position in the
+// 64 KB window to the previous one with the same hash. Stored positions are offset by a
+// per-call base, so stale entries from earlier inputs are skipped without clearing the
+// tables. Level sets how many candidates are tried: FAST takes the first one from a
+// 4K-entry table that stays in L1 and skips ahead through incompressible runs, NORMAL walks
+// 16 and HIGH 256 along the chains of a 64K-entry table, and HIGH also tries a match one
+// byte later before committing (lazy matching).
+//
+// Positions before start are history (a preset dictionary): they seed the tables and can
+// be matched against but are not emitted. Instances keep their tables between calls and
+// are not thread-safe.
+public class HashChainLZ {
+    public enum Level {
+        FAST(1, 12, false),
+        NORMAL(16, 16, false),
+        HIGH(256, 16, true);
+
+        final int depth;
+        final int hashBits;
+        final boolean lazy;
+
+        Level(int depth, int hashBits, boolean lazy) {
+            this.depth = depth;
+            this.hashBits = hashBits;
+            this.lazy = lazy;
+        }
+    }
+
+    static final int MIN_MATCH = 4;
+    static final int LAST_LITERALS = 5;
+    static final int MF_LIMIT = 12;
+    static final int MAX_OFFSET = 65535;
+    static final int WINDOW_MASK = 65535;
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Level level;
+    private final int hashShift;
+    private final int[] head;
+    // Only kept when the level walks chains
+    private final int[] chain;
+    // Stored value = position - origin + base; entries below base belong to earlier calls
+    private int base = 1;
+
+    public HashChainLZ(Level level) {
+        this.level = level;
+        this.hashShift = 32 - level.hashBits;
+        this.head = new int[1 << level.hashBits];
+        this.chain = level.depth > 1 ? new int[WINDOW_MASK + 1] : null;
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        return compress(src, srcOff, srcOff, srcOff + srcLen, dst, dstOff);
+    }
+
+    // Compresses src[start, end) with src[historyStart, start) as history. Returns the
+    // number of bytes written at dst[dstOff]; dst needs maxCompressedLength(end - start).
+    public int compress(byte[] src, int historyStart, int start, int end, byte[] dst, int dstOff) {
+        if (historyStart < start - MAX_OFFSET) historyStart = start - MAX_OFFSET;
+        int origin = historyStart;
+        if (base > Integer.MAX_VALUE - (end - origin) - 2 * (MAX_OFFSET + 1)) {
+            Arrays.fill(head, 0);
+            base = 1;
+        }
+        int callBase = base;
+        base += end - origin + MAX_OFFSET + 1;
+
+        for (int p = historyStart; p + MIN_MATCH <= start; p++) {
+            insert(src, p, origin, callBase);
+        }
+
+        int d = dstOff;
+        int anchor = start;
+        int matchLimit = end - LAST_LITERALS;
+        int mfLimit = end - MF_LIMIT;
+        int i = start;
+        int depth = level.depth;
+        boolean fast = level == Level.FAST;
+
+        while (i < mfLimit) {
+            int sequence = (int) INT_LE.get(src, i);
+            int h = hash(sequence);
+            long found = findMatch(src, i, sequence, head[h], origin, callBase, depth, matchLimit);
+            if (chain != null) chain[i & WINDOW_MASK] = head[h];
+            head[h] = i - origin + callBase;
+            if (found == 0) {
+                i += fast ? 1 + ((i - anchor) >>> 6) : 1;
+                continue;
+            }
+            int matchLen = (int) found;
+            int matchPos = (int) (found >>> 32);
+
+            if (level.lazy && i + 1 < mfLimit) {
+                int nextSequence = (int) INT_LE.get(src, i + 1);
+                long next = findMatch(src, i + 1, nextSequence, head[hash(nextSequence)], origin, callBase, depth,
+                        matchLimit);
+                if ((int) next > matchLen + 1) {
+                    i++;
+                    insert(src, i, origin, callBase);
+                    matchLen = (int) next;
+                    matchPos = (int) (next >>> 32);
+                }
+            }
+
+            // Extend backwards over literals that also match
+            while (i > anchor && matchPos > historyStart && src[i - 1] == src[matchPos - 1]) {
+                i--;
+                matchPos--;
+                matchLen++;
+            }
+
+            d = writeSequence(src, anchor, i - anchor, i - matchPos, matchLen, dst, d);
+            int matchEnd = i + matchLen;
+            if (fast) {
+                if (matchEnd - 2 < mfLimit) insert(src, matchEnd - 2, origin, callBase);
+            } else {
+                int stop = Math.min(matchEnd, mfLimit);
+                for (int p = i + 1; p < stop; p++) {
+                    insert(src, p, origin, callBase);
+                }
+            }
+            i = matchEnd;
+            anchor = i;
+        }
+
+        d = writeLiterals(src, anchor, end - anchor, dst, d);
+        return d - dstOff;
+    }
+
+    // Best match for position i, walking the chain from stored, as matchPos << 32 | length,
+    // or 0 if none reaches MIN_MATCH
+    private long findMatch(byte[] src, int i, int sequence, int stored, int origin, int callBase, int depth,
+                           int matchLimit) {
+        int bestLen = MIN_MATCH - 1;
+        int bestPos = 0;
+        while (depth-- > 0 && stored >= callBase) {
+            int candidate = stored - callBase + origin;
+            if (i - candidate > MAX_OFFSET) break;
+            if ((int) INT_LE.get(src, candidate) == sequence && src[candidate + bestLen] == src[i + bestLen]) {
+                int len = matchLength(src, candidate, i, matchLimit);
+                if (len > bestLen) {
+                    bestLen = len;
+                    bestPos = candidate;
+                    if (i + len == matchLimit) break;
+                }
+            }
+            if (depth == 0) break;
+            stored = chain[candidate & WINDOW_MASK];
+        }
+        return bestLen < MIN_MATCH ? 0 : ((long) bestPos << 32) | bestLen;
+    }
+
+    private void insert(byte[] src, int p, int origin, int callBase) {
+        int h = hash((int) INT_LE.get(src, p));
+        int stored = p - origin + callBase;
+        // Positions a match was extended back over or looked ahead from are already in;
+        // linking them again would point the chain at itself
+        if (head[h] == stored) return;
+        if (chain != null) chain[p & WINDOW_MASK] = head[h];
+        head[h] = stored;
+    }
+
+    private int hash(int sequence) {
+        return (sequence * -1640531535) >>> hashShift;
+    }
+
+    // Length of the common run at a (earlier) and b, with b stopping at limit
+    private static int matchLength(byte[] src, int a, int b, int limit) {
+        int start = b;
+        while (b + 8 <= limit) {
+            long diff = (long) LONG_LE.get(src, a) ^ (long) LONG_LE.get(src, b);
+            if (diff != 0) return b - start + (Long.numberOfTrailingZeros(diff) >>> 3);
+            a += 8;
+            b += 8;
+        }
+        while (b < limit && src[a] == src[b]) {
+            a++;
+            b++;
+        }
+        return b - start;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literalLen, int offset, int matchLen,
+                                     byte[] dst, int d) {
+        int token = d++;
+        int extra = matchLen - MIN_MATCH;
+        dst[token] = (byte) ((Math.min(literalLen, 15) << 4) | Math.min(extra, 15));
+        if (literalLen >= 15) d = writeLength(literalLen - 15, dst, d);
+        System.arraycopy(src, literalStart, dst, d, literalLen);
+        d += literalLen;
+        dst[d++] = (byte) offset;
+        dst[d++] = (byte) (offset >>> 8);
+        if (extra >= 15) d = writeLength(extra - 15, dst, d);
+        return d;
+    }
+
+    private static int writeLiterals(byte[] src, int literalStart, int literalLen, byte[] dst, int d) {
+        dst[d++] = (byte) (Math.min(literalLen, 15) << 4);
+        if (literalLen >= 15) d = writeLength(literalLen - 15, dst, d);
+        System.arraycopy(src, literalStart, dst, d, literalLen);
+        return d + literalLen;
+    }
+
+    private static int writeLength(int remaining, byte[] dst, int d) {
+        while (remaining >= 255) {
+            dst[d++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[d++] = (byte) remaining;
+        return d;
+    }
+
+    public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) {
+        decompress(src, srcOff, srcLen, dst, dstOff, dstOff, dstLen);
+    }
+
+    // Decodes one block into dst[dstOff, dstOff + dstLen); matches may reach back to
+    // historyStart (a dictionary copied in front of the output). Overlapping matches are
+    // copied in place in runs that double with each step.
+    public static void decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int historyStart,
+                                  int dstOff, int dstLen) {
+        int s = srcOff;
+        int srcEnd = srcOff + srcLen;
+        int d = dstOff;
+        int dstEnd = dstOff + dstLen;
+        while (true) {
+            if (s >= srcEnd) throw new IllegalStateException("Truncated LZ block");
+            int token = src[s++] & 0xFF;
+
+            int literalLen = token >>> 4;
+            if (literalLen == 15) {
+                int b;
+                do {
+                    if (s >= srcEnd) throw new IllegalStateException("Truncated LZ block");
+                    b = src[s++] & 0xFF;
+                    literalLen += b;
+                } while (b == 255);
+            }
+            if (literalLen > srcEnd - s || literalLen > dstEnd - d) {
+                throw new IllegalStateException("Corrupt LZ block: literal run overflows");
+            }
+            System.arraycopy(src, s, dst, d, literalLen);
+            s += literalLen;
+            d += literalLen;
+            if (s == srcEnd) break;
+
+            if (srcEnd - s < 2) throw new IllegalStateException("Truncated LZ block");
+            int offset = (src[s] & 0xFF) | (src[s + 1] & 0xFF) << 8;
+            s += 2;
+            int matchLen = (token & 15) + MIN_MATCH;
+            if ((token & 15) == 15) {
+                int b;
+                do {
+                    if (s >= srcEnd) throw new IllegalStateException("Truncated LZ block");
+                    b = src[s++] & 0xFF;
+                    matchLen += b;
+                } while (b == 255);
+            }
+            int m = d - offset;
+            if (offset == 0 || m < historyStart || matchLen > dstEnd - d) {
+                throw new IllegalStateException("Corrupt LZ block: bad match");
+            }
+            if (offset >= matchLen) {
+                System.arraycopy(dst, m, dst, d, matchLen);
+            } else if (offset == 1) {
+                Arrays.fill(dst, d, d + matchLen, dst[m]);
+            } else {
+                // dst[m, d + copied) already holds the period, so each step can copy that much
+                int copied = 0;
+                while (copied < matchLen) {
+                    int n = Math.min(offset + copied, matchLen - copied);
+                    System.arraycopy(dst, m, dst, d + copied, n);
+                    copied += n;
+                }
+            }
+            d += matchLen;
+        }
+        if (d != dstEnd) throw new IllegalStateException("Corrupt LZ block: " + (d - dstOff) + " of " + dstLen + " bytes");
+    }
+}
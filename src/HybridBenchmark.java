@@ -176,66 +176,6 @@ public class HybridBenchmark {
         }
     }
     
-    // Bit-level I/O helpers
-    static class BitOutputStream {
-        private ByteArrayOutputStream out = new ByteArrayOutputStream();
-        private int currentByte = 0;
-        private int numBitsInCurrentByte = 0;
-        
-        void writeBit(int bit) {
-            currentByte = (currentByte << 1) | (bit & 1);
-            numBitsInCurrentByte++;
-            if (numBitsInCurrentByte == 8) {
-                out.write(currentByte);
-                currentByte = 0;
-                numBitsInCurrentByte = 0;
-            }
-        }
-        
-        void writeInt(int value, int numBits) {
-            for (int i = numBits - 1; i >= 0; i--) {
-                writeBit((value >> i) & 1);
-            }
-        }
-        
-        byte[] toByteArray() {
-            if (numBitsInCurrentByte > 0) {
-                currentByte <<= (8 - numBitsInCurrentByte);
-                out.write(currentByte);
-            }
-            return out.toByteArray();
-        }
-    }
-    
-    static class BitInputStream {
-        private byte[] data;
-        private int byteIndex = 0;
-        private int bitIndex = 0;
-        
-        BitInputStream(byte[] data) {
-            this.data = data;
-        }
-        
-        int readBit() {
-            if (byteIndex >= data.length) return -1;
-            int bit = (data[byteIndex] >> (7 - bitIndex)) & 1;
-            bitIndex++;
-            if (bitIndex == 8) {
-                bitIndex = 0;
-                byteIndex++;
-            }
-            return bit;
-        }
-        
-        int readInt(int numBits) {
-            int result = 0;
-            for (int i = 0; i < numBits; i++) {
-                result = (result << 1) | readBit();
-            }
-            return result;
-        }
-    }
-    
     // ==================== COMPRESSORS ====================
     
     // GZIP compression
@@ -386,7 +326,7 @@ public class HybridBenchmark {
         }
         
         // Write results to CSV
-        writeResultsToCSV(results, "/Users/hossein/Desktop/db-encoding/hybrid_res.csv");
+        writeResultsToCSV(results, ResultFiles.path("hybrid_res.csv"));
         
         System.out.println("Hybrid benchmark completed. Results written to hybrid_res.csv");
         System.out.println("Total combinations tested: " + results.size());
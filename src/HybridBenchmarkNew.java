@@ -1,11 +1,14 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.nio.*;
 import java.util.*;
-import java.util.zip.*;
-import org.xerial.snappy.Snappy;
-import net.jpountz.lz4.LZ4Factory;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import net.jpountz.lz4.LZ4Compressor;
-import net.jpountz.lz4.LZ4FastDecompressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
 
 public class HybridBenchmarkNew {
     
@@ -29,417 +32,391 @@ public class HybridBenchmarkNew {
     // IDENTITY encoder
     static class IdentityEncoder implements Encoder {
         public String getName() { return "IDENTITY"; }
-        public byte[] encode(byte[] input) { return input.clone(); }
-        public byte[] decode(byte[] encoded) { return encoded.clone(); }
-    }
-    
-    // TS_2DIFF (Delta-Delta) encoder
-    static class TS2DIFFEncoder implements Encoder {
-        public String getName() { return "TS_2DIFF"; }
-        
-        public byte[] encode(byte[] input) throws IOException {
-            if (input.length % 8 != 0) throw new IOException("Input must be multiple of 8 bytes");
-            
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 8;
-            long[] values = new long[count];
-            for (int i = 0; i < count; i++) {
-                values[i] = bb.getLong();
-            }
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(baos);
-            
-            dos.writeLong(values[0]);
-            if (count > 1) {
-                long delta = values[1] - values[0];
-                writeVarint(dos, delta);
-                
-                for (int i = 2; i < count; i++) {
-                    long currentDelta = values[i] - values[i-1];
-                    long deltaDelta = currentDelta - delta;
-                    writeVarint(dos, deltaDelta);
-                    delta = currentDelta;
-                }
-            }
-            
-            return baos.toByteArray();
-        }
-        
-        public byte[] decode(byte[] encoded) throws IOException {
-            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(encoded));
-            List<Long> values = new ArrayList<>();
-            
-            long first = dis.readLong();
-            values.add(first);
-            
-            if (dis.available() > 0) {
-                long delta = readVarint(dis);
-                long second = first + delta;
-                values.add(second);
-                
-                while (dis.available() > 0) {
-                    long deltaDelta = readVarint(dis);
-                    delta += deltaDelta;
-                    long next = values.get(values.size() - 1) + delta;
-                    values.add(next);
-                }
-            }
-            
-            ByteBuffer bb = ByteBuffer.allocate(values.size() * 8);
-            for (long v : values) {
-                bb.putLong(v);
-            }
-            return bb.array();
-        }
         
-        private void writeVarint(DataOutputStream dos, long value) throws IOException {
-            long zigzag = (value << 1) ^ (value >> 63);
-            while ((zigzag & ~0x7FL) != 0) {
-                dos.writeByte((int) ((zigzag & 0x7F) | 0x80));
-                zigzag >>>= 7;
-            }
-            dos.writeByte((int) zigzag);
+        public byte[] encode(byte[] input) {
+            CopyMeter.count(input.length);
+            return input.clone();
         }
         
-        private long readVarint(DataInputStream dis) throws IOException {
-            long result = 0;
-            int shift = 0;
-            while (true) {
-                byte b = dis.readByte();
-                result |= (long) (b & 0x7F) << shift;
-                if ((b & 0x80) == 0) break;
-                shift += 7;
-            }
-            return (result >>> 1) ^ -(result & 1);
+        public byte[] decode(byte[] encoded) {
+            CopyMeter.count(encoded.length);
+            return encoded.clone();
         }
     }
     
-    // GORILLA encoder
-    static class GorillaEncoder implements Encoder {
-        public String getName() { return "GORILLA"; }
+    // TS_2DIFF and the XOR codecs (GORILLA, CHIMP128) come from EncodingBenchmarkNew, the
+    // XOR ones in both 32-bit and 64-bit word widths, instead of being copied here
+    static class SharedEncoder implements Encoder {
+        final EncodingBenchmarkNew.TypedCodec codec;
         
-        public byte[] encode(byte[] input) throws IOException {
-            if (input.length % 4 != 0) throw new IOException("Input must be multiple of 4 bytes");
-            
-            ByteBuffer bb = ByteBuffer.wrap(input);
-            int count = input.length / 4;
-            int[] values = new int[count];
-            for (int i = 0; i < count; i++) {
-                values[i] = bb.getInt();
-            }
-            
-            BitOutputStream bos = new BitOutputStream();
-            bos.writeInt(values[0]);
-            
-            int prevValue = values[0];
-            int prevLeadingZeros = Integer.MAX_VALUE;
-            int prevTrailingZeros = 0;
-            
-            for (int i = 1; i < count; i++) {
-                int xor = values[i] ^ prevValue;
-                
-                if (xor == 0) {
-                    bos.writeBit(0);
-                } else {
-                    bos.writeBit(1);
-                    int leadingZeros = Integer.numberOfLeadingZeros(xor);
-                    int trailingZeros = Integer.numberOfTrailingZeros(xor);
-                    
-                    if (leadingZeros >= prevLeadingZeros && trailingZeros >= prevTrailingZeros) {
-                        bos.writeBit(0);
-                        int significantBits = 32 - prevLeadingZeros - prevTrailingZeros;
-                        bos.writeBits(xor >>> prevTrailingZeros, significantBits);
-                    } else {
-                        bos.writeBit(1);
-                        bos.writeBits(leadingZeros, 5);
-                        int significantBits = 32 - leadingZeros - trailingZeros;
-                        bos.writeBits(significantBits, 6);
-                        bos.writeBits(xor >>> trailingZeros, significantBits);
-                        
-                        prevLeadingZeros = leadingZeros;
-                        prevTrailingZeros = trailingZeros;
-                    }
-                }
-                
-                prevValue = values[i];
-            }
-            
-            return bos.toByteArray();
+        SharedEncoder(EncodingBenchmarkNew.TypedCodec codec) {
+            this.codec = codec;
         }
         
-        public byte[] decode(byte[] encoded) throws IOException {
-            BitInputStream bis = new BitInputStream(encoded);
-            List<Integer> values = new ArrayList<>();
-            
-            int first = bis.readInt();
-            values.add(first);
-            
-            int prevValue = first;
-            int prevLeadingZeros = 0;
-            int prevTrailingZeros = 0;
-            
-            while (bis.hasMore()) {
-                int controlBit = bis.readBit();
-                if (controlBit == 0) {
-                    values.add(prevValue);
-                } else {
-                    int blockType = bis.readBit();
-                    int xor;
-                    
-                    if (blockType == 0) {
-                        int significantBits = 32 - prevLeadingZeros - prevTrailingZeros;
-                        xor = bis.readBits(significantBits) << prevTrailingZeros;
-                    } else {
-                        int leadingZeros = bis.readBits(5);
-                        int significantBits = bis.readBits(6);
-                        xor = bis.readBits(significantBits) << (32 - leadingZeros - significantBits);
-                        
-                        prevLeadingZeros = leadingZeros;
-                        prevTrailingZeros = 32 - leadingZeros - significantBits;
-                    }
-                    
-                    int value = prevValue ^ xor;
-                    values.add(value);
-                    prevValue = value;
-                }
-            }
-            
-            ByteBuffer bb = ByteBuffer.allocate(values.size() * 4);
-            for (int v : values) {
-                bb.putInt(v);
-            }
-            return bb.array();
-        }
+        public String getName() { return codec.getName(); }
+        public byte[] encode(byte[] input) { return codec.encode(input); }
+        public byte[] decode(byte[] encoded) { return codec.decode(encoded); }
     }
     
     // RLE encoder
     static class RLEEncoder implements Encoder {
         public String getName() { return "RLE"; }
         
-        public byte[] encode(byte[] input) throws IOException {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(baos);
-            
-            int i = 0;
-            while (i < input.length) {
-                byte current = input[i];
-                int count = 1;
-                while (i + count < input.length && input[i + count] == current && count < 255) {
-                    count++;
+        public byte[] encode(byte[] input) {
+            PooledOutputStream out = new PooledOutputStream(input.length / 2 + 16);
+            try {
+                int i = 0;
+                while (i < input.length) {
+                    byte current = input[i];
+                    int count = 1;
+                    while (i + count < input.length && input[i + count] == current && count < 255) {
+                        count++;
+                    }
+                    out.write(current);
+                    out.write(count);
+                    i += count;
                 }
-                dos.writeByte(current);
-                dos.writeByte(count);
-                i += count;
+                return out.toByteArray();
+            } finally {
+                out.release();
             }
-            
-            return baos.toByteArray();
         }
         
-        public byte[] decode(byte[] encoded) throws IOException {
-            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(encoded));
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            
-            while (dis.available() > 0) {
-                byte value = dis.readByte();
-                int count = dis.readByte() & 0xFF;
-                for (int i = 0; i < count; i++) {
-                    baos.write(value);
-                }
+        // Sums the run lengths first so the output is allocated once at its exact size
+        public byte[] decode(byte[] encoded) {
+            int length = 0;
+            for (int i = 1; i < encoded.length; i += 2) {
+                length += encoded[i] & 0xFF;
             }
-            
-            return baos.toByteArray();
+            byte[] decoded = new byte[length];
+            int pos = 0;
+            for (int i = 0; i + 1 < encoded.length; i += 2) {
+                int count = encoded[i + 1] & 0xFF;
+                Arrays.fill(decoded, pos, pos + count, encoded[i]);
+                pos += count;
+            }
+            return decoded;
         }
     }
     
     // ==================== COMPRESSORS ====================
     
-    static class IdentityCompressor implements Compressor {
-        public String getName() { return "IDENTITY"; }
-        public byte[] compress(byte[] input) { return input.clone(); }
-        public byte[] decompress(byte[] compressed) { return compressed.clone(); }
-    }
-    
-    static class GZIPCompressor implements Compressor {
-        public String getName() { return "GZIP"; }
+    // Compressors are the CompressionBenchmarkNew implementations, so both benchmarks
+    // measure the same code
+    static class SharedCompressor implements Compressor {
+        final CompressionBenchmarkNew.Compressor compressor;
         
-        public byte[] compress(byte[] input) throws IOException {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
-                gzos.write(input);
-            }
-            return baos.toByteArray();
+        SharedCompressor(CompressionBenchmarkNew.Compressor compressor) {
+            this.compressor = compressor;
         }
         
-        public byte[] decompress(byte[] compressed) throws IOException {
-            ByteArrayInputStream bais = new ByteArrayInputStream(compressed);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (GZIPInputStream gzis = new GZIPInputStream(bais)) {
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = gzis.read(buffer)) > 0) {
-                    baos.write(buffer, 0, len);
-                }
-            }
-            return baos.toByteArray();
-        }
+        public String getName() { return compressor.getName(); }
+        public byte[] compress(byte[] input) throws IOException { return compressor.compress(input); }
+        public byte[] decompress(byte[] compressed) throws IOException { return compressor.decompress(compressed); }
     }
     
-    static class SnappyCompressor implements Compressor {
-        public String getName() { return "SNAPPY"; }
+    // Shuffle filter (see Shuffle) between an encoder and a compressor: the encoder's output
+    // is byte- or bit-shuffled at a fixed element width and then compressed; decompression
+    // unshuffles the compressor's output. The filter keeps the length, so it adds no header.
+    // The shuffled copy goes to a scratch array kept per instance; compress() takes a whole
+    // array, so it is reallocated only when the input length changes. Decompression hands
+    // back the scratch and keeps the compressor's fresh output as the next one.
+    static class ShuffleCompressor implements Compressor {
+        final Shuffle.Mode mode;
+        final int elementSize;
+        final Compressor compressor;
+        private byte[] scratch = new byte[0];
+        
+        ShuffleCompressor(Shuffle.Mode mode, int elementSize, Compressor compressor) {
+            this.mode = mode;
+            this.elementSize = elementSize;
+            this.compressor = compressor;
+        }
+        
+        public String getName() { return mode + "SHUFFLE" + elementSize + ">" + compressor.getName(); }
         
         public byte[] compress(byte[] input) throws IOException {
-            return Snappy.compress(input);
+            if (scratch.length != input.length) scratch = new byte[input.length];
+            Shuffle.shuffle(mode, elementSize, input, 0, input.length, scratch, 0);
+            return compressor.compress(scratch);
         }
         
         public byte[] decompress(byte[] compressed) throws IOException {
-            return Snappy.uncompress(compressed);
+            byte[] shuffled = compressor.decompress(compressed);
+            byte[] restored = scratch.length == shuffled.length ? scratch : new byte[shuffled.length];
+            Shuffle.unshuffle(mode, elementSize, shuffled, 0, shuffled.length, restored, 0);
+            // Compressors return arrays the caller owns, so the shuffled bytes can be overwritten
+            scratch = shuffled;
+            return restored;
         }
     }
     
-    static class LZ4CompressorImpl implements Compressor {
-        private final LZ4Factory factory = LZ4Factory.fastestInstance();
+    // ==================== COLUMN PIPELINE ====================
+    
+    // Encodes and compresses a batch one column per task: the timestamps, then each
+    // measurement of Batch.measurements on its own, so a wide device spreads over the pool.
+    // Everything lands in one container:
+    //
+    //   row count (4), column count (4), device and measurement names (modified UTF-8),
+    //   offset table of column count + 1 ints, relative to the end of the table,
+    //   then each column compressed, timestamps first
+    //
+    // The offset table lets a reader pull a single column without touching the others.
+    // Encoders and compressors keep scratch per instance, so each worker thread builds its
+    // own from the factories. With a null pool the columns run one after another on the
+    // calling thread. CPU time of tasks that ran on other threads is summed in
+    // workerCpuNanos, so caller CPU plus that is the CPU cost of a call.
+    static class ColumnPipeline {
+        private final ThreadLocal<Encoder> timestampEncoder;
+        private final ThreadLocal<Encoder> valueEncoder;
+        private final ThreadLocal<Compressor> compressor;
+        private final ForkJoinPool pool;
+        private final String name;
+        private final LongAdder workerCpuNanos = new LongAdder();
         
-        public String getName() { return "LZ4"; }
+        ColumnPipeline(Supplier<Encoder> timestampEncoder, Supplier<Encoder> valueEncoder,
+                       Supplier<Compressor> compressor, ForkJoinPool pool) {
+            this.timestampEncoder = ThreadLocal.withInitial(timestampEncoder);
+            this.valueEncoder = ThreadLocal.withInitial(valueEncoder);
+            this.compressor = ThreadLocal.withInitial(compressor);
+            this.pool = pool;
+            this.name = timestampEncoder.get().getName() + "/" + valueEncoder.get().getName() + "+"
+                + compressor.get().getName();
+        }
         
-        public byte[] compress(byte[] input) throws IOException {
-            LZ4Compressor compressor = factory.fastCompressor();
-            int maxCompressedLength = compressor.maxCompressedLength(input.length);
-            byte[] compressed = new byte[maxCompressedLength + 4];
-            
-            compressed[0] = (byte) (input.length >>> 24);
-            compressed[1] = (byte) (input.length >>> 16);
-            compressed[2] = (byte) (input.length >>> 8);
-            compressed[3] = (byte) input.length;
-            
-            int compressedLength = compressor.compress(input, 0, input.length, compressed, 4, maxCompressedLength);
-            
-            byte[] result = new byte[compressedLength + 4];
-            System.arraycopy(compressed, 0, result, 0, compressedLength + 4);
-            return result;
+        String getName() { return name; }
+        
+        long workerCpuNanos() {
+            return workerCpuNanos.sum();
         }
         
-        public byte[] decompress(byte[] compressed) throws IOException {
-            int originalLength = ((compressed[0] & 0xFF) << 24) |
-                                ((compressed[1] & 0xFF) << 16) |
-                                ((compressed[2] & 0xFF) << 8) |
-                                (compressed[3] & 0xFF);
+        byte[] encode(BatchData.Batch batch) throws IOException {
+            int columns = batch.measurements.length + 1;
+            List<Callable<byte[]>> tasks = new ArrayList<>(columns);
+            tasks.add(() -> compressor.get().compress(timestampEncoder.get().encode(longsToBytes(batch.timestamps))));
+            for (int j = 0; j < batch.measurements.length; j++) {
+                int column = j;
+                tasks.add(() -> compressor.get().compress(valueEncoder.get().encode(columnToBytes(batch.values, column))));
+            }
+            List<byte[]> payloads = run(tasks);
             
-            LZ4FastDecompressor decompressor = factory.fastDecompressor();
-            byte[] restored = new byte[originalLength];
-            decompressor.decompress(compressed, 4, restored, 0, originalLength);
-            return restored;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(batch.timestamps.length);
+            out.writeInt(columns);
+            out.writeUTF(batch.device);
+            for (String measurement : batch.measurements) {
+                out.writeUTF(measurement);
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] payload : payloads) {
+                offset += payload.length;
+                out.writeInt(offset);
+            }
+            for (byte[] payload : payloads) {
+                out.write(payload);
+            }
+            return bytes.toByteArray();
         }
-    }
-    
-    static class ZlibCompressor implements Compressor {
-        public String getName() { return "ZLIB"; }
         
-        public byte[] compress(byte[] input) throws IOException {
-            Deflater deflater = new Deflater();
-            deflater.setInput(input);
-            deflater.finish();
+        BatchData.Batch decode(byte[] container) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(container));
+            int rows = in.readInt();
+            int columns = in.readInt();
+            if (rows < 0 || columns < 1) throw new IOException("Corrupt column container header");
+            String device = in.readUTF();
+            String[] measurements = new String[columns - 1];
+            for (int j = 0; j < measurements.length; j++) {
+                measurements[j] = in.readUTF();
+            }
+            int[] offsets = new int[columns + 1];
+            for (int c = 0; c <= columns; c++) {
+                offsets[c] = in.readInt();
+            }
+            // Everything left in the stream is column data
+            int dataStart = container.length - in.available();
+            if (offsets[columns] != container.length - dataStart) throw new IOException("Corrupt column offset table");
             
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            while (!deflater.finished()) {
-                int count = deflater.deflate(buffer);
-                baos.write(buffer, 0, count);
+            long[] timestamps = new long[rows];
+            float[][] values = new float[rows][measurements.length];
+            List<Callable<byte[]>> tasks = new ArrayList<>(columns);
+            for (int c = 0; c < columns; c++) {
+                int column = c;
+                int from = dataStart + offsets[c];
+                int to = dataStart + offsets[c + 1];
+                if (from > to) throw new IOException("Corrupt column offset table");
+                tasks.add(() -> {
+                    CopyMeter.count(to - from);
+                    byte[] compressed = Arrays.copyOfRange(container, from, to);
+                    Encoder encoder = column == 0 ? timestampEncoder.get() : valueEncoder.get();
+                    byte[] raw = encoder.decode(compressor.get().decompress(compressed));
+                    int width = column == 0 ? 8 : 4;
+                    if (raw.length != rows * width) throw new IOException("Column " + column + " decoded to " + raw.length + " bytes");
+                    ByteBuffer bb = ByteBuffer.wrap(raw);
+                    for (int i = 0; i < rows; i++) {
+                        if (column == 0) {
+                            timestamps[i] = bb.getLong();
+                        } else {
+                            values[i][column - 1] = bb.getFloat();
+                        }
+                    }
+                    return raw;
+                });
             }
-            deflater.end();
-            return baos.toByteArray();
+            run(tasks);
+            return new BatchData.Batch(device, measurements, timestamps, values);
         }
         
-        public byte[] decompress(byte[] compressed) throws IOException {
-            Inflater inflater = new Inflater();
-            inflater.setInput(compressed);
-            
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
+        // Results in task order; task failures come back as the IOException they threw
+        private List<byte[]> run(List<Callable<byte[]>> tasks) throws IOException {
+            List<byte[]> results = new ArrayList<>(tasks.size());
             try {
-                while (!inflater.finished()) {
-                    int count = inflater.inflate(buffer);
-                    baos.write(buffer, 0, count);
+                if (pool == null) {
+                    for (Callable<byte[]> task : tasks) {
+                        results.add(task.call());
+                    }
+                    return results;
                 }
-            } catch (DataFormatException e) {
-                throw new IOException("Decompression error", e);
-            } finally {
-                inflater.end();
+                // An external caller may run a queued task itself while it waits; that time
+                // is already on its own clock
+                Thread caller = Thread.currentThread();
+                List<Callable<byte[]>> timed = new ArrayList<>(tasks.size());
+                for (Callable<byte[]> task : tasks) {
+                    timed.add(() -> {
+                        if (Thread.currentThread() == caller) return task.call();
+                        long start = threadCpuNanos();
+                        try {
+                            return task.call();
+                        } finally {
+                            workerCpuNanos.add(threadCpuNanos() - start);
+                        }
+                    });
+                }
+                for (Future<byte[]> future : pool.invokeAll(timed)) {
+                    results.add(future.get());
+                }
+                return results;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException("Column task failed", e.getCause());
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Column task failed", e);
             }
-            return baos.toByteArray();
         }
     }
     
-    // ==================== HELPER CLASSES ====================
+    // ==================== FUSED CODECS ====================
     
-    static class BitOutputStream {
-        private ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        private int currentByte = 0;
-        private int numBitsInCurrentByte = 0;
+    // Typed encoder and LZ4 as one stage. Each window of WINDOW_VALUES words is encoded
+    // into a pooled buffer and LZ4 compresses straight from that backing array into the
+    // output, so the encoded bytes never become a byte[] of their own. Decoding streams
+    // window by window: each block is decompressed into one reused pooled window and the
+    // codec decodes from there directly into the result, so the working set is one window
+    // however long the column. Format:
+    //
+    //   original length (uvarint), then per window: encoded length (uvarint), compressed
+    //   length (uvarint padded to a fixed width, filled in after the block is written), block
+    //
+    // The only copy left is the exact-size result of compress().
+    static class FusedCodec {
+        static final int WINDOW_VALUES = 4096;
         
-        public void writeBit(int bit) {
-            currentByte = (currentByte << 1) | (bit & 1);
-            numBitsInCurrentByte++;
-            if (numBitsInCurrentByte == 8) {
-                baos.write(currentByte);
-                currentByte = 0;
-                numBitsInCurrentByte = 0;
-            }
-        }
+        private final EncodingBenchmarkNew.TypedCodec codec;
+        private final LZ4Factory factory = LZ4Factory.fastestInstance();
         
-        public void writeBits(int value, int numBits) {
-            for (int i = numBits - 1; i >= 0; i--) {
-                writeBit((value >> i) & 1);
-            }
+        FusedCodec(EncodingBenchmarkNew.TypedCodec codec) {
+            this.codec = codec;
         }
         
-        public void writeInt(int value) {
-            writeBits(value, 32);
-        }
+        String getName() { return codec.getName() + ">LZ4"; }
         
-        public byte[] toByteArray() {
-            if (numBitsInCurrentByte > 0) {
-                currentByte <<= (8 - numBitsInCurrentByte);
-                baos.write(currentByte);
+        byte[] compress(byte[] input) throws IOException {
+            int wordBytes = codec.wordBytes();
+            int words = input.length / wordBytes;
+            int tail = input.length % wordBytes;
+            int windows = Math.max(1, (words + WINDOW_VALUES - 1) / WINDOW_VALUES);
+            int windowBound = codec.maxEncodedSize(Math.min(words, WINDOW_VALUES)) + tail;
+            LZ4Compressor lz4 = factory.fastCompressor();
+            int blockBound = lz4.maxCompressedLength(windowBound);
+            int lengthWidth = varIntSize(blockBound);
+            BufferPool pool = BufferPool.local();
+            ByteBuffer window = pool.acquire(windowBound);
+            ByteBuffer out = pool.acquire(5 + windows * (5 + lengthWidth + blockBound));
+            try {
+                EncodingBenchmarkNew.putUnsignedVarInt(out, input.length);
+                for (int w = 0; w < windows; w++) {
+                    int first = w * WINDOW_VALUES;
+                    int count = Math.min(WINDOW_VALUES, words - first);
+                    window.clear();
+                    codec.encodeTo(input, first * wordBytes, count, w == windows - 1 ? tail : 0, window);
+                    int encodedLength = window.position();
+                    EncodingBenchmarkNew.putUnsignedVarInt(out, encodedLength);
+                    int lengthAt = out.position();
+                    int blockStart = lengthAt + lengthWidth;
+                    int compressedLength = lz4.compress(window.array(), 0, encodedLength, out.array(), blockStart,
+                        out.capacity() - blockStart);
+                    putPaddedVarInt(out.array(), lengthAt, compressedLength, lengthWidth);
+                    out.position(blockStart + compressedLength);
+                }
+                CopyMeter.count(out.position());
+                return Arrays.copyOf(out.array(), out.position());
+            } finally {
+                pool.release(window);
+                pool.release(out);
             }
-            return baos.toByteArray();
         }
-    }
-    
-    static class BitInputStream {
-        private byte[] data;
-        private int byteIndex = 0;
-        private int bitIndex = 0;
         
-        public BitInputStream(byte[] data) {
-            this.data = data;
-        }
-        
-        public int readBit() throws IOException {
-            if (byteIndex >= data.length) throw new IOException("End of stream");
-            int bit = (data[byteIndex] >> (7 - bitIndex)) & 1;
-            bitIndex++;
-            if (bitIndex == 8) {
-                bitIndex = 0;
-                byteIndex++;
+        byte[] decompress(byte[] compressed) throws IOException {
+            ByteBuffer in = ByteBuffer.wrap(compressed);
+            BufferPool pool = BufferPool.local();
+            ByteBuffer window = null;
+            try {
+                int length = EncodingBenchmarkNew.getUnsignedVarInt(in);
+                int wordBytes = codec.wordBytes();
+                byte[] restored = new byte[length];
+                window = pool.acquire(codec.maxEncodedSize(Math.min(length / wordBytes, WINDOW_VALUES)) + wordBytes);
+                LZ4SafeDecompressor lz4 = factory.safeDecompressor();
+                int written = 0;
+                while (in.hasRemaining()) {
+                    int encodedLength = EncodingBenchmarkNew.getUnsignedVarInt(in);
+                    int compressedLength = EncodingBenchmarkNew.getUnsignedVarInt(in);
+                    if (encodedLength > window.capacity() || compressedLength > in.remaining()) {
+                        throw new IOException("Corrupt fused window header");
+                    }
+                    int decompressed = lz4.decompress(compressed, in.position(), compressedLength, window.array(), 0,
+                        encodedLength);
+                    if (decompressed != encodedLength) throw new IOException("Corrupt fused window");
+                    in.position(in.position() + compressedLength);
+                    written += codec.decodeTo(ByteBuffer.wrap(window.array(), 0, encodedLength), restored, written);
+                }
+                if (written != length) throw new IOException("Fused stream decoded to " + written + " of " + length + " bytes");
+                return restored;
+            } catch (LZ4Exception | BufferUnderflowException | BufferOverflowException e) {
+                throw new IOException("Corrupt fused stream", e);
+            } finally {
+                if (window != null) pool.release(window);
             }
-            return bit;
         }
         
-        public int readBits(int numBits) throws IOException {
-            int result = 0;
-            for (int i = 0; i < numBits; i++) {
-                result = (result << 1) | readBit();
+        static int varIntSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                size++;
             }
-            return result;
+            return size;
         }
         
-        public int readInt() throws IOException {
-            return readBits(32);
-        }
-        
-        public boolean hasMore() {
-            return byteIndex < data.length || (byteIndex == data.length - 1 && bitIndex < 8);
+        // Unsigned varint in exactly width bytes, with continuation bits on the padding
+        static void putPaddedVarInt(byte[] out, int pos, int value, int width) {
+            for (int i = 0; i < width - 1; i++) {
+                out[pos + i] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out[pos + width - 1] = (byte) value;
         }
     }
     
@@ -449,26 +426,41 @@ public class HybridBenchmarkNew {
         String encoder;
         String compressor;
         String target;
-        long encodeTimeNs;
-        long compressTimeNs;
-        long decompressTimeNs;
-        long decodeTimeNs;
+        // Per-call latency distribution of each stage (LatencyHarness)
+        LatencyHarness.Stats encode;
+        LatencyHarness.Stats compress;
+        LatencyHarness.Stats decompress;
+        LatencyHarness.Stats decode;
         int originalSize;
         int encodedSize;
         int finalSize;
         double encodingRatio;
         double finalRatio;
+        // Heap bytes per call of each stage (BufferPool on), and per encode+compress+decompress
+        // +decode with and without BufferPool; -1 where the JVM does not count allocations
+        long encodeBytesPerOp = -1;
+        long compressBytesPerOp = -1;
+        long decompressBytesPerOp = -1;
+        long decodeBytesPerOp = -1;
+        long pooledBytesPerOp = -1;
+        long unpooledBytesPerOp = -1;
+        // Collections and collection ms while this row was measured
+        long gcCount;
+        long gcTimeMs;
+        // Scratch the encoder and compressor instances retain; both are reused across
+        // combinations and columns, so this is the peak up to and including this row
+        long scratchBytes;
         
         HybridResult(String encoder, String compressor, String target,
-                    long encodeTimeNs, long compressTimeNs, long decompressTimeNs, long decodeTimeNs,
-                    int originalSize, int encodedSize, int finalSize) {
+                    LatencyHarness.Stats encode, LatencyHarness.Stats compress, LatencyHarness.Stats decompress,
+                    LatencyHarness.Stats decode, int originalSize, int encodedSize, int finalSize) {
             this.encoder = encoder;
             this.compressor = compressor;
             this.target = target;
-            this.encodeTimeNs = encodeTimeNs;
-            this.compressTimeNs = compressTimeNs;
-            this.decompressTimeNs = decompressTimeNs;
-            this.decodeTimeNs = decodeTimeNs;
+            this.encode = encode;
+            this.compress = compress;
+            this.decompress = decompress;
+            this.decode = decode;
             this.originalSize = originalSize;
             this.encodedSize = encodedSize;
             this.finalSize = finalSize;
@@ -477,6 +469,93 @@ public class HybridBenchmarkNew {
         }
     }
     
+    static class PipelineResult {
+        String pipeline;
+        int measurements;
+        int rows;
+        int threads;
+        int originalSize;
+        int containerSize;
+        long encodeWallNs;
+        long encodeCpuNs;
+        long decodeWallNs;
+        long decodeCpuNs;
+        
+        PipelineResult(String pipeline, int measurements, int rows, int threads, int originalSize, int containerSize,
+                       long encodeWallNs, long encodeCpuNs, long decodeWallNs, long decodeCpuNs) {
+            this.pipeline = pipeline;
+            this.measurements = measurements;
+            this.rows = rows;
+            this.threads = threads;
+            this.originalSize = originalSize;
+            this.containerSize = containerSize;
+            this.encodeWallNs = encodeWallNs;
+            this.encodeCpuNs = encodeCpuNs;
+            this.decodeWallNs = decodeWallNs;
+            this.decodeCpuNs = decodeCpuNs;
+        }
+    }
+    
+    static class ShuffleResult {
+        String encoder;
+        String filter;
+        String compressor;
+        String target;
+        int rows;
+        int originalSize;
+        int compressedSize;
+        double ratio;
+        // The filter alone, then filter plus compressor end to end
+        double shuffleMBps;
+        double unshuffleMBps;
+        double compressMBps;
+        double decompressMBps;
+        
+        ShuffleResult(String encoder, String filter, String compressor, String target, int rows, int originalSize,
+                      int compressedSize, double shuffleMBps, double unshuffleMBps, double compressMBps,
+                      double decompressMBps) {
+            this.encoder = encoder;
+            this.filter = filter;
+            this.compressor = compressor;
+            this.target = target;
+            this.rows = rows;
+            this.originalSize = originalSize;
+            this.compressedSize = compressedSize;
+            this.ratio = (double) compressedSize / originalSize;
+            this.shuffleMBps = shuffleMBps;
+            this.unshuffleMBps = unshuffleMBps;
+            this.compressMBps = compressMBps;
+            this.decompressMBps = decompressMBps;
+        }
+    }
+    
+    static class FusedResult {
+        String pipeline;
+        String target;
+        int rows;
+        boolean fused;
+        int originalSize;
+        int finalSize;
+        long compressNs;
+        long decompressNs;
+        long copiedBytesPerOp;
+        long allocatedBytesPerOp;
+        
+        FusedResult(String pipeline, String target, int rows, boolean fused, int originalSize, int finalSize,
+                    long compressNs, long decompressNs, long copiedBytesPerOp, long allocatedBytesPerOp) {
+            this.pipeline = pipeline;
+            this.target = target;
+            this.rows = rows;
+            this.fused = fused;
+            this.originalSize = originalSize;
+            this.finalSize = finalSize;
+            this.compressNs = compressNs;
+            this.decompressNs = decompressNs;
+            this.copiedBytesPerOp = copiedBytesPerOp;
+            this.allocatedBytesPerOp = allocatedBytesPerOp;
+        }
+    }
+    
     // ==================== MAIN ====================
     
     public static void main(String[] args) throws IOException {
@@ -492,21 +571,12 @@ public class HybridBenchmarkNew {
         byte[] timestampsBytes = longsToBytes(batch.timestamps);
         byte[] valuesBytes = floatsToBytes(batch.values);
         byte[] combinedBytes = combineBytes(timestampsBytes, valuesBytes);
+        byte[] doublesBytes = EncodingBenchmarkNew.doublesToBytes(EncodingBenchmarkNew.flattenValues(
+            BatchData.generateDeterministicDoubles(seed, batch.timestamps.length)));
         
-        // Create encoders (only those that work well)
-        List<Encoder> encoders = Arrays.asList(
-            new TS2DIFFEncoder(),
-            new GorillaEncoder(),
-            new RLEEncoder()
-        );
-        
-        // Create compressors
-        List<Compressor> compressors = Arrays.asList(
-            new GZIPCompressor(),
-            new SnappyCompressor(),
-            new LZ4CompressorImpl(),
-            new ZlibCompressor()
-        );
+        // Create encoders (only those that work well) and compressors
+        List<Encoder> encoders = encoders();
+        List<Compressor> compressors = compressors();
         
         List<HybridResult> results = new ArrayList<>();
         
@@ -514,51 +584,451 @@ public class HybridBenchmarkNew {
         for (Encoder encoder : encoders) {
             for (Compressor compressor : compressors) {
                 // Timestamps
-                results.add(benchmarkHybrid(encoder, compressor, "timestamps", timestampsBytes));
+                if (matchesColumn(encoder, "timestamps")) {
+                    results.add(benchmarkHybrid(encoder, compressor, "timestamps", timestampsBytes));
+                }
                 
                 // Values
-                results.add(benchmarkHybrid(encoder, compressor, "values", valuesBytes));
+                if (matchesColumn(encoder, "values")) {
+                    results.add(benchmarkHybrid(encoder, compressor, "values", valuesBytes));
+                }
+                
+                // Values at double precision
+                if (matchesColumn(encoder, "doubles")) {
+                    results.add(benchmarkHybrid(encoder, compressor, "doubles", doublesBytes));
+                }
                 
                 // Combined
-                results.add(benchmarkHybrid(encoder, compressor, "combined", combinedBytes));
+                if (matchesColumn(encoder, "combined")) {
+                    results.add(benchmarkHybrid(encoder, compressor, "combined", combinedBytes));
+                }
             }
         }
         
         // Write results to CSV
-        writeResultsToCSV(results, "/Users/hossein/Desktop/db-encoding/hybrid_res.csv");
+        writeResultsToCSV(results, ResultFiles.path("hybrid_res.csv"));
         
         System.out.println("Hybrid benchmark completed. Results written to hybrid_res.csv");
+        printAllocations(results);
+        
+        // Column-parallel pipeline: devices of growing width, sequential (threads = 0) and on
+        // pools of 1, 2, 4, ... up to the available processors
+        List<Integer> threadCounts = new ArrayList<>(Arrays.asList(0));
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int t = 1; t < processors; t *= 2) {
+            threadCounts.add(t);
+        }
+        threadCounts.add(processors);
+        List<PipelineResult> pipelineResults = new ArrayList<>();
+        for (int measurements : PIPELINE_MEASUREMENTS) {
+            for (int rows : PIPELINE_ROWS) {
+                BatchData.Batch wide = BatchData.generateDeterministic(seed, rows, measurements,
+                    BatchData.BASE_TIMESTAMP_MS, BatchData.INTERVAL_MS);
+                for (Supplier<Compressor> compressor : Arrays.<Supplier<Compressor>>asList(
+                        () -> new SharedCompressor(new CompressionBenchmarkNew.LZ4Compressor()),
+                        () -> new SharedCompressor(new CompressionBenchmarkNew.ZlibCompressor()))) {
+                    for (int threads : threadCounts) {
+                        ForkJoinPool pool = threads == 0 ? null : new ForkJoinPool(threads);
+                        try {
+                            ColumnPipeline pipeline = new ColumnPipeline(
+                                () -> new SharedEncoder(new EncodingBenchmarkNew.TS2DIFFEncoder()),
+                                () -> new SharedEncoder(new EncodingBenchmarkNew.GorillaEncoder()),
+                                compressor, pool);
+                            pipelineResults.add(benchmarkPipeline(pipeline, wide, threads));
+                        } finally {
+                            if (pool != null) pool.shutdown();
+                        }
+                    }
+                }
+            }
+        }
+        writePipelineResultsToCSV(pipelineResults, ResultFiles.path("hybrid_pipeline_res.csv"));
+        
+        System.out.println("Column pipeline per batch, wall / CPU microseconds (hybrid_pipeline_res.csv):");
+        for (PipelineResult r : pipelineResults) {
+            System.out.printf("  %-26s %3d cols %5d rows %s  encode %9.1f / %9.1f   decode %9.1f / %9.1f%n",
+                r.pipeline, r.measurements, r.rows, r.threads == 0 ? "sequential" : String.format("%2d threads", r.threads),
+                r.encodeWallNs / 1e3, r.encodeCpuNs / 1e3, r.decodeWallNs / 1e3, r.decodeCpuNs / 1e3);
+        }
+        
+        // Fused encoder>LZ4 against the same encoder and LZ4Compressor as separate stages
+        List<FusedResult> fusedResults = new ArrayList<>();
+        for (int rows : FUSED_ROWS) {
+            BatchData.Batch sized = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+            Map<String, byte[]> columns = new LinkedHashMap<>();
+            columns.put("timestamps", longsToBytes(sized.timestamps));
+            columns.put("values", floatsToBytes(sized.values));
+            for (Supplier<EncodingBenchmarkNew.TypedCodec> codec : Arrays.<Supplier<EncodingBenchmarkNew.TypedCodec>>asList(
+                    EncodingBenchmarkNew.TS2DIFFEncoder::new,
+                    EncodingBenchmarkNew.GorillaEncoder::new,
+                    () -> new EncodingBenchmarkNew.ChimpEncoder(128))) {
+                for (Map.Entry<String, byte[]> column : columns.entrySet()) {
+                    if (!EncodingBenchmarkNew.matchesColumn(codec.get(), column.getKey())) continue;
+                    fusedResults.add(benchmarkStaged(new SharedEncoder(codec.get()),
+                        new SharedCompressor(new CompressionBenchmarkNew.LZ4Compressor()), column.getKey(), rows,
+                        column.getValue()));
+                    fusedResults.add(benchmarkFused(new FusedCodec(codec.get()), column.getKey(), rows, column.getValue()));
+                }
+            }
+        }
+        writeFusedResultsToCSV(fusedResults, ResultFiles.path("hybrid_fused_res.csv"));
+        
+        System.out.println("Staged vs fused per batch: ns compress / decompress, bytes copied / allocated (hybrid_fused_res.csv):");
+        for (FusedResult r : fusedResults) {
+            System.out.printf("  %-16s %-10s %6d rows  %9d / %9d ns  %9d / %9d B%n",
+                r.pipeline, r.target, r.rows, r.compressNs, r.decompressNs, r.copiedBytesPerOp, r.allocatedBytesPerOp);
+        }
+        
+        // Compressor level and strategy sweep behind the usual encoder of each column; the
+        // ratio is against the raw column
+        List<CompressionBenchmarkNew.LevelResult> levelResults = new ArrayList<>();
+        for (int rows : CompressionBenchmarkNew.SWEEP_ROWS) {
+            BatchData.Batch sized = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+            byte[] timestamps = longsToBytes(sized.timestamps);
+            byte[] values = floatsToBytes(sized.values);
+            Encoder timestampEncoder = new SharedEncoder(new EncodingBenchmarkNew.TS2DIFFEncoder());
+            Encoder valueEncoder = new SharedEncoder(new EncodingBenchmarkNew.GorillaEncoder());
+            byte[] encodedTimestamps = timestampEncoder.encode(timestamps);
+            byte[] encodedValues = valueEncoder.encode(values);
+            for (CompressionBenchmarkNew.LevelSetting setting : CompressionBenchmarkNew.levelSweep()) {
+                levelResults.add(CompressionBenchmarkNew.benchmarkLevel(setting, timestampEncoder.getName(), "timestamps",
+                    rows, timestamps.length, encodedTimestamps));
+                levelResults.add(CompressionBenchmarkNew.benchmarkLevel(setting, valueEncoder.getName(), "values",
+                    rows, values.length, encodedValues));
+            }
+        }
+        CompressionBenchmarkNew.markParetoFront(levelResults);
+        CompressionBenchmarkNew.writeLevelResultsToCSV(levelResults,
+            ResultFiles.path("hybrid_level_sweep_res.csv"));
+        CompressionBenchmarkNew.printLevelSweep(levelResults, "hybrid_level_sweep_res.csv");
+        
+        // Shuffle filters on the raw columns at their element width: timestamps and doubles
+        // are 8 bytes, float values 4. Then the filter between an encoder and the compressor:
+        // TS_2DIFF on the timestamps and GORILLA on the doubles, shuffled at the column's width
+        // although their bitstreams have no fixed element size, to see whether it still pays.
+        List<ShuffleResult> shuffleResults = new ArrayList<>();
+        for (int rows : SHUFFLE_ROWS) {
+            BatchData.Batch sized = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+            Map<String, byte[]> columns = new LinkedHashMap<>();
+            columns.put("timestamps", longsToBytes(sized.timestamps));
+            columns.put("values", floatsToBytes(sized.values));
+            columns.put("doubles", EncodingBenchmarkNew.doublesToBytes(EncodingBenchmarkNew.flattenValues(
+                BatchData.generateDeterministicDoubles(seed, rows))));
+            Map<String, Supplier<Encoder>> shuffleEncoders = new LinkedHashMap<>();
+            shuffleEncoders.put("timestamps", () -> new SharedEncoder(new EncodingBenchmarkNew.TS2DIFFEncoder()));
+            shuffleEncoders.put("doubles", () -> new SharedEncoder(new EncodingBenchmarkNew.GorillaEncoder()));
+            for (Supplier<CompressionBenchmarkNew.Compressor> compressor : Arrays.<Supplier<CompressionBenchmarkNew.Compressor>>asList(
+                    CompressionBenchmarkNew.LZ4Compressor::new,
+                    CompressionBenchmarkNew.SnappyCompressor::new,
+                    CompressionBenchmarkNew.ZlibCompressor::new)) {
+                for (Map.Entry<String, byte[]> column : columns.entrySet()) {
+                    int elementSize = column.getKey().equals("values") ? 4 : 8;
+                    Compressor plain = new SharedCompressor(compressor.get());
+                    List<Encoder> pipelines = new ArrayList<>();
+                    pipelines.add(null);
+                    if (shuffleEncoders.containsKey(column.getKey())) {
+                        pipelines.add(shuffleEncoders.get(column.getKey()).get());
+                    }
+                    for (Encoder encoder : pipelines) {
+                        shuffleResults.add(benchmarkShuffle(encoder, null, elementSize, plain, column.getKey(), rows,
+                            column.getValue()));
+                        for (Shuffle.Mode mode : Shuffle.Mode.values()) {
+                            shuffleResults.add(benchmarkShuffle(encoder, mode, elementSize, plain, column.getKey(), rows,
+                                column.getValue()));
+                        }
+                    }
+                }
+            }
+        }
+        writeShuffleResultsToCSV(shuffleResults, ResultFiles.path("hybrid_shuffle_res.csv"));
+        
+        System.out.println("Shuffle filters, ratio and end-to-end compress MB/s: none -> byte -> bit (hybrid_shuffle_res.csv):");
+        for (int i = 0; i + 2 < shuffleResults.size(); i += 3) {
+            ShuffleResult none = shuffleResults.get(i);
+            ShuffleResult bytes = shuffleResults.get(i + 1);
+            ShuffleResult bits = shuffleResults.get(i + 2);
+            String pipeline = none.encoder.equals("NONE") ? none.compressor : none.encoder + "+" + none.compressor;
+            System.out.printf("  %-15s %-10s %6d rows  ratio %6.3f -> %6.3f -> %6.3f   %8.1f -> %8.1f -> %8.1f MB/s"
+                    + "   (shuffle %7.1f / %7.1f MB/s)%n",
+                pipeline, none.target, none.rows, none.ratio, bytes.ratio, bits.ratio,
+                none.compressMBps, bytes.compressMBps, bits.compressMBps, bytes.shuffleMBps, bits.shuffleMBps);
+        }
     }
     
-    static HybridResult benchmarkHybrid(Encoder encoder, Compressor compressor, String target, byte[] data) {
+    static final int[] SHUFFLE_ROWS = {BatchData.SAMPLE_COUNT, 10000, 100000};
+    // Bytes pushed through each timed loop
+    static final int SHUFFLE_BYTES = 8 << 20;
+    
+    // A null mode runs the compressor alone as the baseline. With an encoder the filter sits
+    // between it and the compressor: the shuffle timings are on the encoder's output, the
+    // compress and decompress ones cover the whole pipeline, and the ratio is against the raw
+    // column so it compares with the unencoded rows.
+    static ShuffleResult benchmarkShuffle(Encoder encoder, Shuffle.Mode mode, int elementSize, Compressor plain,
+                                          String target, int rows, byte[] data) {
+        Compressor compressor = mode == null ? plain : new ShuffleCompressor(mode, elementSize, plain);
+        String encoderName = encoder == null ? "NONE" : encoder.getName();
+        String filter = mode == null ? "NONE" : mode + "SHUFFLE" + elementSize;
+        String name = encoder == null ? compressor.getName() : encoderName + "+" + compressor.getName();
+        int runs = Math.max(3, Math.min(2000, SHUFFLE_BYTES / data.length));
         try {
-            // Warmup
-            for (int i = 0; i < 10; i++) {
-                byte[] encoded = encoder.encode(data);
-                byte[] compressed = compressor.compress(encoded);
-                byte[] decompressed = compressor.decompress(compressed);
-                encoder.decode(decompressed);
+            double shuffleMBps = 0;
+            double unshuffleMBps = 0;
+            if (mode != null) {
+                byte[] input = encoder == null ? data : encoder.encode(data);
+                byte[] shuffled = new byte[input.length];
+                byte[] restored = new byte[input.length];
+                for (int i = 0; i < runs; i++) {
+                    Shuffle.shuffle(mode, elementSize, input, 0, input.length, shuffled, 0);
+                    Shuffle.unshuffle(mode, elementSize, shuffled, 0, shuffled.length, restored, 0);
+                }
+                long shuffleStart = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    Shuffle.shuffle(mode, elementSize, input, 0, input.length, shuffled, 0);
+                }
+                long shuffleEnd = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    Shuffle.unshuffle(mode, elementSize, shuffled, 0, shuffled.length, restored, 0);
+                }
+                long unshuffleEnd = System.nanoTime();
+                shuffleMBps = CompressionBenchmarkNew.mbPerSecond((long) input.length * runs, shuffleEnd - shuffleStart);
+                unshuffleMBps = CompressionBenchmarkNew.mbPerSecond((long) input.length * runs, unshuffleEnd - shuffleEnd);
             }
             
-            // Measure encode time
-            long encodeStart = System.nanoTime();
-            byte[] encoded = encoder.encode(data);
-            long encodeEnd = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                decode(encoder, compressor.decompress(compressor.compress(encode(encoder, data))));
+            }
             
-            // Measure compress time
+            byte[] compressed = null;
             long compressStart = System.nanoTime();
-            byte[] compressed = compressor.compress(encoded);
+            for (int i = 0; i < runs; i++) {
+                compressed = compressor.compress(encode(encoder, data));
+            }
             long compressEnd = System.nanoTime();
             
-            // Measure decompress time
+            byte[] decompressed = null;
             long decompressStart = System.nanoTime();
-            byte[] decompressed = compressor.decompress(compressed);
+            for (int i = 0; i < runs; i++) {
+                decompressed = decode(encoder, compressor.decompress(compressed));
+            }
+            long decompressEnd = System.nanoTime();
+            
+            if (!Arrays.equals(data, decompressed)) {
+                System.err.println("WARNING: " + name + " on " + target + " failed verification!");
+            }
+            
+            long bytes = (long) data.length * runs;
+            return new ShuffleResult(encoderName, filter, plain.getName(), target, rows, data.length, compressed.length,
+                shuffleMBps, unshuffleMBps, CompressionBenchmarkNew.mbPerSecond(bytes, compressEnd - compressStart),
+                CompressionBenchmarkNew.mbPerSecond(bytes, decompressEnd - decompressStart));
+        } catch (Exception e) {
+            System.err.println("ERROR: " + name + " on " + target + " threw exception: " + e.getMessage());
+            return new ShuffleResult(encoderName, filter, plain.getName(), target, rows, data.length, data.length,
+                0, 0, 0, 0);
+        }
+    }
+    
+    static byte[] encode(Encoder encoder, byte[] data) throws IOException {
+        return encoder == null ? data : encoder.encode(data);
+    }
+    
+    static byte[] decode(Encoder encoder, byte[] encoded) throws IOException {
+        return encoder == null ? encoded : encoder.decode(encoded);
+    }
+    
+    static final int[] FUSED_ROWS = {BatchData.SAMPLE_COUNT, 1000, 100000};
+    // Batches per fused/staged timing, after as many warmup batches
+    static final int FUSED_RUNS = 200;
+    
+    static FusedResult benchmarkStaged(Encoder encoder, Compressor compressor, String target, int rows, byte[] data) {
+        String name = encoder.getName() + "+" + compressor.getName();
+        try {
+            for (int i = 0; i < FUSED_RUNS; i++) {
+                encoder.decode(compressor.decompress(compressor.compress(encoder.encode(data))));
+            }
+            
+            byte[] compressed = null;
+            long compressStart = System.nanoTime();
+            for (int i = 0; i < FUSED_RUNS; i++) {
+                compressed = compressor.compress(encoder.encode(data));
+            }
+            long compressEnd = System.nanoTime();
+            
+            byte[] decoded = null;
+            long decompressStart = System.nanoTime();
+            for (int i = 0; i < FUSED_RUNS; i++) {
+                decoded = encoder.decode(compressor.decompress(compressed));
+            }
+            long decompressEnd = System.nanoTime();
+            
+            if (!Arrays.equals(data, decoded)) {
+                System.err.println("WARNING: " + name + " on " + target + " failed verification!");
+            }
+            
+            AllocationMeter.Operation roundTrip = () -> encoder.decode(compressor.decompress(compressor.compress(encoder.encode(data))));
+            return new FusedResult(name, target, rows, false, data.length, compressed.length,
+                (compressEnd - compressStart) / FUSED_RUNS, (decompressEnd - decompressStart) / FUSED_RUNS,
+                CopyMeter.bytesPerOp(roundTrip, ALLOCATION_RUNS), AllocationMeter.bytesPerOp(roundTrip, ALLOCATION_RUNS));
+        } catch (Exception e) {
+            System.err.println("ERROR: " + name + " on " + target + " threw exception: " + e.getMessage());
+            return new FusedResult(name, target, rows, false, data.length, data.length, 0, 0, -1, -1);
+        }
+    }
+    
+    static FusedResult benchmarkFused(FusedCodec codec, String target, int rows, byte[] data) {
+        try {
+            for (int i = 0; i < FUSED_RUNS; i++) {
+                codec.decompress(codec.compress(data));
+            }
+            
+            byte[] compressed = null;
+            long compressStart = System.nanoTime();
+            for (int i = 0; i < FUSED_RUNS; i++) {
+                compressed = codec.compress(data);
+            }
+            long compressEnd = System.nanoTime();
+            
+            byte[] decoded = null;
+            long decompressStart = System.nanoTime();
+            for (int i = 0; i < FUSED_RUNS; i++) {
+                decoded = codec.decompress(compressed);
+            }
             long decompressEnd = System.nanoTime();
             
-            // Measure decode time
+            if (!Arrays.equals(data, decoded)) {
+                System.err.println("WARNING: " + codec.getName() + " on " + target + " failed verification!");
+            }
+            
+            AllocationMeter.Operation roundTrip = () -> codec.decompress(codec.compress(data));
+            return new FusedResult(codec.getName(), target, rows, true, data.length, compressed.length,
+                (compressEnd - compressStart) / FUSED_RUNS, (decompressEnd - decompressStart) / FUSED_RUNS,
+                CopyMeter.bytesPerOp(roundTrip, ALLOCATION_RUNS), AllocationMeter.bytesPerOp(roundTrip, ALLOCATION_RUNS));
+        } catch (Exception e) {
+            System.err.println("ERROR: " + codec.getName() + " on " + target + " threw exception: " + e.getMessage());
+            return new FusedResult(codec.getName(), target, rows, true, data.length, data.length, 0, 0, -1, -1);
+        }
+    }
+    
+    static final int[] PIPELINE_MEASUREMENTS = {2, 8, 32, 64};
+    static final int[] PIPELINE_ROWS = {BatchData.SAMPLE_COUNT, 1000};
+    // Batches per pipeline timing, after as many warmup batches
+    static final int PIPELINE_RUNS = 200;
+    
+    // CPU time of the current thread; process CPU time only moves in scheduler ticks,
+    // too coarse for one batch
+    static long threadCpuNanos() {
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+    
+    // Caller thread plus the pipeline's pool workers
+    static long pipelineCpuNanos(ColumnPipeline pipeline) {
+        return threadCpuNanos() + pipeline.workerCpuNanos();
+    }
+    
+    static PipelineResult benchmarkPipeline(ColumnPipeline pipeline, BatchData.Batch batch, int threads) {
+        int originalSize = batch.timestamps.length * (8 + 4 * batch.measurements.length);
+        try {
+            for (int i = 0; i < PIPELINE_RUNS; i++) {
+                pipeline.decode(pipeline.encode(batch));
+            }
+            
+            byte[] container = null;
+            long encodeCpuStart = pipelineCpuNanos(pipeline);
+            long encodeStart = System.nanoTime();
+            for (int i = 0; i < PIPELINE_RUNS; i++) {
+                container = pipeline.encode(batch);
+            }
+            long encodeEnd = System.nanoTime();
+            long encodeCpuEnd = pipelineCpuNanos(pipeline);
+            
+            BatchData.Batch decoded = null;
+            long decodeCpuStart = pipelineCpuNanos(pipeline);
             long decodeStart = System.nanoTime();
-            byte[] decoded = encoder.decode(decompressed);
+            for (int i = 0; i < PIPELINE_RUNS; i++) {
+                decoded = pipeline.decode(container);
+            }
             long decodeEnd = System.nanoTime();
+            long decodeCpuEnd = pipelineCpuNanos(pipeline);
+            
+            if (!Arrays.equals(batch.timestamps, decoded.timestamps) || !Arrays.deepEquals(batch.values, decoded.values)
+                    || !Arrays.equals(batch.measurements, decoded.measurements)) {
+                System.err.println("WARNING: " + pipeline.getName() + " pipeline failed verification!");
+            }
+            
+            return new PipelineResult(pipeline.getName(), batch.measurements.length, batch.timestamps.length, threads,
+                originalSize, container.length,
+                (encodeEnd - encodeStart) / PIPELINE_RUNS, (encodeCpuEnd - encodeCpuStart) / PIPELINE_RUNS,
+                (decodeEnd - decodeStart) / PIPELINE_RUNS, (decodeCpuEnd - decodeCpuStart) / PIPELINE_RUNS);
+        } catch (Exception e) {
+            System.err.println("ERROR: " + pipeline.getName() + " pipeline threw exception: " + e.getMessage());
+            return new PipelineResult(pipeline.getName(), batch.measurements.length, batch.timestamps.length, threads,
+                originalSize, originalSize, 0, 0, 0, 0);
+        }
+    }
+    
+    // Per encoder+compressor pair, summed over the columns it ran on
+    static void printAllocations(List<HybridResult> results) {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (HybridResult r : results) {
+            long[] t = totals.computeIfAbsent(r.encoder + "+" + r.compressor, k -> new long[2]);
+            t[0] += r.pooledBytesPerOp;
+            t[1] += r.unpooledBytesPerOp;
+        }
+        System.out.println("Allocated bytes per pipeline round trip, all columns (pooled / unpooled):");
+        for (Map.Entry<String, long[]> e : totals.entrySet()) {
+            System.out.printf("  %-22s %10d / %d%n", e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+    }
+    
+    // Encoders and compressors of the hybrid matrix, fresh instances; SweepRunner filters
+    // these lists by name
+    static List<Encoder> encoders() {
+        return Arrays.asList(
+            new SharedEncoder(new EncodingBenchmarkNew.TS2DIFFEncoder()),
+            new SharedEncoder(new EncodingBenchmarkNew.GorillaEncoder()),
+            new SharedEncoder(new EncodingBenchmarkNew.GorillaEncoder(8)),
+            new SharedEncoder(new EncodingBenchmarkNew.ChimpEncoder(128)),
+            new SharedEncoder(new EncodingBenchmarkNew.ChimpEncoder(128, 8)),
+            new RLEEncoder()
+        );
+    }
+    
+    static List<Compressor> compressors() {
+        return Arrays.asList(
+            new SharedCompressor(new CompressionBenchmarkNew.GZIPCompressor()),
+            new SharedCompressor(new CompressionBenchmarkNew.SnappyCompressor()),
+            new SharedCompressor(new CompressionBenchmarkNew.LZ4Compressor()),
+            new SharedCompressor(new CompressionBenchmarkNew.ZlibCompressor())
+        );
+    }
+    
+    // Sends the XOR codecs only to columns of their word width (see EncodingBenchmarkNew)
+    static boolean matchesColumn(Encoder encoder, String target) {
+        if (!(encoder instanceof SharedEncoder)) return true;
+        return EncodingBenchmarkNew.matchesColumn(((SharedEncoder) encoder).codec, target);
+    }
+    
+    // Pipeline runs averaged for the allocation figures
+    static final int ALLOCATION_RUNS = 50;
+    
+    static HybridResult benchmarkHybrid(Encoder encoder, Compressor compressor, String target, byte[] data) {
+        try {
+            long[] gcBefore = AllocationMeter.gcTotals();
+            
+            // Measure each stage's latency on the previous stage's output
+            LatencyHarness.Stats encode = LatencyHarness.measure(() -> encoder.encode(data));
+            byte[] encoded = encoder.encode(data);
+            
+            LatencyHarness.Stats compress = LatencyHarness.measure(() -> compressor.compress(encoded));
+            byte[] compressed = compressor.compress(encoded);
+            
+            LatencyHarness.Stats decompress = LatencyHarness.measure(() -> compressor.decompress(compressed));
+            byte[] decompressed = compressor.decompress(compressed);
+            
+            LatencyHarness.Stats decode = LatencyHarness.measure(() -> encoder.decode(decompressed));
+            byte[] decoded = encoder.decode(decompressed);
             
             // Verify correctness
             if (!Arrays.equals(data, decoded)) {
@@ -566,23 +1036,39 @@ public class HybridBenchmarkNew {
                                  " on " + target + " failed verification!");
             }
             
-            return new HybridResult(
+            HybridResult result = new HybridResult(
                 encoder.getName(),
                 compressor.getName(),
                 target,
-                encodeEnd - encodeStart,
-                compressEnd - compressStart,
-                decompressEnd - decompressStart,
-                decodeEnd - decodeStart,
+                encode,
+                compress,
+                decompress,
+                decode,
                 data.length,
                 encoded.length,
                 compressed.length
             );
-        } catch (IOException e) {
+            result.encodeBytesPerOp = AllocationMeter.bytesPerOp(() -> encoder.encode(data), ALLOCATION_RUNS);
+            result.compressBytesPerOp = AllocationMeter.bytesPerOp(() -> compressor.compress(encoded), ALLOCATION_RUNS);
+            result.decompressBytesPerOp = AllocationMeter.bytesPerOp(() -> compressor.decompress(compressed),
+                ALLOCATION_RUNS);
+            result.decodeBytesPerOp = AllocationMeter.bytesPerOp(() -> encoder.decode(decompressed), ALLOCATION_RUNS);
+            long[] allocated = AllocationMeter.bytesPerOpPooledAndUnpooled(
+                () -> encoder.decode(compressor.decompress(compressor.compress(encoder.encode(data)))),
+                ALLOCATION_RUNS);
+            result.pooledBytesPerOp = allocated[0];
+            result.unpooledBytesPerOp = allocated[1];
+            long[] gcAfter = AllocationMeter.gcTotals();
+            result.gcCount = gcAfter[0] - gcBefore[0];
+            result.gcTimeMs = gcAfter[1] - gcBefore[1];
+            result.scratchBytes = AllocationMeter.scratchBytes(encoder, compressor);
+            return result;
+        } catch (Exception e) {
             System.err.println("ERROR: " + encoder.getName() + "+" + compressor.getName() + 
                              " on " + target + " threw exception: " + e.getMessage());
+            LatencyHarness.Stats none = LatencyHarness.Stats.EMPTY;
             return new HybridResult(encoder.getName(), compressor.getName(), target, 
-                                  0, 0, 0, 0, data.length, data.length, data.length);
+                                  none, none, none, none, data.length, data.length, data.length);
         }
     }
     
@@ -604,6 +1090,15 @@ public class HybridBenchmarkNew {
         return bb.array();
     }
     
+    // One measurement column as big-endian floats
+    static byte[] columnToBytes(float[][] values, int column) {
+        ByteBuffer bb = ByteBuffer.allocate(values.length * 4);
+        for (float[] row : values) {
+            bb.putFloat(row[column]);
+        }
+        return bb.array();
+    }
+    
     static byte[] combineBytes(byte[] a, byte[] b) {
         byte[] combined = new byte[a.length + b.length];
         System.arraycopy(a, 0, combined, 0, a.length);
@@ -613,13 +1108,54 @@ public class HybridBenchmarkNew {
     
     static void writeResultsToCSV(List<HybridResult> results, String filename) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("encoder,compressor,target,encode_time_ns,compress_time_ns,decompress_time_ns,decode_time_ns,original_size_bytes,encoded_size_bytes,final_size_bytes,encoding_ratio,final_ratio");
+            writer.println("encoder,compressor,target," + LatencyHarness.Stats.csvHeader("encode") + ","
+                + LatencyHarness.Stats.csvHeader("compress") + "," + LatencyHarness.Stats.csvHeader("decompress") + ","
+                + LatencyHarness.Stats.csvHeader("decode")
+                + ",original_size_bytes,encoded_size_bytes,final_size_bytes,encoding_ratio,final_ratio,"
+                + "encode_alloc_bytes_per_op,compress_alloc_bytes_per_op,decompress_alloc_bytes_per_op,"
+                + "decode_alloc_bytes_per_op,pooled_alloc_bytes_per_roundtrip,unpooled_alloc_bytes_per_roundtrip,"
+                + "gc_count,gc_time_ms,peak_scratch_bytes");
             for (HybridResult r : results) {
-                writer.printf("%s,%s,%s,%d,%d,%d,%d,%d,%d,%d,%.4f,%.4f%n",
+                writer.printf("%s,%s,%s,%s,%s,%s,%s,%d,%d,%d,%.4f,%.4f,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
                     r.encoder, r.compressor, r.target,
-                    r.encodeTimeNs, r.compressTimeNs, r.decompressTimeNs, r.decodeTimeNs,
+                    r.encode.toCsv(), r.compress.toCsv(), r.decompress.toCsv(), r.decode.toCsv(),
                     r.originalSize, r.encodedSize, r.finalSize,
-                    r.encodingRatio, r.finalRatio);
+                    r.encodingRatio, r.finalRatio,
+                    r.encodeBytesPerOp, r.compressBytesPerOp, r.decompressBytesPerOp, r.decodeBytesPerOp,
+                    r.pooledBytesPerOp, r.unpooledBytesPerOp, r.gcCount, r.gcTimeMs, r.scratchBytes);
+            }
+        }
+    }
+    
+    static void writePipelineResultsToCSV(List<PipelineResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("pipeline,measurements,rows,threads,original_size_bytes,container_size_bytes,encode_wall_ns,encode_cpu_ns,decode_wall_ns,decode_cpu_ns");
+            for (PipelineResult r : results) {
+                writer.printf("%s,%d,%d,%d,%d,%d,%d,%d,%d,%d%n",
+                    r.pipeline, r.measurements, r.rows, r.threads, r.originalSize, r.containerSize,
+                    r.encodeWallNs, r.encodeCpuNs, r.decodeWallNs, r.decodeCpuNs);
+            }
+        }
+    }
+    
+    static void writeFusedResultsToCSV(List<FusedResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("pipeline,target,rows,fused,original_size_bytes,final_size_bytes,compress_ns,decompress_ns,copied_bytes_per_op,allocated_bytes_per_op");
+            for (FusedResult r : results) {
+                writer.printf("%s,%s,%d,%b,%d,%d,%d,%d,%d,%d%n",
+                    r.pipeline, r.target, r.rows, r.fused, r.originalSize, r.finalSize,
+                    r.compressNs, r.decompressNs, r.copiedBytesPerOp, r.allocatedBytesPerOp);
+            }
+        }
+    }
+    
+    static void writeShuffleResultsToCSV(List<ShuffleResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("encoder,filter,compressor,target,rows,original_size_bytes,compressed_size_bytes,compression_ratio,shuffle_mb_per_s,unshuffle_mb_per_s,compress_mb_per_s,decompress_mb_per_s");
+            for (ShuffleResult r : results) {
+                writer.printf("%s,%s,%s,%s,%d,%d,%d,%.4f,%.1f,%.1f,%.1f,%.1f%n",
+                    r.encoder, r.filter, r.compressor, r.target, r.rows, r.originalSize, r.compressedSize, r.ratio,
+                    r.shuffleMBps, r.unshuffleMBps, r.compressMBps, r.decompressMBps);
             }
         }
     }
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Repeated per-call latency measurement for the in-house harnesses, for where JMH is not
+// available. measure() warms an operation up in rounds of WARMUP_ROUND calls until the
+// median of STEADY_ROUNDS consecutive rounds stays within STEADY_TOLERANCE of the round
+// before (or MAX_WARMUP_ROUNDS pass), then times ITERATIONS calls one by one. Every sample
+// goes into a log-linear Histogram for the percentiles; mean, stddev and a bootstrap
+// confidence interval of the mean come from the raw samples.
+//
+// Each call is timed on its own so tails stay visible: a GC pause or a deoptimization
+// lands in p99.9 instead of being averaged away. System.nanoTime() costs a few tens of ns,
+// which sits in every sample. Slow operations stop early at MAX_MEASURE_NS, so their
+// p99.9 rests on fewer than 1000 samples; Stats.samples records how many were taken.
+public final class LatencyHarness {
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    static final int ITERATIONS = 1000;
+    static final long MAX_MEASURE_NS = 200_000_000L;
+    static final int WARMUP_ROUND = 50;
+    static final int MAX_WARMUP_ROUNDS = 40;
+    static final int STEADY_ROUNDS = 3;
+    static final double STEADY_TOLERANCE = 0.05;
+    static final int BOOTSTRAP_RESAMPLES = 1000;
+    static final double CONFIDENCE = 0.95;
+
+    // Results are published here so the JIT cannot drop the calls as dead code
+    static volatile Object sink;
+
+    private LatencyHarness() {
+    }
+
+    static class Stats {
+        static final Stats EMPTY = new Stats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        final int samples;
+        final int warmupCalls;
+        final long min;
+        final long median;
+        final long p90;
+        final long p99;
+        final long p999;
+        final long max;
+        final double mean;
+        final double stddev;
+        // Bootstrap CONFIDENCE interval of the mean
+        final double ciLow;
+        final double ciHigh;
+
+        Stats(int samples, int warmupCalls, long min, long median, long p90, long p99, long p999, long max,
+              double mean, double stddev, double ciLow, double ciHigh) {
+            this.samples = samples;
+            this.warmupCalls = warmupCalls;
+            this.min = min;
+            this.median = median;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+            this.mean = mean;
+            this.stddev = stddev;
+            this.ciLow = ciLow;
+            this.ciHigh = ciHigh;
+        }
+
+        // CSV columns for one timed stage, e.g. csvHeader("encode") -> encode_min_ns,...
+        static String csvHeader(String stage) {
+            StringBuilder sb = new StringBuilder();
+            for (String column : new String[]{"warmup_calls", "samples", "min_ns", "median_ns", "p90_ns",
+                    "p99_ns", "p999_ns", "max_ns", "mean_ns", "stddev_ns", "ci_low_ns", "ci_high_ns"}) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(stage).append('_').append(column);
+            }
+            return sb.toString();
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,%.1f",
+                warmupCalls, samples, min, median, p90, p99, p999, max, mean, stddev, ciLow, ciHigh);
+        }
+    }
+
+    // Log-linear histogram of non-negative longs: exact below 2^SUB_BUCKET_BITS, above that
+    // SUB_BUCKET_BITS significant bits per power of two, so a recorded value is off by at
+    // most 1/64 of itself
+    static final class Histogram {
+        static final int SUB_BUCKET_BITS = 7;
+        private static final int HALF = 1 << (SUB_BUCKET_BITS - 1);
+
+        private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 2) * HALF];
+        private long total;
+
+        void record(long value) {
+            counts[index(Math.max(0, value))]++;
+            total++;
+        }
+
+        // Smallest recorded bucket, reported at its midpoint, holding the ceil(q * count)-th value
+        long quantile(double q) {
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return midpoint(i);
+            }
+            return 0;
+        }
+
+        private static int index(long value) {
+            int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+            return shift * HALF + (int) (value >>> shift);
+        }
+
+        private static long midpoint(int index) {
+            int shift = Math.max(0, index / HALF - 1);
+            long low = (long) (index - shift * HALF) << shift;
+            return low + ((1L << shift) >>> 1);
+        }
+    }
+
+    static Stats measure(Operation op) throws Exception {
+        int warmupCalls = warmUp(op);
+
+        long[] samples = new long[ITERATIONS];
+        Histogram histogram = new Histogram();
+        int n = 0;
+        long deadline = System.nanoTime() + MAX_MEASURE_NS;
+        while (n < ITERATIONS) {
+            long start = System.nanoTime();
+            sink = op.run();
+            long end = System.nanoTime();
+            samples[n++] = end - start;
+            histogram.record(end - start);
+            if (end > deadline) break;
+        }
+        return summarize(Arrays.copyOf(samples, n), histogram, warmupCalls);
+    }
+
+    // Runs op in rounds until the round medians settle; returns the calls spent
+    private static int warmUp(Operation op) throws Exception {
+        long[] round = new long[WARMUP_ROUND];
+        long previous = -1;
+        int steady = 0;
+        int calls = 0;
+        long deadline = System.nanoTime() + MAX_MEASURE_NS;
+        for (int r = 0; r < MAX_WARMUP_ROUNDS && steady < STEADY_ROUNDS; r++) {
+            for (int i = 0; i < WARMUP_ROUND; i++) {
+                long start = System.nanoTime();
+                sink = op.run();
+                round[i] = System.nanoTime() - start;
+            }
+            calls += WARMUP_ROUND;
+            Arrays.sort(round);
+            long median = round[WARMUP_ROUND / 2];
+            if (previous > 0 && Math.abs(median - previous) <= STEADY_TOLERANCE * previous) {
+                steady++;
+            } else {
+                steady = 0;
+            }
+            previous = median;
+            if (System.nanoTime() > deadline) break;
+        }
+        return calls;
+    }
+
+    static Stats summarize(long[] samples, Histogram histogram, int warmupCalls) {
+        int n = samples.length;
+        double sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long s : samples) {
+            sum += s;
+            min = Math.min(min, s);
+            max = Math.max(max, s);
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (long s : samples) {
+            squares += (s - mean) * (s - mean);
+        }
+        double stddev = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+
+        // Percentile bootstrap: the mean of BOOTSTRAP_RESAMPLES resamples drawn with replacement
+        SplittableRandom random = new SplittableRandom(n);
+        double[] means = new double[BOOTSTRAP_RESAMPLES];
+        for (int b = 0; b < BOOTSTRAP_RESAMPLES; b++) {
+            double resampled = 0;
+            for (int i = 0; i < n; i++) {
+                resampled += samples[random.nextInt(n)];
+            }
+            means[b] = resampled / n;
+        }
+        Arrays.sort(means);
+        double tail = (1 - CONFIDENCE) / 2;
+        double ciLow = means[(int) (tail * (BOOTSTRAP_RESAMPLES - 1))];
+        double ciHigh = means[(int) Math.ceil((1 - tail) * (BOOTSTRAP_RESAMPLES - 1))];
+
+        return new Stats(n, warmupCalls, min, histogram.quantile(0.5), histogram.quantile(0.9),
+            histogram.quantile(0.99), histogram.quantile(0.999), max, mean, stddev, ciLow, ciHigh);
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// ByteArrayOutputStream replacement backed by a BufferPool heap buffer. Growing moves the
+// bytes into the next size class and hands the old buffer back, so once the arena is warm
+// a stream allocates nothing but its exact-size result. Producers that fill an array
+// themselves (Deflater, Inflater, LZ4) use ensureRemaining/array/size/advance instead of
+// write. toByteArray() makes the single copy the byte[] codec contract needs; buffer()
+// exposes the written bytes as a slice without copying. close() keeps the bytes, so
+// wrapping streams may close it; release() gives the storage back to the pool.
+public class PooledOutputStream extends OutputStream {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+    private byte[] array;
+    private int size;
+
+    public PooledOutputStream(int initialCapacity) {
+        this(BufferPool.local(), initialCapacity);
+    }
+
+    public PooledOutputStream(BufferPool pool, int initialCapacity) {
+        this.pool = pool;
+        this.buffer = pool.acquire(Math.max(1, initialCapacity));
+        this.array = buffer.array();
+    }
+
+    @Override
+    public void write(int b) {
+        if (size == array.length) ensureRemaining(1);
+        array[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureRemaining(len);
+        CopyMeter.count(len);
+        System.arraycopy(b, off, array, size, len);
+        size += len;
+    }
+
+    // Drains in straight into the backing array; returns the number of bytes read
+    public int readFrom(InputStream in) throws IOException {
+        int total = 0;
+        while (true) {
+            if (size == array.length) ensureRemaining(array.length);
+            int n = in.read(array, size, array.length - size);
+            if (n < 0) return total;
+            size += n;
+            total += n;
+        }
+    }
+
+    // Grows, if needed, so that at least n more bytes fit in array() after size()
+    public void ensureRemaining(int n) {
+        long needed = (long) size + n;
+        if (needed <= array.length) return;
+        if (needed > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("PooledOutputStream over 2 GB");
+        ByteBuffer grown = pool.acquire((int) Math.max(needed, Math.min(2L * array.length, Integer.MAX_VALUE - 8)));
+        CopyMeter.count(size);
+        System.arraycopy(array, 0, grown.array(), 0, size);
+        pool.release(buffer);
+        buffer = grown;
+        array = grown.array();
+    }
+
+    // Backing array; valid until the next write, ensureRemaining or release
+    public byte[] array() {
+        return array;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int remaining() {
+        return array.length - size;
+    }
+
+    // Marks n bytes written directly into array() as part of the stream
+    public void advance(int n) {
+        if (n < 0 || n > remaining()) throw new IndexOutOfBoundsException("advance " + n + ", remaining " + remaining());
+        size += n;
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public byte[] toByteArray() {
+        CopyMeter.count(size);
+        return Arrays.copyOf(array, size);
+    }
+
+    // Written bytes as a zero-copy view; valid until the stream grows or is released
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(array, 0, size).slice();
+    }
+
+    public void release() {
+        if (buffer == null) return;
+        pool.release(buffer);
+        buffer = null;
+        array = EMPTY;
+        size = 0;
+    }
+}
@@ -0,0 +1,22 @@
+import java.io.File;
+
+// Where the harnesses write their CSVs: the directory in -Dresults.dir, or the working
+// directory. SweepRunner points it at its --out directory before writing.
+public final class ResultFiles {
+    private static volatile File directory = new File(System.getProperty("results.dir", "."));
+
+    private ResultFiles() {
+    }
+
+    static void setDirectory(File dir) {
+        directory = dir;
+    }
+
+    static File directory() {
+        return directory;
+    }
+
+    static String path(String name) {
+        return new File(directory, name).getPath();
+    }
+}
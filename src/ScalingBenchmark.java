@@ -0,0 +1,353 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Supplier;
+
+// Ingest throughput of encoders, compressors and encoder+compressor pipelines on 1, 2, 4, ...
+// worker threads. Each worker builds its own codec instances (the codecs keep scratch arrays
+// and are not thread-safe) and cycles over its own BATCHES_PER_WORKER batches of ROWS rows,
+// generated from its own seeds, so workers share nothing but the JVM, the allocator and any
+// static or native state inside the libraries (Snappy's JNI binding, LZ4Factory, Deflater).
+//
+// Each pipeline first gets a discarded 1-thread pass so the JIT has settled. Then workers warm
+// up on their own, start together on a barrier and run the forward direction (encode,
+// compress, or encode then compress) for RUN_MS. Aggregate MB/s and values/s are over the
+// wall time from the first start to the last stop; efficiency is aggregate throughput divided
+// by threads x the 1-thread throughput. A pipeline is flagged when its efficiency drops below
+// SCALING_EFFICIENCY at a thread count the machine has cores for; counts past the
+// available processors are reported as oversubscribed and not judged.
+//
+// Usage: ScalingBenchmark [seed] [maxThreads]   (maxThreads defaults to the processors)
+public class ScalingBenchmark {
+    static final int ROWS = 1000;
+    static final int BATCHES_PER_WORKER = 8;
+    static final long WARMUP_MS = 100;
+    static final long RUN_MS = 250;
+    static final double SCALING_EFFICIENCY = 0.8;
+
+    static class Pipeline {
+        final String name;
+        final String target;
+        final Supplier<HybridBenchmarkNew.Encoder> encoder;
+        final Supplier<HybridBenchmarkNew.Compressor> compressor;
+
+        // Either stage may be null for an encoder-only or compressor-only pipeline
+        Pipeline(String target, Supplier<HybridBenchmarkNew.Encoder> encoder,
+                 Supplier<HybridBenchmarkNew.Compressor> compressor) {
+            this.target = target;
+            this.encoder = encoder;
+            this.compressor = compressor;
+            String encoderName = encoder == null ? null : encoder.get().getName();
+            String compressorName = compressor == null ? null : compressor.get().getName();
+            this.name = encoderName == null ? compressorName
+                : compressorName == null ? encoderName : encoderName + "+" + compressorName;
+        }
+
+        Stage newStage() {
+            return new Stage(encoder == null ? null : encoder.get(), compressor == null ? null : compressor.get());
+        }
+    }
+
+    // One worker's private instances of a pipeline's codecs
+    static class Stage {
+        final HybridBenchmarkNew.Encoder encoder;
+        final HybridBenchmarkNew.Compressor compressor;
+
+        Stage(HybridBenchmarkNew.Encoder encoder, HybridBenchmarkNew.Compressor compressor) {
+            this.encoder = encoder;
+            this.compressor = compressor;
+        }
+
+        byte[] forward(byte[] batch) throws IOException {
+            byte[] out = encoder == null ? batch : encoder.encode(batch);
+            return compressor == null ? out : compressor.compress(out);
+        }
+
+        byte[] inverse(byte[] data) throws IOException {
+            byte[] out = compressor == null ? data : compressor.decompress(data);
+            return encoder == null ? out : encoder.decode(out);
+        }
+    }
+
+    static class ScalingResult {
+        String pipeline;
+        String target;
+        int threads;
+        long batches;
+        long inputBytes;
+        double mbPerSecond;
+        double valuesPerSecond;
+        double efficiency;
+        long allocatedBytesPerBatch;
+        boolean oversubscribed;
+        boolean flagged;
+
+        ScalingResult(String pipeline, String target, int threads, long batches, long inputBytes,
+                      double mbPerSecond, double valuesPerSecond, long allocatedBytesPerBatch, boolean oversubscribed) {
+            this.pipeline = pipeline;
+            this.target = target;
+            this.threads = threads;
+            this.batches = batches;
+            this.inputBytes = inputBytes;
+            this.mbPerSecond = mbPerSecond;
+            this.valuesPerSecond = valuesPerSecond;
+            this.allocatedBytesPerBatch = allocatedBytesPerBatch;
+            this.oversubscribed = oversubscribed;
+        }
+    }
+
+    static class Worker extends Thread {
+        final Stage stage;
+        final byte[][] batches;
+        final CyclicBarrier start;
+        volatile boolean stop;
+        long batchesDone;
+        long bytesDone;
+        long allocatedBytes;
+        long startNs;
+        long endNs;
+        Exception failure;
+
+        Worker(Stage stage, byte[][] batches, CyclicBarrier start) {
+            this.stage = stage;
+            this.batches = batches;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long warmupEnd = System.nanoTime() + WARMUP_MS * 1_000_000;
+                for (int i = 0; System.nanoTime() < warmupEnd; i++) {
+                    stage.forward(batches[i % batches.length]);
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+            // Every worker reaches the barrier, failed or not, so none is left waiting
+            try {
+                start.await();
+            } catch (InterruptedException | BrokenBarrierException e) {
+                failure = e;
+                return;
+            }
+            if (failure != null) return;
+            try {
+                long allocatedBefore = AllocationMeter.threadAllocatedBytes();
+                startNs = System.nanoTime();
+                int i = 0;
+                while (!stop) {
+                    byte[] batch = batches[i];
+                    stage.forward(batch);
+                    batchesDone++;
+                    bytesDone += batch.length;
+                    if (++i == batches.length) i = 0;
+                }
+                endNs = System.nanoTime();
+                allocatedBytes = AllocationMeter.threadAllocatedBytes() - allocatedBefore;
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int seed = 42;
+        if (args.length > 0) {
+            seed = Integer.parseInt(args[0]);
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : processors;
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2) {
+            threadCounts.add(t);
+        }
+        threadCounts.add(maxThreads);
+
+        List<ScalingResult> results = new ArrayList<>();
+        for (Pipeline pipeline : pipelines()) {
+            // A discarded 1-thread pass first, so JIT compilation does not land in the baseline
+            benchmark(pipeline, seed, 1, false);
+            List<ScalingResult> runs = new ArrayList<>();
+            for (int threads : threadCounts) {
+                ScalingResult r = benchmark(pipeline, seed, threads, threads > processors);
+                if (r != null) runs.add(r);
+            }
+            markScaling(runs);
+            results.addAll(runs);
+        }
+
+        writeResultsToCSV(results, ResultFiles.path("scaling_res.csv"));
+        System.out.println("Scaling benchmark completed. Results written to scaling_res.csv");
+
+        System.out.printf("Aggregate MB/s, Mvalues/s and efficiency vs 1 thread (%d processors):%n", processors);
+        for (ScalingResult r : results) {
+            System.out.printf("  %-22s %-10s %3d threads  %8.1f MB/s  %8.2f Mvalues/s  %5.0f%%%s%n",
+                r.pipeline, r.target, r.threads, r.mbPerSecond, r.valuesPerSecond / 1e6, 100 * r.efficiency,
+                r.oversubscribed ? "  (oversubscribed)" : r.flagged ? "  STOPS SCALING" : "");
+        }
+        System.out.println("Pipelines that stop scaling (allocated bytes per batch point at allocation pressure;"
+            + " low allocation points at shared or native state):");
+        boolean any = false;
+        for (ScalingResult r : results) {
+            if (!r.flagged) continue;
+            any = true;
+            System.out.printf("  %-22s %-10s at %d threads: %.0f%% efficiency, %d bytes allocated per %d-byte batch%n",
+                r.pipeline, r.target, r.threads, 100 * r.efficiency, r.allocatedBytesPerBatch,
+                r.inputBytes / r.batches);
+        }
+        if (!any) System.out.println("  none");
+    }
+
+    // Encoders on the column they suit, the compressors on raw readings, and the usual
+    // encoder+compressor pairs
+    static List<Pipeline> pipelines() {
+        List<Pipeline> pipelines = new ArrayList<>();
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.TS2DIFFEncoder::new));
+        pipelines.add(encoder("values", EncodingBenchmarkNew.GorillaEncoder::new));
+        pipelines.add(encoder("doubles", () -> new EncodingBenchmarkNew.GorillaEncoder(8)));
+        pipelines.add(encoder("values", () -> new EncodingBenchmarkNew.ChimpEncoder(128)));
+        pipelines.add(encoder("doubles", () -> new EncodingBenchmarkNew.ChimpEncoder(128, 8)));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.BitPackingEncoder::new));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.RLEEncoder::new));
+        pipelines.add(encoder("values", EncodingBenchmarkNew.HuffmanEncoder::new));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.GolombRiceEncoder::new));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.SprintzEncoder::new));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.RLBEEncoder::new));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.RAKEEncoder::new));
+        pipelines.add(encoder("values", EncodingBenchmarkNew.DictionaryEncoder::new));
+        pipelines.add(encoder("timestamps", EncodingBenchmarkNew.PFORDeltaEncoder::new));
+
+        List<Supplier<CompressionBenchmarkNew.Compressor>> compressors = Arrays.asList(
+            CompressionBenchmarkNew.GZIPCompressor::new,
+            CompressionBenchmarkNew.ZlibCompressor::new,
+            CompressionBenchmarkNew.SnappyCompressor::new,
+            CompressionBenchmarkNew.LZ4Compressor::new,
+            () -> new CompressionBenchmarkNew.HashChainLZCompressor(HashChainLZ.Level.FAST)
+        );
+        for (Supplier<CompressionBenchmarkNew.Compressor> compressor : compressors) {
+            pipelines.add(new Pipeline("values", null,
+                () -> new HybridBenchmarkNew.SharedCompressor(compressor.get())));
+        }
+
+        pipelines.add(hybrid("timestamps", EncodingBenchmarkNew.TS2DIFFEncoder::new,
+            CompressionBenchmarkNew.LZ4Compressor::new));
+        pipelines.add(hybrid("timestamps", EncodingBenchmarkNew.TS2DIFFEncoder::new,
+            CompressionBenchmarkNew.ZlibCompressor::new));
+        pipelines.add(hybrid("values", EncodingBenchmarkNew.GorillaEncoder::new,
+            CompressionBenchmarkNew.SnappyCompressor::new));
+        pipelines.add(hybrid("values", EncodingBenchmarkNew.GorillaEncoder::new,
+            CompressionBenchmarkNew.LZ4Compressor::new));
+        pipelines.add(hybrid("values", () -> new EncodingBenchmarkNew.ChimpEncoder(128),
+            CompressionBenchmarkNew.ZlibCompressor::new));
+        return pipelines;
+    }
+
+    static Pipeline encoder(String target, Supplier<EncodingBenchmarkNew.TypedCodec> codec) {
+        return new Pipeline(target, () -> new HybridBenchmarkNew.SharedEncoder(codec.get()), null);
+    }
+
+    static Pipeline hybrid(String target, Supplier<EncodingBenchmarkNew.TypedCodec> codec,
+                           Supplier<CompressionBenchmarkNew.Compressor> compressor) {
+        return new Pipeline(target, () -> new HybridBenchmarkNew.SharedEncoder(codec.get()),
+            () -> new HybridBenchmarkNew.SharedCompressor(compressor.get()));
+    }
+
+    static ScalingResult benchmark(Pipeline pipeline, int seed, int threads, boolean oversubscribed) {
+        try {
+            byte[] probe = column(pipeline.target, seed, 0);
+            Stage check = pipeline.newStage();
+            if (!Arrays.equals(probe, check.inverse(check.forward(probe)))) {
+                System.err.println("WARNING: " + pipeline.name + " on " + pipeline.target + " failed verification!");
+            }
+
+            CyclicBarrier start = new CyclicBarrier(threads + 1);
+            List<Worker> workers = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+                byte[][] batches = new byte[BATCHES_PER_WORKER][];
+                for (int b = 0; b < BATCHES_PER_WORKER; b++) {
+                    batches[b] = column(pipeline.target, seed + w * BATCHES_PER_WORKER + b, b);
+                }
+                workers.add(new Worker(pipeline.newStage(), batches, start));
+            }
+            for (Worker worker : workers) {
+                worker.start();
+            }
+            start.await();
+            Thread.sleep(RUN_MS);
+            for (Worker worker : workers) {
+                worker.stop = true;
+            }
+
+            long batches = 0;
+            long bytes = 0;
+            long allocated = 0;
+            long first = Long.MAX_VALUE;
+            long last = 0;
+            for (Worker worker : workers) {
+                worker.join();
+                if (worker.failure != null) throw worker.failure;
+                batches += worker.batchesDone;
+                bytes += worker.bytesDone;
+                allocated += worker.allocatedBytes;
+                first = Math.min(first, worker.startNs);
+                last = Math.max(last, worker.endNs);
+            }
+            double seconds = (last - first) / 1e9;
+            int wordBytes = EncodingBenchmarkNew.columnWordBytes(pipeline.target);
+            return new ScalingResult(pipeline.name, pipeline.target, threads, batches, bytes,
+                bytes / (1024.0 * 1024.0) / seconds, (double) bytes / wordBytes / seconds,
+                AllocationMeter.isSupported() ? allocated / Math.max(1, batches) : -1, oversubscribed);
+        } catch (Exception e) {
+            System.err.println("ERROR: " + pipeline.name + " on " + pipeline.target + " with " + threads
+                + " threads threw exception: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Efficiency against the 1-thread run, and the flag for the first thread count within the
+    // processors where it falls below SCALING_EFFICIENCY
+    static void markScaling(List<ScalingResult> runs) {
+        if (runs.isEmpty() || runs.get(0).threads != 1) return;
+        double single = runs.get(0).mbPerSecond;
+        boolean flagged = false;
+        for (ScalingResult r : runs) {
+            r.efficiency = r.mbPerSecond / (r.threads * single);
+            if (!flagged && !r.oversubscribed && r.efficiency < SCALING_EFFICIENCY) {
+                r.flagged = true;
+                flagged = true;
+            }
+        }
+    }
+
+    // One batch of the target column; batch b of a worker starts ROWS intervals after batch b-1
+    static byte[] column(String target, int seed, int batch) {
+        long base = BatchData.BASE_TIMESTAMP_MS + (long) batch * ROWS * BatchData.INTERVAL_MS;
+        switch (target) {
+            case "timestamps":
+                return EncodingBenchmarkNew.longsToBytes(
+                    BatchData.generateDeterministic(seed, ROWS, base, BatchData.INTERVAL_MS).timestamps);
+            case "values":
+                return EncodingBenchmarkNew.floatsToBytes(
+                    BatchData.generateDeterministic(seed, ROWS, base, BatchData.INTERVAL_MS).values);
+            case "doubles":
+                return EncodingBenchmarkNew.doublesToBytes(
+                    EncodingBenchmarkNew.flattenValues(BatchData.generateDeterministicDoubles(seed, ROWS)));
+            default:
+                throw new IllegalArgumentException("Unknown target column: " + target);
+        }
+    }
+
+    static void writeResultsToCSV(List<ScalingResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("pipeline,target,threads,batches,input_bytes,mb_per_s,values_per_s,efficiency,allocated_bytes_per_batch,oversubscribed,stops_scaling");
+            for (ScalingResult r : results) {
+                writer.printf("%s,%s,%d,%d,%d,%.1f,%.0f,%.3f,%d,%b,%b%n",
+                    r.pipeline, r.target, r.threads, r.batches, r.inputBytes, r.mbPerSecond, r.valuesPerSecond,
+                    r.efficiency, r.allocatedBytesPerBatch, r.oversubscribed, r.flagged);
+            }
+        }
+    }
+}
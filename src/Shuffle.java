@@ -0,0 +1,173 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Blosc-style shuffle filters for fixed-width elements (4-byte floats and ints, 8-byte
+// longs and doubles). Byte shuffle writes byte 0 of every element, then byte 1, and so on,
+// so the slowly changing sign and exponent bytes of neighbouring values end up next to each
+// other where LZ4 or Snappy can match them. Bit shuffle goes one step further and groups
+// bit k of every element, which turns bits that rarely change into long zero runs.
+//
+// Both work block by block: a block of BLOCK_BYTES is transposed on its own, so its source
+// and its elementSize output streams stay in L1 while the kernel runs, as in Blosc. Bytes
+// past the last whole element, and for bit shuffle the elements past the last multiple of
+// 8 in the final block, are copied through unchanged. Output is always as long as the input.
+public final class Shuffle {
+    public enum Mode { BYTE, BIT }
+
+    static final int BLOCK_BYTES = 8 << 10;
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private Shuffle() {
+    }
+
+    public static void shuffle(Mode mode, int elementSize, byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+        transform(mode, elementSize, src, srcOff, length, dst, dstOff, true);
+    }
+
+    public static void unshuffle(Mode mode, int elementSize, byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+        transform(mode, elementSize, src, srcOff, length, dst, dstOff, false);
+    }
+
+    private static void transform(Mode mode, int elementSize, byte[] src, int srcOff, int length, byte[] dst,
+                                  int dstOff, boolean forward) {
+        if (elementSize != 4 && elementSize != 8) {
+            throw new IllegalArgumentException("Shuffle element size must be 4 or 8: " + elementSize);
+        }
+        int whole = length - length % elementSize;
+        int pos = 0;
+        while (pos < whole) {
+            int count = Math.min(BLOCK_BYTES, whole - pos) / elementSize;
+            if (mode == Mode.BIT) {
+                // Bit planes need whole groups of 8 elements; the rest goes through as is
+                count &= ~7;
+                if (count == 0) break;
+                if (forward) {
+                    bitShuffleBlock(elementSize, src, srcOff + pos, count, dst, dstOff + pos);
+                } else {
+                    bitUnshuffleBlock(elementSize, src, srcOff + pos, count, dst, dstOff + pos);
+                }
+            } else if (forward) {
+                byteShuffleBlock(elementSize, src, srcOff + pos, count, dst, dstOff + pos);
+            } else {
+                byteUnshuffleBlock(elementSize, src, srcOff + pos, count, dst, dstOff + pos);
+            }
+            pos += count * elementSize;
+        }
+        System.arraycopy(src, srcOff + pos, dst, dstOff + pos, length - pos);
+    }
+
+    // One sequential read per element, elementSize sequential write streams
+    private static void byteShuffleBlock(int elementSize, byte[] src, int s, int count, byte[] dst, int d) {
+        if (elementSize == 4) {
+            for (int i = 0; i < count; i++) {
+                int v = (int) INT_LE.get(src, s + 4 * i);
+                dst[d + i] = (byte) v;
+                dst[d + count + i] = (byte) (v >>> 8);
+                dst[d + 2 * count + i] = (byte) (v >>> 16);
+                dst[d + 3 * count + i] = (byte) (v >>> 24);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            long v = (long) LONG_LE.get(src, s + 8 * i);
+            for (int j = 0; j < 8; j++) {
+                dst[d + j * count + i] = (byte) (v >>> (8 * j));
+            }
+        }
+    }
+
+    private static void byteUnshuffleBlock(int elementSize, byte[] src, int s, int count, byte[] dst, int d) {
+        if (elementSize == 4) {
+            for (int i = 0; i < count; i++) {
+                int v = (src[s + i] & 0xFF) | (src[s + count + i] & 0xFF) << 8
+                        | (src[s + 2 * count + i] & 0xFF) << 16 | (src[s + 3 * count + i] & 0xFF) << 24;
+                INT_LE.set(dst, d + 4 * i, v);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            long v = 0;
+            for (int j = 0; j < 8; j++) {
+                v |= (src[s + j * count + i] & 0xFFL) << (8 * j);
+            }
+            LONG_LE.set(dst, d + 8 * i, v);
+        }
+    }
+
+    // Per group of 8 elements and per byte position j: gather byte j of the 8 elements into
+    // one long, transpose it as an 8x8 bit matrix, and write its 8 bytes to bit planes
+    // 8j .. 8j+7. Each plane holds count / 8 bytes.
+    private static void bitShuffleBlock(int elementSize, byte[] src, int s, int count, byte[] dst, int d) {
+        int planeBytes = count >>> 3;
+        long[] lanes = new long[8];
+        for (int g = 0; g < planeBytes; g++) {
+            loadGroup(elementSize, src, s + g * 8 * elementSize, lanes);
+            for (int j = 0; j < elementSize; j++) {
+                int shift = 8 * j;
+                long x = 0;
+                for (int e = 0; e < 8; e++) {
+                    x |= ((lanes[e] >>> shift) & 0xFF) << (8 * e);
+                }
+                x = transpose8(x);
+                int plane = d + 8 * j * planeBytes + g;
+                for (int b = 0; b < 8; b++) {
+                    dst[plane + b * planeBytes] = (byte) (x >>> (8 * b));
+                }
+            }
+        }
+    }
+
+    private static void bitUnshuffleBlock(int elementSize, byte[] src, int s, int count, byte[] dst, int d) {
+        int planeBytes = count >>> 3;
+        long[] lanes = new long[8];
+        for (int g = 0; g < planeBytes; g++) {
+            Arrays.fill(lanes, 0);
+            for (int j = 0; j < elementSize; j++) {
+                int plane = s + 8 * j * planeBytes + g;
+                long x = 0;
+                for (int b = 0; b < 8; b++) {
+                    x |= (src[plane + b * planeBytes] & 0xFFL) << (8 * b);
+                }
+                x = transpose8(x);
+                int shift = 8 * j;
+                for (int e = 0; e < 8; e++) {
+                    lanes[e] |= ((x >>> (8 * e)) & 0xFF) << shift;
+                }
+            }
+            storeGroup(elementSize, lanes, dst, d + g * 8 * elementSize);
+        }
+    }
+
+    private static void loadGroup(int elementSize, byte[] src, int pos, long[] lanes) {
+        for (int e = 0; e < 8; e++) {
+            lanes[e] = elementSize == 4
+                ? (int) INT_LE.get(src, pos + 4 * e) & 0xFFFFFFFFL
+                : (long) LONG_LE.get(src, pos + 8 * e);
+        }
+    }
+
+    private static void storeGroup(int elementSize, long[] lanes, byte[] dst, int pos) {
+        for (int e = 0; e < 8; e++) {
+            if (elementSize == 4) {
+                INT_LE.set(dst, pos + 4 * e, (int) lanes[e]);
+            } else {
+                LONG_LE.set(dst, pos + 8 * e, lanes[e]);
+            }
+        }
+    }
+
+    // Transposes the 8x8 bit matrix held one row per byte (Hacker's Delight, transpose8).
+    // A transpose is its own inverse, so unshuffle uses it too.
+    static long transpose8(long x) {
+        long t = (x ^ (x >>> 7)) & 0x00AA00AA00AA00AAL;
+        x = x ^ t ^ (t << 7);
+        t = (x ^ (x >>> 14)) & 0x0000CCCC0000CCCCL;
+        x = x ^ t ^ (t << 14);
+        t = (x ^ (x >>> 28)) & 0x00000000F0F0F0F0L;
+        return x ^ t ^ (t << 28);
+    }
+}
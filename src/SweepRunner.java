@@ -0,0 +1,325 @@
+import java.io.*;
+import java.util.*;
+
+// Runs the encoding, compression and hybrid matrices over every seed x sample count x data
+// profile in one JVM, in place of the shell loops that edited BatchData.SAMPLE_COUNT,
+// rebuilt and started a fresh JVM per combination. Each dataset is generated once and kept
+// in memory for all suites; the suites run one after another, so a codec's JIT profile
+// carries over from one dataset to the next and LatencyHarness only has to settle it.
+//
+// A dataset holds the harness columns of BatchData.generateDeterministic(seed, rows, ...)
+// shaped by BatchData.applyProfile: timestamps, values, doubles and combined (timestamps
+// followed by values). Each suite runs on the columns its own main uses. Results go to
+// <out>/<suite>_seed<S>_samples<N>_<profile>.csv in the suite's usual CSV format.
+//
+// --encoders and --compressors take codec names as in the CSVs; a name also selects its
+// variants, so GORILLA runs GORILLA and GORILLA_64 and LZ runs LZ_FAST, LZ_NORMAL, LZ_HIGH.
+// The encoder filter applies to the encoding and hybrid suites, the compressor filter to the
+// compression and hybrid suites; a filter that leaves a selected suite with no codec is
+// rejected. Integer lists take ranges, e.g. --samples 1-50.
+//
+// Usage: SweepRunner [--seeds 42,123] [--samples 5,10,20] [--profiles gaussian,jittered]
+//                    [--suites encoding,compression,hybrid] [--encoders GORILLA,TS_2DIFF]
+//                    [--compressors LZ4,ZLIB] [--out dir]
+public class SweepRunner {
+    static final String[] SUITES = {"encoding", "compression", "hybrid"};
+
+    static class Dataset {
+        final int seed;
+        final int rows;
+        final String profile;
+        final Map<String, byte[]> columns = new LinkedHashMap<>();
+
+        Dataset(int seed, int rows, String profile) {
+            this.seed = seed;
+            this.rows = rows;
+            this.profile = profile;
+            BatchData.Batch batch = BatchData.generateDeterministic(seed, rows, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+            double[] doubles = EncodingBenchmarkNew.flattenValues(BatchData.generateDeterministicDoubles(seed, rows));
+            BatchData.applyProfile(profile, seed, batch, doubles);
+            byte[] timestamps = EncodingBenchmarkNew.longsToBytes(batch.timestamps);
+            byte[] values = EncodingBenchmarkNew.floatsToBytes(batch.values);
+            columns.put("timestamps", timestamps);
+            columns.put("values", values);
+            columns.put("doubles", EncodingBenchmarkNew.doublesToBytes(doubles));
+            columns.put("combined", EncodingBenchmarkNew.combineBytes(timestamps, values));
+        }
+
+        String fileName(String suite) {
+            return suite + "_seed" + seed + "_samples" + rows + "_" + profile + ".csv";
+        }
+    }
+
+    static class Options {
+        List<Integer> seeds = Collections.singletonList(42);
+        List<Integer> samples = Collections.singletonList(BatchData.SAMPLE_COUNT);
+        List<String> profiles = Collections.singletonList("gaussian");
+        List<String> suites = Arrays.asList(SUITES);
+        List<String> encoders = Collections.emptyList();
+        List<String> compressors = Collections.emptyList();
+        File out = ResultFiles.directory();
+    }
+
+    // Datasets by seed/rows/profile, generated on first use
+    private final Map<String, Dataset> datasets = new HashMap<>();
+    private final Options options;
+
+    SweepRunner(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = parse(args);
+        if (!options.out.isDirectory() && !options.out.mkdirs()) {
+            throw new IOException("Cannot create output directory " + options.out);
+        }
+        ResultFiles.setDirectory(options.out);
+
+        long start = System.nanoTime();
+        new SweepRunner(options).run();
+        System.out.printf("Sweep completed in %.1f s. Results written to %s%n",
+            (System.nanoTime() - start) / 1e9, options.out.getPath());
+    }
+
+    void run() throws IOException {
+        List<EncodingBenchmarkNew.Encoder> encoders = select(EncodingBenchmarkNew.encoders(), options.encoders,
+            EncodingBenchmarkNew.Encoder::getName);
+        List<CompressionBenchmarkNew.Compressor> compressors = select(CompressionBenchmarkNew.compressors(),
+            options.compressors, CompressionBenchmarkNew.Compressor::getName);
+        List<HybridBenchmarkNew.Encoder> hybridEncoders = select(HybridBenchmarkNew.encoders(), options.encoders,
+            HybridBenchmarkNew.Encoder::getName);
+        List<HybridBenchmarkNew.Compressor> hybridCompressors = select(HybridBenchmarkNew.compressors(),
+            options.compressors, HybridBenchmarkNew.Compressor::getName);
+        // The hybrid lists are subsets of the others, so a filter can pass parse() and still
+        // leave a suite with nothing to run
+        if (options.suites.contains("encoding")) {
+            requireAny(encoders, "encoding", "--encoders", options.encoders, EncodingBenchmarkNew.encoders(),
+                EncodingBenchmarkNew.Encoder::getName);
+        }
+        if (options.suites.contains("compression")) {
+            requireAny(compressors, "compression", "--compressors", options.compressors,
+                CompressionBenchmarkNew.compressors(), CompressionBenchmarkNew.Compressor::getName);
+        }
+        if (options.suites.contains("hybrid")) {
+            requireAny(hybridEncoders, "hybrid", "--encoders", options.encoders, HybridBenchmarkNew.encoders(),
+                HybridBenchmarkNew.Encoder::getName);
+            requireAny(hybridCompressors, "hybrid", "--compressors", options.compressors,
+                HybridBenchmarkNew.compressors(), HybridBenchmarkNew.Compressor::getName);
+        }
+        int combinations = options.seeds.size() * options.samples.size() * options.profiles.size();
+
+        for (String suite : options.suites) {
+            // Mean ratio per codec and column over every dataset, for the summary
+            Map<String, double[]> ratios = new TreeMap<>();
+            int done = 0;
+            for (int rows : options.samples) {
+                for (int seed : options.seeds) {
+                    for (String profile : options.profiles) {
+                        Dataset dataset = dataset(seed, rows, profile);
+                        System.out.printf("[%s %d/%d] seed %d, %d samples, %s%n",
+                            suite, ++done, combinations, seed, rows, profile);
+                        switch (suite) {
+                            case "encoding":
+                                runEncoding(dataset, encoders, ratios);
+                                break;
+                            case "compression":
+                                runCompression(dataset, compressors, ratios);
+                                break;
+                            default:
+                                runHybrid(dataset, hybridEncoders, hybridCompressors, ratios);
+                                break;
+                        }
+                    }
+                }
+            }
+            printBest(suite, ratios);
+        }
+    }
+
+    Dataset dataset(int seed, int rows, String profile) {
+        return datasets.computeIfAbsent(seed + "/" + rows + "/" + profile, k -> new Dataset(seed, rows, profile));
+    }
+
+    private static void runEncoding(Dataset dataset, List<EncodingBenchmarkNew.Encoder> encoders,
+                                    Map<String, double[]> ratios) throws IOException {
+        List<EncodingBenchmarkNew.BenchmarkResult> results = new ArrayList<>();
+        for (EncodingBenchmarkNew.Encoder encoder : encoders) {
+            for (Map.Entry<String, byte[]> column : dataset.columns.entrySet()) {
+                if (!EncodingBenchmarkNew.matchesColumn(encoder, column.getKey())) continue;
+                EncodingBenchmarkNew.BenchmarkResult r = EncodingBenchmarkNew.benchmark(encoder, column.getKey(),
+                    column.getValue());
+                results.add(r);
+                addRatio(ratios, r.algorithm, r.target, r.ratio);
+            }
+        }
+        EncodingBenchmarkNew.writeResultsToCSV(results, ResultFiles.path(dataset.fileName("encoding")));
+    }
+
+    // Timestamps, values and combined, the columns CompressionBenchmarkNew.main compresses
+    private static void runCompression(Dataset dataset, List<CompressionBenchmarkNew.Compressor> compressors,
+                                       Map<String, double[]> ratios) throws IOException {
+        List<CompressionBenchmarkNew.BenchmarkResult> results = new ArrayList<>();
+        for (CompressionBenchmarkNew.Compressor compressor : compressors) {
+            for (String target : new String[]{"timestamps", "values", "combined"}) {
+                CompressionBenchmarkNew.BenchmarkResult r = CompressionBenchmarkNew.benchmark(compressor, target,
+                    dataset.columns.get(target));
+                results.add(r);
+                addRatio(ratios, r.algorithm, r.target, r.ratio);
+            }
+        }
+        CompressionBenchmarkNew.writeResultsToCSV(results, ResultFiles.path(dataset.fileName("compression")));
+    }
+
+    private static void runHybrid(Dataset dataset, List<HybridBenchmarkNew.Encoder> encoders,
+                                  List<HybridBenchmarkNew.Compressor> compressors,
+                                  Map<String, double[]> ratios) throws IOException {
+        List<HybridBenchmarkNew.HybridResult> results = new ArrayList<>();
+        for (HybridBenchmarkNew.Encoder encoder : encoders) {
+            for (HybridBenchmarkNew.Compressor compressor : compressors) {
+                for (Map.Entry<String, byte[]> column : dataset.columns.entrySet()) {
+                    if (!HybridBenchmarkNew.matchesColumn(encoder, column.getKey())) continue;
+                    HybridBenchmarkNew.HybridResult r = HybridBenchmarkNew.benchmarkHybrid(encoder, compressor,
+                        column.getKey(), column.getValue());
+                    results.add(r);
+                    addRatio(ratios, r.encoder + "+" + r.compressor, r.target, r.finalRatio);
+                }
+            }
+        }
+        HybridBenchmarkNew.writeResultsToCSV(results, ResultFiles.path(dataset.fileName("hybrid")));
+    }
+
+    // ratios maps target + '\t' + codec to {sum, count}
+    private static void addRatio(Map<String, double[]> ratios, String codec, String target, double ratio) {
+        double[] r = ratios.computeIfAbsent(target + '\t' + codec, k -> new double[2]);
+        r[0] += ratio;
+        r[1]++;
+    }
+
+    private static void printBest(String suite, Map<String, double[]> ratios) {
+        Map<String, String> bestCodec = new LinkedHashMap<>();
+        Map<String, Double> bestRatio = new HashMap<>();
+        for (Map.Entry<String, double[]> e : ratios.entrySet()) {
+            String[] key = e.getKey().split("\t");
+            double mean = e.getValue()[0] / e.getValue()[1];
+            if (mean < bestRatio.getOrDefault(key[0], Double.MAX_VALUE)) {
+                bestRatio.put(key[0], mean);
+                bestCodec.put(key[0], key[1]);
+            }
+        }
+        System.out.println("Lowest mean size ratio (output / input) per column, " + suite + ":");
+        for (Map.Entry<String, String> e : bestCodec.entrySet()) {
+            System.out.printf("  %-10s %-24s %8.3f%n", e.getKey(), e.getValue(), bestRatio.get(e.getKey()));
+        }
+    }
+
+    interface Named<T> {
+        String name(T codec);
+    }
+
+    // Codecs whose name equals a filter token or starts with token + "_"; all of them for an
+    // empty filter
+    static <T> List<T> select(List<T> codecs, List<String> filter, Named<T> named) {
+        if (filter.isEmpty()) return codecs;
+        List<T> selected = new ArrayList<>();
+        for (T codec : codecs) {
+            String name = named.name(codec);
+            for (String token : filter) {
+                if (name.equals(token) || name.startsWith(token + "_")) {
+                    selected.add(codec);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static <T> void requireAny(List<T> selected, String suite, String option, List<String> filter,
+                                       List<T> all, Named<T> named) {
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException(option + " " + String.join(",", filter) + " selects nothing in the "
+                + suite + " suite (expected one of " + names(all, named) + ")");
+        }
+    }
+
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--seeds":
+                    options.seeds = parseInts(value);
+                    break;
+                case "--samples":
+                    options.samples = parseInts(value);
+                    break;
+                case "--profiles":
+                    options.profiles = parseNames(value, Arrays.asList(BatchData.PROFILES), "data profile");
+                    break;
+                case "--suites":
+                    options.suites = parseNames(value, Arrays.asList(SUITES), "suite");
+                    break;
+                case "--encoders":
+                    options.encoders = parseNames(value, names(EncodingBenchmarkNew.encoders(),
+                        EncodingBenchmarkNew.Encoder::getName), "encoder");
+                    break;
+                case "--compressors":
+                    options.compressors = parseNames(value, names(CompressionBenchmarkNew.compressors(),
+                        CompressionBenchmarkNew.Compressor::getName), "compressor");
+                    break;
+                case "--out":
+                    options.out = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        for (int rows : options.samples) {
+            if (rows < 1) throw new IllegalArgumentException("Sample counts must be positive: " + rows);
+        }
+        return options;
+    }
+
+    // Comma-separated integers and inclusive ranges: "5,10,20" or "1-50"
+    static List<Integer> parseInts(String value) {
+        List<Integer> ints = new ArrayList<>();
+        for (String part : value.split(",")) {
+            int dash = part.indexOf('-', 1);
+            if (dash < 0) {
+                ints.add(Integer.parseInt(part.trim()));
+            } else {
+                int from = Integer.parseInt(part.substring(0, dash).trim());
+                int to = Integer.parseInt(part.substring(dash + 1).trim());
+                for (int n = from; n <= to; n++) {
+                    ints.add(n);
+                }
+            }
+        }
+        return ints;
+    }
+
+    // Comma-separated names, each of which must select something in known
+    private static List<String> parseNames(String value, List<String> known, String kind) {
+        List<String> names = new ArrayList<>();
+        for (String part : value.split(",")) {
+            String name = part.trim();
+            if (select(known, Collections.singletonList(name), n -> n).isEmpty()) {
+                throw new IllegalArgumentException("Unknown " + kind + ": " + name + " (expected one of " + known + ")");
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static <T> List<String> names(List<T> codecs, Named<T> named) {
+        List<String> names = new ArrayList<>();
+        for (T codec : codecs) {
+            names.add(named.name(codec));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+import java.util.List;
+
+// Preset dictionary trained from past batches, for compressors that can start from
+// history (ZlibCompressor via setDictionary, HashChainLZCompressor via its history
+// window). Tiny batches carry almost no internal redundancy, but they repeat their
+// predecessors: timestamp high bytes, float exponents, common readings.
+//
+// Training is a cut-down COVER (Liao et al., used by zstd): every DMER_BYTES-byte
+// substring is scored by how many samples contain it, the corpus is split into one epoch
+// per output segment, and each epoch contributes the SEGMENT_BYTES window with the highest
+// total score. The d-mers of a chosen segment are zeroed so later epochs pick new content.
+// Segments are laid out best-last, since both LZ77 and deflate reach the end of the
+// dictionary with the shortest offsets. A corpus no larger than the dictionary is used
+// as-is, most recent sample last.
+//
+// version is a positive tag written into compressed frames (HashChainLZ) so a reader can
+// tell which dictionary a frame needs; zlib frames carry the dictionary's Adler-32 instead.
+public final class TrainedDictionary {
+    static final int DMER_BYTES = 6;
+    static final int SEGMENT_BYTES = 48;
+    static final int DEFAULT_SIZE = 4096;
+
+    private final int version;
+    private final byte[] content;
+
+    public TrainedDictionary(int version, byte[] content) {
+        if (version <= 0) throw new IllegalArgumentException("Dictionary version must be positive: " + version);
+        this.version = version;
+        this.content = content;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    // Shared, not copied; callers must not modify it
+    public byte[] content() {
+        return content;
+    }
+
+    public int size() {
+        return content.length;
+    }
+
+    public static TrainedDictionary train(int version, List<byte[]> samples) {
+        return train(version, samples, DEFAULT_SIZE);
+    }
+
+    public static TrainedDictionary train(int version, List<byte[]> samples, int maxSize) {
+        int corpusLength = 0;
+        for (byte[] sample : samples) {
+            corpusLength += sample.length;
+        }
+        byte[] corpus = new byte[corpusLength];
+        int[] sampleStarts = new int[samples.size() + 1];
+        int pos = 0;
+        for (int s = 0; s < samples.size(); s++) {
+            sampleStarts[s] = pos;
+            byte[] sample = samples.get(s);
+            System.arraycopy(sample, 0, corpus, pos, sample.length);
+            pos += sample.length;
+        }
+        sampleStarts[samples.size()] = pos;
+
+        if (corpusLength <= maxSize) return new TrainedDictionary(version, corpus);
+
+        // Document frequency of each d-mer, and each corpus position's slot in that table
+        DmerCounts counts = new DmerCounts(corpusLength);
+        int[] slotAt = new int[corpusLength];
+        Arrays.fill(slotAt, -1);
+        for (int s = 0; s < samples.size(); s++) {
+            for (int p = sampleStarts[s]; p + DMER_BYTES <= sampleStarts[s + 1]; p++) {
+                slotAt[p] = counts.add(dmer(corpus, p), s);
+            }
+        }
+
+        int segments = Math.max(1, maxSize / SEGMENT_BYTES);
+        int epochLength = Math.max(SEGMENT_BYTES, corpusLength / segments);
+        int[] chosenStart = new int[segments];
+        long[] chosenScore = new long[segments];
+        int chosen = 0;
+        for (int epoch = 0; epoch + SEGMENT_BYTES <= corpusLength && chosen < segments; epoch += epochLength) {
+            int epochEnd = Math.min(corpusLength, epoch + epochLength);
+            // Sliding sum of d-mer scores over [start, start + SEGMENT_BYTES - DMER_BYTES]
+            int window = SEGMENT_BYTES - DMER_BYTES + 1;
+            long score = 0;
+            long bestScore = -1;
+            int bestStart = epoch;
+            for (int p = epoch; p < epochEnd; p++) {
+                score += counts.score(slotAt[p]);
+                if (p - window >= epoch) score -= counts.score(slotAt[p - window]);
+                int start = p - window + 1;
+                if (start >= epoch && start + SEGMENT_BYTES <= corpusLength && score > bestScore) {
+                    bestScore = score;
+                    bestStart = start;
+                }
+            }
+            if (bestScore <= 0) continue;
+            for (int p = bestStart; p < bestStart + window; p++) {
+                counts.clear(slotAt[p]);
+            }
+            chosenStart[chosen] = bestStart;
+            chosenScore[chosen] = bestScore;
+            chosen++;
+        }
+
+        // Best-last layout: sort segment indices by ascending score
+        Integer[] order = new Integer[chosen];
+        for (int i = 0; i < chosen; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(chosenScore[a], chosenScore[b]));
+        byte[] content = new byte[chosen * SEGMENT_BYTES];
+        for (int i = 0; i < chosen; i++) {
+            System.arraycopy(corpus, chosenStart[order[i]], content, i * SEGMENT_BYTES, SEGMENT_BYTES);
+        }
+        return new TrainedDictionary(version, content);
+    }
+
+    private static long dmer(byte[] corpus, int p) {
+        long key = 0;
+        for (int i = 0; i < DMER_BYTES; i++) {
+            key = (key << 8) | (corpus[p + i] & 0xFF);
+        }
+        return key;
+    }
+
+    // Open-addressing d-mer -> number of distinct samples containing it
+    private static final class DmerCounts {
+        private final long[] keys;
+        private final int[] counts;
+        private final int[] lastSample;
+        private final int mask;
+
+        DmerCounts(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            lastSample = new int[capacity];
+            Arrays.fill(lastSample, -1);
+            mask = capacity - 1;
+        }
+
+        // Returns the slot of key, counting sample once
+        int add(long key, int sample) {
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (lastSample[slot] != -1 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (lastSample[slot] != sample) {
+                keys[slot] = key;
+                counts[slot]++;
+                lastSample[slot] = sample;
+            }
+            return slot;
+        }
+
+        // A d-mer seen in one sample only is no better than a literal
+        long score(int slot) {
+            if (slot < 0) return 0;
+            int c = counts[slot];
+            return c > 1 ? c : 0;
+        }
+
+        void clear(int slot) {
+            if (slot >= 0) counts[slot] = 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.*;
+import java.util.*;
+
+// Trained dictionaries on small batches: for each sample count a dictionary is trained per
+// column from TRAINING_BATCHES earlier batches of the same device (consecutive time ranges,
+// different readings), then the next batch is compressed with and without it. Times are
+// per-call averages over RUNS calls, since a single 160-byte call is below timer resolution.
+public class TrainedDictionaryBenchmark {
+    static final int[] SAMPLE_COUNTS = {5, 10, 20, 50, 100, 200, 500, 1000};
+    static final int TRAINING_BATCHES = 100;
+    static final int DICTIONARY_VERSION = 1;
+    static final int RUNS = 2000;
+
+    static class DictionaryResult {
+        String algorithm;
+        String target;
+        int sampleCount;
+        int dictionaryVersion;
+        int dictionarySize;
+        long trainingNs;
+        int originalSize;
+        int compressedSize;
+        double ratio;
+        long compressNsPerCall;
+        long decompressNsPerCall;
+
+        DictionaryResult(String algorithm, String target, int sampleCount, TrainedDictionary dictionary, long trainingNs,
+                         int originalSize, int compressedSize, long compressNsPerCall, long decompressNsPerCall) {
+            this.algorithm = algorithm;
+            this.target = target;
+            this.sampleCount = sampleCount;
+            this.dictionaryVersion = dictionary == null ? 0 : dictionary.version();
+            this.dictionarySize = dictionary == null ? 0 : dictionary.size();
+            this.trainingNs = trainingNs;
+            this.originalSize = originalSize;
+            this.compressedSize = compressedSize;
+            this.ratio = (double) compressedSize / originalSize;
+            this.compressNsPerCall = compressNsPerCall;
+            this.decompressNsPerCall = decompressNsPerCall;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int seed = 42;
+        if (args.length > 0) {
+            seed = Integer.parseInt(args[0]);
+        }
+
+        List<DictionaryResult> results = new ArrayList<>();
+        for (int count : SAMPLE_COUNTS) {
+            // Past batches end where the measured one starts
+            List<byte[]> pastTimestamps = new ArrayList<>();
+            List<byte[]> pastValues = new ArrayList<>();
+            for (int b = 0; b < TRAINING_BATCHES; b++) {
+                long base = BatchData.BASE_TIMESTAMP_MS - (long) (TRAINING_BATCHES - b) * count * BatchData.INTERVAL_MS;
+                BatchData.Batch past = BatchData.generateDeterministic(seed + 1 + b, count, base, BatchData.INTERVAL_MS);
+                pastTimestamps.add(CompressionBenchmarkNew.longsToBytes(past.timestamps));
+                pastValues.add(CompressionBenchmarkNew.floatsToBytes(past.values));
+            }
+            BatchData.Batch batch = BatchData.generateDeterministic(seed, count, BatchData.BASE_TIMESTAMP_MS,
+                BatchData.INTERVAL_MS);
+
+            results.addAll(benchmarkTarget("timestamps", count, pastTimestamps,
+                CompressionBenchmarkNew.longsToBytes(batch.timestamps)));
+            results.addAll(benchmarkTarget("values", count, pastValues,
+                CompressionBenchmarkNew.floatsToBytes(batch.values)));
+        }
+
+        writeResultsToCSV(results, ResultFiles.path("dictionary_res.csv"));
+        System.out.println("Trained dictionary benchmark completed. Results written to dictionary_res.csv");
+
+        System.out.println("Ratio and ns per compress call, without -> with dictionary:");
+        for (int i = 0; i + 1 < results.size(); i += 2) {
+            DictionaryResult plain = results.get(i);
+            DictionaryResult dict = results.get(i + 1);
+            System.out.printf("  %-10s %-10s %5d samples  ratio %6.3f -> %6.3f   compress %7d -> %7d ns   decompress %7d -> %7d ns%n",
+                plain.algorithm, plain.target, plain.sampleCount, plain.ratio, dict.ratio,
+                plain.compressNsPerCall, dict.compressNsPerCall, plain.decompressNsPerCall, dict.decompressNsPerCall);
+        }
+    }
+
+    // Each compressor without and then with a dictionary trained on past, in that order
+    static List<DictionaryResult> benchmarkTarget(String target, int count, List<byte[]> past, byte[] data) {
+        long trainStart = System.nanoTime();
+        TrainedDictionary dictionary = TrainedDictionary.train(DICTIONARY_VERSION, past);
+        long trainingNs = System.nanoTime() - trainStart;
+
+        List<DictionaryResult> results = new ArrayList<>();
+        results.add(benchmark(new CompressionBenchmarkNew.ZlibCompressor(), target, count, data, null, 0));
+        results.add(benchmark(new CompressionBenchmarkNew.ZlibCompressor(dictionary), target, count, data,
+            dictionary, trainingNs));
+        for (HashChainLZ.Level level : HashChainLZ.Level.values()) {
+            results.add(benchmark(new CompressionBenchmarkNew.HashChainLZCompressor(level), target, count, data, null, 0));
+            results.add(benchmark(new CompressionBenchmarkNew.HashChainLZCompressor(level, dictionary), target, count,
+                data, dictionary, trainingNs));
+        }
+        return results;
+    }
+
+    static DictionaryResult benchmark(CompressionBenchmarkNew.Compressor compressor, String target, int count,
+                                      byte[] data, TrainedDictionary dictionary, long trainingNs) {
+        try {
+            for (int i = 0; i < RUNS; i++) {
+                compressor.decompress(compressor.compress(data));
+            }
+
+            byte[] compressed = null;
+            long compressStart = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                compressed = compressor.compress(data);
+            }
+            long compressEnd = System.nanoTime();
+
+            byte[] decompressed = null;
+            long decompressStart = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                decompressed = compressor.decompress(compressed);
+            }
+            long decompressEnd = System.nanoTime();
+
+            if (!Arrays.equals(data, decompressed)) {
+                System.err.println("WARNING: " + compressor.getName() + " on " + target + " failed verification!");
+            }
+
+            return new DictionaryResult(compressor.getName(), target, count, dictionary, trainingNs, data.length,
+                compressed.length, (compressEnd - compressStart) / RUNS, (decompressEnd - decompressStart) / RUNS);
+        } catch (Exception e) {
+            System.err.println("ERROR: " + compressor.getName() + " on " + target + " threw exception: " + e.getMessage());
+            return new DictionaryResult(compressor.getName(), target, count, dictionary, trainingNs, data.length,
+                data.length, 0, 0);
+        }
+    }
+
+    static void writeResultsToCSV(List<DictionaryResult> results, String filename) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+            writer.println("algorithm,target,sample_count,dictionary_version,dictionary_bytes,training_ns,original_size_bytes,compressed_size_bytes,compression_ratio,compress_ns_per_call,decompress_ns_per_call");
+            for (DictionaryResult r : results) {
+                writer.printf("%s,%s,%d,%d,%d,%d,%d,%d,%.4f,%d,%d%n",
+                    r.algorithm, r.target, r.sampleCount, r.dictionaryVersion, r.dictionarySize, r.trainingNs,
+                    r.originalSize, r.compressedSize, r.ratio, r.compressNsPerCall, r.decompressNsPerCall);
+            }
+        }
+    }
+}
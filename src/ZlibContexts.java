@@ -0,0 +1,107 @@
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Per-thread reuse of Deflater/Inflater. Each one owns a native zlib stream (about 256 KB
+// for deflate) that is set up on construction and freed by end(); for 160-320 byte
+// batches that setup costs more than the compression. Borrowed contexts are reset() on
+// return and kept for the life of the thread, one per wrapper mode (zlib or raw deflate).
+// Borrow and return within a single call. A second borrow of the same kind while the
+// first is out gets a fresh context that is ended on return.
+// -Dzlib.pool=false creates and ends a context on every call, for comparison.
+public final class ZlibContexts {
+    private static volatile boolean enabled = !"false".equals(System.getProperty("zlib.pool"));
+    private static final ThreadLocal<ZlibContexts> LOCAL = ThreadLocal.withInitial(ZlibContexts::new);
+
+    // Indexed by nowrap ? 1 : 0
+    private final Deflater[] deflaters = new Deflater[2];
+    private final int[] levels = new int[2];
+    private final int[] strategies = new int[2];
+    private final Inflater[] inflaters = new Inflater[2];
+
+    private ZlibContexts() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static Deflater deflater(int level, int strategy, boolean nowrap) {
+        if (!enabled) return newDeflater(level, strategy, nowrap);
+        ZlibContexts local = LOCAL.get();
+        int slot = nowrap ? 1 : 0;
+        Deflater deflater = local.deflaters[slot];
+        if (deflater == null) return newDeflater(level, strategy, nowrap);
+        local.deflaters[slot] = null;
+        // setLevel/setStrategy make the next deflate() renegotiate parameters; skip them
+        // when the pooled context already matches
+        if (local.levels[slot] != level) deflater.setLevel(level);
+        if (local.strategies[slot] != strategy) deflater.setStrategy(strategy);
+        return deflater;
+    }
+
+    public static Deflater deflater(boolean nowrap) {
+        return deflater(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, nowrap);
+    }
+
+    public static void release(Deflater deflater, int level, int strategy, boolean nowrap) {
+        if (!enabled) {
+            deflater.end();
+            return;
+        }
+        ZlibContexts local = LOCAL.get();
+        int slot = nowrap ? 1 : 0;
+        if (local.deflaters[slot] != null) {
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        local.deflaters[slot] = deflater;
+        local.levels[slot] = level;
+        local.strategies[slot] = strategy;
+    }
+
+    public static void release(Deflater deflater, boolean nowrap) {
+        release(deflater, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, nowrap);
+    }
+
+    public static Inflater inflater(boolean nowrap) {
+        if (!enabled) return new Inflater(nowrap);
+        ZlibContexts local = LOCAL.get();
+        int slot = nowrap ? 1 : 0;
+        Inflater inflater = local.inflaters[slot];
+        if (inflater == null) return new Inflater(nowrap);
+        local.inflaters[slot] = null;
+        return inflater;
+    }
+
+    public static void release(Inflater inflater, boolean nowrap) {
+        if (!enabled) {
+            inflater.end();
+            return;
+        }
+        ZlibContexts local = LOCAL.get();
+        int slot = nowrap ? 1 : 0;
+        if (local.inflaters[slot] != null) {
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        local.inflaters[slot] = inflater;
+    }
+
+    // Worst-case deflate output for n input bytes (zlib's deflateBound) plus a gzip or
+    // zlib wrapper
+    public static int deflateBound(int n) {
+        return n + (n >>> 12) + (n >>> 14) + (n >>> 25) + 13 + 18;
+    }
+
+    private static Deflater newDeflater(int level, int strategy, boolean nowrap) {
+        Deflater deflater = new Deflater(level, nowrap);
+        if (strategy != Deflater.DEFAULT_STRATEGY) deflater.setStrategy(strategy);
+        return deflater;
+    }
+}